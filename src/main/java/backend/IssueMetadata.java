@@ -12,6 +12,8 @@ import java.util.List;
 
 public final class IssueMetadata {
 
+    private static final LocalDateTime UNKNOWN_UPDATE_TIME = LocalDateTime.ofEpochSecond(0, 0, ZoneOffset.ofHours(0));
+
     private final List<TurboIssueEvent> events;
     private final List<Comment> comments;
 
@@ -31,12 +33,16 @@ public final class IssueMetadata {
     private final String eventsETag; // Only modified in the DownloadMetadataTask constructor
     private final String commentsETag;
 
+    // The update time of the issue when this metadata was downloaded, or the epoch if unknown.
+    // Metadata downloaded for an issue that has not been updated since is still current.
+    private final LocalDateTime issueUpdatedAt;
+
     /**
      * Factory method for the empty metadata instance. This is used as the default for
      * new issues.
      */
     public static IssueMetadata empty() {
-        return new IssueMetadata(new ArrayList<>(), new ArrayList<>(), false, "", "");
+        return new IssueMetadata(new ArrayList<>(), new ArrayList<>(), false, "", "", UNKNOWN_UPDATE_TIME);
     }
 
     /**
@@ -44,7 +50,7 @@ public final class IssueMetadata {
      * that case we assume the metadata is no longer the latest.
      */
     public IssueMetadata invalidate() {
-        return new IssueMetadata(events, comments, false, eventsETag, commentsETag, user);
+        return new IssueMetadata(events, comments, false, eventsETag, commentsETag, issueUpdatedAt, user);
     }
 
     /**
@@ -55,7 +61,17 @@ public final class IssueMetadata {
      */
     public static IssueMetadata intermediate(List<TurboIssueEvent> events, List<Comment> comments,
                                              String eventsETag, String commentsETag) {
-        return new IssueMetadata(events, comments, false, eventsETag, commentsETag);
+        return intermediate(events, comments, eventsETag, commentsETag, UNKNOWN_UPDATE_TIME);
+    }
+
+    /**
+     * Constructs an intermediate metadata instance downloaded for an issue last updated at
+     * {@code issueUpdatedAt}.
+     */
+    public static IssueMetadata intermediate(List<TurboIssueEvent> events, List<Comment> comments,
+                                             String eventsETag, String commentsETag,
+                                             LocalDateTime issueUpdatedAt) {
+        return new IssueMetadata(events, comments, false, eventsETag, commentsETag, issueUpdatedAt);
     }
 
     /**
@@ -65,7 +81,7 @@ public final class IssueMetadata {
      * not very interesting.
      */
     public IssueMetadata full(String currentUser) {
-        return new IssueMetadata(events, comments, true, eventsETag, commentsETag, currentUser);
+        return new IssueMetadata(events, comments, true, eventsETag, commentsETag, issueUpdatedAt, currentUser);
     }
 
     /**
@@ -79,19 +95,22 @@ public final class IssueMetadata {
         } else {
             newEvents = new ArrayList<>(events);
         }
-        return new IssueMetadata(newEvents, comments, isLatest, eventsETag, commentsETag, nonSelfUpdatedAt, user);
+        return new IssueMetadata(newEvents, comments, isLatest, eventsETag, commentsETag, issueUpdatedAt,
+                nonSelfUpdatedAt, user);
     }
 
     /**
      * Intermediate metadata constructor (no user provided, empty computed properties)
      */
     private IssueMetadata(List<TurboIssueEvent> events, List<Comment> comments,
-                          boolean isLatest, String eventsETag, String commentsETag) {
+                          boolean isLatest, String eventsETag, String commentsETag,
+                          LocalDateTime issueUpdatedAt) {
         this.events = new ArrayList<>(events);
         this.comments = new ArrayList<>(comments);
         this.isLatest = isLatest;
         this.eventsETag = eventsETag;
         this.commentsETag = commentsETag;
+        this.issueUpdatedAt = issueUpdatedAt;
 
         this.user = "";
         this.nonSelfUpdatedAt = LocalDateTime.ofEpochSecond(0, 0, ZoneOffset.ofHours(0));
@@ -103,8 +122,8 @@ public final class IssueMetadata {
      */
     private IssueMetadata(List<TurboIssueEvent> events, List<Comment> comments,
                           boolean isLatest, String eventsETag, String commentsETag,
-                          String user) {
-        this(events, comments, isLatest, eventsETag, commentsETag,
+                          LocalDateTime issueUpdatedAt, String user) {
+        this(events, comments, isLatest, eventsETag, commentsETag, issueUpdatedAt,
             computeNonSelfUpdatedAt(events, comments, user), user);
     }
 
@@ -113,12 +132,13 @@ public final class IssueMetadata {
      */
     private IssueMetadata(List<TurboIssueEvent> events, List<Comment> comments,
                           boolean isLatest, String eventsETag, String commentsETag,
-                          LocalDateTime nonSelfUpdatedAt, String user) {
+                          LocalDateTime issueUpdatedAt, LocalDateTime nonSelfUpdatedAt, String user) {
         this.events = new ArrayList<>(events);
         this.comments = new ArrayList<>(comments);
         this.isLatest = isLatest;
         this.eventsETag = eventsETag;
         this.commentsETag = commentsETag;
+        this.issueUpdatedAt = issueUpdatedAt;
 
         this.user = user;
         this.nonSelfUpdatedAt = nonSelfUpdatedAt;
@@ -199,6 +219,18 @@ public final class IssueMetadata {
         return commentsETag;
     }
 
+    public LocalDateTime getIssueUpdatedAt() {
+        return issueUpdatedAt;
+    }
+
+    /**
+     * Returns true if this metadata was downloaded after the last update to an issue
+     * updated at {@code issueUpdatedAt}.
+     */
+    public boolean isCurrentFor(LocalDateTime issueUpdatedAt) {
+        return !this.issueUpdatedAt.equals(UNKNOWN_UPDATE_TIME) && this.issueUpdatedAt.equals(issueUpdatedAt);
+    }
+
     @Override
     public String toString() {
         return "Events: " + events.toString() + ", " + "comments: " + comments.toString();
@@ -46,7 +46,7 @@ public class Logic {
         this.uiManager = uiManager;
         this.prefs = prefs;
         this.models = models.orElse(new MultiModel(prefs));
-        this.repoIO = repoIO.orElseGet(TestController::createApplicationRepoIO);
+        this.repoIO = repoIO.orElseGet(() -> TestController.createApplicationRepoIO(prefs));
 
         repoOpControl = new RepoOpControl(this.repoIO, this.models);
         this.repoIO.setRepoOpControl(repoOpControl);
@@ -5,11 +5,12 @@ import backend.github.GitHubModelUpdatesData;
 import backend.github.GitHubSource;
 import backend.interfaces.RepoSource;
 import backend.interfaces.RepoStore;
-import backend.json.JSONStore;
+import backend.json.IssueMetadataStore;
+import backend.json.JournaledJSONStore;
 import backend.resource.Model;
+import backend.resource.StringPool;
 import backend.resource.TurboIssue;
 import backend.resource.TurboMilestone;
-import backend.resource.serialization.SerializableModel;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.logging.log4j.Logger;
 import org.eclipse.egit.github.core.Issue;
@@ -19,6 +20,7 @@ import util.events.ShowErrorDialogEvent;
 import util.events.UpdateProgressEvent;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -32,7 +34,8 @@ public class RepoIO {
     private static final Logger logger = HTLog.get(RepoIO.class);
 
     private final RepoSource repoSource;
-    private final JSONStore jsonStore;
+    private final RepoStore repoStore;
+    private final IssueMetadataStore issueMetadataStore = new IssueMetadataStore();
     private RepoOpControl repoOpControl;
 
     private final List<String> storedRepos;
@@ -43,15 +46,15 @@ public class RepoIO {
      * Contructs a RepoIO providing IO operations on repositories, taking in various optional
      * parameters for repos source and storage which are useful for testing purposes.
      * @param repoSource optional source of repos. Default to GitHubSource if not present
-     * @param jsonStore optional storage for repos. Default to a new JSONStore if not present
+     * @param repoStore optional storage for repos. Default to a new JournaledJSONStore if not present
      * @param storeDirectory optional directory for storing repos. Default value is in RepoStore.
      */
-    public RepoIO(Optional<RepoSource> repoSource, Optional<JSONStore> jsonStore,
+    public RepoIO(Optional<RepoSource> repoSource, Optional<RepoStore> repoStore,
                   Optional<String> storeDirectory) {
         this.repoSource = repoSource.orElseGet(() -> new GitHubSource());
         storeDirectory.ifPresent((dir) -> RepoStore.changeDirectory(dir));
-        this.jsonStore = jsonStore.orElseGet(() -> new JSONStore());
-        storedRepos = new ArrayList<>(this.jsonStore.getStoredRepos());
+        this.repoStore = repoStore.orElseGet(() -> new JournaledJSONStore());
+        storedRepos = new ArrayList<>(this.repoStore.getStoredRepos());
     }
 
     /**
@@ -87,14 +90,9 @@ public class RepoIO {
         Optional<String> matchingRepoName = storedRepos.stream().filter(repoName ->
                 repoName.equalsIgnoreCase(repoId)).findFirst();
         if (matchingRepoName.isPresent()) {
-            // TODO avoid CI deadlock in the .exceptionally call. Explanation:
-            /* loadRepoFromStoreAsync will execute in jsonStore's single thread pool, and if
-             it has an exception then downloadRepoFromSourceBlocking will also run there. Eventually,
-             this results in jsonStore.saveRepository in updateModel being placed as another Task on the
-             same thread pool. However, since the current task is still carrying out and waiting for the second
-             task to complete, the program gets deadlocked on the CI.
-             One example of how this can happen is when storedRepos contains the repo name but the json was
-             deleted while the program is still running. */
+            // If the stored copy cannot be loaded (e.g. it was deleted while the program is running),
+            // the repository is downloaded again. This runs outside the store's threads, so the
+            // download can wait for its own save to the store.
             String repoToLoad = matchingRepoName.get();
             return loadRepoFromStoreAsync(repoToLoad)
                     .exceptionally(e -> downloadRepoFromSourceBlocking(repoToLoad));
@@ -105,11 +103,13 @@ public class RepoIO {
 
     public CompletableFuture<Boolean> removeRepository(String repoId) {
         storedRepos.remove(repoId);
-        return jsonStore.removeStoredRepo(repoId);
+        issueMetadataStore.remove(repoId);
+        StringPool.remove(repoId);
+        return repoStore.removeStoredRepo(repoId);
     }
 
     private CompletableFuture<Model> loadRepoFromStoreAsync(String repoId) {
-        return jsonStore.loadRepository(repoId)
+        return repoStore.loadRepository(repoId)
                 .thenCompose((model) -> this.updateModel(model, false));
     }
 
@@ -166,10 +166,10 @@ public class RepoIO {
             .thenCompose((updates) -> getRepoOpControl().updateLocalModel(updates, syncOperation))
             .thenApply(newModel -> {
                 boolean corruptedJson = false;
-                if (!model.equals(newModel)) {
+                if (model.getVersion() != newModel.getVersion()) {
                     try {
                         corruptedJson =
-                                jsonStore.saveRepository(newModel.getRepoId(), new SerializableModel(newModel)).get();
+                                repoStore.saveRepository(newModel.getRepoId(), newModel).get();
                     } catch (InterruptedException | ExecutionException ex) {
                         corruptedJson = true;
                     }
@@ -195,8 +195,35 @@ public class RepoIO {
             }).exceptionally(withResult(new Model(model.getRepoId())));
     }
 
+    /**
+     * Downloads the metadata of {@code issues}. Metadata stored from earlier runs stands in for
+     * that of issues which have none yet, so that it is only downloaded again if it changed.
+     * The downloaded metadata is then stored in turn.
+     */
     public CompletableFuture<Map<Integer, IssueMetadata>> getIssueMetadata(String repoId, List<TurboIssue> issues) {
-        return repoSource.downloadMetadata(repoId, issues);
+        return issueMetadataStore.load(repoId)
+                .thenCompose(stored -> repoSource.downloadMetadata(repoId, withStoredMetadata(issues, stored)))
+                .thenApply(metadata -> {
+                    if (!metadata.isEmpty()) {
+                        issueMetadataStore.update(repoId, new HashMap<>(metadata));
+                    }
+                    return metadata;
+                });
+    }
+
+    private static List<TurboIssue> withStoredMetadata(List<TurboIssue> issues, Map<Integer, IssueMetadata> stored) {
+        List<TurboIssue> result = new ArrayList<>();
+        for (TurboIssue issue : issues) {
+            boolean hasMetadata = !issue.getMetadata().getEventsETag().isEmpty();
+            if (hasMetadata || !stored.containsKey(issue.getId())) {
+                result.add(issue);
+            } else {
+                TurboIssue withMetadata = new TurboIssue(issue);
+                withMetadata.setMetadata(stored.get(issue.getId()));
+                result.add(withMetadata);
+            }
+        }
+        return result;
     }
 
     public CompletableFuture<Boolean> replaceIssueLabels(TurboIssue issue, List<String> labels) {
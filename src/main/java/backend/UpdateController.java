@@ -1,23 +1,29 @@
 package backend;
 
 import backend.resource.Model;
+import backend.resource.ModelDelta;
 import backend.resource.MultiModel;
 import backend.resource.TurboIssue;
 import filter.FilterException;
+import filter.expression.FilterBatch;
 import filter.expression.FilterExpression;
+import filter.expression.FilterView;
 import filter.expression.Qualifier;
 import javafx.application.Platform;
 import org.apache.logging.log4j.Logger;
 import filter.expression.QualifierType;
+import filter.expression.SortOrder;
 import ui.GuiElement;
 import ui.UI;
 import ui.issuepanel.FilterPanel;
 import util.Futures;
 import util.HTLog;
 import util.events.FilterExceptionEvent;
+import util.events.ModelDeltaEventHandler;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
@@ -29,10 +35,26 @@ import java.util.stream.Collectors;
 public class UpdateController {
     private static final Logger logger = HTLog.get(UpdateController.class);
 
+    private static final int MAX_VIEWS = 64;
+
     private final Logic logic;
 
+    // The results of recently shown filter expressions, kept up to date as the models change
+    private final Map<FilterExpression, FilterView> views =
+            new LinkedHashMap<FilterExpression, FilterView>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<FilterExpression, FilterView> eldest) {
+                    return size() > MAX_VIEWS;
+                }
+            };
+
+    // The changes between models of repositories, published when models are replaced or else computed by
+    // the views, kept until there are newer models
+    private final Map<ModelDelta.Key, ModelDelta> deltas = new ConcurrentHashMap<>();
+
     public UpdateController(Logic logic) {
         this.logic = logic;
+        UI.events.registerEvent((ModelDeltaEventHandler) e -> deltas.put(e.delta.getKey(), e.delta));
     }
 
     /**
@@ -105,20 +127,14 @@ public class UpdateController {
      */
     private Map<String, List<TurboIssue>> tallyMetadataUpdate(List<FilterExpression> filterExprs) {
         MultiModel models = logic.getModels();
-        List<TurboIssue> allModelIssues = models.getIssues();
-
-        return filterExprs.stream()
+        List<FilterExpression> updatedFilterExprs = filterExprs.stream()
                 .filter(Qualifier::hasUpdatedQualifier)
-                .flatMap(filterExpr -> allModelIssues.stream()
-                        .filter(issue -> {
-                            try {
-                                return Qualifier.process(models, filterExpr, issue);
-                            } catch (FilterException e) {
-                                Platform.runLater(() -> UI.events.triggerEvent(
-                                        new FilterExceptionEvent(filterExpr, e.getMessage())));
-                                return false;
-                            }
-                        }))
+                .collect(Collectors.toList());
+
+        return FilterBatch.plan(models, updatedFilterExprs)
+                .apply(models.toModels(), logic.prefs.getParallelFilterThreshold(), this::reportFilterException)
+                .values().stream()
+                .flatMap(List::stream)
                 .distinct()
                 .collect(Collectors.groupingBy(TurboIssue::getRepoId));
     }
@@ -132,57 +148,106 @@ public class UpdateController {
      */
     private Map<FilterExpression, List<GuiElement>> processFilters(List<FilterExpression> filterExprs) {
         MultiModel models = logic.getModels();
-        List<TurboIssue> allModelIssues = models.getIssues();
 
         Map<FilterExpression, List<GuiElement>> processed = new HashMap<>();
 
+        // Filter expressions with the same milestone aliases replaced are filtered once
+        Map<FilterExpression, List<FilterExpression>> filterExprsByNoAlias = new LinkedHashMap<>();
         filterExprs.stream().distinct().forEach(filterExpr -> {
-            boolean hasUpdatedQualifier = Qualifier.hasUpdatedQualifier(filterExpr);
-
             try {
-                FilterExpression filterExprNoAlias = Qualifier.replaceMilestoneAliases(models, filterExpr);
-
-                List<TurboIssue> processedIssues = allModelIssues.stream()
-                        .filter(issue -> Qualifier.process(models, filterExprNoAlias, issue))
-                        .sorted(determineComparator(filterExprNoAlias, hasUpdatedQualifier))
-                        .limit(Qualifier.determineCount(allModelIssues, filterExprNoAlias))
-                        .collect(Collectors.toList());
-
-                List<GuiElement> processedElements = produceGuiElements(models, processedIssues);
-
-                processed.put(filterExpr, processedElements);
+                filterExprsByNoAlias.computeIfAbsent(Qualifier.replaceMilestoneAliases(models, filterExpr),
+                        k -> new ArrayList<>()).add(filterExpr);
             } catch (FilterException e) {
-                Platform.runLater(() -> UI.events.triggerEvent(new FilterExceptionEvent(filterExpr, e.getMessage())));
+                reportFilterException(filterExpr, e);
             }
         });
 
+        // Panels whose views cannot be brought up to date from the changes are filtered again together,
+        // in one pass over the issues that any of them may show
+        List<Model> repoModels = models.toModels();
+        List<FilterView> toRebuild = new ArrayList<>();
+        Map<FilterExpression, FilterView> shown = new LinkedHashMap<>();
+        synchronized (views) {
+            for (FilterExpression filterExprNoAlias : filterExprsByNoAlias.keySet()) {
+                try {
+                    FilterView view = views.computeIfAbsent(filterExprNoAlias, expr ->
+                            new FilterView(expr, determineSortOrder(expr, Qualifier.hasUpdatedQualifier(expr))));
+                    if (!view.update(models, repoModels, deltas)) {
+                        toRebuild.add(view);
+                    }
+                    shown.put(filterExprNoAlias, view);
+                } catch (FilterException e) {
+                    views.remove(filterExprNoAlias);
+                    reportFilterException(filterExprsByNoAlias.get(filterExprNoAlias), e);
+                }
+            }
+
+            // Large sets of issues are filtered and sorted in parallel
+            int parallelThreshold = logic.prefs.getParallelFilterThreshold();
+            FilterBatch batch = FilterBatch.plan(models, toRebuild.stream()
+                    .map(FilterView::getExpression)
+                    .collect(Collectors.toList()));
+            Map<FilterExpression, List<TurboIssue>> filtered = batch.apply(repoModels, parallelThreshold,
+                    (filterExprNoAlias, e) -> {
+                        views.remove(filterExprNoAlias);
+                        shown.remove(filterExprNoAlias);
+                        reportFilterException(filterExprsByNoAlias.get(filterExprNoAlias), e);
+                    });
+            filtered.forEach((filterExprNoAlias, filteredIssues) ->
+                    shown.get(filterExprNoAlias).rebuild(models, repoModels, filteredIssues, parallelThreshold));
+
+            shown.forEach((filterExprNoAlias, view) -> {
+                List<GuiElement> processedElements = produceGuiElements(models, view.getIssues());
+                filterExprsByNoAlias.get(filterExprNoAlias)
+                        .forEach(filterExpr -> processed.put(filterExpr, processedElements));
+            });
+        }
+        pruneDeltas(repoModels);
+
         return processed;
     }
 
     /**
-     * Produces a suitable comparator based on the given filter expression.
+     * Drops the changes that result in models older than {@code repoModels}, which no view needs any more.
+     */
+    private void pruneDeltas(List<Model> repoModels) {
+        Map<String, Long> versions = new HashMap<>();
+        repoModels.forEach(repoModel -> versions.put(repoModel.getRepoId(), repoModel.getVersion()));
+        deltas.keySet().removeIf(key -> !versions.containsKey(key.getRepoId())
+                || key.getToVersion() < versions.get(key.getRepoId()));
+    }
+
+    private void reportFilterException(FilterExpression filterExpr, FilterException e) {
+        Platform.runLater(() -> UI.events.triggerEvent(new FilterExceptionEvent(filterExpr, e.getMessage())));
+    }
+
+    private void reportFilterException(List<FilterExpression> filterExprs, FilterException e) {
+        filterExprs.forEach(filterExpr -> reportFilterException(filterExpr, e));
+    }
+
+    /**
+     * Produces a suitable sort order based on the given filter expression.
      *
      * @param filterExpr          The given filter expression.
      * @param hasUpdatedQualifier Determines the behaviour of the sort key "nonSelfUpdate".
-     * @return The comparator to use.
+     * @return The sort order to use.
      */
-    private Comparator<TurboIssue> determineComparator(FilterExpression filterExpr,
-                                                       boolean hasUpdatedQualifier) {
+    private SortOrder determineSortOrder(FilterExpression filterExpr, boolean hasUpdatedQualifier) {
         MultiModel models = logic.getModels();
         for (Qualifier metaQualifier : filterExpr.find(Qualifier::isMetaQualifier)) {
             // Only take into account the first sort qualifier found
             if (metaQualifier.getType() == QualifierType.SORT) {
-                return metaQualifier.getCompoundSortComparator(models, hasUpdatedQualifier);
+                return metaQualifier.getCompoundSortOrder(models, hasUpdatedQualifier);
             }
         }
 
         // No sort qualifier, look for updated qualifier
         if (hasUpdatedQualifier) {
-            return Qualifier.getSortComparator(models, "nonSelfUpdate", true, true);
+            return Qualifier.getSortOrder(models, "nonSelfUpdate", true, true);
         }
 
         // No sort or updated, return sort by descending ID, which is the default.
-        return Qualifier.getSortComparator(models, "id", true, false);
+        return Qualifier.getSortOrder(models, "id", true, false);
     }
 
     /**
@@ -0,0 +1,48 @@
+package backend.binary;
+
+import backend.interfaces.StoreTask;
+import backend.json.JSONStore;
+import org.apache.logging.log4j.Logger;
+import util.HTLog;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+class BinaryDeleteTask extends StoreTask {
+
+    private static final Logger logger = HTLog.get(BinaryDeleteTask.class);
+
+    public final CompletableFuture<Boolean> response;
+    private final JSONStore legacyStore;
+    private final BinaryStore store;
+
+    protected BinaryDeleteTask(String repoId, CompletableFuture<Boolean> response, JSONStore legacyStore,
+                               BinaryStore store) {
+        super(repoId);
+        this.response = response;
+        this.legacyStore = legacyStore;
+        this.store = store;
+    }
+
+    @Override
+    public void run() {
+        Optional<Path> snapshot = BinaryStore.getSnapshotPath(repoId);
+        boolean deleteFailed = !snapshot.isPresent();
+        if (snapshot.isPresent() && Files.exists(snapshot.get())) {
+            try {
+                Files.delete(snapshot.get());
+            } catch (IOException e) {
+                logger.error(e.getLocalizedMessage(), e);
+                deleteFailed = true;
+            }
+        } else if (!deleteFailed) {
+            // Not yet migrated
+            deleteFailed = legacyStore.removeStoredRepo(repoId).join();
+        }
+        deleteFailed |= store.deleteSegments(repoId, false);
+        response.complete(deleteFailed);
+    }
+}
@@ -0,0 +1,472 @@
+package backend.binary;
+
+import backend.UpdateSignature;
+import backend.resource.Model;
+import backend.resource.StoredDescription;
+import backend.resource.TurboIssue;
+import backend.resource.TurboLabel;
+import backend.resource.TurboMilestone;
+import backend.resource.TurboUser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Converts between a Model and a compact, versioned binary representation.
+ *
+ * The format starts with a magic number and a version. Strings that repeat across a
+ * repository (label names and colours, logins, milestone titles) are written once to
+ * a string table and referred to by index. Ids, counts and indices are varints, and
+ * timestamps are epoch milliseconds (taking LocalDateTimes to be in UTC) followed by
+ * the sub-millisecond nanoseconds, which are almost always zero.
+ *
+ * Nullable strings and string table references are written shifted up by one, so that
+ * zero can stand for null.
+ *
+ * Since version 2, issue descriptions may be kept in a {@link DescriptionSegment} instead,
+ * in which case the header names the segment and each issue refers to its description by
+ * its position in the segment. Version 1 snapshots, which always have the descriptions
+ * inline, can still be read.
+ */
+public final class BinaryModelSerializer {
+
+    private static final byte[] MAGIC = {'H', 'T', 'B', 'M'};
+    public static final int VERSION = 2;
+    private static final int MIN_VERSION = 1;
+    private static final long NO_SEGMENT = 0;
+
+    // Bounds what corrupted lengths and counts can make the reader allocate
+    private static final int MAX_STRING_BYTES = 16 * 1024 * 1024;
+    private static final int MAX_PRESIZED_CAPACITY = 1 << 16;
+
+    private static final int FLAG_PULL_REQUEST = 1;
+    private static final int FLAG_OPEN = 1 << 1;
+    private static final int FLAG_ASSIGNEE = 1 << 2;
+    private static final int FLAG_MILESTONE = 1 << 3;
+    private static final int FLAG_STORED_DESCRIPTION = 1 << 4;
+
+    /**
+     * Opens the description segment with the given id.
+     */
+    @FunctionalInterface
+    public interface SegmentOpener {
+        DescriptionSegment open(long segmentId) throws IOException;
+    }
+
+    private BinaryModelSerializer() {
+    }
+
+    /**
+     * Writes {@code model} to {@code out}, descriptions included. The stream is flushed but not closed.
+     */
+    public static void write(Model model, OutputStream out) throws IOException {
+        write(model, out, null);
+    }
+
+    /**
+     * Writes {@code model} to {@code out}, keeping the descriptions of its issues in the segment
+     * that {@code descriptions} appends to, if given. The stream is flushed but not closed.
+     */
+    public static void write(Model model, OutputStream out, DescriptionSegment.Appender descriptions)
+            throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        StringTable table = new StringTable();
+        collectStrings(model, table);
+
+        data.write(MAGIC);
+        writeVarInt(data, VERSION);
+        writeString(data, model.getRepoId());
+        writeVarLong(data, descriptions == null ? NO_SEGMENT : descriptions.getSegmentId());
+        writeSignature(data, model.getUpdateSignature());
+
+        writeVarInt(data, table.strings.size());
+        for (String string : table.strings) {
+            writeString(data, string);
+        }
+
+        writeVarInt(data, model.getLabels().size());
+        for (TurboLabel label : model.getLabels()) {
+            writeVarInt(data, table.indexOf(label.getFullName()));
+            writeVarInt(data, table.indexOf(label.getColour()));
+        }
+
+        writeVarInt(data, model.getMilestones().size());
+        for (TurboMilestone milestone : model.getMilestones()) {
+            writeVarInt(data, milestone.getId());
+            writeVarInt(data, table.indexOf(milestone.getTitle()));
+            writeOptionalDate(data, milestone.getDueDate());
+            writeString(data, milestone.getDescription());
+            data.writeBoolean(milestone.isOpen());
+            writeVarInt(data, milestone.getOpenIssues());
+            writeVarInt(data, milestone.getClosedIssues());
+        }
+
+        writeVarInt(data, model.getUsers().size());
+        for (TurboUser user : model.getUsers()) {
+            writeVarInt(data, table.indexOf(user.getLoginName()));
+            writeString(data, user.getRealName());
+            writeString(data, user.getAvatarURL());
+        }
+
+        writeVarInt(data, model.getIssues().size());
+        for (TurboIssue issue : model.getIssues()) {
+            writeIssue(data, issue, table, descriptions);
+        }
+        data.flush();
+    }
+
+    /**
+     * Reads a Model from {@code in}, which must have its descriptions inline. The stream is not closed.
+     * @throws IOException if the input cannot be read or does not describe a Model
+     */
+    public static Model read(InputStream in) throws IOException {
+        return read(in, segmentId -> {
+            throw new IOException("Descriptions are kept in segment " + Long.toHexString(segmentId));
+        });
+    }
+
+    /**
+     * Reads a Model from {@code in}. Issues whose descriptions are kept in a segment, which is
+     * opened with {@code segments}, are given stored descriptions. The stream is not closed.
+     * @throws IOException if the input cannot be read or does not describe a Model
+     */
+    public static Model read(InputStream in, SegmentOpener segments) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        int version = readVersion(data);
+        String repoId = readRepoId(data);
+        long segmentId = version >= 2 ? readVarLong(data) : NO_SEGMENT;
+        DescriptionSegment segment = segmentId == NO_SEGMENT ? null : segments.open(segmentId);
+        UpdateSignature signature = readSignature(data);
+
+        List<String> table = new ArrayList<>();
+        table.add(null);
+        int tableSize = readVarInt(data);
+        for (int i = 0; i < tableSize; i++) {
+            table.add(readString(data));
+        }
+
+        int labelCount = readVarInt(data);
+        List<TurboLabel> labels = new ArrayList<>(Math.min(labelCount, MAX_PRESIZED_CAPACITY));
+        for (int i = 0; i < labelCount; i++) {
+            String name = lookUp(table, readVarInt(data));
+            String colour = lookUp(table, readVarInt(data));
+            labels.add(new TurboLabel(repoId, colour, name));
+        }
+
+        int milestoneCount = readVarInt(data);
+        List<TurboMilestone> milestones = new ArrayList<>(Math.min(milestoneCount, MAX_PRESIZED_CAPACITY));
+        for (int i = 0; i < milestoneCount; i++) {
+            TurboMilestone milestone = new TurboMilestone(repoId, readVarInt(data), lookUp(table, readVarInt(data)));
+            milestone.setDueDate(readOptionalDate(data));
+            milestone.setDescription(readString(data));
+            milestone.setOpen(data.readBoolean());
+            milestone.setOpenIssues(readVarInt(data));
+            milestone.setClosedIssues(readVarInt(data));
+            milestones.add(milestone);
+        }
+
+        int userCount = readVarInt(data);
+        List<TurboUser> users = new ArrayList<>(Math.min(userCount, MAX_PRESIZED_CAPACITY));
+        for (int i = 0; i < userCount; i++) {
+            String loginName = lookUp(table, readVarInt(data));
+            users.add(new TurboUser(repoId, loginName, readString(data), readString(data)));
+        }
+
+        int issueCount = readVarInt(data);
+        List<TurboIssue> issues = new ArrayList<>(Math.min(issueCount, MAX_PRESIZED_CAPACITY));
+        for (int i = 0; i < issueCount; i++) {
+            issues.add(readIssue(data, repoId, table, segment));
+        }
+
+        return new Model(repoId, issues, labels, milestones, users, signature);
+    }
+
+    /**
+     * Reads just the repository id from the start of {@code in}.
+     * @throws IOException if the input does not start with the header of this format
+     */
+    public static String readRepoId(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        readVersion(data);
+        return readRepoId(data);
+    }
+
+    private static int readVersion(DataInputStream data) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        data.readFully(magic);
+        if (!Arrays.equals(MAGIC, magic)) {
+            throw new IOException("Not a binary repository snapshot");
+        }
+        int version = readVarInt(data);
+        if (version < MIN_VERSION || version > VERSION) {
+            throw new IOException("Unsupported binary repository snapshot version " + version);
+        }
+        return version;
+    }
+
+    private static String readRepoId(DataInputStream data) throws IOException {
+        String repoId = readString(data);
+        if (repoId == null) {
+            throw new IOException("Binary repository snapshot has no repository id");
+        }
+        return repoId;
+    }
+
+    private static void collectStrings(Model model, StringTable table) {
+        for (TurboLabel label : model.getLabels()) {
+            table.add(label.getFullName());
+            table.add(label.getColour());
+        }
+        for (TurboMilestone milestone : model.getMilestones()) {
+            table.add(milestone.getTitle());
+        }
+        for (TurboUser user : model.getUsers()) {
+            table.add(user.getLoginName());
+        }
+        for (TurboIssue issue : model.getIssues()) {
+            table.add(issue.getCreator());
+            issue.getAssignee().ifPresent(table::add);
+            issue.getLabels().forEach(table::add);
+        }
+    }
+
+    private static void writeIssue(DataOutputStream data, TurboIssue issue, StringTable table,
+                                   DescriptionSegment.Appender descriptions) throws IOException {
+        Optional<StoredDescription> stored = descriptions == null ? Optional.empty() : descriptions.store(issue);
+        int flags = (issue.isPullRequest() ? FLAG_PULL_REQUEST : 0)
+                | (issue.isOpen() ? FLAG_OPEN : 0)
+                | (issue.getAssignee().isPresent() ? FLAG_ASSIGNEE : 0)
+                | (issue.getMilestone().isPresent() ? FLAG_MILESTONE : 0)
+                | (stored.isPresent() ? FLAG_STORED_DESCRIPTION : 0);
+
+        writeVarInt(data, issue.getId());
+        writeVarInt(data, flags);
+        writeString(data, issue.getTitle());
+        writeVarInt(data, table.indexOf(issue.getCreator()));
+        writeTimestamp(data, issue.getCreatedAt());
+        if (stored.isPresent()) {
+            writeVarLong(data, stored.get().getOffset());
+            writeVarInt(data, stored.get().getLength());
+        } else {
+            writeString(data, issue.readDescription());
+        }
+        writeTimestamp(data, issue.getUpdatedAt());
+        writeVarInt(data, issue.getCommentCount());
+        if (issue.getAssignee().isPresent()) {
+            writeVarInt(data, table.indexOf(issue.getAssignee().get()));
+        }
+        writeVarInt(data, issue.getLabels().size());
+        for (String label : issue.getLabels()) {
+            writeVarInt(data, table.indexOf(label));
+        }
+        if (issue.getMilestone().isPresent()) {
+            writeVarInt(data, issue.getMilestone().get());
+        }
+    }
+
+    private static TurboIssue readIssue(DataInputStream data, String repoId, List<String> table,
+                                        DescriptionSegment segment) throws IOException {
+        int id = readVarInt(data);
+        int flags = readVarInt(data);
+        String title = readString(data);
+        String creator = lookUp(table, readVarInt(data));
+        LocalDateTime createdAt = readTimestamp(data);
+        String description = null;
+        StoredDescription stored = null;
+        if ((flags & FLAG_STORED_DESCRIPTION) != 0) {
+            if (segment == null) {
+                throw new IOException("Issue #" + id + " refers to a missing description segment");
+            }
+            stored = new StoredDescription(segment, readVarLong(data), readVarInt(data));
+        } else {
+            description = readString(data);
+        }
+        LocalDateTime updatedAt = readTimestamp(data);
+        int commentCount = readVarInt(data);
+        Optional<String> assignee = (flags & FLAG_ASSIGNEE) != 0
+                ? Optional.of(lookUp(table, readVarInt(data)))
+                : Optional.empty();
+        int labelCount = readVarInt(data);
+        List<String> labels = new ArrayList<>(Math.min(labelCount, MAX_PRESIZED_CAPACITY));
+        for (int i = 0; i < labelCount; i++) {
+            labels.add(lookUp(table, readVarInt(data)));
+        }
+        Optional<Integer> milestone = (flags & FLAG_MILESTONE) != 0
+                ? Optional.of(readVarInt(data))
+                : Optional.empty();
+
+        TurboIssue issue = new TurboIssue(repoId, id, title, creator, createdAt, (flags & FLAG_PULL_REQUEST) != 0,
+                description, updatedAt, commentCount, (flags & FLAG_OPEN) != 0, assignee, labels, milestone);
+        if (stored != null) {
+            issue.setStoredDescription(stored);
+        }
+        return issue;
+    }
+
+    private static void writeSignature(DataOutputStream data, UpdateSignature signature) throws IOException {
+        writeString(data, signature.issuesETag);
+        writeString(data, signature.labelsETag);
+        writeString(data, signature.milestonesETag);
+        writeString(data, signature.collaboratorsETag);
+        writeVarLong(data, signature.lastCheckTime.getTime());
+    }
+
+    private static UpdateSignature readSignature(DataInputStream data) throws IOException {
+        return new UpdateSignature(readString(data), readString(data), readString(data), readString(data),
+                new Date(readVarLong(data)));
+    }
+
+    private static void writeTimestamp(DataOutputStream data, LocalDateTime time) throws IOException {
+        if (time == null) {
+            data.writeBoolean(false);
+            return;
+        }
+        data.writeBoolean(true);
+        long seconds = time.toEpochSecond(ZoneOffset.UTC);
+        int nanos = time.getNano();
+        writeVarLong(data, seconds * 1000 + nanos / 1_000_000);
+        writeVarInt(data, nanos % 1_000_000);
+    }
+
+    private static LocalDateTime readTimestamp(DataInputStream data) throws IOException {
+        if (!data.readBoolean()) {
+            return null;
+        }
+        long millis = readVarLong(data);
+        int nanos = readVarInt(data);
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000L),
+                (int) Math.floorMod(millis, 1000L) * 1_000_000 + nanos, ZoneOffset.UTC);
+    }
+
+    private static void writeOptionalDate(DataOutputStream data, Optional<LocalDate> date) throws IOException {
+        data.writeBoolean(date.isPresent());
+        if (date.isPresent()) {
+            writeVarLong(data, date.get().toEpochDay());
+        }
+    }
+
+    private static Optional<LocalDate> readOptionalDate(DataInputStream data) throws IOException {
+        return data.readBoolean()
+                ? Optional.of(LocalDate.ofEpochDay(readVarLong(data)))
+                : Optional.empty();
+    }
+
+    private static void writeString(DataOutputStream data, String string) throws IOException {
+        if (string == null) {
+            writeVarInt(data, 0);
+            return;
+        }
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(data, bytes.length + 1);
+        data.write(bytes);
+    }
+
+    private static String readString(DataInputStream data) throws IOException {
+        int length = readVarInt(data);
+        if (length == 0) {
+            return null;
+        }
+        if (length < 0 || length - 1 > MAX_STRING_BYTES) {
+            throw new IOException("Invalid string length " + length);
+        }
+        byte[] bytes = new byte[length - 1];
+        data.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String lookUp(List<String> table, int index) throws IOException {
+        if (index < 0 || index >= table.size()) {
+            throw new IOException("Invalid string table index " + index);
+        }
+        return table.get(index);
+    }
+
+    /**
+     * Writes the 32 bits of {@code value} as an unsigned varint, seven bits per byte.
+     */
+    private static void writeVarInt(DataOutputStream data, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            data.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data.write(value);
+    }
+
+    private static int readVarInt(DataInputStream data) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = data.read();
+            if (b == -1) {
+                throw new EOFException();
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * Writes {@code value} as a zigzag-encoded varint, so that small negative values stay short.
+     */
+    private static void writeVarLong(DataOutputStream data, long value) throws IOException {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            data.write((int) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        data.write((int) zigzag);
+    }
+
+    private static long readVarLong(DataInputStream data) throws IOException {
+        long zigzag = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = data.read();
+            if (b == -1) {
+                throw new EOFException();
+            }
+            zigzag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * Assigns indices, starting from one, to distinct strings in order of first appearance.
+     */
+    private static class StringTable {
+        private final Map<String, Integer> indices = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+
+        void add(String string) {
+            if (string != null && !indices.containsKey(string)) {
+                strings.add(string);
+                indices.put(string, strings.size());
+            }
+        }
+
+        int indexOf(String string) {
+            return string == null ? 0 : indices.get(string);
+        }
+    }
+}
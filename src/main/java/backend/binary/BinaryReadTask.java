@@ -0,0 +1,141 @@
+package backend.binary;
+
+import backend.interfaces.RepoStore;
+import backend.interfaces.StoreTask;
+import backend.json.JSONStore;
+import backend.resource.Model;
+import backend.resource.StoredDescription;
+import backend.resource.TurboIssue;
+import org.apache.logging.log4j.Logger;
+import util.ChecksummedFile;
+import util.HTLog;
+import util.exceptions.RepoStoreException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+
+class BinaryReadTask extends StoreTask {
+
+    private static final Logger logger = HTLog.get(BinaryReadTask.class);
+
+    public final CompletableFuture<Model> response;
+    private final JSONStore legacyStore;
+    private final BinaryStore store;
+
+    public BinaryReadTask(String repoId, CompletableFuture<Model> response, JSONStore legacyStore,
+                          BinaryStore store) {
+        super(repoId);
+        this.response = response;
+        this.legacyStore = legacyStore;
+        this.store = store;
+    }
+
+    @Override
+    public void run() {
+        try {
+            load();
+        } catch (RuntimeException e) {
+            // The response is always completed, as the store's callers wait on it
+            logger.error(HTLog.format(repoId, "Unable to load from binary store"), e);
+            response.completeExceptionally(new RepoStoreException(e));
+        }
+    }
+
+    private void load() {
+        Optional<Path> snapshot = BinaryStore.getSnapshotPath(repoId);
+        if (!snapshot.isPresent() || !Files.isRegularFile(snapshot.get())) {
+            migrate();
+            return;
+        }
+
+        try {
+            Model model = read(snapshot.get());
+            logger.info(HTLog.format(repoId, "Data loaded from binary store"));
+
+            // Segments that the snapshot does not refer to were left by interrupted compactions
+            store.deleteSegments(repoId, true);
+            if (store.needsCompaction(repoId, model)) {
+                model = compact(snapshot.get(), model);
+            }
+            response.complete(model);
+        } catch (IOException | RuntimeException e) {
+            // A format or version error in the snapshot or segment is handled as corruption
+            logger.error(HTLog.format(repoId, "Binary data is corrupted"), e);
+            if (hasLegacySnapshot()) {
+                // The JSON snapshot is only kept if a migration could not write the binary one
+                migrate();
+            } else {
+                response.completeExceptionally(new RepoStoreException(e));
+            }
+        }
+    }
+
+    private boolean hasLegacySnapshot() {
+        return RepoStore.getRepoPath(repoId).map(path -> Files.isRegularFile(Paths.get(path))).orElse(false);
+    }
+
+    private Model read(Path snapshot) throws IOException {
+        return ChecksummedFile.readStream(snapshot,
+                in -> BinaryModelSerializer.read(in, segmentId -> store.openSegment(repoId, segmentId)));
+    }
+
+    /**
+     * Moves the descriptions used by {@code model} to a new segment, reading them all in one
+     * pass over the current segment. The current segment is deleted once a snapshot referring
+     * to the new one has been written.
+     */
+    private Model compact(Path snapshot, Model model) throws IOException {
+        DescriptionSegment current = store.getSegment(repoId).get();
+        List<TurboIssue> stored = model.getIssues().stream()
+                .filter(issue -> issue.getStoredDescription().isPresent())
+                .collect(Collectors.toList());
+        List<StoredDescription> descriptions = stored.stream()
+                .map(issue -> issue.getStoredDescription().get())
+                .sorted(Comparator.comparingLong(StoredDescription::getOffset))
+                .collect(Collectors.toList());
+        Map<StoredDescription, String> texts = current.readAll(descriptions);
+        stored.forEach(issue -> issue.setDescription(texts.get(issue.getStoredDescription().get())));
+
+        long sizeBefore = current.size();
+        store.createSegment(repoId);
+        if (BinaryWriteTask.save(repoId, model, store)) {
+            // The snapshot still refers to the current segment, which is kept for next time
+            return model;
+        }
+        Files.deleteIfExists(current.getPath());
+        logger.info(HTLog.format(repoId, "Compacted description segment from %d to %d bytes",
+                sizeBefore, store.getSegment(repoId).get().size()));
+        return read(snapshot);
+    }
+
+    /**
+     * Loads the repository from its JSON snapshot and converts it to a binary one,
+     * removing the JSON snapshot once the binary one is written.
+     */
+    private void migrate() {
+        Model model;
+        try {
+            model = legacyStore.loadRepository(repoId).get();
+        } catch (InterruptedException | ExecutionException e) {
+            logger.error(HTLog.format(repoId, "Unable to load from store"));
+            response.completeExceptionally(e.getCause() == null ? e : e.getCause());
+            return;
+        }
+
+        boolean writeFailed = BinaryWriteTask.save(repoId, model, store);
+        if (!writeFailed) {
+            logger.info(HTLog.format(repoId, "Migrated from JSON to binary store"));
+            legacyStore.removeStoredRepo(repoId).join();
+        }
+        response.complete(model);
+    }
+}
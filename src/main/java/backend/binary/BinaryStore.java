@@ -0,0 +1,253 @@
+package backend.binary;
+
+import backend.interfaces.RepoStore;
+import backend.json.JSONStore;
+import backend.resource.Model;
+import backend.resource.TurboIssue;
+import org.apache.logging.log4j.Logger;
+import util.HTLog;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.google.common.io.Files.getFileExtension;
+
+/**
+ * A RepoStore that keeps each repository as a snapshot in the compact format of
+ * {@link BinaryModelSerializer}, which is several times smaller and faster to load than JSON.
+ *
+ * Repositories that only have a JSON snapshot, such as those stored before this store
+ * was enabled, are listed as stored and converted to the binary format the first time
+ * they are loaded.
+ *
+ * Issue descriptions, which make up most of the stored data, are kept in a separate
+ * {@link DescriptionSegment} per repository and only read when needed. Segment files are
+ * named after their id, so a snapshot always refers to a segment that exists, even while
+ * a repository's segment is being replaced by a compacted one.
+ */
+public class BinaryStore extends RepoStore {
+
+    private static final Logger logger = HTLog.get(BinaryStore.class);
+
+    public static final String BINARY_FILE_EXTENSION = "bin";
+    public static final String SEGMENT_FILE_EXTENSION = "desc";
+
+    // Segments are compacted when loaded, if more than this much of them is no longer used
+    // and the unused part is larger than the used one
+    private static final long MIN_COMPACTION_BYTES = 1024 * 1024;
+
+    // The description segment that each loaded or saved repository appends to
+    private final Map<String, DescriptionSegment> segments = new ConcurrentHashMap<>();
+
+    private final JSONStore legacyStore;
+
+    public BinaryStore() {
+        this(new JSONStore());
+    }
+
+    /**
+     * @param legacyStore the store that repositories are migrated from
+     */
+    public BinaryStore(JSONStore legacyStore) {
+        super();
+        this.legacyStore = legacyStore;
+    }
+
+    @Override
+    public CompletableFuture<Model> loadRepository(String repoId) {
+        CompletableFuture<Model> response = new CompletableFuture<>();
+        return addTask(new BinaryReadTask(repoId, response, legacyStore, this), response);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> saveRepository(String repoId, Model model) {
+        return addWriteTask(repoId, model, (id, latest, response) -> new BinaryWriteTask(id, latest, response, this));
+    }
+
+    /**
+     * Lists the repositories with a binary snapshot, along with those that still have
+     * to be migrated from JSON.
+     */
+    @Override
+    public List<String> getStoredRepos() {
+        ensureDirectoryExists();
+        List<String> storedRepos = new ArrayList<>();
+
+        List<Path> snapshots;
+        try (Stream<Path> files = Files.walk(Paths.get(RepoStore.getDirectory()), 1)) {
+            snapshots = files.filter(Files::isRegularFile)
+                    .filter(p -> getFileExtension(String.valueOf(p.getFileName()))
+                            .equalsIgnoreCase(BINARY_FILE_EXTENSION))
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            logger.error("Unable to open stored repository directory. ");
+            return storedRepos;
+        }
+
+        for (Path snapshot : snapshots) {
+            readRepoId(snapshot).ifPresent(repoId -> {
+                logger.info("Adding " + snapshot.getFileName() + " to stored repository list. ");
+                storedRepos.add(repoId);
+            });
+        }
+        legacyStore.getStoredRepos().stream()
+                .filter(repoId -> !storedRepos.contains(repoId))
+                .forEach(storedRepos::add);
+        return storedRepos;
+    }
+
+    @Override
+    public CompletableFuture<Boolean> removeStoredRepo(String repoId) {
+        CompletableFuture<Boolean> response = new CompletableFuture<>();
+        return addTask(new BinaryDeleteTask(repoId, response, legacyStore, this), response);
+    }
+
+    public static Optional<Path> getSnapshotPath(String repoId) {
+        if (ensureDirectoryExists()) {
+            return Optional.of(Paths.get(RepoStore.getDirectory(),
+                    RepoStore.escapeRepoName(repoId, BINARY_FILE_EXTENSION)).toAbsolutePath());
+        }
+        return Optional.empty();
+    }
+
+    private static Optional<String> readRepoId(Path snapshot) {
+        String fileName = String.valueOf(snapshot.getFileName());
+        try (InputStream in = Files.newInputStream(snapshot)) {
+            String repoId = BinaryModelSerializer.readRepoId(in);
+            if (fileName.equalsIgnoreCase(RepoStore.escapeRepoName(repoId, BINARY_FILE_EXTENSION))) {
+                return Optional.of(repoId);
+            }
+        } catch (IOException e) {
+            logger.error("Unable to load repository from " + fileName);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Opens the segment with the given id of {@code repoId}, which its descriptions are then
+     * appended to.
+     */
+    DescriptionSegment openSegment(String repoId, long segmentId) throws IOException {
+        Optional<Path> path = getSegmentPath(repoId, segmentId);
+        if (!path.isPresent()) {
+            throw new IOException("Unable to open store directory");
+        }
+        DescriptionSegment segment = DescriptionSegment.open(path.get(), segmentId);
+        segments.put(repoId, segment);
+        return segment;
+    }
+
+    Optional<DescriptionSegment> getSegment(String repoId) {
+        return Optional.ofNullable(segments.get(repoId));
+    }
+
+    /**
+     * Returns the segment that the descriptions of {@code repoId} are appended to,
+     * starting a new one if there is none yet.
+     */
+    DescriptionSegment getOrCreateSegment(String repoId) throws IOException {
+        DescriptionSegment segment = segments.get(repoId);
+        return segment == null ? createSegment(repoId) : segment;
+    }
+
+    /**
+     * Starts a new segment for the descriptions of {@code repoId}.
+     */
+    DescriptionSegment createSegment(String repoId) throws IOException {
+        long segmentId;
+        do {
+            segmentId = ThreadLocalRandom.current().nextLong();
+        } while (segmentId == 0);
+        Optional<Path> path = getSegmentPath(repoId, segmentId);
+        if (!path.isPresent()) {
+            throw new IOException("Unable to open store directory");
+        }
+        DescriptionSegment segment = DescriptionSegment.create(path.get(), segmentId);
+        segments.put(repoId, segment);
+        return segment;
+    }
+
+    /**
+     * Returns true if enough of the segment of {@code repoId} is no longer used by
+     * {@code model} for it to be worth compacting.
+     */
+    boolean needsCompaction(String repoId, Model model) throws IOException {
+        Optional<DescriptionSegment> segment = getSegment(repoId);
+        if (!segment.isPresent()) {
+            return false;
+        }
+        long used = DescriptionSegment.HEADER_SIZE + model.getIssues().stream()
+                .map(TurboIssue::getStoredDescription)
+                .filter(Optional::isPresent)
+                .mapToLong(stored -> DescriptionSegment.getRecordSize(stored.get()))
+                .sum();
+        long unused = segment.get().size() - used;
+        return unused > MIN_COMPACTION_BYTES && unused > used;
+    }
+
+    /**
+     * Deletes the segments of {@code repoId}, except the one it currently appends to if
+     * {@code keepCurrent} is true.
+     */
+    boolean deleteSegments(String repoId, boolean keepCurrent) {
+        Optional<DescriptionSegment> current = keepCurrent ? getSegment(repoId) : Optional.empty();
+        if (!keepCurrent) {
+            segments.remove(repoId);
+        }
+        boolean deleteFailed = false;
+        for (Path path : getSegmentPaths(repoId)) {
+            if (current.isPresent() && current.get().getPath().equals(path)) {
+                continue;
+            }
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                logger.error(HTLog.format(repoId, "Unable to delete description segment"), e);
+                deleteFailed = true;
+            }
+        }
+        return deleteFailed;
+    }
+
+    private static Optional<Path> getSegmentPath(String repoId, long segmentId) {
+        if (ensureDirectoryExists()) {
+            return Optional.of(Paths.get(RepoStore.getDirectory(), getSegmentFileName(repoId, segmentId))
+                    .toAbsolutePath());
+        }
+        return Optional.empty();
+    }
+
+    private static String getSegmentFileName(String repoId, long segmentId) {
+        return RepoStore.escapeRepoName(repoId, String.format("%016x.%s", segmentId, SEGMENT_FILE_EXTENSION));
+    }
+
+    /**
+     * Lists all the segment files of {@code repoId}.
+     */
+    private static List<Path> getSegmentPaths(String repoId) {
+        String prefix = RepoStore.escapeRepoName(repoId, "");
+        Pattern segmentName = Pattern.compile(Pattern.quote(prefix) + "[0-9a-f]{16}\\." + SEGMENT_FILE_EXTENSION);
+        try (Stream<Path> files = Files.walk(Paths.get(RepoStore.getDirectory()), 1)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(p -> segmentName.matcher(String.valueOf(p.getFileName())).matches())
+                    .map(Path::toAbsolutePath)
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            logger.error(HTLog.format(repoId, "Unable to list description segments"), e);
+            return new ArrayList<>();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package backend.binary;
+
+import backend.interfaces.StoreTask;
+import backend.resource.Model;
+import org.apache.logging.log4j.Logger;
+import util.ChecksummedFile;
+import util.HTLog;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+class BinaryWriteTask extends StoreTask {
+
+    private static final Logger logger = HTLog.get(BinaryWriteTask.class);
+
+    public final Model toSave;
+    public final CompletableFuture<Boolean> response;
+    private final BinaryStore store;
+
+    public BinaryWriteTask(String repoId, Model toSave, CompletableFuture<Boolean> response, BinaryStore store) {
+        super(repoId);
+        this.toSave = toSave;
+        this.response = response;
+        this.store = store;
+    }
+
+    @Override
+    public void run() {
+        response.complete(save(repoId, toSave, store));
+    }
+
+    /**
+     * Atomically replaces the binary snapshot of the repository, after appending the
+     * descriptions that are not yet in its description segment to the segment. As the
+     * segment is only appended to, descriptions the previous snapshot refers to remain
+     * valid should the new snapshot not be written.
+     * @return true if the snapshot could not be written
+     */
+    static boolean save(String repoId, Model model, BinaryStore store) {
+        Optional<Path> snapshot = BinaryStore.getSnapshotPath(repoId);
+        if (!snapshot.isPresent()) {
+            return true;
+        }
+        try (DescriptionSegment.Appender descriptions = store.getOrCreateSegment(repoId).appender()) {
+            ChecksummedFile.writeStream(snapshot.get(), out -> {
+                BinaryModelSerializer.write(model, out, descriptions);
+                descriptions.force();
+            });
+            logger.info(HTLog.format(repoId, "Written to binary store"));
+            return false;
+        } catch (IOException e) {
+            logger.error(HTLog.format(repoId, "Unable to write to binary store"), e);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package backend.binary;
+
+import backend.resource.StoredDescription;
+import backend.resource.TurboIssue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * A file holding the descriptions of the issues of a repository, apart from the rest of
+ * its binary snapshot, so that descriptions can be left on disk until they are needed.
+ *
+ * A segment starts with a magic number and its id, which snapshots use to refer to it.
+ * Descriptions are only ever appended, each as the CRC32 of its UTF-8 encoding followed by
+ * the encoding, so the descriptions a snapshot refers to stay valid while newer snapshots
+ * add to the segment. Descriptions that are no longer referred to are dropped by moving
+ * the live ones to a new segment.
+ */
+public final class DescriptionSegment implements StoredDescription.Segment {
+
+    private static final byte[] MAGIC = {'H', 'T', 'D', 'S'};
+    static final int HEADER_SIZE = MAGIC.length + Long.BYTES;
+    private static final int RECORD_HEADER_SIZE = Integer.BYTES;
+
+    private final Path path;
+    private final long id;
+
+    // The description last appended for each issue, so that one that is kept in memory is not
+    // appended again by every save. The text is only weakly held, and used for comparison.
+    private final Map<Integer, Appended> appended = new ConcurrentHashMap<>();
+
+    private static class Appended {
+        private final WeakReference<String> text;
+        private final StoredDescription stored;
+
+        private Appended(String text, StoredDescription stored) {
+            this.text = new WeakReference<>(text);
+            this.stored = stored;
+        }
+    }
+
+    private DescriptionSegment(Path path, long id) {
+        this.path = path;
+        this.id = id;
+    }
+
+    /**
+     * Creates an empty segment with the given id.
+     */
+    public static DescriptionSegment create(Path path, long id) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.put(MAGIC).putLong(id).flip();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            writeFully(channel, header, 0);
+            channel.force(true);
+        }
+        return new DescriptionSegment(path, id);
+    }
+
+    /**
+     * Opens an existing segment, checking that it has the given id.
+     */
+    public static DescriptionSegment open(Path path, long id) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            readFully(channel, header, 0);
+        }
+        byte[] magic = new byte[MAGIC.length];
+        header.get(magic);
+        if (!Arrays.equals(MAGIC, magic) || header.getLong() != id) {
+            throw new IOException("Not the description segment " + Long.toHexString(id) + ": " + path);
+        }
+        return new DescriptionSegment(path, id);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Returns the space that {@code description} takes up in its segment.
+     */
+    public static long getRecordSize(StoredDescription description) {
+        return RECORD_HEADER_SIZE + (long) description.getLength();
+    }
+
+    public long size() throws IOException {
+        return Files.size(path);
+    }
+
+    /**
+     * Returns a writer that appends descriptions to this segment.
+     */
+    public Appender appender() throws IOException {
+        return new Appender(FileChannel.open(path, StandardOpenOption.WRITE));
+    }
+
+    @Override
+    public String read(StoredDescription description) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return read(channel, channel.size(), description);
+        }
+    }
+
+    @Override
+    public Map<StoredDescription, String> readAll(List<StoredDescription> descriptions) throws IOException {
+        Map<StoredDescription, String> result = new HashMap<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (StoredDescription description : descriptions) {
+                result.put(description, read(channel, size, description));
+            }
+        }
+        return result;
+    }
+
+    private String read(FileChannel channel, long size, StoredDescription description) throws IOException {
+        long offset = description.getOffset();
+        int length = description.getLength();
+        if (offset < HEADER_SIZE || length < 0 || offset + RECORD_HEADER_SIZE + length > size) {
+            throw new IOException("Description out of bounds of segment " + path);
+        }
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + length);
+        readFully(channel, record, offset);
+        int checksum = record.getInt();
+        byte[] bytes = new byte[length];
+        record.get(bytes);
+        if (checksum != checksum(bytes)) {
+            throw new IOException("Corrupted description in segment " + path);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int checksum(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read == -1) {
+                throw new IOException("Unexpected end of description segment");
+            }
+        }
+        buffer.flip();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    /**
+     * Appends the descriptions of issues to the segment, reusing those already in it.
+     * Appended descriptions only become durable on {@link #force()}.
+     */
+    public final class Appender implements Closeable {
+        private static final int BUFFER_SIZE = 64 * 1024;
+
+        private final FileChannel channel;
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(BUFFER_SIZE);
+        private final DataOutputStream bufferData = new DataOutputStream(buffer);
+        private long flushedPosition;
+
+        // Only recorded as appended once written through, as the next appender may overwrite them otherwise
+        private final Map<Integer, Appended> pending = new HashMap<>();
+
+        private Appender(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.flushedPosition = channel.size();
+        }
+
+        public long getSegmentId() {
+            return id;
+        }
+
+        /**
+         * Returns where the description of {@code issue} is kept in this segment, appending it
+         * if it is not there yet, or nothing if the issue has no description.
+         */
+        public Optional<StoredDescription> store(TurboIssue issue) throws IOException {
+            Optional<StoredDescription> stored = issue.getStoredDescription();
+            if (stored.isPresent() && stored.get().getSegment().equals(DescriptionSegment.this)) {
+                return stored;
+            }
+            String description = issue.readDescription();
+            if (description == null) {
+                return Optional.empty();
+            }
+            Appended previous = appended.get(issue.getId());
+            if (previous != null && description.equals(previous.text.get())) {
+                return Optional.of(previous.stored);
+            }
+            byte[] bytes = description.getBytes(StandardCharsets.UTF_8);
+            long position = flushedPosition + buffer.size();
+            bufferData.writeInt(checksum(bytes));
+            bufferData.write(bytes);
+            if (buffer.size() >= BUFFER_SIZE) {
+                flush();
+            }
+            StoredDescription appendedDescription =
+                    new StoredDescription(DescriptionSegment.this, position, bytes.length);
+            pending.put(issue.getId(), new Appended(description, appendedDescription));
+            return Optional.of(appendedDescription);
+        }
+
+        private void flush() throws IOException {
+            ByteBuffer pending = ByteBuffer.wrap(buffer.toByteArray());
+            writeFully(channel, pending, flushedPosition);
+            flushedPosition += pending.capacity();
+            buffer.reset();
+        }
+
+        /**
+         * Writes the appended descriptions through to the disk.
+         */
+        public void force() throws IOException {
+            flush();
+            channel.force(true);
+            appended.putAll(pending);
+            pending.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        DescriptionSegment that = (DescriptionSegment) o;
+        return id == that.id && path.equals(that.path);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * path.hashCode() + (int) (id ^ (id >>> 32));
+    }
+}
@@ -44,8 +44,16 @@ public class UpdateLocalModelOp implements RepoOp<Model> {
                 new UpdateSignature(updates.getIssues().eTag, updates.getLabels().eTag,
                                     updates.getMilestones().eTag, updates.getUsers().eTag,
                                     updates.getIssues().lastCheckTime);
-        Model updatedModel = new Model(updates.getRepoId(), getUpdateIssues(), getUpdatedLabels(),
-                                       getUpdatedMilestones(), getUpdatedUsers(), newSignature);
+        List<TurboIssue> updatedIssues = getUpdateIssues();
+
+        // Only a model that changed gets a new version
+        Model updatedModel;
+        if (isUnchanged(updatedIssues) && newSignature.equals(oldModel.getUpdateSignature())) {
+            updatedModel = oldModel.withUpdateSignature(newSignature);
+        } else {
+            updatedModel = new Model(oldModel, updatedIssues, getUpdatedLabels(),
+                                     getUpdatedMilestones(), getUpdatedUsers(), newSignature);
+        }
 
         logger.info(HTLog.format(updatedModel.getRepoId(), "Updated model with " + updatedModel.summarise()));
         if (oldModelOptional.isPresent()) {
@@ -64,6 +72,27 @@ public class UpdateLocalModelOp implements RepoOp<Model> {
         return TurboIssue.combineWithPullRequests(updated, updatesPullRequests);
     }
 
+    /**
+     * Returns true if the updates leave the old model as it was: its issues are the same instances,
+     * as reconciling only replaces the issues that are updated, and there are no other resources.
+     */
+    private boolean isUnchanged(List<TurboIssue> updatedIssues) {
+        if (!updates.getLabels().items.isEmpty() || !updates.getMilestones().items.isEmpty()
+                || !updates.getUsers().items.isEmpty()) {
+            return false;
+        }
+        List<TurboIssue> existing = oldModel.getIssues();
+        if (existing.size() != updatedIssues.size()) {
+            return false;
+        }
+        for (int i = 0; i < existing.size(); i++) {
+            if (existing.get(i) != updatedIssues.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private List<TurboLabel> getUpdatedLabels() {
         return updates.getLabels().items.isEmpty() ? oldModel.getLabels() : updates.getLabels().items;
     }
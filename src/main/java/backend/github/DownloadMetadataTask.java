@@ -11,8 +11,10 @@ import org.eclipse.egit.github.core.Comment;
 import util.HTLog;
 
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 public class DownloadMetadataTask extends GitHubRepoTask<Map<Integer, IssueMetadata>> {
@@ -32,10 +34,12 @@ public class DownloadMetadataTask extends GitHubRepoTask<Map<Integer, IssueMetad
     @Override
     public void run() {
         Map<Integer, IssueMetadata> result = new HashMap<>();
+        Set<Integer> unchanged = new LinkedHashSet<>();
 
         issuesToUpdate.forEach(issue -> {
-            String currEventsETag = issue.getMetadata().getEventsETag();
-            String currCommentsETag = issue.getMetadata().getCommentsETag();
+            IssueMetadata known = issue.getMetadata();
+            String currEventsETag = known.getEventsETag();
+            String currCommentsETag = known.getCommentsETag();
             int id = issue.getId();
 
             ImmutablePair<List<TurboIssueEvent>, String> changes = repo.getUpdatedEvents(repoId, id, currEventsETag);
@@ -43,13 +47,33 @@ public class DownloadMetadataTask extends GitHubRepoTask<Map<Integer, IssueMetad
             List<TurboIssueEvent> events = changes.getLeft();
             String updatedEventsETag = changes.getRight();
 
-            List<Comment> comments = repo.getAllComments(repoId, issue);
+            // An unchanged ETag means the known events are still current, though none were returned
+            boolean eventsUnchanged = !currEventsETag.isEmpty() && currEventsETag.equals(updatedEventsETag);
+            if (eventsUnchanged) {
+                events = known.getEvents();
+            }
 
-            IssueMetadata metadata = IssueMetadata.intermediate(events, comments, updatedEventsETag, currCommentsETag);
+            // Comments do not support conditional requests, but any new comment updates the issue
+            List<Comment> comments;
+            if (eventsUnchanged && known.isCurrentFor(issue.getUpdatedAt())) {
+                comments = known.getComments();
+                unchanged.add(id);
+            } else {
+                comments = repo.getAllComments(repoId, issue);
+            }
+
+            IssueMetadata metadata = IssueMetadata.intermediate(events, comments, updatedEventsETag, currCommentsETag,
+                    issue.getUpdatedAt());
             result.put(id, metadata);
         });
 
+        if (!unchanged.isEmpty()) {
+            logger.info(HTLog.format(repoId, "Metadata unchanged for " + unchanged.stream()
+                .map(id -> "#" + id)
+                .collect(Collectors.joining(", "))));
+        }
         logger.info(HTLog.format(repoId, "Downloaded " + result.entrySet().stream()
+            .filter(entry -> !unchanged.contains(entry.getKey()))
             .map(entry -> "(" + entry.getValue().summarise() + ") for #" + entry.getKey())
             .collect(Collectors.joining(", "))));
 
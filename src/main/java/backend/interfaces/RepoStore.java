@@ -1,32 +1,223 @@
 package backend.interfaces;
 
 import backend.resource.Model;
-import backend.resource.serialization.SerializableModel;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.logging.log4j.Logger;
+import util.ChecksummedFile;
+import util.HTLog;
+import util.StripedExecutor;
 import util.Utility;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public abstract class RepoStore {
+    private static final Logger logger = HTLog.get(RepoStore.class);
+
     protected static String directory = "store";
     public static final String TEST_DIRECTORY = "store/test";
-    private final ExecutorService pool = Executors.newSingleThreadExecutor();
+
+    // Operations on the same repository run in order; those on different repositories run in parallel
+    private final StripedExecutor executor =
+            new StripedExecutor("repo-store", Runtime.getRuntime().availableProcessors());
+
+    // Runs the actions that depend on the outcome of store operations
+    private static final ExecutorService callbackExecutor = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setNameFormat("repo-store-callback-%d").setDaemon(true).build());
+
+    // Releases held back writes into their repository's queue once their delay is up
+    private static final ScheduledExecutorService writeScheduler = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("repo-store-write-scheduler-%d").setDaemon(true).build());
+
+    public static final long DEFAULT_MAX_WRITE_DELAY_MILLIS = 100;
+
+    private volatile long maxWriteDelayMillis = DEFAULT_MAX_WRITE_DELAY_MILLIS;
+
+    // The write of each repository that has not started yet, guarded by itself
+    private final Map<String, PendingWrite> pendingWrites = new HashMap<>();
+
+    /**
+     * Creates the task that writes {@code model}, completing {@code response} with its outcome.
+     */
+    @FunctionalInterface
+    protected interface WriteTaskFactory {
+        StoreTask create(String repoId, Model model, CompletableFuture<Boolean> response);
+    }
+
+    /**
+     * The newest snapshot of a repository waiting to be written and the task of the save that
+     * made it, along with the futures of all the saves it stands for.
+     */
+    private static class PendingWrite {
+        private WriteTaskFactory factory;
+        private Model model;
+        private final List<CompletableFuture<Boolean>> responses = new ArrayList<>();
+        private boolean queued = false;
+
+        private PendingWrite(WriteTaskFactory factory, Model model, CompletableFuture<Boolean> response) {
+            this.factory = factory;
+            this.model = model;
+            responses.add(response);
+        }
+    }
 
     public static String escapeRepoName(String repoName) {
-        return repoName.replace("/", "-") + ".json";
+        return escapeRepoName(repoName, "json");
     }
 
+    public static String escapeRepoName(String repoName, String extension) {
+        return repoName.replace("/", "-") + "." + extension;
+    }
+
+    /**
+     * Queues {@code task} behind any pending write of its repository, so that it sees the
+     * outcome of every save made before it.
+     */
     protected void addTask(StoreTask task) {
-        pool.execute(task);
+        flushPendingWrite(task.repoId);
+        executor.execute(task.repoId, task);
+    }
+
+    /**
+     * Queues {@code task}, which completes {@code response}, and returns a future with the
+     * same outcome whose dependent actions run outside the store's threads. Those actions may
+     * then wait on other operations of this store, even on the same repository, without
+     * blocking the repository's queue and deadlocking.
+     */
+    protected <T> CompletableFuture<T> addTask(StoreTask task, CompletableFuture<T> response) {
+        addTask(task);
+        return detach(response);
+    }
+
+    private static <T> CompletableFuture<T> detach(CompletableFuture<T> response) {
+        return response.whenCompleteAsync((result, error) -> { }, callbackExecutor);
+    }
+
+    /**
+     * Saves {@code model} with the task created by {@code factory}, coalescing it with other
+     * saves of the same repository.
+     *
+     * A write is held back for up to the maximum write delay after the save that started it,
+     * then queued. Until it starts running, any newer snapshot of the repository replaces the
+     * one it is to write, along with the task it is written with, as only the newest snapshot
+     * needs to reach the disk. All the saves
+     * it stands for complete with the outcome of that single write. Other operations on the
+     * repository release a held back write at once, so that they still run after it.
+     */
+    protected CompletableFuture<Boolean> addWriteTask(String repoId, Model model, WriteTaskFactory factory) {
+        CompletableFuture<Boolean> response = new CompletableFuture<>();
+        synchronized (pendingWrites) {
+            PendingWrite pending = pendingWrites.get(repoId);
+            if (pending != null) {
+                pending.factory = factory;
+                pending.model = model;
+                pending.responses.add(response);
+                logger.debug(HTLog.format(repoId, "Coalesced with a pending write to store"));
+                return detach(response);
+            }
+            pendingWrites.put(repoId, new PendingWrite(factory, model, response));
+        }
+
+        long delay = maxWriteDelayMillis;
+        if (delay > 0) {
+            writeScheduler.schedule(() -> flushPendingWrite(repoId), delay, TimeUnit.MILLISECONDS);
+        } else {
+            flushPendingWrite(repoId);
+        }
+        return detach(response);
+    }
+
+    /**
+     * Queues the pending write of {@code repoId}, if there is one that is still held back.
+     */
+    private void flushPendingWrite(String repoId) {
+        synchronized (pendingWrites) {
+            PendingWrite pending = pendingWrites.get(repoId);
+            if (pending == null || pending.queued) {
+                return;
+            }
+            pending.queued = true;
+            executor.execute(repoId, new StoreTask(repoId) {
+                @Override
+                public void run() {
+                    runPendingWrite(repoId);
+                }
+            });
+        }
+    }
+
+    /**
+     * Writes the newest snapshot of {@code repoId}. Saves made from here on are no longer
+     * coalesced into this write, but start a new one.
+     */
+    private void runPendingWrite(String repoId) {
+        PendingWrite pending;
+        synchronized (pendingWrites) {
+            pending = pendingWrites.remove(repoId);
+        }
+        if (pending.responses.size() > 1) {
+            logger.info(HTLog.format(repoId, "Writing one snapshot for %d saves", pending.responses.size()));
+        }
+        CompletableFuture<Boolean> outcome = new CompletableFuture<>();
+        outcome.whenComplete((result, error) -> pending.responses.forEach(response -> {
+            if (error == null) {
+                response.complete(result);
+            } else {
+                response.completeExceptionally(error);
+            }
+        }));
+        try {
+            pending.factory.create(repoId, pending.model, outcome).run();
+        } catch (RuntimeException e) {
+            outcome.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Sets how long a save may be held back so that it can be coalesced with newer saves
+     * of the same repository. Zero queues every write at once; saves are then coalesced
+     * only while waiting behind other operations on the repository.
+     */
+    public void setMaxWriteDelay(long millis) {
+        maxWriteDelayMillis = Math.max(0, millis);
+    }
+
+    public long getMaxWriteDelay() {
+        return maxWriteDelayMillis;
+    }
+
+    /**
+     * Returns the number of operations on {@code repoId} that are queued or running.
+     */
+    public int getQueueDepth(String repoId) {
+        return executor.getQueueDepth(repoId);
+    }
+
+    /**
+     * Returns the largest number of operations on {@code repoId} that have been queued or running at once.
+     */
+    public int getPeakQueueDepth(String repoId) {
+        return executor.getPeakQueueDepth(repoId);
     }
 
     public abstract CompletableFuture<Model> loadRepository(String repoId);
-    public abstract CompletableFuture<Boolean> saveRepository(String repoId, SerializableModel model);
+    public abstract CompletableFuture<Boolean> saveRepository(String repoId, Model model);
+    public abstract List<String> getStoredRepos();
+    public abstract CompletableFuture<Boolean> removeStoredRepo(String repoId);
 
-    private static Optional<String> getRepoPath(String repoId) {
+    public static Optional<String> getRepoPath(String repoId) {
         if (ensureDirectoryExists()) {
             String newRepoName = RepoStore.escapeRepoName(repoId);
             return Optional.of(new File(RepoStore.directory, newRepoName).getAbsolutePath());
@@ -34,8 +225,30 @@ public abstract class RepoStore {
         return Optional.empty();
     }
 
-    public static boolean write(String repoId, String output, int issueCount) {
-        return Utility.writeFile(getRepoPath(repoId).orElse(""), output, issueCount);
+    public static boolean write(String repoId, String output) {
+        return write(repoId, writer -> writer.write(output));
+    }
+
+    /**
+     * Atomically replaces the stored file of {@code repoId}, recording a checksum of the
+     * written content so that any later damage to it is detected when it is read.
+     * Returns true on failure, in which case the previously stored file is left unchanged.
+     * @param repoId
+     * @param output
+     * @return
+     */
+    public static boolean write(String repoId, Utility.ContentWriter output) {
+        Optional<String> repoPath = getRepoPath(repoId);
+        if (!repoPath.isPresent()) {
+            return true;
+        }
+        try {
+            ChecksummedFile.write(Paths.get(repoPath.get()), output);
+            return false;
+        } catch (IOException e) {
+            logger.error(HTLog.format(repoId, "Unable to write to store"), e);
+            return true;
+        }
     }
 
     public static Optional<String> read(String repoId) {
@@ -54,11 +267,16 @@ public abstract class RepoStore {
         File directory = new File(RepoStore.directory);
         boolean directoryNonExistent = !directory.exists() || !directory.isDirectory();
         if (directoryNonExistent) {
-            return directory.mkdirs();
+            // Another operation may create the directory concurrently
+            return directory.mkdirs() || directory.isDirectory();
         }
         return true;
     }
 
+    public static String getDirectory() {
+        return RepoStore.directory;
+    }
+
     public static void changeDirectory(String newDir) {
         RepoStore.directory = newDir;
     }
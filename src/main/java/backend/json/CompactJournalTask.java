@@ -0,0 +1,18 @@
+package backend.json;
+
+import backend.interfaces.StoreTask;
+
+class CompactJournalTask extends StoreTask {
+
+    private final JournaledJSONStore store;
+
+    public CompactJournalTask(String repoId, JournaledJSONStore store) {
+        super(repoId);
+        this.store = store;
+    }
+
+    @Override
+    public void run() {
+        store.compact(repoId);
+    }
+}
@@ -3,11 +3,6 @@ package backend.json;
 import backend.interfaces.RepoStore;
 import backend.interfaces.StoreTask;
 
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.NoSuchFileException;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.concurrent.CompletableFuture;
 
 class DeleteTask extends StoreTask {
@@ -20,6 +15,11 @@ class DeleteTask extends StoreTask {
 
     @Override
     public void run() {
-        response.complete(RepoStore.delete(repoId));
+        boolean deleteFailed = RepoStore.delete(repoId);
+        if (!deleteFailed) {
+            new StoreManifest(RepoStore.getDirectory()).recordDelete(repoId);
+            RepoJournal.delete(repoId);
+        }
+        response.complete(deleteFailed);
     }
 }
@@ -0,0 +1,171 @@
+package backend.json;
+
+import backend.IssueMetadata;
+import backend.interfaces.RepoStore;
+import backend.resource.serialization.SerializableIssueMetadata;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSerializer;
+import com.google.gson.reflect.TypeToken;
+import org.apache.logging.log4j.Logger;
+import util.ChecksummedFile;
+import util.HTLog;
+import util.StripedExecutor;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the downloaded metadata (events, comments and their ETags) of the issues of each
+ * repository in a side file next to the repository's store file, so that it survives restarts.
+ *
+ * The side file of a repository is only read when its metadata is first asked for. With it,
+ * metadata requests made right after startup can be conditional on the stored ETags, and
+ * issues that have not been updated since their metadata was downloaded can be skipped.
+ *
+ * The side file is independent of the format of the repository's store file, and losing it
+ * only costs a full download, so a damaged side file is discarded.
+ */
+public class IssueMetadataStore {
+
+    private static final Logger logger = HTLog.get(IssueMetadataStore.class);
+
+    public static final String METADATA_FILE_EXTENSION = "metadata";
+
+    private static final Type METADATA_TYPE = new TypeToken<Map<Integer, SerializableIssueMetadata>>() {}.getType();
+
+    // Dates of events and comments are kept exactly, independently of the locale
+    private static final Gson gson = new GsonBuilder()
+            .registerTypeAdapter(Date.class, (JsonSerializer<Date>) (date, type, context) ->
+                    new JsonPrimitive(date.getTime()))
+            .registerTypeAdapter(Date.class, (JsonDeserializer<Date>) (json, type, context) ->
+                    new Date(json.getAsLong()))
+            .create();
+
+    // Operations on the same repository run in order
+    private final StripedExecutor executor =
+            new StripedExecutor("issue-metadata-store", Runtime.getRuntime().availableProcessors());
+
+    // The metadata of each repository whose side file has been read, by issue id
+    private final Map<String, Map<Integer, IssueMetadata>> loaded = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the stored metadata of the issues of {@code repoId}, by issue id,
+     * reading the side file of the repository if it has not been read yet.
+     */
+    public CompletableFuture<Map<Integer, IssueMetadata>> load(String repoId) {
+        Map<Integer, IssueMetadata> metadata = loaded.get(repoId);
+        if (metadata != null) {
+            return CompletableFuture.completedFuture(metadata);
+        }
+        CompletableFuture<Map<Integer, IssueMetadata>> response = new CompletableFuture<>();
+        executor.execute(repoId, () -> response.complete(loaded.computeIfAbsent(repoId, IssueMetadataStore::read)));
+        return response;
+    }
+
+    /**
+     * Records newly downloaded metadata of issues of {@code repoId}, replacing what was
+     * stored for those issues.
+     * @return a future completing with true on failure, as with the repository stores
+     */
+    public CompletableFuture<Boolean> update(String repoId, Map<Integer, IssueMetadata> metadata) {
+        CompletableFuture<Boolean> response = new CompletableFuture<>();
+        executor.execute(repoId, () -> {
+            Map<Integer, IssueMetadata> updated =
+                    new HashMap<>(loaded.computeIfAbsent(repoId, IssueMetadataStore::read));
+            updated.putAll(metadata);
+            loaded.put(repoId, Collections.unmodifiableMap(updated));
+            response.complete(write(repoId, updated));
+        });
+        return response;
+    }
+
+    /**
+     * Discards the stored metadata of {@code repoId}.
+     */
+    public CompletableFuture<Boolean> remove(String repoId) {
+        CompletableFuture<Boolean> response = new CompletableFuture<>();
+        executor.execute(repoId, () -> {
+            loaded.remove(repoId);
+            response.complete(delete(repoId));
+        });
+        return response;
+    }
+
+    public static Optional<Path> getMetadataPath(String repoId) {
+        return RepoStore.getRepoPath(repoId).map(repoPath ->
+                Paths.get(repoPath).resolveSibling(RepoStore.escapeRepoName(repoId, METADATA_FILE_EXTENSION)));
+    }
+
+    private static Map<Integer, IssueMetadata> read(String repoId) {
+        Optional<Path> path = getMetadataPath(repoId);
+        if (!path.isPresent() || !Files.exists(path.get())) {
+            return Collections.emptyMap();
+        }
+        try {
+            Map<Integer, SerializableIssueMetadata> stored = ChecksummedFile.readStream(path.get(), in ->
+                    gson.fromJson(new InputStreamReader(in, StandardCharsets.UTF_8), METADATA_TYPE));
+            Map<Integer, IssueMetadata> metadata = new HashMap<>();
+            if (stored != null) {
+                stored.forEach((id, issueMetadata) -> metadata.put(id, issueMetadata.toIssueMetadata()));
+            }
+            logger.info(HTLog.format(repoId, "Loaded stored metadata of %d issues", metadata.size()));
+            return Collections.unmodifiableMap(metadata);
+        } catch (IOException | JsonParseException e) {
+            logger.warn(HTLog.format(repoId, "Discarding unreadable stored metadata"), e);
+            delete(repoId);
+            return Collections.emptyMap();
+        }
+    }
+
+    /**
+     * Returns true on failure.
+     */
+    private static boolean write(String repoId, Map<Integer, IssueMetadata> metadata) {
+        Optional<Path> path = getMetadataPath(repoId);
+        if (!path.isPresent()) {
+            return true;
+        }
+        Map<Integer, SerializableIssueMetadata> stored = new HashMap<>();
+        metadata.forEach((id, issueMetadata) -> stored.put(id, new SerializableIssueMetadata(issueMetadata)));
+        try {
+            ChecksummedFile.write(path.get(), writer -> gson.toJson(stored, METADATA_TYPE, writer));
+            return false;
+        } catch (IOException | JsonParseException e) {
+            logger.error(HTLog.format(repoId, "Unable to store issue metadata"), e);
+            return true;
+        }
+    }
+
+    /**
+     * Returns true on failure.
+     */
+    private static boolean delete(String repoId) {
+        Optional<Path> path = getMetadataPath(repoId);
+        if (!path.isPresent()) {
+            return true;
+        }
+        try {
+            Files.deleteIfExists(path.get());
+            return false;
+        } catch (IOException e) {
+            logger.error(HTLog.format(repoId, "Unable to delete stored issue metadata"), e);
+            return true;
+        }
+    }
+}
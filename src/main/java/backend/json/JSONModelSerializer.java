@@ -0,0 +1,205 @@
+package backend.json;
+
+import backend.UpdateSignature;
+import backend.resource.Model;
+import backend.resource.TurboIssue;
+import backend.resource.TurboLabel;
+import backend.resource.TurboMilestone;
+import backend.resource.TurboUser;
+import backend.resource.serialization.SerializableIssue;
+import backend.resource.serialization.SerializableLabel;
+import backend.resource.serialization.SerializableMilestone;
+import backend.resource.serialization.SerializableModel;
+import backend.resource.serialization.SerializableUser;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts between a Model and its JSON representation one element at a time,
+ * without materialising a SerializableModel or the whole document as a String.
+ *
+ * The produced JSON is identical in structure to Gson's serialization of a
+ * {@link SerializableModel}, so files written by either path can be read by the other.
+ */
+public final class JSONModelSerializer {
+
+    private static final String REPO_ID = "repoId";
+    private static final String UPDATE_SIGNATURE = "updateSignature";
+    private static final String ISSUES = "issues";
+    private static final String LABELS = "labels";
+    private static final String MILESTONES = "milestones";
+    private static final String USERS = "users";
+
+    private static final Gson gson = new Gson();
+    private static final TypeAdapter<UpdateSignature> signatureAdapter = gson.getAdapter(UpdateSignature.class);
+    private static final TypeAdapter<SerializableIssue> issueAdapter = gson.getAdapter(SerializableIssue.class);
+    private static final TypeAdapter<SerializableLabel> labelAdapter = gson.getAdapter(SerializableLabel.class);
+    private static final TypeAdapter<SerializableMilestone> milestoneAdapter =
+            gson.getAdapter(SerializableMilestone.class);
+    private static final TypeAdapter<SerializableUser> userAdapter = gson.getAdapter(SerializableUser.class);
+
+    private JSONModelSerializer() {
+    }
+
+    /**
+     * Writes {@code model} to {@code out} as JSON. The writer is flushed but not closed.
+     */
+    public static void write(Model model, Writer out) throws IOException {
+        JsonWriter writer = new JsonWriter(out);
+        writer.setHtmlSafe(true);
+        writer.setSerializeNulls(false);
+
+        writer.beginObject();
+        writer.name(REPO_ID).value(model.getRepoId());
+        writer.name(UPDATE_SIGNATURE);
+        signatureAdapter.write(writer, model.getUpdateSignature());
+
+        writer.name(ISSUES).beginArray();
+        for (TurboIssue issue : model.getIssues()) {
+            issueAdapter.write(writer, new SerializableIssue(issue));
+        }
+        writer.endArray();
+
+        writer.name(LABELS).beginArray();
+        for (TurboLabel label : model.getLabels()) {
+            labelAdapter.write(writer, new SerializableLabel(label));
+        }
+        writer.endArray();
+
+        writer.name(MILESTONES).beginArray();
+        for (TurboMilestone milestone : model.getMilestones()) {
+            milestoneAdapter.write(writer, new SerializableMilestone(milestone));
+        }
+        writer.endArray();
+
+        writer.name(USERS).beginArray();
+        for (TurboUser user : model.getUsers()) {
+            userAdapter.write(writer, new SerializableUser(user));
+        }
+        writer.endArray();
+
+        writer.endObject();
+        writer.flush();
+    }
+
+    /**
+     * Reads a Model from JSON in {@code in}. Elements are converted to their Turbo
+     * counterparts as soon as they are parsed.
+     * @throws IOException if the input cannot be read or is not well-formed JSON
+     * @throws JsonParseException if the JSON does not describe a Model
+     */
+    public static Model read(Reader in) throws IOException {
+        JsonReader reader = new JsonReader(in);
+        reader.setLenient(true);
+
+        String repoId = null;
+        UpdateSignature updateSignature = UpdateSignature.EMPTY;
+        List<SerializableIssue> issues = new ArrayList<>();
+        List<SerializableLabel> labels = new ArrayList<>();
+        List<SerializableMilestone> milestones = new ArrayList<>();
+        List<SerializableUser> users = new ArrayList<>();
+
+        // Elements are buffered in serializable form only until the repo id is known;
+        // files written by this class or by Gson always put it first.
+        List<TurboIssue> turboIssues = new ArrayList<>();
+        List<TurboLabel> turboLabels = new ArrayList<>();
+        List<TurboMilestone> turboMilestones = new ArrayList<>();
+        List<TurboUser> turboUsers = new ArrayList<>();
+
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                case REPO_ID:
+                    repoId = reader.nextString();
+                    break;
+                case UPDATE_SIGNATURE:
+                    updateSignature = signatureAdapter.read(reader);
+                    break;
+                case ISSUES:
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        SerializableIssue issue = issueAdapter.read(reader);
+                        if (repoId == null) {
+                            issues.add(issue);
+                        } else {
+                            turboIssues.add(new TurboIssue(repoId, issue));
+                        }
+                    }
+                    reader.endArray();
+                    break;
+                case LABELS:
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        SerializableLabel label = labelAdapter.read(reader);
+                        if (repoId == null) {
+                            labels.add(label);
+                        } else {
+                            turboLabels.add(new TurboLabel(repoId, label));
+                        }
+                    }
+                    reader.endArray();
+                    break;
+                case MILESTONES:
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        SerializableMilestone milestone = milestoneAdapter.read(reader);
+                        if (repoId == null) {
+                            milestones.add(milestone);
+                        } else {
+                            turboMilestones.add(new TurboMilestone(repoId, milestone));
+                        }
+                    }
+                    reader.endArray();
+                    break;
+                case USERS:
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        SerializableUser user = userAdapter.read(reader);
+                        if (repoId == null) {
+                            users.add(user);
+                        } else {
+                            turboUsers.add(new TurboUser(repoId, user));
+                        }
+                    }
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+                }
+            }
+            reader.endObject();
+        } catch (IllegalStateException e) {
+            throw new JsonParseException(e);
+        }
+
+        if (repoId == null) {
+            throw new JsonParseException("Stored model has no repository id");
+        }
+
+        for (SerializableIssue issue : issues) {
+            turboIssues.add(new TurboIssue(repoId, issue));
+        }
+        for (SerializableLabel label : labels) {
+            turboLabels.add(new TurboLabel(repoId, label));
+        }
+        for (SerializableMilestone milestone : milestones) {
+            turboMilestones.add(new TurboMilestone(repoId, milestone));
+        }
+        for (SerializableUser user : users) {
+            turboUsers.add(new TurboUser(repoId, user));
+        }
+
+        return new Model(repoId, turboIssues, turboLabels, turboMilestones, turboUsers, updateSignature);
+    }
+}
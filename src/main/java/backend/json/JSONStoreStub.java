@@ -1,6 +1,6 @@
 package backend.json;
 
-import backend.resource.serialization.SerializableModel;
+import backend.resource.Model;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -17,7 +17,7 @@ import java.util.concurrent.CompletableFuture;
 public class JSONStoreStub extends JSONStore {
 
     @Override
-    public CompletableFuture<Boolean> saveRepository(String repoId, SerializableModel model) {
+    public CompletableFuture<Boolean> saveRepository(String repoId, Model model) {
         return CompletableFuture.completedFuture(false);
     }
 
@@ -0,0 +1,26 @@
+package backend.json;
+
+import backend.interfaces.StoreTask;
+import backend.resource.Model;
+
+import java.util.concurrent.CompletableFuture;
+
+class JournalWriteTask extends StoreTask {
+
+    public final Model toSave;
+    public final CompletableFuture<Boolean> response;
+    private final JournaledJSONStore store;
+
+    public JournalWriteTask(String repoName, Model toSave, CompletableFuture<Boolean> response,
+                            JournaledJSONStore store) {
+        super(repoName);
+        this.toSave = toSave;
+        this.response = response;
+        this.store = store;
+    }
+
+    @Override
+    public void run() {
+        response.complete(store.save(repoId, toSave));
+    }
+}
@@ -0,0 +1,150 @@
+package backend.json;
+
+import backend.interfaces.RepoStore;
+import backend.resource.Model;
+import org.apache.logging.log4j.Logger;
+import util.HTLog;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A JSONStore that writes a full snapshot of a repository only the first time it is saved.
+ * Later saves append just the issues, labels, milestones and users that changed to the
+ * repository's journal, so the amount written per refresh scales with the size of the
+ * change rather than the size of the repository.
+ *
+ * Once a journal grows past a number of records or bytes, it is compacted in the
+ * background by writing a new snapshot and discarding the journal.
+ */
+public class JournaledJSONStore extends JSONStore {
+
+    private static final Logger logger = HTLog.get(JournaledJSONStore.class);
+
+    public static final int DEFAULT_MAX_JOURNAL_RECORDS = 2000;
+    public static final long DEFAULT_MAX_JOURNAL_BYTES = 4L * 1024 * 1024;
+
+    private final int maxJournalRecords;
+    private final long maxJournalBytes;
+
+    /**
+     * What is known about the stored state of each repository that was loaded or saved.
+     * The state of a repository is accessed only from its store tasks, which run one at a time.
+     */
+    private final Map<String, JournalState> states = new ConcurrentHashMap<>();
+
+    private static class JournalState {
+        private final RepoJournal.StoredState stored;
+        private Model latest;
+        private int journalRecords = 0;
+
+        JournalState(Model model) {
+            this.stored = new RepoJournal.StoredState(model);
+            this.latest = model;
+        }
+    }
+
+    public JournaledJSONStore() {
+        this(DEFAULT_MAX_JOURNAL_RECORDS, DEFAULT_MAX_JOURNAL_BYTES);
+    }
+
+    public JournaledJSONStore(int maxJournalRecords, long maxJournalBytes) {
+        super();
+        this.maxJournalRecords = maxJournalRecords;
+        this.maxJournalBytes = maxJournalBytes;
+    }
+
+    @Override
+    public CompletableFuture<Model> loadRepository(String repoId) {
+        // The state is recorded as part of the read task, before any later operation on the repository runs
+        CompletableFuture<Model> loaded = new CompletableFuture<>();
+        CompletableFuture<Model> response = loaded.thenApply(model -> {
+            states.put(repoId, new JournalState(model));
+            if (RepoJournal.size(repoId) >= maxJournalBytes) {
+                addTask(new CompactJournalTask(repoId, this));
+            }
+            return model;
+        });
+        return addTask(new ReadTask(repoId, loaded), response);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> saveRepository(String repoId, Model model) {
+        return addWriteTask(repoId, model, (id, latest, response) -> new JournalWriteTask(id, latest, response, this));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> removeStoredRepo(String repoId) {
+        states.remove(repoId);
+        return super.removeStoredRepo(repoId);
+    }
+
+    /**
+     * Saves {@code model}, appending to its journal if its repository has a snapshot
+     * and writing a new snapshot otherwise.
+     * @return true on JSON corruption, as with {@link WriteTask}
+     */
+    boolean save(String repoId, Model model) {
+        JournalState state = states.get(repoId);
+        boolean hasSnapshot = RepoStore.getRepoPath(repoId)
+                .map(path -> Files.isRegularFile(Paths.get(path)))
+                .orElse(false);
+        if (state == null || !hasSnapshot) {
+            return saveSnapshot(repoId, model);
+        }
+
+        List<RepoJournal.Record> records;
+        try {
+            records = state.stored.update(model);
+        } catch (IOException e) {
+            // Nothing is written, so the stored copy keeps the last description that could be read
+            logger.error(HTLog.format(repoId, "Unable to read the changes to journal"), e);
+            return true;
+        }
+        state.latest = model;
+        if (records.isEmpty()) {
+            return false;
+        }
+
+        try {
+            RepoJournal.append(repoId, records);
+        } catch (IOException e) {
+            logger.error(HTLog.format(repoId, "Unable to append to journal; writing a snapshot instead"), e);
+            return saveSnapshot(repoId, model);
+        }
+        state.journalRecords += records.size();
+        logger.info(HTLog.format(repoId, "Appended " + records.size() + " record(s) to journal"));
+
+        if (state.journalRecords >= maxJournalRecords || RepoJournal.size(repoId) >= maxJournalBytes) {
+            addTask(new CompactJournalTask(repoId, this));
+        }
+        return false;
+    }
+
+    /**
+     * Folds the journal of {@code repoId} into a new snapshot.
+     */
+    void compact(String repoId) {
+        JournalState state = states.get(repoId);
+        if (state == null || RepoJournal.size(repoId) == 0) {
+            return;
+        }
+        logger.info(HTLog.format(repoId, "Compacting journal into a new snapshot"));
+        saveSnapshot(repoId, state.latest);
+    }
+
+    private boolean saveSnapshot(String repoId, Model model) {
+        boolean corruptedJson = WriteTask.save(repoId, model);
+        if (corruptedJson) {
+            states.remove(repoId);
+        } else {
+            states.put(repoId, new JournalState(model));
+        }
+        return corruptedJson;
+    }
+}
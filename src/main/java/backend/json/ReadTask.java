@@ -3,15 +3,22 @@ package backend.json;
 import backend.interfaces.RepoStore;
 import backend.interfaces.StoreTask;
 import backend.resource.Model;
-import backend.resource.serialization.SerializableModel;
-import com.google.gson.Gson;
 import com.google.gson.JsonParseException;
-import com.google.gson.reflect.TypeToken;
 import org.apache.logging.log4j.Logger;
+import util.ChecksummedFile;
 import util.HTLog;
+import util.Utility;
 import util.exceptions.JSONLoadException;
 import util.exceptions.RepoStoreException;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 
@@ -38,31 +45,47 @@ class ReadTask extends StoreTask {
     }
 
     /**
-     * Loads repository data from RepoStore into a new Model.
+     * Loads repository data from RepoStore into a new Model. The stored JSON is
+     * streamed straight into the Model's resources without an intermediate copy,
+     * and any changes journalled since it was written are replayed on top of it.
+     * The stored file is verified against the checksum written with it; a file that
+     * fails verification is kept aside as a -err copy for diagnosis.
      * @param repoId the string id of the repository to be loaded
      * @return a new Model containing data for the requested repository.
      * @throws JSONLoadException when the repository's JSON data cannot be
      *         retrieved from the local store or is corrupted
      */
-    private Model load(String repoId) throws RepoStoreException {
-        Optional<String> input = RepoStore.read(repoId);
+    static Model load(String repoId) throws RepoStoreException {
+        Optional<String> repoPath = RepoStore.getRepoPath(repoId);
 
-        if (!input.isPresent()) {
+        if (!repoPath.isPresent() || !Files.isRegularFile(Paths.get(repoPath.get()))) {
             logger.error("Unable to load " + repoId + " from JSON cache");
             throw new JSONLoadException();
-        } else {
-            logger.info(HTLog.format(repoId, "Data loaded from JSON cache"));
+        }
 
-            try {
-                SerializableModel sModel = new Gson().fromJson(input.get(),
-                        new TypeToken<SerializableModel>(){}.getType());
+        Path path = Paths.get(repoPath.get());
+        try {
+            Model snapshot = ChecksummedFile.readStream(path, in ->
+                    JSONModelSerializer.read(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))));
+            Model model = RepoJournal.replay(snapshot);
+            logger.info(HTLog.format(repoId, "Data loaded from JSON cache"));
+            return model;
+        } catch (ChecksummedFile.CorruptedFileException e) {
+            logger.error(HTLog.format(repoId, "JSON data failed checksum verification"), e);
+            keepCorruptedCopy(path);
+            throw new JSONLoadException(e);
+        } catch (IOException | NullPointerException | JsonParseException e) {
+            logger.error(HTLog.format(repoId, "JSON data is corrupted"));
+            throw new JSONLoadException(e);
+        }
+    }
 
-                return new Model(sModel);
-            } catch (NullPointerException | JsonParseException e) {
-                logger.error(HTLog.format(repoId, "JSON data is corrupted"));
-                throw new JSONLoadException(e);
-            }
+    private static void keepCorruptedCopy(Path path) {
+        try {
+            Files.copy(path, Paths.get(path + "-err"), StandardCopyOption.REPLACE_EXISTING);
+            Utility.copyLog();
+        } catch (IOException e) {
+            logger.error(e.getLocalizedMessage(), e);
         }
     }
 }
-
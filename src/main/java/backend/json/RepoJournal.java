@@ -0,0 +1,362 @@
+package backend.json;
+
+import backend.UpdateSignature;
+import backend.interfaces.RepoStore;
+import backend.resource.Model;
+import backend.resource.TurboIssue;
+import backend.resource.TurboLabel;
+import backend.resource.TurboMilestone;
+import backend.resource.TurboUser;
+import backend.resource.serialization.SerializableIssue;
+import backend.resource.serialization.SerializableLabel;
+import backend.resource.serialization.SerializableMilestone;
+import backend.resource.serialization.SerializableUser;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import org.apache.logging.log4j.Logger;
+import util.HTLog;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * An append-only log of changes made to a stored repository since its last snapshot.
+ *
+ * Each line of the journal is one JSON record holding the full serialized state of an
+ * issue, label, milestone or user that was added or changed, the key of one that was
+ * removed, or a new update signature. Records are idempotent, so replaying a journal
+ * over a snapshot that already contains some of its changes is harmless.
+ */
+final class RepoJournal {
+
+    private static final Logger logger = HTLog.get(RepoJournal.class);
+
+    public static final String JOURNAL_EXTENSION = ".journal";
+
+    private static final Gson gson = new Gson();
+
+    private RepoJournal() {
+    }
+
+    enum RecordType { ISSUE, LABEL, MILESTONE, USER, SIGNATURE }
+
+    /**
+     * A single journal line. Exactly one of the resource fields is set, unless the record
+     * describes a removal, in which case only {@code key} is.
+     */
+    static class Record {
+        final RecordType type;
+        final String key;
+        final boolean removed;
+        final SerializableIssue issue;
+        final SerializableLabel label;
+        final SerializableMilestone milestone;
+        final SerializableUser user;
+        final UpdateSignature signature;
+
+        private Record(RecordType type, String key, boolean removed, SerializableIssue issue,
+                       SerializableLabel label, SerializableMilestone milestone, SerializableUser user,
+                       UpdateSignature signature) {
+            this.type = type;
+            this.key = key;
+            this.removed = removed;
+            this.issue = issue;
+            this.label = label;
+            this.milestone = milestone;
+            this.user = user;
+            this.signature = signature;
+        }
+
+        static Record of(TurboIssue issue) throws IOException {
+            return new Record(RecordType.ISSUE, String.valueOf(issue.getId()), false,
+                    new SerializableIssue(issue), null, null, null, null);
+        }
+
+        static Record of(TurboLabel label) {
+            return new Record(RecordType.LABEL, label.getFullName(), false,
+                    null, new SerializableLabel(label), null, null, null);
+        }
+
+        static Record of(TurboMilestone milestone) {
+            return new Record(RecordType.MILESTONE, String.valueOf(milestone.getId()), false,
+                    null, null, new SerializableMilestone(milestone), null, null);
+        }
+
+        static Record of(TurboUser user) {
+            return new Record(RecordType.USER, user.getLoginName(), false,
+                    null, null, null, new SerializableUser(user), null);
+        }
+
+        static Record of(UpdateSignature signature) {
+            return new Record(RecordType.SIGNATURE, "", false, null, null, null, null, signature);
+        }
+
+        static Record removal(RecordType type, String key) {
+            return new Record(type, key, true, null, null, null, null, null);
+        }
+
+        boolean isValid() {
+            if (type == null || key == null) {
+                return false;
+            }
+            if (removed) {
+                return true;
+            }
+            switch (type) {
+            case ISSUE:
+                return issue != null;
+            case LABEL:
+                return label != null;
+            case MILESTONE:
+                return milestone != null;
+            case USER:
+                return user != null;
+            default:
+                return signature != null;
+            }
+        }
+    }
+
+    /**
+     * Copies of the resources of a repository as they were last written to the store, used to work out
+     * which of them changed since. Resources are compared with {@code equals}, which compares every
+     * serialized field, and are copied because the local operations on a model change them in place.
+     */
+    static class StoredState {
+        /**
+         * Makes the record of a resource that was added or changed.
+         */
+        @FunctionalInterface
+        private interface RecordMaker<R> {
+            Record of(R resource) throws IOException;
+        }
+
+        final Map<Integer, TurboIssue> issues = new HashMap<>();
+        final Map<String, TurboLabel> labels = new HashMap<>();
+        final Map<Integer, TurboMilestone> milestones = new HashMap<>();
+        final Map<String, TurboUser> users = new HashMap<>();
+        UpdateSignature signature;
+
+        StoredState(Model model) {
+            model.getIssues().forEach(i -> issues.put(i.getId(), new TurboIssue(i)));
+            model.getLabels().forEach(l -> labels.put(l.getFullName(), new TurboLabel(l)));
+            model.getMilestones().forEach(m -> milestones.put(m.getId(), new TurboMilestone(m)));
+            model.getUsers().forEach(u -> users.put(u.getLoginName(), new TurboUser(u)));
+            signature = model.getUpdateSignature();
+        }
+
+        /**
+         * Returns the records that bring the stored state up to date with {@code model},
+         * and updates the stored state to match it.
+         * @throws IOException if a record cannot be made, such as when a description cannot be read,
+         *         in which case the stored state is left as it was
+         */
+        List<Record> update(Model model) throws IOException {
+            List<Record> records = new ArrayList<>();
+            List<Runnable> changes = new ArrayList<>();
+            update(issues, model.getIssues(), TurboIssue::getId, TurboIssue::new, Record::of,
+                    RecordType.ISSUE, records, changes);
+            update(labels, model.getLabels(), TurboLabel::getFullName, TurboLabel::new, Record::of,
+                    RecordType.LABEL, records, changes);
+            update(milestones, model.getMilestones(), TurboMilestone::getId, TurboMilestone::new, Record::of,
+                    RecordType.MILESTONE, records, changes);
+            update(users, model.getUsers(), TurboUser::getLoginName, TurboUser::new, Record::of,
+                    RecordType.USER, records, changes);
+            changes.forEach(Runnable::run);
+
+            UpdateSignature newSignature = model.getUpdateSignature();
+            boolean signatureChanged = !newSignature.equals(signature)
+                    || !Objects.equals(newSignature.lastCheckTime, signature.lastCheckTime);
+            if (!records.isEmpty() || signatureChanged) {
+                signature = newSignature;
+                records.add(Record.of(newSignature));
+            }
+            return records;
+        }
+
+        /**
+         * Adds the records of the resources of one type that were added, changed or removed
+         * since they were stored, and the changes that store copies of them to {@code changes}.
+         */
+        private static <K, R> void update(Map<K, R> stored, List<R> resources, Function<R, K> getKey,
+                                          UnaryOperator<R> copy, RecordMaker<R> toRecord, RecordType type,
+                                          List<Record> records, List<Runnable> changes) throws IOException {
+            Map<K, R> removed = new HashMap<>(stored);
+            for (R resource : resources) {
+                K key = getKey.apply(resource);
+                R old = removed.remove(key);
+                if (!resource.equals(old)) {
+                    records.add(toRecord.of(resource));
+                    R storedCopy = copy.apply(resource);
+                    changes.add(() -> stored.put(key, storedCopy));
+                }
+            }
+            for (K key : removed.keySet()) {
+                records.add(Record.removal(type, String.valueOf(key)));
+                changes.add(() -> stored.remove(key));
+            }
+        }
+    }
+
+    public static Optional<Path> getPath(String repoId) {
+        return RepoStore.getRepoPath(repoId).map(path -> Paths.get(path + JOURNAL_EXTENSION));
+    }
+
+    public static long size(String repoId) {
+        Optional<Path> path = getPath(repoId);
+        try {
+            return path.isPresent() && Files.exists(path.get()) ? Files.size(path.get()) : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Appends {@code records} to the journal of {@code repoId} and forces them to disk.
+     */
+    public static void append(String repoId, List<Record> records) throws IOException {
+        Path path = getPath(repoId).orElseThrow(() -> new IOException("Store directory is unavailable"));
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            Writer writer = Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), -1);
+            for (Record record : records) {
+                writer.write(gson.toJson(record));
+                writer.write('\n');
+            }
+            writer.flush();
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Deletes the journal of {@code repoId}, e.g. after its changes were compacted into a snapshot.
+     * @return true on error in deleting the journal, false otherwise
+     */
+    public static boolean delete(String repoId) {
+        Optional<Path> path = getPath(repoId);
+        try {
+            if (path.isPresent()) {
+                Files.deleteIfExists(path.get());
+            }
+            return false;
+        } catch (IOException e) {
+            logger.error(HTLog.format(repoId, "Unable to delete journal"), e);
+            return true;
+        }
+    }
+
+    /**
+     * Applies the journal of the snapshot's repository, if there is one, to {@code snapshot}.
+     *
+     * A partially-written last record, left behind by a crash during an append, is discarded
+     * and truncated away. Any other unreadable record means the journal is corrupted.
+     * @return the model with all journalled changes applied
+     * @throws IOException if the journal cannot be read or is corrupted
+     */
+    public static Model replay(Model snapshot) throws IOException {
+        String repoId = snapshot.getRepoId();
+        Optional<Path> path = getPath(repoId);
+        if (!path.isPresent() || !Files.exists(path.get())) {
+            return snapshot;
+        }
+
+        byte[] content = Files.readAllBytes(path.get());
+
+        Map<Integer, TurboIssue> issues = new LinkedHashMap<>();
+        snapshot.getIssues().forEach(i -> issues.put(i.getId(), i));
+        Map<String, TurboLabel> labels = new LinkedHashMap<>();
+        snapshot.getLabels().forEach(l -> labels.put(l.getFullName(), l));
+        Map<Integer, TurboMilestone> milestones = new LinkedHashMap<>();
+        snapshot.getMilestones().forEach(m -> milestones.put(m.getId(), m));
+        Map<String, TurboUser> users = new LinkedHashMap<>();
+        snapshot.getUsers().forEach(u -> users.put(u.getLoginName(), u));
+        UpdateSignature signature = snapshot.getUpdateSignature();
+
+        int lineStart = 0;
+        int recordCount = 0;
+        while (lineStart < content.length) {
+            int lineEnd = lineStart;
+            while (lineEnd < content.length && content[lineEnd] != '\n') {
+                lineEnd++;
+            }
+            boolean isLastLine = lineEnd >= content.length - 1;
+            String line = new String(content, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8);
+
+            Record record;
+            try {
+                record = gson.fromJson(line, Record.class);
+            } catch (JsonParseException e) {
+                record = null;
+            }
+            boolean complete = record != null && record.isValid() && lineEnd < content.length;
+            if (!complete) {
+                if (!isLastLine) {
+                    throw new IOException("Journal of " + repoId + " is corrupted at offset " + lineStart);
+                }
+                logger.warn(HTLog.format(repoId, "Discarding incomplete last journal record"));
+                try (FileChannel channel = FileChannel.open(path.get(), StandardOpenOption.WRITE)) {
+                    channel.truncate(lineStart);
+                }
+                break;
+            }
+
+            switch (record.type) {
+            case ISSUE:
+                if (record.removed) {
+                    issues.remove(Integer.parseInt(record.key));
+                } else {
+                    issues.put(record.issue.getId(), new TurboIssue(repoId, record.issue));
+                }
+                break;
+            case LABEL:
+                if (record.removed) {
+                    labels.remove(record.key);
+                } else {
+                    labels.put(record.label.getFullName(), new TurboLabel(repoId, record.label));
+                }
+                break;
+            case MILESTONE:
+                if (record.removed) {
+                    milestones.remove(Integer.parseInt(record.key));
+                } else {
+                    milestones.put(record.milestone.getId(), new TurboMilestone(repoId, record.milestone));
+                }
+                break;
+            case USER:
+                if (record.removed) {
+                    users.remove(record.key);
+                } else {
+                    users.put(record.user.getLoginName(), new TurboUser(repoId, record.user));
+                }
+                break;
+            case SIGNATURE:
+                signature = record.signature;
+                break;
+            default:
+                break;
+            }
+            recordCount++;
+            lineStart = lineEnd + 1;
+        }
+
+        logger.info(HTLog.format(repoId, "Replayed " + recordCount + " journal record(s)"));
+        return new Model(repoId, new ArrayList<>(issues.values()), new ArrayList<>(labels.values()),
+                new ArrayList<>(milestones.values()), new ArrayList<>(users.values()), signature);
+    }
+}
@@ -0,0 +1,269 @@
+package backend.json;
+
+import com.google.common.io.ByteStreams;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import org.apache.logging.log4j.Logger;
+import util.HTLog;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+import static com.google.common.io.Files.getFileExtension;
+
+/**
+ * An index of the repositories kept in a store directory, so that the list of stored
+ * repositories can be determined without parsing every stored file.
+ *
+ * The manifest is a small JSON file in the store directory. It is rewritten atomically
+ * after every store write and delete. Stored files that are missing from the manifest,
+ * or that changed since their entry was recorded, are parsed (only as far as needed) and
+ * their entries refreshed, so a missing or outdated manifest is rebuilt lazily.
+ */
+public class StoreManifest {
+
+    private static final Logger logger = HTLog.get(StoreManifest.class);
+
+    public static final String MANIFEST_FILE_NAME = "repos.manifest";
+    private static final String STORE_FILE_EXTENSION = "json";
+
+    // Shared by all instances, as several stores may index the same directory
+    private static final Object LOCK = new Object();
+
+    private final Gson gson = new Gson();
+    private final Path directory;
+
+    /**
+     * Describes one stored repository file.
+     */
+    public static class Entry {
+        public final String repoId;
+        public final String fileName;
+        public final int issueCount;
+        public final long lastWriteTime;
+        public final long fileSize;
+        public final long checksum;
+
+        public Entry(String repoId, String fileName, int issueCount, long lastWriteTime, long fileSize,
+                     long checksum) {
+            this.repoId = repoId;
+            this.fileName = fileName;
+            this.issueCount = issueCount;
+            this.lastWriteTime = lastWriteTime;
+            this.fileSize = fileSize;
+            this.checksum = checksum;
+        }
+    }
+
+    public StoreManifest(String directory) {
+        this.directory = Paths.get(directory);
+    }
+
+    /**
+     * Returns the ids of the repositories in the store directory, reconciling the manifest
+     * with the files actually present first.
+     */
+    public List<String> getStoredRepos() {
+        synchronized (LOCK) {
+            Map<String, Entry> entries = load();
+            boolean changed = false;
+
+            List<Path> storeFiles;
+            try (Stream<Path> files = Files.walk(directory, 1)) {
+                storeFiles = files.filter(Files::isRegularFile)
+                        .filter(p -> getFileExtension(String.valueOf(p.getFileName()))
+                                .equalsIgnoreCase(STORE_FILE_EXTENSION))
+                        .collect(Collectors.toList());
+            } catch (IOException e) {
+                logger.error("Unable to open stored repository directory. ");
+                return new ArrayList<>();
+            }
+
+            Map<String, Entry> reconciled = new LinkedHashMap<>();
+            for (Path file : storeFiles) {
+                String fileName = String.valueOf(file.getFileName());
+                Optional<Entry> existing = entries.values().stream()
+                        .filter(e -> e.fileName.equals(fileName))
+                        .findFirst();
+                Optional<Entry> entry = existing.isPresent() && isUpToDate(existing.get(), file)
+                        ? existing
+                        : createEntry(file);
+                changed |= !entry.equals(existing);
+                entry.ifPresent(e -> reconciled.put(e.repoId, e));
+            }
+            changed |= reconciled.size() != entries.size();
+
+            if (changed) {
+                save(reconciled);
+            }
+            reconciled.values().forEach(e ->
+                    logger.info("Adding " + e.fileName + " to stored repository list. "));
+            return new ArrayList<>(reconciled.keySet());
+        }
+    }
+
+    public Optional<Entry> getEntry(String repoId) {
+        synchronized (LOCK) {
+            return Optional.ofNullable(load().get(repoId));
+        }
+    }
+
+    /**
+     * Records that the file of {@code repoId} has just been written with {@code issueCount} issues.
+     */
+    public void recordWrite(String repoId, String fileName, int issueCount) {
+        Path file = directory.resolve(fileName);
+        try {
+            Entry entry = new Entry(repoId, fileName, issueCount, Files.getLastModifiedTime(file).toMillis(),
+                    Files.size(file), computeChecksum(file));
+            synchronized (LOCK) {
+                Map<String, Entry> entries = load();
+                entries.put(repoId, entry);
+                save(entries);
+            }
+        } catch (IOException e) {
+            logger.error(HTLog.format(repoId, "Unable to record store write in manifest"), e);
+            recordDelete(repoId);
+        }
+    }
+
+    /**
+     * Records that the file of {@code repoId} no longer exists.
+     */
+    public void recordDelete(String repoId) {
+        synchronized (LOCK) {
+            Map<String, Entry> entries = load();
+            if (entries.remove(repoId) != null) {
+                save(entries);
+            }
+        }
+    }
+
+    private static boolean isUpToDate(Entry entry, Path file) {
+        try {
+            return entry.lastWriteTime == Files.getLastModifiedTime(file).toMillis()
+                    && entry.fileSize == Files.size(file);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Builds the entry of a stored file by reading its repo id and counting its issues,
+     * without constructing any of the stored resources.
+     */
+    private static Optional<Entry> createEntry(Path file) {
+        String fileName = String.valueOf(file.getFileName());
+        CRC32 crc = new CRC32();
+        String repoId = null;
+        int issueCount = 0;
+
+        try (InputStream in = new CheckedInputStream(Files.newInputStream(file), crc)) {
+            JsonReader reader = new JsonReader(
+                    new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+            reader.setLenient(true);
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if ("repoId".equals(name)) {
+                    repoId = reader.nextString();
+                } else if ("issues".equals(name)) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        reader.skipValue();
+                        issueCount++;
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            // Consume any trailing bytes so that the checksum covers the whole file
+            ByteStreams.copy(in, ByteStreams.nullOutputStream());
+
+            if (repoId == null || !fileName.equalsIgnoreCase(JSONStore.escapeRepoName(repoId))) {
+                return Optional.empty();
+            }
+            return Optional.of(new Entry(repoId, fileName, issueCount, Files.getLastModifiedTime(file).toMillis(),
+                    Files.size(file), crc.getValue()));
+        } catch (IOException | IllegalStateException | JsonParseException e) {
+            logger.error("Unable to load repository from " + fileName);
+            return Optional.empty();
+        }
+    }
+
+    public static long computeChecksum(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[8192];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        return crc.getValue();
+    }
+
+    private Map<String, Entry> load() {
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        Path manifest = directory.resolve(MANIFEST_FILE_NAME);
+        if (!Files.isRegularFile(manifest)) {
+            return entries;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)) {
+            List<Entry> stored = gson.fromJson(reader, new TypeToken<List<Entry>>() {}.getType());
+            if (stored != null) {
+                stored.stream()
+                        .filter(e -> e.repoId != null && e.fileName != null)
+                        .forEach(e -> entries.put(e.repoId, e));
+            }
+        } catch (IOException | JsonParseException e) {
+            logger.error("Store manifest is unreadable; it will be rebuilt", e);
+        }
+        return entries;
+    }
+
+    /**
+     * Writes the manifest to a temporary file and moves it over the old one, so that
+     * readers never observe a partially-written manifest.
+     */
+    private void save(Map<String, Entry> entries) {
+        Path manifest = directory.resolve(MANIFEST_FILE_NAME);
+        Path temp = directory.resolve(MANIFEST_FILE_NAME + ".tmp");
+        try {
+            Files.createDirectories(directory);
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                gson.toJson(new ArrayList<>(entries.values()), writer);
+            }
+            try {
+                Files.move(temp, manifest, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, manifest, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            logger.error("Unable to write store manifest", e);
+        }
+    }
+}
@@ -2,9 +2,7 @@ package backend.json;
 
 import backend.interfaces.RepoStore;
 import backend.interfaces.StoreTask;
-import backend.resource.serialization.SerializableModel;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import backend.resource.Model;
 import org.apache.logging.log4j.Logger;
 import util.HTLog;
 
@@ -14,10 +12,10 @@ class WriteTask extends StoreTask {
 
     private static final Logger logger = HTLog.get(WriteTask.class);
 
-    public final SerializableModel toSave;
+    public final Model toSave;
     public final CompletableFuture<Boolean> response;
 
-    public WriteTask(String repoName, SerializableModel toSave, CompletableFuture<Boolean> response) {
+    public WriteTask(String repoName, Model toSave, CompletableFuture<Boolean> response) {
         super(repoName);
         this.toSave = toSave;
         this.response = response;
@@ -28,11 +26,27 @@ class WriteTask extends StoreTask {
         response.complete(save(repoId, toSave));
     }
 
-    private boolean save(String repoId, SerializableModel model) {
-        String output = new Gson().toJson(model);
-        boolean corruptedJson = RepoStore.write(repoId, output, model.issues.size());
+    /**
+     * Streams the model to the store file, so that neither a SerializableModel copy
+     * nor the full JSON text is ever held in memory. The file is replaced atomically,
+     * so a failed write leaves the previous snapshot intact.
+     *
+     * As the written file is a complete snapshot of the model, any journal of earlier
+     * changes is discarded first. Should the write then fail, the store is left with the
+     * older snapshot and its matching update signature, rather than with a journal that
+     * would roll a newer snapshot back when replayed.
+     * @return true if the snapshot could not be written
+     */
+    static boolean save(String repoId, Model model) {
+        RepoJournal.delete(repoId);
+        boolean writeFailed = RepoStore.write(repoId, writer -> JSONModelSerializer.write(model, writer));
+        if (writeFailed) {
+            return true;
+        }
         logger.info(HTLog.format(repoId, "Written to JSON store"));
-        return corruptedJson;
+
+        new StoreManifest(RepoStore.getDirectory())
+                .recordWrite(repoId, RepoStore.escapeRepoName(repoId), model.getIssues().size());
+        return false;
     }
 }
-
@@ -0,0 +1,66 @@
+package backend.resource;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * An immutable index of resources by their integer id.
+ *
+ * Ids that are mostly dense, as issue numbers are, are indexed with an array so that lookups
+ * neither hash nor box the id. Sparse ids fall back to a hash map.
+ * Where several resources have the same id, the first one is indexed.
+ */
+final class IdIndex<T> {
+
+    // The array is used while it has at most this many slots per resource
+    private static final int MAX_SLOTS_PER_RESOURCE = 4;
+    private static final int MIN_SLOTS = 64;
+
+    private final Object[] byId;
+    private final Map<Integer, T> sparseById;
+
+    private IdIndex(Object[] byId, Map<Integer, T> sparseById) {
+        this.byId = byId;
+        this.sparseById = sparseById;
+    }
+
+    static <T> IdIndex<T> of(List<T> resources, ToIntFunction<T> getId) {
+        int minId = Integer.MAX_VALUE;
+        int maxId = -1;
+        for (T resource : resources) {
+            int id = getId.applyAsInt(resource);
+            minId = Math.min(minId, id);
+            maxId = Math.max(maxId, id);
+        }
+
+        if (minId >= 0 && maxId < (long) resources.size() * MAX_SLOTS_PER_RESOURCE + MIN_SLOTS) {
+            Object[] byId = new Object[maxId + 1];
+            for (T resource : resources) {
+                int id = getId.applyAsInt(resource);
+                if (byId[id] == null) {
+                    byId[id] = resource;
+                }
+            }
+            return new IdIndex<>(byId, null);
+        }
+
+        Map<Integer, T> sparseById = new HashMap<>();
+        for (T resource : resources) {
+            sparseById.putIfAbsent(getId.applyAsInt(resource), resource);
+        }
+        return new IdIndex<>(null, sparseById);
+    }
+
+    /**
+     * Returns the resource with the given id, or null if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    T get(int id) {
+        if (byId == null) {
+            return sparseById.get(id);
+        }
+        return id >= 0 && id < byId.length ? (T) byId[id] : null;
+    }
+}
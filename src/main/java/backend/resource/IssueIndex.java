@@ -0,0 +1,275 @@
+package backend.resource;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Inverted indexes over the issues of a model, from each label, milestone, assignee and creator,
+ * and from each state and type, to the set of ids of the issues that have it.
+ *
+ * Sets of issues are bitmaps of issue ids, which are small and mostly dense, so that the issues
+ * satisfying several conditions are found by intersecting the bitmaps. The bitmaps returned are
+ * copies, which callers are free to combine in place.
+ *
+ * Keys are the values held by the issues, as they are: label names are the full names of the labels
+ * of each issue, and users are logins.
+ *
+ * Indexes are not changed once built. The index of a model that replaces another is derived from the
+ * index of the other (see {@link #withChanges}), sharing the sets of the keys the changes do not touch.
+ */
+public final class IssueIndex {
+
+    private final BitSet all;
+    private final BitSet open;
+    private final BitSet pullRequests;
+    private final BitSet withoutMilestone;
+    private final BitSet unassigned;
+    private final Map<String, BitSet> byLabel;
+    private final Map<Integer, BitSet> byMilestone;
+    private final Map<String, BitSet> byAssignee;
+    private final Map<String, BitSet> byCreator;
+
+    IssueIndex(List<TurboIssue> issues) {
+        all = new BitSet();
+        open = new BitSet();
+        pullRequests = new BitSet();
+        withoutMilestone = new BitSet();
+        unassigned = new BitSet();
+        byLabel = new HashMap<>();
+        byMilestone = new HashMap<>();
+        byAssignee = new HashMap<>();
+        byCreator = new HashMap<>();
+
+        Set<BitSet> owned = newOwnedSets();
+        issues.forEach(issue -> add(issue, owned));
+    }
+
+    /**
+     * Constructor for a copy of {@code index} that shares the sets of its keys, to be changed
+     * by {@link #withChanges}.
+     */
+    private IssueIndex(IssueIndex index) {
+        all = (BitSet) index.all.clone();
+        open = (BitSet) index.open.clone();
+        pullRequests = (BitSet) index.pullRequests.clone();
+        withoutMilestone = (BitSet) index.withoutMilestone.clone();
+        unassigned = (BitSet) index.unassigned.clone();
+        byLabel = new HashMap<>(index.byLabel);
+        byMilestone = new HashMap<>(index.byMilestone);
+        byAssignee = new HashMap<>(index.byAssignee);
+        byCreator = new HashMap<>(index.byCreator);
+    }
+
+    /**
+     * Returns an index like this one, except that the issues with ids in {@code removedIds} are no longer
+     * in it, and {@code added} are. Changed issues are updated by passing their ids and their new state.
+     * This index is not changed, so the cost of the changes depends on their size rather than on the
+     * number of issues.
+     */
+    IssueIndex withChanges(Collection<Integer> removedIds, List<TurboIssue> added) {
+        IssueIndex index = new IssueIndex(this);
+        Set<BitSet> owned = newOwnedSets();
+        for (int id : removedIds) {
+            index.remove(id, owned);
+        }
+        added.forEach(issue -> index.add(issue, owned));
+        return index;
+    }
+
+    /**
+     * Returns a set of the sets of keys that an index being built has its own copy of, and may
+     * change in place. The others are shared with the index it is derived from.
+     */
+    private static Set<BitSet> newOwnedSets() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    private void add(TurboIssue issue, Set<BitSet> owned) {
+        int id = issue.getId();
+        if (id < 0) {
+            return;
+        }
+        all.set(id);
+        if (issue.isOpen()) {
+            open.set(id);
+        }
+        if (issue.isPullRequest()) {
+            pullRequests.set(id);
+        }
+        for (String label : issue.getLabels()) {
+            add(byLabel, label, id, owned);
+        }
+        if (issue.getMilestone().isPresent()) {
+            add(byMilestone, issue.getMilestone().get(), id, owned);
+        } else {
+            withoutMilestone.set(id);
+        }
+        if (issue.getAssignee().isPresent()) {
+            add(byAssignee, issue.getAssignee().get(), id, owned);
+        } else {
+            unassigned.set(id);
+        }
+        if (issue.getCreator() != null) {
+            add(byCreator, issue.getCreator(), id, owned);
+        }
+    }
+
+    /**
+     * Removes the issue with the given id from every set, so that the state the issue had
+     * in the index need not be known.
+     */
+    private void remove(int id, Set<BitSet> owned) {
+        if (id < 0) {
+            return;
+        }
+        all.clear(id);
+        open.clear(id);
+        pullRequests.clear(id);
+        withoutMilestone.clear(id);
+        unassigned.clear(id);
+        remove(byLabel, id, owned);
+        remove(byMilestone, id, owned);
+        remove(byAssignee, id, owned);
+        remove(byCreator, id, owned);
+    }
+
+    private static <K> void add(Map<K, BitSet> index, K key, int id, Set<BitSet> owned) {
+        BitSet ids = index.get(key);
+        if (ids == null || !owned.contains(ids)) {
+            ids = ids == null ? new BitSet() : (BitSet) ids.clone();
+            index.put(key, ids);
+            owned.add(ids);
+        }
+        ids.set(id);
+    }
+
+    /**
+     * Removes {@code id} from the sets of all keys, and the keys no issue has any longer.
+     */
+    private static <K> void remove(Map<K, BitSet> index, int id, Set<BitSet> owned) {
+        Iterator<Map.Entry<K, BitSet>> entries = index.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<K, BitSet> entry = entries.next();
+            BitSet ids = entry.getValue();
+            if (!ids.get(id)) {
+                continue;
+            }
+            if (ids.cardinality() == 1) {
+                entries.remove();
+                continue;
+            }
+            if (!owned.contains(ids)) {
+                ids = (BitSet) ids.clone();
+                entry.setValue(ids);
+                owned.add(ids);
+            }
+            ids.clear(id);
+        }
+    }
+
+    private static <K> BitSet get(Map<K, BitSet> index, K key) {
+        BitSet ids = index.get(key);
+        return ids == null ? new BitSet() : (BitSet) ids.clone();
+    }
+
+    /**
+     * Returns the union of the sets of the keys that {@code matches} accepts.
+     */
+    private static <K> BitSet getMatching(Map<K, BitSet> index, Predicate<K> matches) {
+        BitSet ids = new BitSet();
+        index.forEach((key, keyIds) -> {
+            if (matches.test(key)) {
+                ids.or(keyIds);
+            }
+        });
+        return ids;
+    }
+
+    public BitSet getAll() {
+        return (BitSet) all.clone();
+    }
+
+    public BitSet getOpen() {
+        return (BitSet) open.clone();
+    }
+
+    public BitSet getClosed() {
+        BitSet closed = getAll();
+        closed.andNot(open);
+        return closed;
+    }
+
+    public BitSet getPullRequests() {
+        return (BitSet) pullRequests.clone();
+    }
+
+    public BitSet getNonPullRequests() {
+        BitSet issues = getAll();
+        issues.andNot(pullRequests);
+        return issues;
+    }
+
+    public BitSet getWithLabel(String fullName) {
+        return get(byLabel, fullName);
+    }
+
+    public BitSet getWithLabel(Predicate<String> matches) {
+        return getMatching(byLabel, matches);
+    }
+
+    public BitSet getWithMilestone(int milestoneId) {
+        return get(byMilestone, milestoneId);
+    }
+
+    public BitSet getWithMilestone(Predicate<Integer> matches) {
+        return getMatching(byMilestone, matches);
+    }
+
+    public BitSet getWithoutMilestone() {
+        return (BitSet) withoutMilestone.clone();
+    }
+
+    public BitSet getAssignedTo(String login) {
+        return get(byAssignee, login);
+    }
+
+    public BitSet getAssignedTo(Predicate<String> matches) {
+        return getMatching(byAssignee, matches);
+    }
+
+    public BitSet getUnassigned() {
+        return (BitSet) unassigned.clone();
+    }
+
+    public BitSet getCreatedBy(String login) {
+        return get(byCreator, login);
+    }
+
+    public BitSet getCreatedBy(Predicate<String> matches) {
+        return getMatching(byCreator, matches);
+    }
+
+    public Set<String> getLabels() {
+        return Collections.unmodifiableSet(byLabel.keySet());
+    }
+
+    public Set<Integer> getMilestones() {
+        return Collections.unmodifiableSet(byMilestone.keySet());
+    }
+
+    public Set<String> getAssignees() {
+        return Collections.unmodifiableSet(byAssignee.keySet());
+    }
+
+    public Set<String> getCreators() {
+        return Collections.unmodifiableSet(byCreator.keySet());
+    }
+}
@@ -3,18 +3,47 @@ package backend.resource;
 import backend.UpdateSignature;
 import backend.interfaces.IBaseModel;
 import backend.resource.serialization.SerializableModel;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import util.Utility;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+/**
+ * The state of a repository. Models are not changed once built: changes to a repository
+ * are made by building a new model, which is then published through {@link MultiModel}.
+ *
+ * Each model has a version, which is greater than the versions of all models built before it.
+ * A model that only differs from another in its update time shares its version, so whether
+ * a repository changed can be told by comparing versions. Issues are stamped with the version
+ * of the first model they are part of, which tells which issues a change touched.
+ *
+ * The lists of resources are immutable, so they are returned as they are rather than copied.
+ */
 @SuppressWarnings("unused")
 public class Model implements IBaseModel {
 
+    private static final AtomicLong lastVersion = new AtomicLong();
+
+    // The fraction of the issues that may change for the issue index to be derived from the previous one
+    private static final double INDEX_CHANGE_FRACTION = 0.25;
+
+    // The fraction of the issues beyond which the ids of the changed issues are not worth finding,
+    // as the indexes are then rebuilt rather than updated (see TextIndex)
+    private static final double CHANGE_LIMIT_FRACTION = 0.5;
+
+    private final long version;
     private final UpdateSignature updateSignature;
     private final String repoId;
     private final List<TurboIssue> issues;
@@ -22,6 +51,19 @@ public class Model implements IBaseModel {
     private final List<TurboMilestone> milestones;
     private final List<TurboUser> users;
 
+    // Indexes for lookups, built once, as models are not changed after construction
+    private final IdIndex<TurboIssue> issuesById;
+    private final Map<String, TurboLabel> labelsByName;
+    private final IdIndex<TurboMilestone> milestonesById;
+    private final Map<String, TurboMilestone> milestonesByTitle;
+    private final Map<String, TurboUser> usersByLogin;
+
+    // Built when first used, as only filtering uses it
+    private final LazyIssueIndex issueIndex;
+
+    // Shared with the models built to replace this one
+    private final TextIndex textIndex;
+
     private static final Logger logger = LogManager.getLogger(Model.class);
 
     /**
@@ -31,12 +73,135 @@ public class Model implements IBaseModel {
         List<TurboLabel> labels, List<TurboMilestone> milestones, List<TurboUser> users,
         UpdateSignature updateSignature) {
 
+        this(repoId, issues, labels, milestones, users, updateSignature, lastVersion.incrementAndGet(), null, null);
+    }
+
+    /**
+     * Constructor for a model that replaces {@code previous}. When few issues changed, its issue index
+     * is derived from that of {@code previous}, if that was built, instead of being built from scratch.
+     * It shares the text index of {@code previous}, which only indexes the issues that changed.
+     */
+    public Model(Model previous, List<TurboIssue> issues,
+        List<TurboLabel> labels, List<TurboMilestone> milestones, List<TurboUser> users,
+        UpdateSignature updateSignature) {
+
+        this(previous.getRepoId(), issues, labels, milestones, users, updateSignature,
+            lastVersion.incrementAndGet(), previous, null);
+    }
+
+    /**
+     * @param previous the model this one replaces, if any
+     * @param replacedIds the ids of the only issues that may differ from those of {@code previous},
+     *                    or null if they are not known
+     */
+    private Model(String repoId, List<TurboIssue> issues,
+        List<TurboLabel> labels, List<TurboMilestone> milestones, List<TurboUser> users,
+        UpdateSignature updateSignature, long version, Model previous, List<Integer> replacedIds) {
+
+        this.version = version;
         this.updateSignature = updateSignature;
         this.repoId = repoId;
-        this.issues = issues;
-        this.labels = labels;
-        this.milestones = milestones;
-        this.users = users;
+        this.issues = ImmutableList.copyOf(issues);
+        this.labels = ImmutableList.copyOf(labels);
+        this.milestones = ImmutableList.copyOf(milestones);
+        this.users = ImmutableList.copyOf(users);
+
+        this.issuesById = IdIndex.of(this.issues, TurboIssue::getId);
+        this.labelsByName = index(this.labels, TurboLabel::getFullName);
+        this.milestonesById = IdIndex.of(this.milestones, TurboMilestone::getId);
+        this.milestonesByTitle = index(this.milestones, TurboMilestone::getTitle);
+        this.usersByLogin = index(this.users, TurboUser::getLoginName);
+        this.issues.forEach(issue -> issue.stampVersion(version));
+
+        Optional<IssueIndex> previousIndex = previous == null ? Optional.empty() : previous.issueIndex.getIfBuilt();
+        List<Integer> changedIds = replacedIds;
+        if (previous == null) {
+            this.textIndex = new TextIndex();
+        } else {
+            this.textIndex = previous.textIndex;
+            if (changedIds == null && (previousIndex.isPresent() || textIndex.isBuilt())) {
+                changedIds = getChangedIssueIds(previous, (int) (CHANGE_LIMIT_FRACTION * this.issues.size()));
+            }
+            textIndex.recordChanges(previous.version, version, changedIds);
+        }
+        this.issueIndex = new LazyIssueIndex(issueIndexBuilder(previousIndex, changedIds));
+    }
+
+    /**
+     * Returns how to build the issue index of this model: by applying the changes since the model it replaces
+     * to the index of that model, if it was built and few issues changed, or else from all the issues. Only the
+     * ids of the changed issues are found beforehand; the index itself is built when first used.
+     */
+    private Supplier<IssueIndex> issueIndexBuilder(Optional<IssueIndex> previousIndex, List<Integer> changedIds) {
+        if (previousIndex.isPresent() && changedIds != null) {
+            if (changedIds.isEmpty()) {
+                IssueIndex index = previousIndex.get();
+                return () -> index;
+            }
+            if (changedIds.size() <= INDEX_CHANGE_FRACTION * issues.size()) {
+                IssueIndex index = previousIndex.get();
+                IdIndex<TurboIssue> issuesById = this.issuesById;
+                return () -> {
+                    List<TurboIssue> changed = new ArrayList<>();
+                    for (int id : changedIds) {
+                        TurboIssue issue = issuesById.get(id);
+                        if (issue != null) {
+                            changed.add(issue);
+                        }
+                    }
+                    return index.withChanges(changedIds, changed);
+                };
+            }
+        }
+        List<TurboIssue> issues = this.issues;
+        return () -> new IssueIndex(issues);
+    }
+
+    /**
+     * Returns the ids of the issues that were added, replaced or removed since {@code previous},
+     * compared by instance as in {@link ModelDelta}, or null once there are more than {@code limit}.
+     */
+    private List<Integer> getChangedIssueIds(Model previous, int limit) {
+        List<Integer> ids = new ArrayList<>();
+        for (TurboIssue issue : issues) {
+            if (previous.issuesById.get(issue.getId()) != issue) {
+                ids.add(issue.getId());
+                if (ids.size() > limit) {
+                    return null;
+                }
+            }
+        }
+        for (TurboIssue issue : previous.issues) {
+            if (issuesById.get(issue.getId()) == null) {
+                ids.add(issue.getId());
+                if (ids.size() > limit) {
+                    return null;
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Constructor for a model with the same state as {@code model} and version, checked for updates at
+     * another time.
+     */
+    private Model(Model model, UpdateSignature updateSignature) {
+        this.version = model.version;
+        this.updateSignature = updateSignature;
+        this.repoId = model.repoId;
+        this.issues = model.issues;
+        this.labels = model.labels;
+        this.milestones = model.milestones;
+        this.users = model.users;
+
+        this.issuesById = model.issuesById;
+        this.labelsByName = model.labelsByName;
+        this.milestonesById = model.milestonesById;
+        this.milestonesByTitle = model.milestonesByTitle;
+        this.usersByLogin = model.usersByLogin;
+        this.issueIndex = model.issueIndex;
+        this.textIndex = model.textIndex;
     }
 
     /**
@@ -46,81 +211,87 @@ public class Model implements IBaseModel {
     public Model(String repoId, List<TurboIssue> issues,
         List<TurboLabel> labels, List<TurboMilestone> milestones, List<TurboUser> users) {
 
-        this.updateSignature = UpdateSignature.EMPTY;
-        this.repoId = repoId;
-        this.issues = issues;
-        this.labels = labels;
-        this.milestones = milestones;
-        this.users = users;
+        this(repoId, issues, labels, milestones, users, UpdateSignature.EMPTY);
     }
 
     /**
      * Constructor for the empty model.
      */
     public Model(String repoId) {
-        this.updateSignature = UpdateSignature.EMPTY;
-        this.repoId = repoId;
-        this.issues = new ArrayList<>();
-        this.labels = new ArrayList<>();
-        this.milestones = new ArrayList<>();
-        this.users = new ArrayList<>();
+        this(repoId, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
     }
 
     /**
-     * Copy constructor.
+     * Copy constructor, which shares the immutable lists and the indexes of {@code model}.
      */
     public Model(Model model) {
-        this.updateSignature = model.updateSignature;
-        this.repoId = model.getRepoId();
-        this.issues = new ArrayList<>(model.getIssues());
-        this.labels = new ArrayList<>(model.getLabels());
-        this.milestones = new ArrayList<>(model.getMilestones());
-        this.users = new ArrayList<>(model.getUsers());
+        this(model.repoId, model.issues, model.labels, model.milestones, model.users,
+            model.updateSignature, model.version, model, Collections.emptyList());
     }
 
     public Model(SerializableModel model) {
-        this.updateSignature = model.updateSignature;
-        this.repoId = model.repoId;
-        this.issues = model.issues.stream()
-            .map(i -> new TurboIssue(model.repoId, i))
-            .collect(Collectors.toList());
-        this.labels = model.labels.stream()
-            .map(l -> new TurboLabel(model.repoId, l))
-            .collect(Collectors.toList());
-        this.milestones = model.milestones.stream()
-            .map(m -> new TurboMilestone(model.repoId, m))
-            .collect(Collectors.toList());
-        this.users = model.users.stream()
-            .map(u -> new TurboUser(model.repoId, u))
-            .collect(Collectors.toList());
+        this(model.repoId,
+            model.issues.stream()
+                .map(i -> new TurboIssue(model.repoId, i))
+                .collect(Collectors.toList()),
+            model.labels.stream()
+                .map(l -> new TurboLabel(model.repoId, l))
+                .collect(Collectors.toList()),
+            model.milestones.stream()
+                .map(m -> new TurboMilestone(model.repoId, m))
+                .collect(Collectors.toList()),
+            model.users.stream()
+                .map(u -> new TurboUser(model.repoId, u))
+                .collect(Collectors.toList()),
+            model.updateSignature);
+    }
+
+    /**
+     * Indexes resources by a key, keeping the first of those with the same key,
+     * as a linear search would find.
+     */
+    private static <T> Map<String, T> index(List<T> resources, Function<T, String> getKey) {
+        Map<String, T> index = new HashMap<>();
+        for (T resource : resources) {
+            index.putIfAbsent(getKey.apply(resource), resource);
+        }
+        return index;
     }
 
     public String getRepoId() {
         return repoId;
     }
 
+    /**
+     * Returns the version of this model. A model with a different version from
+     * another model of the same repository has changed since it.
+     */
+    public long getVersion() {
+        return version;
+    }
+
     public UpdateSignature getUpdateSignature() {
         return updateSignature;
     }
 
     @Override
-    public synchronized List<TurboIssue> getIssues() {
-        return new ArrayList<>(issues);
+    public List<TurboIssue> getIssues() {
+        return issues;
     }
 
     @Override
     public List<TurboLabel> getLabels() {
-        return new ArrayList<>(labels);
+        return labels;
     }
 
     @Override
     public List<TurboMilestone> getMilestones() {
-        return new ArrayList<>(milestones);
+        return milestones;
     }
 
     @Override
     public List<TurboUser> getUsers() {
-        return new ArrayList<>(users);
+        return users;
     }
 
     @SuppressWarnings("unused")
@@ -128,52 +299,57 @@ public class Model implements IBaseModel {
 
     public Optional<TurboIssue> getIssueById(int issueId) {
         assert issueId >= 1 : "Invalid issue id " + issueId;
-        for (TurboIssue issue : getIssues()) {
-            if (issue.getId() == issueId) {
-                return Optional.of(issue);
+        return Optional.ofNullable(issuesById.get(issueId));
+    }
+
+    /**
+     * Returns the inverted indexes over the issues of this model.
+     */
+    public IssueIndex getIssueIndex() {
+        return issueIndex.get();
+    }
+
+    /**
+     * Returns the full-text index over the issues of this model, shared with the models built to replace it.
+     * It is brought up to date with a model when that model is searched (see {@link TextIndex}).
+     */
+    TextIndex getTextIndex() {
+        return textIndex;
+    }
+
+    /**
+     * Returns the issues with the given ids, in order of id, such as those resolved through
+     * {@link #getIssueIndex()}. Ids without an issue are ignored.
+     */
+    public List<TurboIssue> getIssuesByIds(BitSet ids) {
+        List<TurboIssue> result = new ArrayList<>(ids.cardinality());
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            TurboIssue issue = issuesById.get(id);
+            if (issue != null) {
+                result.add(issue);
             }
         }
-        return Optional.empty();
+        return result;
     }
 
     public Optional<TurboLabel> getLabelByActualName(String labelName) {
         assert labelName != null && !labelName.isEmpty() : "Invalid label name " + labelName;
-        for (TurboLabel label : getLabels()) {
-            if (label.getFullName().equals(labelName)) {
-                return Optional.of(label);
-            }
-        }
-        return Optional.empty();
+        return Optional.ofNullable(labelsByName.get(labelName));
     }
 
     public Optional<TurboUser> getUserByLogin(String login) {
         assert login != null && !login.isEmpty() : "Invalid user name " + login;
-        for (TurboUser user : getUsers()) {
-            if (user.getLoginName().equals(login)) {
-                return Optional.of(user);
-            }
-        }
-        return Optional.empty();
+        return Optional.ofNullable(usersByLogin.get(login));
     }
 
     public Optional<TurboMilestone> getMilestoneByTitle(String title) {
         assert title != null && !title.isEmpty() : "Invalid milestone title " + title;
-        for (TurboMilestone milestone : getMilestones()) {
-            if (milestone.getTitle().equals(title)) {
-                return Optional.of(milestone);
-            }
-        }
-        return Optional.empty();
+        return Optional.ofNullable(milestonesByTitle.get(title));
     }
 
     public Optional<TurboMilestone> getMilestoneById(int id) {
         assert id >= 1 : "Invalid milestone id " + id;
-        for (TurboMilestone milestone : getMilestones()) {
-            if (milestone.getId() == id) {
-                return Optional.of(milestone);
-            }
-        }
-        return Optional.empty();
+        return Optional.ofNullable(milestonesById.get(id));
     }
 
     public Optional<TurboMilestone> getMilestoneOfIssue(TurboIssue issue) {
@@ -189,48 +365,124 @@ public class Model implements IBaseModel {
     }
 
     public List<TurboLabel> getLabelsOfIssue(TurboIssue issue) {
-        return issue.getLabels().stream()
-            .map(this::getLabelByActualName)
-            .filter(Optional::isPresent).map(Optional::get)
-            .collect(Collectors.toList());
+        List<String> labelNames = issue.getLabels();
+        List<TurboLabel> result = new ArrayList<>(labelNames.size());
+        for (String labelName : labelNames) {
+            TurboLabel label = labelsByName.get(labelName);
+            if (label != null) {
+                result.add(label);
+            }
+        }
+        return result;
     }
 
     /**
-     * Replaces labels of an issue specified by {@code issueId} with {@code labels}
+     * Returns a copy of the issue specified by {@code issueId} with its labels replaced by {@code labels}.
+     * The model itself is not changed; see {@link #withIssues(List)}.
      * @param issueId
      * @param labels
      * @return the modified TurboIssue if successful
      */
-    public synchronized Optional<TurboIssue> replaceIssueLabels(int issueId, List<String> labels) {
+    public Optional<TurboIssue> replaceIssueLabels(int issueId, List<String> labels) {
         Optional<TurboIssue> issueLookUpResult = getIssueById(issueId);
         return Utility.safeFlatMapOptional(issueLookUpResult,
                 (issue) -> {
-                    issue.setLabels(labels);
-                    return Optional.of(new TurboIssue(issue));
+                    TurboIssue modified = new TurboIssue(issue);
+                    modified.setLabels(labels);
+                    return Optional.of(modified);
                 },
                 () -> logger.error("Issue " + issueId + " not found in model for " + repoId));
     }
 
     /**
-     * Replaces the milestone of an issue specified by {@code issueId} with {@code milestone}
+     * Returns a copy of the issue specified by {@code issueId} with its milestone replaced by {@code milestone}.
+     * The model itself is not changed; see {@link #withIssues(List)}.
      * @param issueId
      * @param milestone
      * @return the modified TurboIssue if successful
      */
-    public synchronized Optional<TurboIssue> replaceIssueMilestone(int issueId, Optional<Integer> milestone) {
+    public Optional<TurboIssue> replaceIssueMilestone(int issueId, Optional<Integer> milestone) {
         Optional<TurboIssue> issueLookUpResult = getIssueById(issueId);
         return Utility.safeFlatMapOptional(issueLookUpResult,
                 (issue) -> {
+                    TurboIssue modified = new TurboIssue(issue);
                     if (!milestone.isPresent()) {
-                        issue.removeMilestone();
+                        modified.removeMilestone();
                     } else {
-                        issue.setMilestoneById(milestone.get());
+                        modified.setMilestoneById(milestone.get());
                     }
-                    return Optional.of(new TurboIssue(issue));
+                    return Optional.of(modified);
                 },
                 () -> logger.error("Issue " + issueId + " not found in model for " + repoId));
     }
 
+    /**
+     * Returns a model with the same state and version as this one, but with {@code updateSignature}.
+     * The update signature is expected to have the same ETags as this model's, so that only the time
+     * of the last check for updates differs.
+     */
+    public Model withUpdateSignature(UpdateSignature updateSignature) {
+        return new Model(this, updateSignature);
+    }
+
+    /**
+     * Returns a model like this one, except that its issues with the same ids as
+     * {@code replacements} are replaced by them. This model is not changed.
+     */
+    public Model withIssues(List<TurboIssue> replacements) {
+        if (replacements.isEmpty()) {
+            return this;
+        }
+        Map<Integer, TurboIssue> replacementsById = new HashMap<>();
+        replacements.forEach(issue -> replacementsById.put(issue.getId(), issue));
+        List<TurboIssue> newIssues = new ArrayList<>(issues.size());
+        for (TurboIssue issue : issues) {
+            newIssues.add(replacementsById.getOrDefault(issue.getId(), issue));
+        }
+        return new Model(repoId, newIssues, labels, milestones, users, updateSignature,
+            lastVersion.incrementAndGet(), this, new ArrayList<>(replacementsById.keySet()));
+    }
+
+    /**
+     * Determines if this model has the same labels, milestones and users as {@code other} because
+     * it shares them, as the models built from one another with {@link #withIssues} do.
+     */
+    boolean hasSameResourcesAs(Model other) {
+        return labels == other.labels && milestones == other.milestones && users == other.users;
+    }
+
+    /**
+     * The issue index of a model, built once when first used. What it is built from is released
+     * once it is built.
+     */
+    private static final class LazyIssueIndex {
+
+        private Supplier<IssueIndex> builder;
+        private volatile IssueIndex index;
+
+        LazyIssueIndex(Supplier<IssueIndex> builder) {
+            this.builder = builder;
+        }
+
+        IssueIndex get() {
+            IssueIndex result = index;
+            if (result == null) {
+                synchronized (this) {
+                    if (index == null) {
+                        index = builder.get();
+                        builder = null;
+                    }
+                    result = index;
+                }
+            }
+            return result;
+        }
+
+        Optional<IssueIndex> getIfBuilt() {
+            return Optional.ofNullable(index);
+        }
+    }
+
     @SuppressWarnings("unused")
     private void ______BOILERPLATE______() {}
 
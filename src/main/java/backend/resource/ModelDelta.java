@@ -0,0 +1,242 @@
+package backend.resource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * The changes between two models of a repository: the ids of the issues that were added,
+ * changed and removed, and the keys of the labels, milestones and users that were added,
+ * changed or removed.
+ *
+ * Issues are compared by instance, as models share the instances of the issues that did not
+ * change (see {@link TurboIssue#reconcile}). Other resources are compared by equality.
+ */
+public final class ModelDelta {
+
+    private final String repoId;
+    private final long fromVersion;
+    private final long toVersion;
+    private final Set<Integer> addedIssues;
+    private final Set<Integer> changedIssues;
+    private final Set<Integer> removedIssues;
+    private final Set<String> changedLabels;
+    private final Set<Integer> changedMilestones;
+    private final Set<String> changedUsers;
+
+    private ModelDelta(Model from, Model to, Set<Integer> addedIssues, Set<Integer> changedIssues,
+                       Set<Integer> removedIssues, Set<String> changedLabels, Set<Integer> changedMilestones,
+                       Set<String> changedUsers) {
+        this.repoId = to.getRepoId();
+        this.fromVersion = from.getVersion();
+        this.toVersion = to.getVersion();
+        this.addedIssues = Collections.unmodifiableSet(addedIssues);
+        this.changedIssues = Collections.unmodifiableSet(changedIssues);
+        this.removedIssues = Collections.unmodifiableSet(removedIssues);
+        this.changedLabels = Collections.unmodifiableSet(changedLabels);
+        this.changedMilestones = Collections.unmodifiableSet(changedMilestones);
+        this.changedUsers = Collections.unmodifiableSet(changedUsers);
+    }
+
+    /**
+     * Computes the changes that turn {@code from} into {@code to}, two models of the same repository.
+     */
+    public static ModelDelta between(Model from, Model to) {
+        assert from.getRepoId().equalsIgnoreCase(to.getRepoId());
+
+        Set<Integer> addedIssues = new TreeSet<>();
+        Set<Integer> changedIssues = new TreeSet<>();
+        Set<Integer> removedIssues = new TreeSet<>();
+        if (from.getVersion() != to.getVersion()) {
+            for (TurboIssue issue : to.getIssues()) {
+                TurboIssue previous = from.getIssueById(issue.getId()).orElse(null);
+                if (previous == null) {
+                    addedIssues.add(issue.getId());
+                } else if (previous != issue) {
+                    changedIssues.add(issue.getId());
+                }
+            }
+            for (TurboIssue issue : from.getIssues()) {
+                if (!to.getIssueById(issue.getId()).isPresent()) {
+                    removedIssues.add(issue.getId());
+                }
+            }
+        }
+
+        if (from.hasSameResourcesAs(to)) {
+            return new ModelDelta(from, to, addedIssues, changedIssues, removedIssues,
+                    new TreeSet<>(), new TreeSet<>(), new TreeSet<>());
+        }
+        return new ModelDelta(from, to, addedIssues, changedIssues, removedIssues,
+                changedKeys(from.getLabels(), to.getLabels(), TurboLabel::getFullName),
+                changedKeys(from.getMilestones(), to.getMilestones(), TurboMilestone::getId),
+                changedKeys(from.getUsers(), to.getUsers(), TurboUser::getLoginName));
+    }
+
+    /**
+     * Returns the keys of the resources that are only in one of the lists, or that are not equal in both.
+     */
+    private static <T, K extends Comparable<K>> Set<K> changedKeys(List<T> from, List<T> to, Function<T, K> getKey) {
+        Set<K> changed = new TreeSet<>();
+        Map<K, T> previous = new HashMap<>();
+        from.forEach(resource -> previous.putIfAbsent(getKey.apply(resource), resource));
+        for (T resource : to) {
+            T previousResource = previous.remove(getKey.apply(resource));
+            if (!resource.equals(previousResource)) {
+                changed.add(getKey.apply(resource));
+            }
+        }
+        changed.addAll(previous.keySet());
+        return changed;
+    }
+
+    /**
+     * Identifies the changes between two models of a repository by their versions, so that the changes
+     * can be looked up by whoever holds the models without keeping the models themselves.
+     */
+    public static final class Key {
+        private final String repoId;
+        private final long fromVersion;
+        private final long toVersion;
+
+        private Key(String repoId, long fromVersion, long toVersion) {
+            this.repoId = repoId;
+            this.fromVersion = fromVersion;
+            this.toVersion = toVersion;
+        }
+
+        /**
+         * Returns the key of the changes that turn {@code from} into {@code to}.
+         */
+        public static Key between(Model from, Model to) {
+            return new Key(to.getRepoId(), from.getVersion(), to.getVersion());
+        }
+
+        public String getRepoId() {
+            return repoId;
+        }
+
+        public long getToVersion() {
+            return toVersion;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return fromVersion == key.fromVersion && toVersion == key.toVersion && repoId.equals(key.repoId);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = repoId.hashCode();
+            result = 31 * result + (int) (fromVersion ^ (fromVersion >>> 32));
+            result = 31 * result + (int) (toVersion ^ (toVersion >>> 32));
+            return result;
+        }
+    }
+
+    public String getRepoId() {
+        return repoId;
+    }
+
+    public Key getKey() {
+        return new Key(repoId, fromVersion, toVersion);
+    }
+
+    /**
+     * Returns the version of the model the changes were made to.
+     */
+    public long getFromVersion() {
+        return fromVersion;
+    }
+
+    /**
+     * Returns the version of the model the changes result in.
+     */
+    public long getToVersion() {
+        return toVersion;
+    }
+
+    public Set<Integer> getAddedIssues() {
+        return addedIssues;
+    }
+
+    public Set<Integer> getChangedIssues() {
+        return changedIssues;
+    }
+
+    public Set<Integer> getRemovedIssues() {
+        return removedIssues;
+    }
+
+    /**
+     * Returns the ids of all issues that were added, changed or removed.
+     */
+    public List<Integer> getAffectedIssues() {
+        List<Integer> affected = new ArrayList<>(addedIssues);
+        affected.addAll(changedIssues);
+        affected.addAll(removedIssues);
+        return affected;
+    }
+
+    /**
+     * Returns the full names of the labels that were added, changed or removed.
+     */
+    public Set<String> getChangedLabels() {
+        return changedLabels;
+    }
+
+    /**
+     * Returns the ids of the milestones that were added, changed or removed.
+     */
+    public Set<Integer> getChangedMilestones() {
+        return changedMilestones;
+    }
+
+    /**
+     * Returns the logins of the users that were added, changed or removed.
+     */
+    public Set<String> getChangedUsers() {
+        return changedUsers;
+    }
+
+    /**
+     * Returns the number of resources that were added, changed or removed.
+     */
+    public int size() {
+        return addedIssues.size() + changedIssues.size() + removedIssues.size()
+                + changedLabels.size() + changedMilestones.size() + changedUsers.size();
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns true if the changes affect more than {@code fraction} of the issues of {@code model},
+     * or any label, milestone or user, which may affect how every issue is filtered and shown.
+     * Consumers rebuild their state from the whole model after such changes, rather than apply them.
+     */
+    public boolean isLarge(Model model, double fraction) {
+        if (!changedLabels.isEmpty() || !changedMilestones.isEmpty() || !changedUsers.isEmpty()) {
+            return true;
+        }
+        int affected = addedIssues.size() + changedIssues.size() + removedIssues.size();
+        return affected > fraction * model.getIssues().size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d added, %d changed and %d removed issues, "
+                        + "%d changed labels, %d changed milestones, %d changed users",
+                addedIssues.size(), changedIssues.size(), removedIssues.size(),
+                changedLabels.size(), changedMilestones.size(), changedUsers.size());
+    }
+}
@@ -2,13 +2,19 @@ package backend.resource;
 
 import backend.IssueMetadata;
 import backend.interfaces.IModel;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableMap;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import prefs.Preferences;
+import ui.UI;
 import util.Utility;
+import util.events.ModelDeltaEvent;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -17,11 +23,16 @@ import java.util.stream.Collectors;
  * of local repositories data but do not go through the methods in this class i.e. operating on
  * dangling references its sub-components are considered unsafe
  * Thread-safe. The only top-level state in the application.
+ *
+ * The models are held in an immutable snapshot, which writers replace as a whole. Readers take
+ * the current snapshot without locking, and see a consistent state of every repository until
+ * they next read. Writers are serialized by the monitor of this object, and replace models
+ * instead of changing them.
  */
 @SuppressWarnings("unused")
 public class MultiModel implements IModel {
 
-    private final HashMap<String, Model> models;
+    private volatile Snapshot snapshot = new Snapshot(ImmutableMap.of(), 0);
     private final Preferences prefs;
 
     // A pending repository is one that has been requested to load but has
@@ -34,8 +45,38 @@ public class MultiModel implements IModel {
 
     private static final Logger logger = LogManager.getLogger(MultiModel.class.getName());
 
+    /**
+     * The models of all repositories at one point in time. The resources of all repositories
+     * together are only gathered the first time they are read.
+     */
+    private static final class Snapshot {
+        private final ImmutableMap<String, Model> models;
+        private final long version;
+        private final Supplier<List<TurboIssue>> issues;
+        private final Supplier<List<TurboLabel>> labels;
+        private final Supplier<List<TurboMilestone>> milestones;
+        private final Supplier<List<TurboUser>> users;
+
+        private Snapshot(ImmutableMap<String, Model> models, long version) {
+            this.models = models;
+            this.version = version;
+            this.issues = Suppliers.memoize(() -> gather(models.values(), Model::getIssues));
+            this.labels = Suppliers.memoize(() -> gather(models.values(), Model::getLabels));
+            this.milestones = Suppliers.memoize(() -> gather(models.values(), Model::getMilestones));
+            this.users = Suppliers.memoize(() -> gather(models.values(), Model::getUsers));
+        }
+
+        private static <T> List<T> gather(Collection<Model> models, Function<Model, List<T>> getResources) {
+            if (models.size() == 1) {
+                return getResources.apply(models.iterator().next());
+            }
+            List<T> result = new ArrayList<>();
+            models.forEach(m -> result.addAll(getResources.apply(m)));
+            return Collections.unmodifiableList(result);
+        }
+    }
+
     public MultiModel(Preferences prefs) {
-        this.models = new HashMap<>();
         this.pendingRepositories = new HashSet<>();
         this.prefs = prefs;
     }
@@ -47,18 +88,62 @@ public class MultiModel implements IModel {
                 .findFirst();
         assert matchingRepoId.isPresent() : "No pending repository " + repoId + "!";
         pendingRepositories.remove(matchingRepoId.get());
-        add(model);
         preprocessNewIssues(model);
+        add(model);
         return this;
     }
 
     private synchronized MultiModel add(Model model) {
-        this.models.put(model.getRepoId(), model);
+        Map<String, Model> models = new HashMap<>(snapshot.models);
+        models.put(model.getRepoId(), model);
+        publish(models);
         return this;
     }
 
+    /**
+     * Makes {@code models} the state seen by readers. Only called by writers, under the monitor.
+     */
+    private void publish(Map<String, Model> models) {
+        Snapshot current = snapshot;
+        long version = hasSameVersions(current.models, models) ? current.version : current.version + 1;
+        snapshot = new Snapshot(ImmutableMap.copyOf(models), version);
+        publishDeltas(current.models, models);
+    }
+
+    /**
+     * Triggers a {@link ModelDeltaEvent} with the changes made to each repository whose model was replaced
+     * by another version, so that the changes are computed once for everything that keeps up with them.
+     */
+    private static void publishDeltas(Map<String, Model> previousModels, Map<String, Model> models) {
+        if (UI.events == null) {
+            return;
+        }
+        models.forEach((repoId, model) -> {
+            Model previous = previousModels.get(repoId);
+            if (previous != null && previous.getVersion() != model.getVersion()) {
+                UI.events.triggerEvent(new ModelDeltaEvent(ModelDelta.between(previous, model)));
+            }
+        });
+    }
+
+    private static boolean hasSameVersions(Map<String, Model> models, Map<String, Model> otherModels) {
+        if (!models.keySet().equals(otherModels.keySet())) {
+            return false;
+        }
+        return models.entrySet().stream()
+                .allMatch(entry -> entry.getValue().getVersion() == otherModels.get(entry.getKey()).getVersion());
+    }
+
+    /**
+     * Returns the version of the state of all repositories, which changes whenever a repository
+     * is added, removed or changed, and only then. See {@link Model#getVersion()}.
+     */
+    public long getVersion() {
+        return snapshot.version;
+    }
+
     public synchronized MultiModel removeRepoModelById(String repoId) {
-        Optional<String> repoIdCorrectCase = models.keySet().stream()
+        Optional<String> repoIdCorrectCase = snapshot.models.keySet().stream()
                 .filter(key -> key.equalsIgnoreCase(repoId)).findFirst();
         if (!repoIdCorrectCase.isPresent()) {
             logger.error("RepoId specified does not have a model.");
@@ -66,24 +151,27 @@ public class MultiModel implements IModel {
 
         Optional<Model> repoModelToBeDeleted = getModelById(repoIdCorrectCase.get());
         if (repoModelToBeDeleted.isPresent()) {
-            this.models.remove(repoModelToBeDeleted.get().getRepoId());
+            Map<String, Model> models = new HashMap<>(snapshot.models);
+            models.remove(repoModelToBeDeleted.get().getRepoId());
+            publish(models);
         } else {
             logger.error("RepoModel to be deleted does not exist.");
         }
         return this;
     }
 
-    public synchronized Model get(String repoId) {
-        return models.get(repoId);
+    public Model get(String repoId) {
+        return snapshot.models.get(repoId);
     }
 
-    public synchronized List<Model> toModels() {
-        return new ArrayList<>(models.values());
+    public List<Model> toModels() {
+        return new ArrayList<>(snapshot.models.values());
     }
 
     public synchronized MultiModel replace(List<Model> newModels) {
-        this.models.clear();
-        newModels.forEach(this::add);
+        Map<String, Model> models = new HashMap<>();
+        newModels.forEach(model -> models.put(model.getRepoId(), model));
+        publish(models);
         return this;
     }
 
@@ -102,7 +190,7 @@ public class MultiModel implements IModel {
     public synchronized Optional<TurboIssue> replaceIssueLabels(String repoId, int issueId, List<String> labels) {
         Optional<Model> modelLookUpResult = getModelById(repoId);
         return Utility.safeFlatMapOptional(modelLookUpResult,
-                (model) -> model.replaceIssueLabels(issueId, labels),
+                (model) -> replaceIssue(model, model.replaceIssueLabels(issueId, labels)),
                 () -> logger.error("Model " + repoId + " not found in models"));
     }
 
@@ -117,12 +205,31 @@ public class MultiModel implements IModel {
                                                                    Optional<Integer> milestone) {
         Optional<Model> modelLookUpResult = getModelById(repoId);
         return Utility.safeFlatMapOptional(modelLookUpResult,
-                (model) -> model.replaceIssueMilestone(issueId, milestone),
+                (model) -> replaceIssue(model, model.replaceIssueMilestone(issueId, milestone)),
                 () -> logger.error("Model " + repoId + " not found in models"));
     }
 
+    /**
+     * Publishes {@code model} with its issue replaced by {@code modified}, if there is one.
+     * @return a copy of the modified issue
+     */
+    private Optional<TurboIssue> replaceIssue(Model model, Optional<TurboIssue> modified) {
+        if (!modified.isPresent()) {
+            return Optional.empty();
+        }
+        add(model.withIssues(Collections.singletonList(modified.get())));
+        return Optional.of(new TurboIssue(modified.get()));
+    }
+
     public synchronized void insertMetadata(String repoId, Map<Integer, IssueMetadata> metadata, String currentUser) {
-        models.get(repoId).getIssues().forEach(issue -> {
+        Model model = snapshot.models.get(repoId);
+        if (model == null) {
+            logger.error("Model " + repoId + " not found in models");
+            return;
+        }
+
+        List<TurboIssue> withMetadata = new ArrayList<>();
+        model.getIssues().forEach(issue -> {
             if (metadata.containsKey(issue.getId())) {
                 IssueMetadata toBeInserted = metadata.get(issue.getId());
 
@@ -131,10 +238,13 @@ public class MultiModel implements IModel {
                 // TODO move ETag comparison here when comments ETag implementation is complete.
                 LocalDateTime nonSelfUpdatedAt = reconcileCreationDate(toBeInserted.getNonSelfUpdatedAt(),
                         issue.getCreatedAt(), currentUser, issue.getCreator());
-                issue.setMetadata(toBeInserted.reconcile(nonSelfUpdatedAt,
+                TurboIssue updated = new TurboIssue(issue);
+                updated.setMetadata(toBeInserted.reconcile(nonSelfUpdatedAt,
                     issue.getMetadata().getEvents(), issue.getMetadata().getEventsETag()));
+                withMetadata.add(updated);
             }
         });
+        add(model.withIssues(withMetadata));
     }
 
     private static LocalDateTime reconcileCreationDate(LocalDateTime lastNonSelfUpdate,
@@ -177,39 +287,32 @@ public class MultiModel implements IModel {
                 .isPresent();
     }
 
+    /**
+     * Returns the issues of all repositories. The list is shared by all readers, and cannot be modified.
+     */
     @Override
-    public synchronized List<TurboIssue> getIssues() {
-        List<TurboIssue> result = new ArrayList<>();
-        models.values().forEach(m -> result.addAll(m.getIssues()));
-        return result;
+    public List<TurboIssue> getIssues() {
+        return snapshot.issues.get();
     }
 
     @Override
-    public synchronized List<TurboLabel> getLabels() {
-        List<TurboLabel> result = new ArrayList<>();
-        models.values().forEach(m -> result.addAll(m.getLabels()));
-        return result;
+    public List<TurboLabel> getLabels() {
+        return snapshot.labels.get();
     }
 
     @Override
-    public synchronized List<TurboMilestone> getMilestones() {
-        List<TurboMilestone> result = new ArrayList<>();
-        models.values().forEach(m -> result.addAll(m.getMilestones()));
-        return result;
+    public List<TurboMilestone> getMilestones() {
+        return snapshot.milestones.get();
     }
 
     @Override
-    public synchronized List<TurboUser> getUsers() {
-        List<TurboUser> result = new ArrayList<>();
-        models.values().forEach(m -> result.addAll(m.getUsers()));
-        return result;
+    public List<TurboUser> getUsers() {
+        return snapshot.users.get();
     }
 
     @Override
-    public synchronized Optional<Model> getModelById(String repoId) {
-        return models.containsKey(repoId)
-            ? Optional.of(models.get(repoId))
-            : Optional.empty();
+    public Optional<Model> getModelById(String repoId) {
+        return Optional.ofNullable(snapshot.models.get(repoId));
     }
 
     @Override
@@ -256,7 +359,7 @@ public class MultiModel implements IModel {
         return pendingRepositories.stream().anyMatch(pendingRepo -> pendingRepo.equalsIgnoreCase(repoId));
     }
 
-    public void queuePendingRepository(String repoId) {
+    public synchronized void queuePendingRepository(String repoId) {
         pendingRepositories.add(repoId);
     }
 
@@ -281,12 +384,12 @@ public class MultiModel implements IModel {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         MultiModel that = (MultiModel) o;
-        return models.equals(that.models);
+        return snapshot.models.equals(that.snapshot.models);
     }
 
     @Override
     public int hashCode() {
-        return models.hashCode();
+        return snapshot.models.hashCode();
     }
 
 }
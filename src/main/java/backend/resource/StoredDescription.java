@@ -0,0 +1,238 @@
+package backend.resource;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.logging.log4j.Logger;
+import util.HTLog;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * The description of an issue that is kept in a store segment rather than in memory,
+ * and is only read from the segment when it is needed.
+ *
+ * Descriptions that have been read are kept in a cache shared by all issues. The cache is
+ * bounded by the total length of the descriptions in it, dropping the least recently used
+ * ones first, and its entries may also be reclaimed when memory runs low.
+ */
+public final class StoredDescription {
+
+    private static final Logger logger = HTLog.get(StoredDescription.class);
+
+    // About 32MB of characters
+    private static final long MAX_CACHED_CHARS = 16 * 1024 * 1024;
+
+    // The total length of the encoded descriptions read from a segment at once by readEach
+    private static final long MAX_CHUNK_LENGTH = 1024 * 1024;
+
+    private static final Cache<StoredDescription, String> cache = CacheBuilder.newBuilder()
+            .maximumWeight(MAX_CACHED_CHARS)
+            .weigher((StoredDescription description, String text) -> text.length())
+            .softValues()
+            .build();
+
+    /**
+     * A store file holding descriptions.
+     */
+    public interface Segment {
+        /**
+         * Reads a single description.
+         */
+        String read(StoredDescription description) throws IOException;
+
+        /**
+         * Reads several descriptions, given in the order they are kept in the segment.
+         */
+        Map<StoredDescription, String> readAll(List<StoredDescription> descriptions) throws IOException;
+    }
+
+    private final Segment segment;
+    private final long offset;
+    private final int length;
+
+    /**
+     * @param segment the segment the description is kept in
+     * @param offset the position of the description within the segment
+     * @param length the length of the encoded description
+     */
+    public StoredDescription(Segment segment, long offset, int length) {
+        this.segment = segment;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public Segment getSegment() {
+        return segment;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Returns the description, reading it from its segment unless it is cached.
+     * @throws IOException if the description cannot be read
+     */
+    public String read() throws IOException {
+        String text = cache.getIfPresent(this);
+        if (text != null) {
+            return text;
+        }
+        text = segment.read(this);
+        cache.put(this, text);
+        return text;
+    }
+
+    /**
+     * Returns the description to be shown or searched, as {@link #read} does. A description that
+     * cannot be read is shown as empty. It is not cached, so it is read again the next time, and the
+     * store writers, which use {@link #read}, fail rather than write the empty description in its place.
+     */
+    public String get() {
+        try {
+            return read();
+        } catch (IOException e) {
+            logger.error("Unable to read issue description from store", e);
+            return "";
+        }
+    }
+
+    /**
+     * Reads the stored descriptions of {@code issues} that are not cached, in one pass
+     * over each segment in order, so that filters reading the descriptions of many issues
+     * do not read them one at a time. This only fills the cache: the descriptions of a
+     * segment that cannot be read are left out of it, and fail again when read one at a time.
+     */
+    public static void loadAll(Collection<TurboIssue> issues) {
+        Map<Segment, List<StoredDescription>> toLoad = issues.stream()
+                .map(TurboIssue::getStoredDescription)
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .filter(description -> cache.getIfPresent(description) == null)
+                .distinct()
+                .collect(Collectors.groupingBy(StoredDescription::getSegment));
+
+        toLoad.forEach((segment, descriptions) -> {
+            List<StoredDescription> ordered = new ArrayList<>(descriptions);
+            ordered.sort(Comparator.comparingLong(StoredDescription::getOffset));
+            try {
+                cache.putAll(segment.readAll(ordered));
+            } catch (IOException e) {
+                logger.error("Unable to read issue descriptions from store", e);
+            }
+        });
+    }
+
+    /**
+     * Reads the descriptions of {@code issues}, passing each to {@code onRead} with its issue, or passing the
+     * issue to {@code onFailure} if its description cannot be read. Unlike {@link #loadAll}, this does not fill
+     * the cache, so reading the descriptions of all the issues of a repository does not evict those being shown.
+     * Stored descriptions that are not cached are read in the order they are kept in each segment, a bounded
+     * length at a time, so that only a chunk of them is held at once.
+     */
+    public static void readEach(Collection<TurboIssue> issues, BiConsumer<TurboIssue, String> onRead,
+                                Consumer<TurboIssue> onFailure) {
+        Map<Segment, List<Stored>> toRead = new HashMap<>();
+        for (TurboIssue issue : issues) {
+            Optional<StoredDescription> description = issue.getStoredDescription();
+            if (!description.isPresent()) {
+                onRead.accept(issue, issue.getDescription());
+                continue;
+            }
+            String text = cache.getIfPresent(description.get());
+            if (text != null) {
+                onRead.accept(issue, text);
+            } else {
+                toRead.computeIfAbsent(description.get().getSegment(), segment -> new ArrayList<>())
+                        .add(new Stored(issue, description.get()));
+            }
+        }
+
+        toRead.forEach((segment, stored) -> {
+            stored.sort(Comparator.comparingLong(s -> s.description.getOffset()));
+            int start = 0;
+            while (start < stored.size()) {
+                int end = start;
+                long length = 0;
+                while (end < stored.size() && (end == start || length < MAX_CHUNK_LENGTH)) {
+                    length += stored.get(end++).description.getLength();
+                }
+                readChunk(segment, stored.subList(start, end), onRead, onFailure);
+                start = end;
+            }
+        });
+    }
+
+    /**
+     * Reads a chunk of the descriptions of a segment in one pass, or one at a time if that fails,
+     * so that only the descriptions that cannot be read are left out.
+     */
+    private static void readChunk(Segment segment, List<Stored> chunk, BiConsumer<TurboIssue, String> onRead,
+                                  Consumer<TurboIssue> onFailure) {
+        Map<StoredDescription, String> texts;
+        try {
+            texts = segment.readAll(chunk.stream().map(s -> s.description).collect(Collectors.toList()));
+        } catch (IOException e) {
+            logger.error("Unable to read issue descriptions from store", e);
+            for (Stored s : chunk) {
+                try {
+                    onRead.accept(s.issue, segment.read(s.description));
+                } catch (IOException e1) {
+                    onFailure.accept(s.issue);
+                }
+            }
+            return;
+        }
+        chunk.forEach(s -> onRead.accept(s.issue, texts.get(s.description)));
+    }
+
+    /**
+     * An issue with a stored description that is to be read.
+     */
+    private static final class Stored {
+        private final TurboIssue issue;
+        private final StoredDescription description;
+
+        private Stored(TurboIssue issue, StoredDescription description) {
+            this.issue = issue;
+            this.description = description;
+        }
+    }
+
+    /**
+     * Returns the number of characters of descriptions that are cached.
+     */
+    public static long getCachedChars() {
+        return cache.asMap().values().stream().mapToLong(String::length).sum();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        StoredDescription that = (StoredDescription) o;
+        return offset == that.offset && length == that.length && segment.equals(that.segment);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = segment.hashCode();
+        result = 31 * result + (int) (offset ^ (offset >>> 32));
+        result = 31 * result + length;
+        return result;
+    }
+}
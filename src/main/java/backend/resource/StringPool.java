@@ -0,0 +1,137 @@
+package backend.resource;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Canonicalizes the small strings that model resources repeat many times, such as repo ids,
+ * logins and label names, so that every issue refers to one shared copy of each instead of
+ * holding its own.
+ *
+ * There is a pool for each repository. Pools only hold their strings weakly, so a string is
+ * dropped from its pool once no resource uses it any more.
+ *
+ * Each pool also estimates the memory saved, by adding up the size of every duplicate it
+ * replaced with the canonical copy. Over time this counts duplicates that would have been
+ * garbage collected anyway, so it overstates what is saved at any one moment.
+ */
+public final class StringPool {
+
+    // Shallow size of a String, and the header of its character array, on a 64-bit VM with compressed oops
+    private static final int STRING_SIZE = 24;
+    private static final int ARRAY_HEADER_SIZE = 16;
+
+    private static final Map<String, Pool> pools = new ConcurrentHashMap<>();
+
+    private static final class Pool {
+        private final Map<String, WeakReference<String>> strings = new WeakHashMap<>();
+        private long duplicates = 0;
+        private long bytesSaved = 0;
+
+        private synchronized String intern(String string) {
+            WeakReference<String> ref = strings.get(string);
+            String canonical = ref == null ? null : ref.get();
+            if (canonical == null) {
+                strings.put(string, new WeakReference<>(string));
+                return string;
+            }
+            if (canonical != string) {
+                duplicates++;
+                bytesSaved += estimateSize(string);
+            }
+            return canonical;
+        }
+
+        private synchronized Stats getStats() {
+            return new Stats(strings.size(), duplicates, bytesSaved);
+        }
+    }
+
+    /**
+     * The state of the pool of a repository.
+     */
+    public static final class Stats {
+        private final int pooled;
+        private final long duplicates;
+        private final long bytesSaved;
+
+        private Stats(int pooled, long duplicates, long bytesSaved) {
+            this.pooled = pooled;
+            this.duplicates = duplicates;
+            this.bytesSaved = bytesSaved;
+        }
+
+        /**
+         * Returns the number of distinct strings in the pool.
+         */
+        public int getPooled() {
+            return pooled;
+        }
+
+        /**
+         * Returns the number of duplicates that were replaced by a pooled string.
+         */
+        public long getDuplicates() {
+            return duplicates;
+        }
+
+        /**
+         * Returns the estimated total size of the duplicates that were replaced.
+         */
+        public long getBytesSaved() {
+            return bytesSaved;
+        }
+    }
+
+    private StringPool() {
+    }
+
+    /**
+     * Returns the canonical copy of {@code string} in the pool of {@code repoId},
+     * adding {@code string} to the pool if it has none.
+     */
+    public static String intern(String repoId, String string) {
+        if (string == null || string.isEmpty()) {
+            return string;
+        }
+        return getPool(repoId).intern(string);
+    }
+
+    /**
+     * Returns the canonical copy of a repo id.
+     */
+    public static String internRepoId(String repoId) {
+        return intern(repoId, repoId);
+    }
+
+    private static Pool getPool(String repoId) {
+        return pools.computeIfAbsent(repoId == null ? "" : repoId, id -> new Pool());
+    }
+
+    /**
+     * Discards the pool of {@code repoId}, once the repository is no longer used.
+     */
+    public static void remove(String repoId) {
+        pools.remove(repoId);
+    }
+
+    /**
+     * Returns the state of the pool of each repository, by repo id.
+     */
+    public static Map<String, Stats> getStats() {
+        Map<String, Stats> stats = new TreeMap<>();
+        pools.forEach((repoId, pool) -> stats.put(repoId, pool.getStats()));
+        return stats;
+    }
+
+    /**
+     * Estimates the heap taken up by {@code string}, including its character array.
+     */
+    static long estimateSize(String string) {
+        long arraySize = ARRAY_HEADER_SIZE + 2L * string.length();
+        return STRING_SIZE + (arraySize + 7) / 8 * 8;
+    }
+}
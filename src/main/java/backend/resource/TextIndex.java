@@ -0,0 +1,346 @@
+package backend.resource;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Full-text indexes over the titles and descriptions of the issues of a repository, for finding
+ * the issues whose text may contain a string without reading the text of every issue.
+ *
+ * Text is folded to one case a character at a time, as {@link String#regionMatches} compares it
+ * when case is ignored. Each trigram of the folded text, and each token (a run of letters and digits), has
+ * postings: the ids of the issues whose text has it. The issues that may contain a string of three
+ * characters or more are those with all of its trigrams. Shorter strings are looked up among the tokens.
+ *
+ * An index is shared by a model and the models built to replace it (see {@link Model#getTextIndex()}), and
+ * is brought up to date with a model when that model is searched. Each model records the ids of the issues
+ * that changed since the model it replaces, so only those are indexed again; when they are not known, or a
+ * model other than the newest is searched, the versions of all the issues are compared instead. Only the
+ * versions of the indexed issues are kept, not the models, so that replaced models and their issues can be
+ * collected. Postings are never removed, so an index holds at least the ids of the issues whose text has a
+ * trigram or token, and possibly ids of issues that no longer do. The issues found must therefore be tested
+ * against the string. An index is rebuilt once too many of its postings may be stale.
+ *
+ * Descriptions are only indexed when they are first searched, as they may have to be read from the store.
+ * The issues whose descriptions cannot be read are always found, as the index cannot tell whether they
+ * contain the string, and they are read again the next time the index is brought up to date.
+ */
+public final class TextIndex {
+
+    /**
+     * The fraction of the issues of a repository that may be indexed again before the index is rebuilt.
+     */
+    private static final double REBUILD_FRACTION = 0.5;
+
+    private final Field titles = new Field(false);
+    private final Field descriptions = new Field(true);
+
+    TextIndex() {
+    }
+
+    /**
+     * Records that the model with version {@code version} replaces the one with version
+     * {@code previousVersion}, changing the issues with {@code changedIds}, or unknown issues if null.
+     */
+    synchronized void recordChanges(long previousVersion, long version, Collection<Integer> changedIds) {
+        titles.recordChanges(previousVersion, version, changedIds);
+        descriptions.recordChanges(previousVersion, version, changedIds);
+    }
+
+    /**
+     * Determines if either field has been indexed, so that changes to it are worth recording.
+     */
+    synchronized boolean isBuilt() {
+        return titles.issueVersions != null || descriptions.issueVersions != null;
+    }
+
+    /**
+     * The ids of the issues that have a trigram or token.
+     */
+    private static final class Postings {
+        private int[] ids = new int[2];
+        private int size = 0;
+
+        private void add(int id) {
+            if (size > 0 && ids[size - 1] == id) {
+                return;
+            }
+            if (size == ids.length) {
+                int[] grown = new int[size * 2];
+                System.arraycopy(ids, 0, grown, 0, size);
+                ids = grown;
+            }
+            ids[size++] = id;
+        }
+
+        private void addTo(BitSet set) {
+            for (int i = 0; i < size; i++) {
+                set.set(ids[i]);
+            }
+        }
+    }
+
+    /**
+     * The index of the text of one field of the issues.
+     */
+    private static final class Field {
+        private final boolean isDescription;
+        private final Map<Long, Postings> trigrams = new HashMap<>();
+        private final Map<String, Postings> tokens = new HashMap<>();
+
+        // The version of the model the index was last brought up to date with and the versions of the issues
+        // indexed by id, or null before the index is built, and how many issues were indexed since it was built
+        private long version = 0;
+        private Map<Integer, Long> issueVersions = null;
+        private int reindexed = 0;
+
+        // The version of the newest model recorded and the ids of the issues changed since the model the index
+        // was last brought up to date with, unless they are not known
+        private long latestVersion = 0;
+        private final Set<Integer> changedIds = new HashSet<>();
+        private boolean changesUnknown = false;
+
+        // The ids of the issues whose text could not be read
+        private final BitSet unreadable = new BitSet();
+
+        private Field(boolean isDescription) {
+            this.isDescription = isDescription;
+        }
+
+        private void recordChanges(long previousVersion, long newVersion, Collection<Integer> ids) {
+            if (issueVersions == null || newVersion == previousVersion || newVersion == latestVersion) {
+                return;
+            }
+            if (previousVersion != latestVersion || ids == null) {
+                changesUnknown = true;
+            } else {
+                changedIds.addAll(ids);
+            }
+            latestVersion = Math.max(latestVersion, newVersion);
+        }
+
+        private void update(Model newModel) {
+            if (issueVersions == null) {
+                rebuild(newModel);
+                return;
+            }
+            if (version == newModel.getVersion()) {
+                return;
+            }
+
+            // Issues that were added or changed have no version or another version (see TurboIssue#getVersion),
+            // as do issues whose text could not be read
+            boolean isLatest = newModel.getVersion() == latestVersion && !changesUnknown;
+            List<TurboIssue> toIndex = new ArrayList<>();
+            if (isLatest) {
+                BitSet candidateIds = (BitSet) unreadable.clone();
+                changedIds.stream().filter(id -> id > 0).forEach(candidateIds::set);
+                for (int id = candidateIds.nextSetBit(1); id >= 0; id = candidateIds.nextSetBit(id + 1)) {
+                    Optional<TurboIssue> issue = newModel.getIssueById(id);
+                    if (!issue.isPresent()) {
+                        issueVersions.remove(id);
+                        unreadable.clear(id);
+                    } else if (isChanged(issue.get())) {
+                        toIndex.add(issue.get());
+                    }
+                }
+            } else {
+                for (TurboIssue issue : newModel.getIssues()) {
+                    if (isChanged(issue)) {
+                        toIndex.add(issue);
+                    }
+                }
+            }
+
+            // Issues read again because they could not be read before do not make postings stale
+            int changed = (int) toIndex.stream()
+                    .filter(issue -> issue.getId() <= 0 || !unreadable.get(issue.getId()))
+                    .count();
+            if (reindexed + changed > REBUILD_FRACTION * newModel.getIssues().size()) {
+                rebuild(newModel);
+                return;
+            }
+            index(toIndex);
+            reindexed += changed;
+            brought(newModel);
+        }
+
+        private boolean isChanged(TurboIssue issue) {
+            Long indexedVersion = issueVersions.get(issue.getId());
+            return indexedVersion == null || indexedVersion != issue.getVersion();
+        }
+
+        private void rebuild(Model newModel) {
+            trigrams.clear();
+            tokens.clear();
+            unreadable.clear();
+            issueVersions = new HashMap<>();
+            index(newModel.getIssues());
+            reindexed = 0;
+            latestVersion = Math.max(latestVersion, newModel.getVersion());
+            brought(newModel);
+        }
+
+        /**
+         * Records that the index was brought up to date with {@code newModel}. Changes are recorded relative
+         * to the newest model, so once an older model is indexed, the changes since it are not known.
+         */
+        private void brought(Model newModel) {
+            version = newModel.getVersion();
+            changedIds.clear();
+            changesUnknown = version != latestVersion;
+        }
+
+        private void index(List<TurboIssue> issues) {
+            if (isDescription) {
+                StoredDescription.readEach(issues, this::index, this::markUnreadable);
+            } else {
+                issues.forEach(issue -> index(issue, issue.getTitle()));
+            }
+        }
+
+        private void index(TurboIssue issue, String text) {
+            int id = issue.getId();
+            if (id < 0) {
+                return;
+            }
+            issueVersions.put(id, issue.getVersion());
+            unreadable.clear(id);
+            if (text == null) {
+                return;
+            }
+            text = fold(text);
+            for (int i = 0; i + 3 <= text.length(); i++) {
+                trigrams.computeIfAbsent(getTrigram(text, i), k -> new Postings()).add(id);
+            }
+            for (String token : tokenize(text)) {
+                tokens.computeIfAbsent(token, k -> new Postings()).add(id);
+            }
+        }
+
+        /**
+         * Records that the text of {@code issue} could not be read, so that it is found by every search
+         * and read again when the index is next brought up to date.
+         */
+        private void markUnreadable(TurboIssue issue) {
+            int id = issue.getId();
+            if (id < 0) {
+                return;
+            }
+            issueVersions.remove(id);
+            unreadable.set(id);
+        }
+
+        private BitSet find(String text) {
+            BitSet ids;
+            if (text.length() >= 3) {
+                ids = findTrigrams(text);
+            } else if (text.isEmpty() || !isToken(text)) {
+                return null;
+            } else {
+                BitSet found = new BitSet();
+                tokens.forEach((token, postings) -> {
+                    if (token.contains(text)) {
+                        postings.addTo(found);
+                    }
+                });
+                ids = found;
+            }
+            ids.or(unreadable);
+            return ids;
+        }
+
+        /**
+         * Intersects the postings of the trigrams of {@code text}, smallest first.
+         */
+        private BitSet findTrigrams(String text) {
+            List<Postings> all = new ArrayList<>();
+            Set<Long> seen = new HashSet<>();
+            for (int i = 0; i + 3 <= text.length(); i++) {
+                long trigram = getTrigram(text, i);
+                if (!seen.add(trigram)) {
+                    continue;
+                }
+                Postings postings = trigrams.get(trigram);
+                if (postings == null) {
+                    return new BitSet();
+                }
+                all.add(postings);
+            }
+            all.sort(Comparator.comparingInt(postings -> postings.size));
+
+            BitSet ids = new BitSet();
+            all.get(0).addTo(ids);
+            for (int i = 1; i < all.size() && !ids.isEmpty(); i++) {
+                BitSet other = new BitSet();
+                all.get(i).addTo(other);
+                ids.and(other);
+            }
+            return ids;
+        }
+    }
+
+    /**
+     * Returns the ids of the issues of {@code model} whose titles may contain {@code text}, ignoring case,
+     * or null if the index cannot tell, in which case every issue may.
+     */
+    public static BitSet findInTitles(Model model, String text) {
+        return model.getTextIndex().find(model, false, text);
+    }
+
+    /**
+     * Returns the ids of the issues of {@code model} whose descriptions may contain {@code text},
+     * ignoring case, or null if the index cannot tell, in which case every issue may.
+     */
+    public static BitSet findInDescriptions(Model model, String text) {
+        return model.getTextIndex().find(model, true, text);
+    }
+
+    private synchronized BitSet find(Model model, boolean isDescription, String text) {
+        Field field = isDescription ? descriptions : titles;
+        field.update(model);
+        return field.find(fold(text));
+    }
+
+    /**
+     * Folds each character of {@code text} to the case that it is compared in when case is ignored.
+     */
+    private static String fold(String text) {
+        char[] folded = new char[text.length()];
+        for (int i = 0; i < folded.length; i++) {
+            folded[i] = Character.toLowerCase(Character.toUpperCase(text.charAt(i)));
+        }
+        return new String(folded);
+    }
+
+    private static long getTrigram(String text, int start) {
+        return ((long) text.charAt(start) << 32) | ((long) text.charAt(start + 1) << 16) | text.charAt(start + 2);
+    }
+
+    private static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean isTokenChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (isTokenChar && start < 0) {
+                start = i;
+            } else if (!isTokenChar && start >= 0) {
+                tokens.add(text.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isToken(String text) {
+        return text.chars().allMatch(Character::isLetterOrDigit);
+    }
+}
@@ -4,15 +4,17 @@ import backend.IssueMetadata;
 import backend.resource.serialization.SerializableIssue;
 import org.apache.logging.log4j.Logger;
 import org.eclipse.egit.github.core.Issue;
-import org.eclipse.egit.github.core.Label;
 import org.eclipse.egit.github.core.PullRequest;
 import prefs.Preferences;
 import util.HTLog;
 import util.Utility;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -53,6 +55,9 @@ public class TurboIssue {
     private List<String> labels;
     private Optional<Integer> milestone;
 
+    // Set in place of the description when the description is only read from the store when needed
+    private StoredDescription storedDescription;
+
     /**
      * Metadata associated with issues that is not serialized.
      */
@@ -68,6 +73,9 @@ public class TurboIssue {
     private Optional<LocalDateTime> labelsLastModifiedAt = Optional.empty();
     private Optional<LocalDateTime> milestoneLastModifiedAt = Optional.empty();
 
+    // The version of the first model this instance was part of, which is when the issue last changed
+    private long version = 0;
+
     @SuppressWarnings("unused")
     private void ______CONSTRUCTORS______() {}
 
@@ -83,7 +91,7 @@ public class TurboIssue {
         mutableFieldDefaults();
 
         this.title = title;
-        this.repoId = repoId;
+        this.repoId = StringPool.internRepoId(repoId);
     }
 
     /**
@@ -92,14 +100,14 @@ public class TurboIssue {
     public TurboIssue(String repoId, int id, String title,
                       String creator, LocalDateTime createdAt, boolean isPullRequest) {
         this.id = id;
-        this.creator = creator;
+        this.creator = StringPool.intern(repoId, creator);
         this.createdAt = createdAt;
         this.isPullRequest = isPullRequest;
 
         mutableFieldDefaults();
 
         this.title = title;
-        this.repoId = repoId;
+        this.repoId = StringPool.internRepoId(repoId);
     }
 
     // Copy constructor
@@ -111,6 +119,7 @@ public class TurboIssue {
         this.isPullRequest = issue.isPullRequest;
 
         this.description = issue.description;
+        this.storedDescription = issue.storedDescription;
         this.updatedAt = replaceNull(issue.updatedAt, this.createdAt);
         this.commentCount = issue.commentCount;
         this.isOpen = issue.isOpen;
@@ -122,6 +131,7 @@ public class TurboIssue {
         this.repoId = issue.repoId;
         this.markedReadAt = issue.markedReadAt;
         this.labelsLastModifiedAt = Optional.of(issue.getLabelsLastModifiedAt());
+        this.milestoneLastModifiedAt = issue.milestoneLastModifiedAt;
     }
 
     public TurboIssue(String repoId, Issue issue) {
@@ -129,7 +139,7 @@ public class TurboIssue {
         this.title = issue.getTitle() == null
             ? ""
             : issue.getTitle();
-        this.creator = issue.getUser().getLogin();
+        this.creator = StringPool.intern(repoId, issue.getUser().getLogin());
         this.createdAt = Utility.dateToLocalDateTime(issue.getCreatedAt());
         this.isPullRequest = isPullRequest(issue);
 
@@ -142,22 +152,47 @@ public class TurboIssue {
         this.isOpen = issue.getState().equals(STATE_OPEN);
         this.assignee = issue.getAssignee() == null
             ? Optional.empty()
-            : Optional.of(issue.getAssignee().getLogin());
+            : Optional.of(StringPool.intern(repoId, issue.getAssignee().getLogin()));
         this.labels = issue.getLabels().stream()
-            .map(Label::getName)
+            .map(label -> StringPool.intern(repoId, label.getName()))
             .collect(Collectors.toList());
         this.milestone = issue.getMilestone() == null
             ? Optional.empty()
             : Optional.of(issue.getMilestone().getNumber());
 
         this.metadata = IssueMetadata.empty();
-        this.repoId = repoId;
+        this.repoId = StringPool.internRepoId(repoId);
+        this.markedReadAt = Optional.empty();
+    }
+
+    /**
+     * Constructor taking every serialized field, for use when deserializing.
+     */
+    public TurboIssue(String repoId, int id, String title, String creator, LocalDateTime createdAt,
+                      boolean isPullRequest, String description, LocalDateTime updatedAt, int commentCount,
+                      boolean isOpen, Optional<String> assignee, List<String> labels, Optional<Integer> milestone) {
+        this.id = id;
+        this.creator = StringPool.intern(repoId, creator);
+        this.createdAt = createdAt;
+        this.isPullRequest = isPullRequest;
+
+        this.title = title;
+        this.description = description;
+        this.updatedAt = replaceNull(updatedAt, this.createdAt);
+        this.commentCount = commentCount;
+        this.isOpen = isOpen;
+        this.assignee = internAssignee(repoId, assignee);
+        this.labels = internLabels(repoId, labels);
+        this.milestone = milestone;
+
+        this.metadata = IssueMetadata.empty();
+        this.repoId = StringPool.internRepoId(repoId);
         this.markedReadAt = Optional.empty();
     }
 
     public TurboIssue(String repoId, SerializableIssue issue) {
         this.id = issue.getId();
-        this.creator = issue.getCreator();
+        this.creator = StringPool.intern(repoId, issue.getCreator());
         this.createdAt = issue.getCreatedAt();
         this.isPullRequest = issue.isPullRequest();
 
@@ -166,18 +201,28 @@ public class TurboIssue {
         this.updatedAt = replaceNull(issue.getUpdatedAt(), this.createdAt);
         this.commentCount = issue.getCommentCount();
         this.isOpen = issue.isOpen();
-        this.assignee = issue.getAssignee();
-        this.labels = issue.getLabels();
+        this.assignee = internAssignee(repoId, issue.getAssignee());
+        this.labels = internLabels(repoId, issue.getLabels());
         this.milestone = issue.getMilestone();
 
         this.metadata = IssueMetadata.empty();
-        this.repoId = repoId;
+        this.repoId = StringPool.internRepoId(repoId);
         this.markedReadAt = Optional.empty();
     }
 
     @SuppressWarnings("unused")
     private void ______CONSTRUCTOR_HELPER_FUNCTIONS______() {}
 
+    private static Optional<String> internAssignee(String repoId, Optional<String> assignee) {
+        return assignee.map(login -> StringPool.intern(repoId, login));
+    }
+
+    private static List<String> internLabels(String repoId, List<String> labels) {
+        return labels.stream()
+            .map(label -> StringPool.intern(repoId, label))
+            .collect(Collectors.toCollection(ArrayList::new));
+    }
+
     private static boolean isPullRequest(Issue issue) {
         return issue.getPullRequest() != null && issue.getPullRequest().getUrl() != null;
     }
@@ -247,20 +292,23 @@ public class TurboIssue {
     /**
      * Takes lists of TurboIssues and reconciles the changes between them,
      * returning a list of TurboIssues with updates from the second.
+     * Issues that are not changed are the same instances as in the first list.
      * @param existing
      * @param changed
      */
     public static List<TurboIssue> reconcile(List<TurboIssue> existing, List<TurboIssue> changed) {
         List<TurboIssue> existingCopy = new ArrayList<>(existing);
+        Map<Integer, Integer> indexById = indexById(existingCopy);
         for (TurboIssue issue : changed) {
             int id = issue.getId();
+            TurboIssue newIssue = new TurboIssue(issue);
 
-            Optional<Integer> correspondingIssueIndex = findIssueWithId(existingCopy, id);
-            if (!correspondingIssueIndex.isPresent()) {
-                existingCopy.add(new TurboIssue(issue));
+            Integer correspondingIssueIndex = indexById.get(id);
+            if (correspondingIssueIndex == null) {
+                indexById.put(id, existingCopy.size());
+                existingCopy.add(newIssue);
             } else {
-                TurboIssue existingIssue = existingCopy.get(correspondingIssueIndex.get());
-                TurboIssue newIssue = new TurboIssue(issue);
+                TurboIssue existingIssue = existingCopy.get(correspondingIssueIndex);
 
                 // newIssue is constructed from an external Issue object.
                 // It won't have the transient state that its TurboIssue
@@ -268,7 +316,7 @@ public class TurboIssue {
                 newIssue.transferTransientState(existingIssue);
                 newIssue.reconcile(existingIssue);
 
-                existingCopy.set(correspondingIssueIndex.get(), newIssue);
+                existingCopy.set(correspondingIssueIndex, newIssue);
             }
         }
         return existingCopy;
@@ -276,7 +324,8 @@ public class TurboIssue {
 
     /**
      * Updates data for issues with corresponding pull requests. Original list of
-     * issues and original issue instances are not mutated
+     * issues and original issue instances are not mutated, and issues that the
+     * pull requests do not change are the same instances as in the original list.
      * @param issues
      * @param pullRequests
      * @return a new list of issues
@@ -284,14 +333,17 @@ public class TurboIssue {
     public static List<TurboIssue> combineWithPullRequests(List<TurboIssue> issues,
                                                            List<PullRequest> pullRequests) {
         List<TurboIssue> issuesCopy = new ArrayList<>(issues);
+        Map<Integer, Integer> indexById = indexById(issuesCopy);
 
         for (PullRequest pullRequest : pullRequests) {
             int id = pullRequest.getNumber();
 
-            Optional<Integer> corresponding = findIssueWithId(issuesCopy, id);
-            if (corresponding.isPresent()) {
-                TurboIssue issue = issuesCopy.get(corresponding.get());
-                issuesCopy.set(corresponding.get(), issue.combineWithPullRequest(pullRequest));
+            Integer corresponding = indexById.get(id);
+            if (corresponding != null) {
+                TurboIssue issue = issuesCopy.get(corresponding);
+                if (issue.isOutdatedBy(pullRequest)) {
+                    issuesCopy.set(corresponding, issue.combineWithPullRequest(pullRequest));
+                }
             } else {
                 String errorMsg = "No corresponding issue for pull request " + pullRequest;
                 logger.error(errorMsg);
@@ -301,6 +353,27 @@ public class TurboIssue {
         return issuesCopy;
     }
 
+    /**
+     * Maps the id of each issue to its index in {@code issues}, or to the first
+     * index if several issues have the same id, as {@link #findIssueWithId} would.
+     */
+    private static Map<Integer, Integer> indexById(List<TurboIssue> issues) {
+        Map<Integer, Integer> indexById = new HashMap<>(issues.size() * 2);
+        for (int i = 0; i < issues.size(); i++) {
+            indexById.putIfAbsent(issues.get(i).getId(), i);
+        }
+        return indexById;
+    }
+
+    /**
+     * Returns true if {@code pullRequest} was updated after this issue,
+     * so that {@link #combineWithPullRequest} would change it.
+     */
+    private boolean isOutdatedBy(PullRequest pullRequest) {
+        return pullRequest.getUpdatedAt() != null
+                && Utility.dateToLocalDateTime(pullRequest.getUpdatedAt()).isAfter(getUpdatedAt());
+    }
+
     /**
      * Combines data from a corresponding pull request with data in this issue
      * This method returns a new combined issue and does not mutate this issue
@@ -369,12 +442,40 @@ public class TurboIssue {
         this.title = title;
     }
 
+    /**
+     * Returns the description to be shown or searched. A stored description that cannot be read
+     * is taken to be empty (see {@link StoredDescription#get}).
+     */
     public String getDescription() {
-        return description;
+        return storedDescription == null ? description : storedDescription.get();
+    }
+
+    /**
+     * Returns the description to be written to the store.
+     * @throws IOException if the description is stored and cannot be read
+     */
+    public String readDescription() throws IOException {
+        return storedDescription == null ? description : storedDescription.read();
     }
 
     public void setDescription(String description) {
         this.description = description;
+        this.storedDescription = null;
+    }
+
+    /**
+     * Returns where the description is stored, if it has not been read into memory.
+     */
+    public Optional<StoredDescription> getStoredDescription() {
+        return Optional.ofNullable(storedDescription);
+    }
+
+    /**
+     * Replaces the description with one that is only read from the store when needed.
+     */
+    public void setStoredDescription(StoredDescription storedDescription) {
+        this.description = null;
+        this.storedDescription = storedDescription;
     }
 
     public LocalDateTime getUpdatedAt() {
@@ -406,7 +507,7 @@ public class TurboIssue {
     }
 
     public void setAssignee(String assignee) {
-        this.assignee = Optional.of(assignee);
+        this.assignee = Optional.of(StringPool.intern(repoId, assignee));
     }
 
     public void setAssignee(TurboUser assignee) {
@@ -418,7 +519,7 @@ public class TurboIssue {
     }
 
     public void setLabels(List<String> labels) {
-        this.labels = labels;
+        this.labels = internLabels(repoId, labels);
         this.labelsLastModifiedAt = Optional.of(LocalDateTime.now());
     }
 
@@ -431,7 +532,7 @@ public class TurboIssue {
     }
 
     public void addLabel(String label) {
-        this.labels.add(label);
+        this.labels.add(StringPool.intern(repoId, label));
         this.labelsLastModifiedAt = Optional.of(LocalDateTime.now());
     }
 
@@ -458,6 +559,23 @@ public class TurboIssue {
         this.milestone = Optional.empty();
     }
 
+    /**
+     * Returns the version of the model in which this issue last changed,
+     * or 0 if the issue is not part of a model yet. See {@link Model#getVersion()}.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Records that this issue is part of the model with the given version, unless it already was part of one.
+     */
+    void stampVersion(long modelVersion) {
+        if (this.version == 0) {
+            this.version = modelVersion;
+        }
+    }
+
     public IssueMetadata getMetadata() {
         return metadata;
     }
@@ -508,12 +626,24 @@ public class TurboIssue {
                 !(assignee != null ? !assignee.equals(issue.assignee) : issue.assignee != null) &&
                 !(createdAt != null ? !createdAt.equals(issue.createdAt) : issue.createdAt != null) &&
                 !(creator != null ? !creator.equals(issue.creator) : issue.creator != null) &&
-                !(description != null ? !description.equals(issue.description) : issue.description != null) &&
                 !(labels != null ? !labels.equals(issue.labels) : issue.labels != null) &&
                 !(milestone != null ? !milestone.equals(issue.milestone) : issue.milestone != null) &&
                 !(title != null ? !title.equals(issue.title) : issue.title != null) &&
                 !(updatedAt != null ? !updatedAt.equals(issue.updatedAt) : issue.updatedAt != null) &&
-                !(markedReadAt != null ? !markedReadAt.equals(issue.markedReadAt) : issue.markedReadAt != null);
+                !(markedReadAt != null ? !markedReadAt.equals(issue.markedReadAt) : issue.markedReadAt != null) &&
+                descriptionEquals(issue);
+    }
+
+    /**
+     * Compares descriptions last, and without reading them if both are stored in the same place.
+     */
+    private boolean descriptionEquals(TurboIssue issue) {
+        if (storedDescription != null && storedDescription.equals(issue.storedDescription)) {
+            return true;
+        }
+        String description = getDescription();
+        String otherDescription = issue.getDescription();
+        return description != null ? description.equals(otherDescription) : otherDescription == null;
     }
 
     @Override
@@ -523,7 +653,7 @@ public class TurboIssue {
         result = 31 * result + (createdAt != null ? createdAt.hashCode() : 0);
         result = 31 * result + (isPullRequest ? 1 : 0);
         result = 31 * result + (title != null ? title.hashCode() : 0);
-        result = 31 * result + (description != null ? description.hashCode() : 0);
+        // The description is left out so that stored descriptions need not be read
         result = 31 * result + (updatedAt != null ? updatedAt.hashCode() : 0);
         result = 31 * result + (markedReadAt != null ? markedReadAt.hashCode() : 0);
         result = 31 * result + commentCount;
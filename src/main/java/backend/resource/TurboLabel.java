@@ -36,15 +36,15 @@ public class TurboLabel implements Comparable<TurboLabel> {
 
 
     public TurboLabel(String repoId, String colour, String name) {
-        this.fullName = name;
+        this.fullName = StringPool.intern(repoId, name);
 
         String[] splitted = splitKeyword(name);
-        this.groupName = splitted[0];
+        this.groupName = StringPool.intern(repoId, splitted[0]);
         this.grouping = determineGrouping(splitted[1]);
-        this.shortName = splitted[2];
+        this.shortName = StringPool.intern(repoId, splitted[2]);
 
-        this.colour = colour;
-        this.repoId = repoId;
+        this.colour = StringPool.intern(repoId, colour);
+        this.repoId = StringPool.internRepoId(repoId);
     }
 
     public TurboLabel(String repoId, String name) {
@@ -30,10 +30,10 @@ public class TurboUser {
      * Default constructor.
      */
     public TurboUser(String repoId, String loginName) {
-        this.loginName = replaceNull(loginName, "");
+        this.loginName = StringPool.intern(repoId, replaceNull(loginName, ""));
         this.realName = "";
         this.avatarURL = "";
-        this.repoId = replaceNull(repoId, "");
+        this.repoId = StringPool.internRepoId(replaceNull(repoId, ""));
     }
 
     /**
@@ -48,27 +48,35 @@ public class TurboUser {
     }
 
     public TurboUser(String repoId, String loginName, String realName) {
-        this.loginName = replaceNull(loginName, "");
-        this.realName = replaceNull(realName, "");
+        this.loginName = StringPool.intern(repoId, replaceNull(loginName, ""));
+        this.realName = StringPool.intern(repoId, replaceNull(realName, ""));
         this.avatarURL = "";
         this.avatar = getAvatarImageFromAvatarUrl();
-        this.repoId = replaceNull(repoId, "");
+        this.repoId = StringPool.internRepoId(replaceNull(repoId, ""));
+    }
+
+    public TurboUser(String repoId, String loginName, String realName, String avatarURL) {
+        this.loginName = StringPool.intern(repoId, replaceNull(loginName, ""));
+        this.realName = StringPool.intern(repoId, replaceNull(realName, ""));
+        this.avatarURL = StringPool.intern(repoId, replaceNull(avatarURL, ""));
+        this.avatar = getAvatarImageFromAvatarUrl();
+        this.repoId = StringPool.internRepoId(replaceNull(repoId, ""));
     }
 
     public TurboUser(String repoId, User user) {
-        this.loginName = replaceNull(user.getLogin(), "");
-        this.realName = replaceNull(user.getName(), "");
-        this.avatarURL = replaceNull(user.getAvatarUrl(), "");
+        this.loginName = StringPool.intern(repoId, replaceNull(user.getLogin(), ""));
+        this.realName = StringPool.intern(repoId, replaceNull(user.getName(), ""));
+        this.avatarURL = StringPool.intern(repoId, replaceNull(user.getAvatarUrl(), ""));
         this.avatar = getAvatarImageFromAvatarUrl();
-        this.repoId = replaceNull(repoId, "");
+        this.repoId = StringPool.internRepoId(replaceNull(repoId, ""));
     }
 
     public TurboUser(String repoId, SerializableUser user) {
-        this.loginName = replaceNull(user.getLoginName(), "");
-        this.realName = replaceNull(user.getRealName(), "");
-        this.avatarURL = replaceNull(user.getAvatarURL(), "");
+        this.loginName = StringPool.intern(repoId, replaceNull(user.getLoginName(), ""));
+        this.realName = StringPool.intern(repoId, replaceNull(user.getRealName(), ""));
+        this.avatarURL = StringPool.intern(repoId, replaceNull(user.getAvatarURL(), ""));
         this.avatar = getAvatarImageFromAvatarUrl();
-        this.repoId = replaceNull(repoId, "");
+        this.repoId = StringPool.internRepoId(replaceNull(repoId, ""));
     }
 
     private void ______METHODS______() {
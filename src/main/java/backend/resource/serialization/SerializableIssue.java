@@ -2,6 +2,7 @@ package backend.resource.serialization;
 
 import backend.resource.TurboIssue;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
@@ -26,13 +27,16 @@ public class SerializableIssue {
     private List<String> labels = new ArrayList<>();
     private Optional<Integer> milestone = Optional.empty();
 
-    public SerializableIssue(TurboIssue issue) {
+    /**
+     * @throws IOException if the description of {@code issue} is stored and cannot be read
+     */
+    public SerializableIssue(TurboIssue issue) throws IOException {
         this.id = issue.getId();
         this.title = issue.getTitle();
         this.creator = issue.getCreator();
         this.createdAt = issue.getCreatedAt();
         this.isPullRequest = issue.isPullRequest();
-        this.description = issue.getDescription();
+        this.description = issue.readDescription();
         this.updatedAt = issue.getUpdatedAt();
         this.commentCount = issue.getCommentCount();
         this.isOpen = issue.isOpen();
@@ -0,0 +1,39 @@
+package backend.resource.serialization;
+
+import backend.IssueMetadata;
+import github.TurboIssueEvent;
+import org.eclipse.egit.github.core.Comment;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The downloaded part of an issue's metadata, as kept in the store between runs.
+ * Properties computed from it depend on the current user, so they are computed again
+ * when it is loaded.
+ *
+ * Warnings are suppressed to prevent complaints about fields not being final.
+ * They are this way to give them default values.
+ */
+@SuppressWarnings("PMD")
+public class SerializableIssueMetadata {
+    private List<TurboIssueEvent> events = new ArrayList<>();
+    private List<Comment> comments = new ArrayList<>();
+    private String eventsETag = "";
+    private String commentsETag = "";
+    private LocalDateTime issueUpdatedAt = LocalDateTime.ofEpochSecond(0, 0, ZoneOffset.ofHours(0));
+
+    public SerializableIssueMetadata(IssueMetadata metadata) {
+        this.events = metadata.getEvents();
+        this.comments = metadata.getComments();
+        this.eventsETag = metadata.getEventsETag();
+        this.commentsETag = metadata.getCommentsETag();
+        this.issueUpdatedAt = metadata.getIssueUpdatedAt();
+    }
+
+    public IssueMetadata toIssueMetadata() {
+        return IssueMetadata.intermediate(events, comments, eventsETag, commentsETag, issueUpdatedAt);
+    }
+}
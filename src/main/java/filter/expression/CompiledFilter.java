@@ -0,0 +1,442 @@
+package filter.expression;
+
+import backend.interfaces.IModel;
+import backend.resource.Model;
+import backend.resource.TurboIssue;
+import backend.resource.TurboLabel;
+import backend.resource.TurboMilestone;
+import backend.resource.TurboUser;
+import filter.MetaQualifierInfo;
+import filter.SemanticException;
+import util.Utility;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A filter expression prepared to be tested against many issues, such as all the issues
+ * that a panel is filtered from in one refresh.
+ *
+ * Compiling does the work that does not depend on the issue once: meta-qualifiers and the
+ * default repository are resolved, contents are lowercased, and ranges are fixed. The labels,
+ * milestones and users that qualifiers refer to are resolved once for each repository, when
+ * the first issue of the repository is tested. Testing an issue then does not allocate.
+ *
+ * A compiled filter keeps what it resolved, so it is compiled again whenever the model changes.
+ * It may be tested from several threads at once.
+ */
+public final class CompiledFilter implements Predicate<TurboIssue> {
+
+    private final FilterExpression expression;
+    private final Predicate<TurboIssue> predicate;
+
+    private CompiledFilter(FilterExpression expression, Predicate<TurboIssue> predicate) {
+        this.expression = expression;
+        this.predicate = predicate;
+    }
+
+    /**
+     * Compiles {@code expr}, taking care of meta-qualifiers as {@link Qualifier#process} does.
+     */
+    public static CompiledFilter compile(IModel model, FilterExpression expr) {
+        return new CompiledFilter(expr, withoutMetaQualifiers(model, expr).compile(model, getMetaQualifierInfo(expr)));
+    }
+
+    /**
+     * Returns the expression that issues are tested against for {@code expr}: the qualifiers of {@code expr}
+     * other than the meta-qualifiers that only affect how other qualifiers are interpreted, restricted to
+     * the default repository if no repository is given.
+     */
+    static FilterExpression withoutMetaQualifiers(IModel model, FilterExpression expr) {
+        FilterExpression exprWithNormalQualifiers = expr.filter(Qualifier::shouldNotBeStripped);
+
+        boolean containsRepoQualifier = !expr.find(q -> q.getType() == QualifierType.REPO).isEmpty();
+        if (!containsRepoQualifier) {
+            exprWithNormalQualifiers = new Conjunction(
+                new Qualifier(QualifierType.REPO, model.getDefaultRepo()),
+                exprWithNormalQualifiers);
+        }
+        return exprWithNormalQualifiers;
+    }
+
+    static MetaQualifierInfo getMetaQualifierInfo(FilterExpression expr) {
+        return new MetaQualifierInfo(expr.find(Qualifier::isMetaQualifier));
+    }
+
+    /**
+     * Determines if an issue satisfies the filter expression.
+     */
+    @Override
+    public boolean test(TurboIssue issue) {
+        return predicate.test(issue);
+    }
+
+    public FilterExpression getExpression() {
+        return expression;
+    }
+
+    /**
+     * Compiles a single qualifier. This defines what each qualifier means, which
+     * {@link Qualifier#isSatisfiedBy} also relies on. Qualifiers with invalid contents compile to
+     * predicates that throw a SemanticException when tested, so that as before an error is only
+     * reported for filters that some issue is tested against.
+     */
+    static Predicate<TurboIssue> compile(Qualifier qualifier, IModel model, MetaQualifierInfo info) {
+        QualifierType type = qualifier.getType();
+        assert type != null;
+
+        // The empty qualifier is satisfied by anything
+        if (qualifier.isEmpty()) return issue -> true;
+
+        // The false qualifier is satisfied by nothing
+        if (qualifier.isFalse()) return issue -> false;
+
+        Optional<String> content = qualifier.getContent();
+        switch (type) {
+        case ID:
+            return compileId(qualifier);
+        case KEYWORD:
+            return compileKeyword(qualifier, info);
+        case TITLE:
+            return compileTitle(content);
+        case DESCRIPTION:
+            return compileDescription(content);
+        case MILESTONE:
+            return compileMilestone(model, content);
+        case LABEL:
+            return compileLabel(model, content);
+        case AUTHOR:
+            return compileAuthor(model, content);
+        case ASSIGNEE:
+            return compileAssignee(model, content);
+        case INVOLVES:
+            return compileAuthor(model, content).or(compileAssignee(model, content));
+        case TYPE:
+            return compileType(type, content);
+        case STATE:
+            return compileState(type, content);
+        case HAS:
+            return compileHas(type, content);
+        case NO:
+            return content.isPresent() ? compileHas(type, content).negate() : issue -> false;
+        case IS:
+            return compileIs(type, content);
+        case CREATED:
+            return compileCreated(qualifier);
+        case UPDATED:
+            return compileUpdated(qualifier);
+        case REPO:
+            return compileRepo(type, content);
+        default:
+            assert false : "Missing case for " + type;
+            return issue -> false;
+        }
+    }
+
+    private static Predicate<TurboIssue> invalid(QualifierType type) {
+        return issue -> {
+            throw new SemanticException(type);
+        };
+    }
+
+    private static Predicate<TurboIssue> compileId(Qualifier qualifier) {
+        if (qualifier.getNumber().isPresent()) {
+            int number = qualifier.getNumber().get();
+            return issue -> issue.getId() == number;
+        } else if (qualifier.getNumberRange().isPresent()) {
+            NumberRange range = qualifier.getNumberRange().get();
+            return issue -> range.encloses(issue.getId());
+        }
+        return invalid(qualifier.getType());
+    }
+
+    private static Predicate<TurboIssue> compileKeyword(Qualifier qualifier, MetaQualifierInfo info) {
+        Optional<String> content = qualifier.getContent();
+        if (info.getIn().isPresent()) {
+            switch (Qualifier.expandKeywordAliases(info.getIn().get())) {
+            case "title":
+                return compileTitle(content);
+            case "description":
+                return compileDescription(content);
+            default:
+                return invalid(QualifierType.IN);
+            }
+        }
+        return compileTitle(content).or(compileDescription(content));
+    }
+
+    private static Predicate<TurboIssue> compileTitle(Optional<String> content) {
+        if (!content.isPresent()) return issue -> false;
+        String text = content.get().toLowerCase();
+        return issue -> containsIgnoreCase(issue.getTitle(), text);
+    }
+
+    private static Predicate<TurboIssue> compileDescription(Optional<String> content) {
+        if (!content.isPresent()) return issue -> false;
+        String text = content.get().toLowerCase();
+        return issue -> containsIgnoreCase(issue.getDescription(), text);
+    }
+
+    private static Predicate<TurboIssue> compileMilestone(IModel model, Optional<String> content) {
+        if (!content.isPresent()) return issue -> false;
+        String title = content.get().toLowerCase();
+
+        PerRepo<BitSet> matching = new PerRepo<>(model, repoModel -> repoModel
+                .map(m -> getMatchingMilestones(m, title))
+                .orElseGet(BitSet::new));
+
+        return issue -> {
+            if (!issue.getMilestone().isPresent()) return false;
+            int id = issue.getMilestone().get();
+            return id >= 0 && matching.get(issue.getRepoId()).get(id);
+        };
+    }
+
+    private static Predicate<TurboIssue> compileLabel(IModel model, Optional<String> content) {
+        if (!content.isPresent()) return issue -> false;
+        String input = content.get();
+
+        PerRepo<Set<String>> matching = new PerRepo<>(model, repoModel -> repoModel
+                .map(m -> getMatchingLabels(m, input))
+                .orElseGet(HashSet::new));
+
+        return issue -> {
+            Set<String> names = matching.get(issue.getRepoId());
+            List<String> labels = issue.getLabels();
+            for (int i = 0; i < labels.size(); i++) {
+                if (names.contains(labels.get(i))) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
+    private static Predicate<TurboIssue> compileAuthor(IModel model, Optional<String> content) {
+        if (!content.isPresent()) return issue -> false;
+        String userName = content.get();
+        String text = userName.toLowerCase();
+        PerRepo<Boolean> isUserInRepo = userInRepo(model, userName);
+
+        return issue -> {
+            enforceUserInRepo(isUserInRepo, issue.getRepoId(), userName);
+            return containsIgnoreCase(issue.getCreator(), text);
+        };
+    }
+
+    private static Predicate<TurboIssue> compileAssignee(IModel model, Optional<String> content) {
+        if (!content.isPresent()) return issue -> false;
+        String userName = content.get();
+        String text = userName.toLowerCase();
+        PerRepo<Boolean> isUserInRepo = userInRepo(model, userName);
+
+        PerRepo<Map<String, Boolean>> matching = new PerRepo<>(model, repoModel -> repoModel
+                .map(m -> getMatchingUsers(m, text))
+                .orElseGet(HashMap::new));
+
+        return issue -> {
+            if (!issue.getAssignee().isPresent()) return false;
+            Boolean matches = matching.get(issue.getRepoId()).get(issue.getAssignee().get());
+            if (matches == null) return false;
+            enforceUserInRepo(isUserInRepo, issue.getRepoId(), userName);
+            return matches;
+        };
+    }
+
+    /**
+     * Returns the ids of the milestones of {@code model} whose titles contain {@code lowerCaseTitle}.
+     * Of milestones with the same id, only the one that issues' milestone ids are looked up as can match.
+     */
+    static BitSet getMatchingMilestones(Model model, String lowerCaseTitle) {
+        BitSet ids = new BitSet();
+        for (TurboMilestone milestone : model.getMilestones()) {
+            boolean isLookedUp = milestone.getId() >= 1
+                    && model.getMilestoneById(milestone.getId()).orElse(null) == milestone;
+            if (isLookedUp && milestone.getTitle().toLowerCase().contains(lowerCaseTitle)) {
+                ids.set(milestone.getId());
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Returns the full names of the labels of {@code model} that a label qualifier with {@code input} matches.
+     */
+    static Set<String> getMatchingLabels(Model model, String input) {
+        Set<String> names = new HashSet<>();
+        for (TurboLabel label : model.getLabels()) {
+            if (Qualifier.labelMatches(input, label.getFullName())) {
+                names.add(label.getFullName());
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Returns whether the login or name of each user of {@code model} contains {@code lowerCaseText},
+     * by login. Of users with the same login, only the one that logins are looked up as is included.
+     */
+    static Map<String, Boolean> getMatchingUsers(Model model, String lowerCaseText) {
+        Map<String, Boolean> users = new HashMap<>();
+        for (TurboUser user : model.getUsers()) {
+            boolean isLookedUp = user.getLoginName() != null && !user.getLoginName().isEmpty()
+                    && model.getUserByLogin(user.getLoginName()).orElse(null) == user;
+            if (isLookedUp) {
+                String login = user.getLoginName().toLowerCase();
+                String name = user.getRealName() == null ? "" : user.getRealName().toLowerCase();
+                users.put(user.getLoginName(), login.contains(lowerCaseText) || name.contains(lowerCaseText));
+            }
+        }
+        return users;
+    }
+
+    private static PerRepo<Boolean> userInRepo(IModel model, String userName) {
+        return new PerRepo<>(repoId -> model.isUserInRepo(repoId, userName));
+    }
+
+    private static void enforceUserInRepo(PerRepo<Boolean> isUserInRepo, String repoId, String userName) {
+        if (!isUserInRepo.get(repoId)) {
+            throw new SemanticException(String.format(Qualifier.USER_WARNING_ERROR_FORMAT, userName, repoId));
+        }
+    }
+
+    private static Predicate<TurboIssue> compileType(QualifierType type, Optional<String> content) {
+        if (!content.isPresent()) return invalid(type);
+        switch (Qualifier.expandKeywordAliases(content.get().toLowerCase())) {
+        case "issue":
+            return issue -> !issue.isPullRequest();
+        case "pr":
+            return TurboIssue::isPullRequest;
+        default:
+            return invalid(type);
+        }
+    }
+
+    private static Predicate<TurboIssue> compileState(QualifierType type, Optional<String> content) {
+        if (!content.isPresent()) return invalid(type);
+        String state = Qualifier.expandKeywordAliases(content.get().toLowerCase());
+        if (state.contains("open")) {
+            return TurboIssue::isOpen;
+        } else if (state.contains("closed")) {
+            return issue -> !issue.isOpen();
+        }
+        return invalid(type);
+    }
+
+    private static Predicate<TurboIssue> compileHas(QualifierType type, Optional<String> content) {
+        if (!content.isPresent()) return invalid(type);
+        switch (Qualifier.expandKeywordAliases(content.get())) {
+        case "label":
+            return issue -> issue.getLabels().size() > 0;
+        case "milestone":
+            return issue -> issue.getMilestone().isPresent();
+        case "assignee":
+            return issue -> issue.getAssignee().isPresent();
+        default:
+            return invalid(type);
+        }
+    }
+
+    private static Predicate<TurboIssue> compileIs(QualifierType type, Optional<String> content) {
+        if (!content.isPresent()) return invalid(type);
+        switch (Qualifier.expandKeywordAliases(content.get())) {
+        case "open":
+        case "closed":
+            return compileState(type, content);
+        case "pr":
+        case "issue":
+            return compileType(type, content);
+        case "merged":
+            return issue -> issue.isPullRequest() && !issue.isOpen();
+        case "unmerged":
+            return issue -> issue.isPullRequest() && issue.isOpen();
+        case "read":
+            return TurboIssue::isCurrentlyRead;
+        case "unread":
+            return issue -> !issue.isCurrentlyRead();
+        default:
+            return invalid(type);
+        }
+    }
+
+    private static Predicate<TurboIssue> compileCreated(Qualifier qualifier) {
+        if (qualifier.getDate().isPresent()) {
+            LocalDate date = qualifier.getDate().get();
+            return issue -> issue.getCreatedAt().toLocalDate().isEqual(date);
+        } else if (qualifier.getDateRange().isPresent()) {
+            DateRange range = qualifier.getDateRange().get();
+            return issue -> range.encloses(issue.getCreatedAt().toLocalDate());
+        }
+        return invalid(qualifier.getType());
+    }
+
+    private static Predicate<TurboIssue> compileUpdated(Qualifier qualifier) {
+        NumberRange updatedRange;
+        if (qualifier.getNumberRange().isPresent()) {
+            updatedRange = qualifier.getNumberRange().get();
+        } else if (qualifier.getNumber().isPresent()) {
+            updatedRange = new NumberRange(null, qualifier.getNumber().get(), true);
+        } else {
+            return invalid(qualifier.getType());
+        }
+
+        // Hours are counted up to the time of compilation, for every issue
+        LocalDateTime now = Qualifier.getCurrentTime();
+        return issue -> {
+            int hoursSinceUpdate = Utility.safeLongToInt(issue.getUpdatedAt().until(now, ChronoUnit.HOURS));
+            return updatedRange.encloses(hoursSinceUpdate);
+        };
+    }
+
+    private static Predicate<TurboIssue> compileRepo(QualifierType type, Optional<String> content) {
+        if (!content.isPresent()) return invalid(type);
+        String repoId = content.get();
+        return issue -> issue.getRepoId().equalsIgnoreCase(repoId);
+    }
+
+    /**
+     * Returns true if {@code text} contains {@code lowerCaseText}, ignoring case, without
+     * lowercasing {@code text}.
+     */
+    static boolean containsIgnoreCase(String text, String lowerCaseText) {
+        int last = text.length() - lowerCaseText.length();
+        for (int i = 0; i <= last; i++) {
+            if (text.regionMatches(true, i, lowerCaseText, 0, lowerCaseText.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A value resolved once for each repository, when it is first needed.
+     */
+    private static final class PerRepo<T> {
+        private final Map<String, T> values = new ConcurrentHashMap<>();
+        private final Function<String, T> resolve;
+
+        private PerRepo(Function<String, T> resolve) {
+            this.resolve = resolve;
+        }
+
+        private PerRepo(IModel model, Function<Optional<Model>, T> resolve) {
+            this(repoId -> resolve.apply(model.getModelById(repoId)));
+        }
+
+        private T get(String repoId) {
+            T value = values.get(repoId);
+            return value == null ? values.computeIfAbsent(repoId, resolve) : value;
+        }
+    }
+}
@@ -55,6 +55,13 @@ public class Conjunction implements FilterExpression {
         return left.isSatisfiedBy(model, issue, info) && right.isSatisfiedBy(model, issue, info);
     }
 
+    @Override
+    public Predicate<TurboIssue> compile(IModel model, MetaQualifierInfo info) {
+        Predicate<TurboIssue> left = this.left.compile(model, info);
+        Predicate<TurboIssue> right = this.right.compile(model, info);
+        return issue -> left.test(issue) && right.test(issue);
+    }
+
     private boolean containsDuplicateQualifierTypes() {
         List<QualifierType> nonLabelQualifierTypes = getQualifierTypes().stream()
             .filter(pn -> !pn.equals(QualifierType.LABEL))
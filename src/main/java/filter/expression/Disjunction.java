@@ -20,6 +20,14 @@ public class Disjunction implements FilterExpression {
         this.right = right;
     }
 
+    FilterExpression getLeft() {
+        return left;
+    }
+
+    FilterExpression getRight() {
+        return right;
+    }
+
     /**
      * This method is used to serialise qualifiers. Thus whatever form returned
      * should be syntactically valid.
@@ -52,6 +60,13 @@ public class Disjunction implements FilterExpression {
         return left.isSatisfiedBy(model, issue, info) || right.isSatisfiedBy(model, issue, info);
     }
 
+    @Override
+    public Predicate<TurboIssue> compile(IModel model, MetaQualifierInfo info) {
+        Predicate<TurboIssue> left = this.left.compile(model, info);
+        Predicate<TurboIssue> right = this.right.compile(model, info);
+        return issue -> left.test(issue) || right.test(issue);
+    }
+
     @Override
     public boolean canBeAppliedToIssue() {
         return false;
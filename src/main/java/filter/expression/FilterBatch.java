@@ -0,0 +1,316 @@
+package filter.expression;
+
+import backend.interfaces.IModel;
+import backend.resource.Model;
+import backend.resource.StoredDescription;
+import backend.resource.TurboIssue;
+import filter.FilterException;
+import filter.MetaQualifierInfo;
+import util.Utility;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+/**
+ * The filter expressions of several panels, planned to be evaluated together in one pass over the
+ * issues of each repository, such as in a refresh of a board.
+ *
+ * Each expression is planned as by {@link FilterPlan}, and the parts of the expressions that panels have
+ * in common, such as the default repository or {@code is:open}, are evaluated once for all of them: their
+ * index sets are resolved once for each repository, and they are tested once for each issue. Each issue
+ * that some panel may show is then visited once and tested against the filters of those panels.
+ *
+ * The issues of a repository are tested in parallel if there are many of them (see {@link #apply}), in chunks
+ * that each have their own copy of the filters. The issues that satisfy each filter are the same, and in the
+ * same order, as when they are tested one at a time.
+ *
+ * A batch keeps which issue its common parts were last tested against, so it may only be applied from
+ * one thread at a time.
+ */
+public final class FilterBatch {
+
+    /**
+     * Part of an expression that several panels have in common, which remembers whether the last issue
+     * tested satisfied it.
+     */
+    private static final class SharedPredicate implements Predicate<TurboIssue> {
+        private final Predicate<TurboIssue> predicate;
+        private TurboIssue lastIssue;
+        private boolean lastResult;
+
+        private SharedPredicate(Predicate<TurboIssue> predicate) {
+            this.predicate = predicate;
+        }
+
+        @Override
+        public boolean test(TurboIssue issue) {
+            if (issue != lastIssue) {
+                lastResult = predicate.test(issue);
+                lastIssue = issue;
+            }
+            return lastResult;
+        }
+    }
+
+    /**
+     * The issues of one chunk that satisfy each filter, and the first failure of each filter in the chunk.
+     */
+    private static final class ChunkResult {
+        private final List<List<TurboIssue>> results = new ArrayList<>();
+        private final FilterException[] failures;
+
+        private ChunkResult(FilterException[] failures) {
+            this.failures = failures;
+        }
+    }
+
+    private final IModel model;
+    private final List<FilterExpression> exprs;
+    private final List<FilterPlan> plans = new ArrayList<>();
+    private final List<FilterExpression> normalExprs = new ArrayList<>();
+    private final List<MetaQualifierInfo> infos = new ArrayList<>();
+    private final Map<List<Object>, Integer> panelCounts = new HashMap<>();
+    private List<Predicate<TurboIssue>> filters;
+
+    private FilterBatch(IModel model, List<FilterExpression> exprs) {
+        this.model = model;
+        this.exprs = exprs;
+    }
+
+    /**
+     * Plans how to find the issues that satisfy each of {@code exprs}, taking care of meta-qualifiers
+     * as {@link Qualifier#process} does.
+     */
+    public static FilterBatch plan(IModel model, List<FilterExpression> exprs) {
+        FilterBatch batch = new FilterBatch(model, new ArrayList<>(new LinkedHashSet<>(exprs)));
+
+        for (FilterExpression expr : batch.exprs) {
+            FilterPlan plan = FilterPlan.plan(model, expr);
+            batch.plans.add(plan);
+            batch.normalExprs.add(plan.getExpression());
+            batch.infos.add(plan.getMetaQualifierInfo());
+        }
+
+        // Parts are only shared if they appear in the expressions of several panels
+        for (int i = 0; i < batch.normalExprs.size(); i++) {
+            Set<List<Object>> parts = new HashSet<>();
+            addParts(batch.normalExprs.get(i), batch.infos.get(i), parts);
+            parts.forEach(part -> batch.panelCounts.merge(part, 1, Integer::sum));
+        }
+
+        batch.filters = batch.compileFilters();
+        return batch;
+    }
+
+    /**
+     * Compiles the filter of each expression, sharing the predicates of common parts among them.
+     */
+    private List<Predicate<TurboIssue>> compileFilters() {
+        List<Predicate<TurboIssue>> compiledFilters = new ArrayList<>();
+        Map<List<Object>, Predicate<TurboIssue>> compiled = new HashMap<>();
+        for (int i = 0; i < normalExprs.size(); i++) {
+            compiledFilters.add(compile(model, normalExprs.get(i), infos.get(i), panelCounts, compiled));
+        }
+        return compiledFilters;
+    }
+
+    /**
+     * Returns what identifies part of an expression: the part itself, and the meta-qualifiers that
+     * change how it is interpreted.
+     */
+    private static List<Object> getKey(FilterExpression expr, MetaQualifierInfo info) {
+        return Arrays.asList(expr, info.getIn());
+    }
+
+    private static void addParts(FilterExpression expr, MetaQualifierInfo info, Set<List<Object>> parts) {
+        parts.add(getKey(expr, info));
+        if (expr instanceof Conjunction) {
+            addParts(((Conjunction) expr).left, info, parts);
+            addParts(((Conjunction) expr).right, info, parts);
+        } else if (expr instanceof Disjunction) {
+            addParts(((Disjunction) expr).getLeft(), info, parts);
+            addParts(((Disjunction) expr).getRight(), info, parts);
+        } else if (expr instanceof Negation) {
+            addParts(((Negation) expr).getExpr(), info, parts);
+        }
+    }
+
+    /**
+     * Compiles {@code expr} as {@link FilterExpression#compile} does, sharing the predicates of the parts
+     * that appear in several panels.
+     */
+    private static Predicate<TurboIssue> compile(IModel model, FilterExpression expr, MetaQualifierInfo info,
+                                                 Map<List<Object>, Integer> panelCounts,
+                                                 Map<List<Object>, Predicate<TurboIssue>> compiled) {
+        List<Object> key = getKey(expr, info);
+        Predicate<TurboIssue> predicate = compiled.get(key);
+        if (predicate != null) {
+            return predicate;
+        }
+
+        if (expr instanceof Conjunction) {
+            predicate = compile(model, ((Conjunction) expr).left, info, panelCounts, compiled)
+                    .and(compile(model, ((Conjunction) expr).right, info, panelCounts, compiled));
+        } else if (expr instanceof Disjunction) {
+            predicate = compile(model, ((Disjunction) expr).getLeft(), info, panelCounts, compiled)
+                    .or(compile(model, ((Disjunction) expr).getRight(), info, panelCounts, compiled));
+        } else if (expr instanceof Negation) {
+            predicate = compile(model, ((Negation) expr).getExpr(), info, panelCounts, compiled).negate();
+        } else {
+            predicate = expr.compile(model, info);
+        }
+
+        if (panelCounts.getOrDefault(key, 0) > 1) {
+            predicate = new SharedPredicate(predicate);
+        }
+        compiled.put(key, predicate);
+        return predicate;
+    }
+
+    /**
+     * Tests {@code issue} against the filters that it is a candidate of and that have not failed, adding it to
+     * the results of those it satisfies, and recording the failures of those that fail.
+     */
+    private static void testIssue(TurboIssue issue, List<Predicate<TurboIssue>> filters, BitSet[] candidates,
+                                  List<List<TurboIssue>> results, FilterException[] failures) {
+        int id = issue.getId();
+        for (int i = 0; i < candidates.length; i++) {
+            if (failures[i] != null || candidates[i] != null && !candidates[i].get(id)) {
+                continue;
+            }
+            try {
+                if (filters.get(i).test(issue)) {
+                    results.get(i).add(issue);
+                }
+            } catch (FilterException e) {
+                failures[i] = e;
+            }
+        }
+    }
+
+    /**
+     * Tests {@code issues} against the filters, in parallel chunks, as testing them one at a time would.
+     */
+    private void testInParallel(List<TurboIssue> issues, BitSet[] candidates, List<List<TurboIssue>> results,
+                                FilterException[] failures) {
+        List<ChunkResult> chunkResults = Utility.mapChunksInParallel(issues, chunk -> {
+            ChunkResult chunkResult = new ChunkResult(failures.clone());
+            for (int i = 0; i < candidates.length; i++) {
+                chunkResult.results.add(new ArrayList<>());
+            }
+            List<Predicate<TurboIssue>> chunkFilters = compileFilters();
+            for (TurboIssue issue : chunk) {
+                testIssue(issue, chunkFilters, candidates, chunkResult.results, chunkResult.failures);
+            }
+            return chunkResult;
+        });
+
+        // A filter fails with the failure of the first chunk it fails in, as it would on the first issue it fails on
+        for (ChunkResult chunkResult : chunkResults) {
+            for (int i = 0; i < candidates.length; i++) {
+                if (failures[i] != null) {
+                    continue;
+                }
+                if (chunkResult.failures[i] != null) {
+                    failures[i] = chunkResult.failures[i];
+                } else {
+                    results.get(i).addAll(chunkResult.results.get(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the descriptions that are only kept in the store of the issues that filters on descriptions
+     * will test, in bulk rather than one issue at a time.
+     */
+    private void loadDescriptions(Model repoModel, List<TurboIssue> issues, BitSet[] candidates,
+                                  FilterException[] failures) {
+        BitSet ids = new BitSet();
+        for (int i = 0; i < candidates.length; i++) {
+            if (failures[i] != null || !Qualifier.hasDescriptionQualifier(exprs.get(i))) {
+                continue;
+            }
+            if (candidates[i] == null) {
+                StoredDescription.loadAll(issues);
+                return;
+            }
+            ids.or(candidates[i]);
+        }
+        if (!ids.isEmpty()) {
+            StoredDescription.loadAll(repoModel.getIssuesByIds(ids));
+        }
+    }
+
+    /**
+     * Returns the issues of {@code models} that satisfy each filter expression, in order of repository.
+     * The expressions whose filters fail are passed to {@code onError} and left out of the result.
+     */
+    public Map<FilterExpression, List<TurboIssue>> apply(List<Model> models,
+                                                         BiConsumer<FilterExpression, FilterException> onError) {
+        return apply(models, Integer.MAX_VALUE, onError);
+    }
+
+    /**
+     * Returns the issues of {@code models} that satisfy each filter expression, as {@link #apply(List, BiConsumer)}
+     * does. The issues of a repository are tested in parallel if there are at least {@code parallelThreshold}
+     * of them that may satisfy some filter.
+     */
+    public Map<FilterExpression, List<TurboIssue>> apply(List<Model> models, int parallelThreshold,
+                                                         BiConsumer<FilterExpression, FilterException> onError) {
+        int count = exprs.size();
+        List<List<TurboIssue>> results = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            results.add(new ArrayList<>());
+        }
+        FilterException[] failures = new FilterException[count];
+
+        for (Model repoModel : models) {
+            Map<FilterExpression, FilterPlan.Candidates> resolved = new HashMap<>();
+            BitSet[] candidates = new BitSet[count];
+            BitSet union = new BitSet();
+            boolean isEveryIssue = false;
+            for (int i = 0; i < count; i++) {
+                candidates[i] = failures[i] != null ? new BitSet() : plans.get(i).getCandidateIds(repoModel, resolved);
+                if (candidates[i] == null) {
+                    isEveryIssue = true;
+                } else {
+                    union.or(candidates[i]);
+                }
+            }
+            if (!isEveryIssue && union.isEmpty()) {
+                continue;
+            }
+
+            List<TurboIssue> issues = isEveryIssue ? repoModel.getIssues() : repoModel.getIssuesByIds(union);
+            loadDescriptions(repoModel, issues, candidates, failures);
+            if (issues.size() >= parallelThreshold) {
+                testInParallel(issues, candidates, results, failures);
+            } else {
+                for (TurboIssue issue : issues) {
+                    testIssue(issue, filters, candidates, results, failures);
+                }
+            }
+        }
+
+        Map<FilterExpression, List<TurboIssue>> result = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            if (failures[i] == null) {
+                result.put(exprs.get(i), results.get(i));
+            } else {
+                onError.accept(exprs.get(i), failures[i]);
+            }
+        }
+        return result;
+    }
+}
@@ -16,6 +16,11 @@ public interface FilterExpression {
 
     boolean isSatisfiedBy(IModel model, TurboIssue issue, MetaQualifierInfo info);
 
+    // Compiles this filter expression into a predicate equivalent to isSatisfiedBy, which
+    // does the work that does not depend on the issue once. See CompiledFilter.
+
+    Predicate<TurboIssue> compile(IModel model, MetaQualifierInfo info);
+
     // Filter expressions may only be applied if they contain no ambiguity
     // => they must contain only qualifiers or conjunctions thereof. Disjunctions
     // and negations can't be interpreted in order to be applied.
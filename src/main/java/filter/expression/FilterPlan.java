@@ -0,0 +1,508 @@
+package filter.expression;
+
+import backend.interfaces.IModel;
+import backend.resource.IssueIndex;
+import backend.resource.Model;
+import backend.resource.TextIndex;
+import backend.resource.TurboIssue;
+import filter.MetaQualifierInfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * A plan for finding the issues that satisfy a filter expression without testing every issue.
+ *
+ * Qualifiers that the inverted indexes of a model can answer (label, milestone, assignee, author,
+ * involves, id, state, type, and most conditions of is, has and no) are resolved as sets of issue ids
+ * and combined with set operations. Keyword, title and description qualifiers are resolved as the issues
+ * that the {@link TextIndex} of the repository finds, which may contain the text. The sets of a conjunction
+ * are intersected smallest first, stopping once nothing is left. The compiled filter is then only tested
+ * against the issues that remain, which takes care of the qualifiers the indexes cannot answer, such as
+ * updated, and of the issues that only may satisfy a qualifier.
+ *
+ * Before any of that, the repositories that the expression can match are determined from its repo
+ * qualifiers, or the default repository if it has none, and the issues of other repositories are skipped.
+ *
+ * Each set holds at least the issues that satisfy its part of the expression, so a plan finds the same
+ * issues as testing every issue does. Expressions that would report an error, such as those with invalid
+ * qualifiers or users who are not in a repository, are tested against every issue as before, so that the
+ * error is still reported.
+ */
+public final class FilterPlan {
+
+    /**
+     * The issues that may satisfy part of an expression, or every issue if ids is null. The issues are
+     * exactly those that satisfy it if exact is true.
+     */
+    static final class Candidates {
+        private static final Candidates ALL = new Candidates(null, true);
+        private static final Candidates UNKNOWN = new Candidates(null, false);
+
+        private final BitSet ids;
+        private final boolean exact;
+
+        private Candidates(BitSet ids, boolean exact) {
+            this.ids = ids;
+            this.exact = exact;
+        }
+
+        private static Candidates of(BitSet ids) {
+            return new Candidates(ids, true);
+        }
+    }
+
+    private final IModel model;
+    private final FilterExpression expr;
+    private final MetaQualifierInfo info;
+    private final boolean isValid;
+    private final List<String> userNames;
+    private final Optional<Set<String>> repoIds;
+
+    private FilterPlan(IModel model, FilterExpression expr, MetaQualifierInfo info, boolean isValid,
+                       List<String> userNames) {
+        this.model = model;
+        this.expr = expr;
+        this.info = info;
+        this.isValid = isValid;
+        this.userNames = userNames;
+        this.repoIds = isValid ? getRepoIds(expr) : Optional.empty();
+    }
+
+    /**
+     * Plans how to find the issues that satisfy {@code expr}, taking care of meta-qualifiers as
+     * {@link Qualifier#process} does. The filter is only compiled when the plan is applied.
+     */
+    public static FilterPlan plan(IModel model, FilterExpression expr) {
+        MetaQualifierInfo info = CompiledFilter.getMetaQualifierInfo(expr);
+        FilterExpression normalExpr = CompiledFilter.withoutMetaQualifiers(model, expr);
+
+        List<Qualifier> qualifiers = normalExpr.find(q -> true);
+        boolean isValid = qualifiers.stream().allMatch(q -> isValid(q, info));
+        List<String> userNames = new ArrayList<>();
+        for (Qualifier qualifier : qualifiers) {
+            if (isUserQualifier(qualifier) && qualifier.getContent().isPresent()) {
+                userNames.add(qualifier.getContent().get());
+            }
+        }
+        return new FilterPlan(model, normalExpr, info, isValid, userNames);
+    }
+
+    /**
+     * Returns the expression that issues are tested against, without meta-qualifiers.
+     */
+    FilterExpression getExpression() {
+        return expr;
+    }
+
+    /**
+     * Returns the meta-qualifiers of the expression that was planned.
+     */
+    MetaQualifierInfo getMetaQualifierInfo() {
+        return info;
+    }
+
+    /**
+     * Returns the issues of {@code models} that satisfy the filter expression, in order of
+     * repository, then of id where indexes are used.
+     */
+    public List<TurboIssue> apply(List<Model> models) {
+        Predicate<TurboIssue> filter = expr.compile(model, info);
+        List<TurboIssue> result = new ArrayList<>();
+        for (Model repoModel : models) {
+            for (TurboIssue issue : getCandidates(repoModel)) {
+                if (filter.test(issue)) {
+                    result.add(issue);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the issues of {@code repoModel} that the filter is tested against.
+     */
+    public List<TurboIssue> getCandidates(Model repoModel) {
+        BitSet ids = getCandidateIds(repoModel, new HashMap<>());
+        return ids == null ? repoModel.getIssues() : repoModel.getIssuesByIds(ids);
+    }
+
+    /**
+     * Returns the ids of the issues of {@code repoModel} that the filter is tested against, or null
+     * for every issue. Parts of the expression already in {@code resolved}, which holds what other plans
+     * resolved over the same model, are not resolved again. The ids returned must not be modified.
+     */
+    BitSet getCandidateIds(Model repoModel, Map<FilterExpression, Candidates> resolved) {
+        if (!canMatch(repoModel.getRepoId())) {
+            return new BitSet();
+        }
+        if (!canUseIndexes(repoModel)) {
+            return null;
+        }
+        return resolve(expr, repoModel, repoModel.getIssueIndex(), resolved).ids;
+    }
+
+    /**
+     * Determines if issues of the repository {@code repoId} may satisfy the filter expression.
+     */
+    public boolean canMatch(String repoId) {
+        return !repoIds.isPresent() || repoIds.get().contains(repoId.toLowerCase());
+    }
+
+    /**
+     * Returns the lowercased ids of the repositories whose issues may satisfy {@code expr},
+     * or nothing if issues of any repository may.
+     */
+    private static Optional<Set<String>> getRepoIds(FilterExpression expr) {
+        if (expr instanceof Conjunction) {
+            Optional<Set<String>> left = getRepoIds(((Conjunction) expr).left);
+            Optional<Set<String>> right = getRepoIds(((Conjunction) expr).right);
+            if (!left.isPresent() || !right.isPresent()) {
+                return left.isPresent() ? left : right;
+            }
+            Set<String> repoIds = new HashSet<>(left.get());
+            repoIds.retainAll(right.get());
+            return Optional.of(repoIds);
+        } else if (expr instanceof Disjunction) {
+            Optional<Set<String>> left = getRepoIds(((Disjunction) expr).getLeft());
+            Optional<Set<String>> right = getRepoIds(((Disjunction) expr).getRight());
+            if (!left.isPresent() || !right.isPresent()) {
+                return Optional.empty();
+            }
+            Set<String> repoIds = new HashSet<>(left.get());
+            repoIds.addAll(right.get());
+            return Optional.of(repoIds);
+        } else if (expr instanceof Qualifier) {
+            Qualifier qualifier = (Qualifier) expr;
+            if (qualifier.isFalse()) {
+                return Optional.of(new HashSet<>());
+            } else if (qualifier.getType() == QualifierType.REPO && qualifier.getContent().isPresent()) {
+                return Optional.of(new HashSet<>(Arrays.asList(qualifier.getContent().get().toLowerCase())));
+            }
+        }
+        // Negations and other qualifiers may match issues of any repository
+        return Optional.empty();
+    }
+
+    private boolean canUseIndexes(Model repoModel) {
+        return isValid && userNames.stream().allMatch(name -> model.isUserInRepo(repoModel.getRepoId(), name));
+    }
+
+    private static boolean isUserQualifier(Qualifier qualifier) {
+        switch (qualifier.getType()) {
+        case AUTHOR:
+        case ASSIGNEE:
+        case INVOLVES:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Determines if testing an issue against {@code qualifier} cannot throw because of its contents.
+     */
+    private static boolean isValid(Qualifier qualifier, MetaQualifierInfo info) {
+        if (qualifier.isEmpty() || qualifier.isFalse()) {
+            return true;
+        }
+        Optional<String> content = qualifier.getContent();
+        switch (qualifier.getType()) {
+        case ID:
+        case UPDATED:
+            return qualifier.getNumber().isPresent() || qualifier.getNumberRange().isPresent();
+        case CREATED:
+            return qualifier.getDate().isPresent() || qualifier.getDateRange().isPresent();
+        case KEYWORD:
+            return !info.getIn().isPresent()
+                    || isOneOf(Qualifier.expandKeywordAliases(info.getIn().get()), "title", "description");
+        case TYPE:
+            return content.isPresent() && getType(content.get()) != null;
+        case STATE:
+            return content.isPresent() && getState(content.get()) != null;
+        case HAS:
+            return content.isPresent() && isHasCondition(content.get());
+        case NO:
+            return !content.isPresent() || isHasCondition(content.get());
+        case IS:
+            return content.isPresent() && isOneOf(Qualifier.expandKeywordAliases(content.get()),
+                    "open", "closed", "pr", "issue", "merged", "unmerged", "read", "unread");
+        case REPO:
+            return content.isPresent();
+        default:
+            return true;
+        }
+    }
+
+    private static boolean isOneOf(String value, String... values) {
+        for (String candidate : values) {
+            if (candidate.equals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isHasCondition(String content) {
+        return isOneOf(Qualifier.expandKeywordAliases(content), "label", "milestone", "assignee");
+    }
+
+    /**
+     * Returns true for pull requests and false for issues, or null for invalid contents.
+     */
+    private static Boolean getType(String content) {
+        switch (Qualifier.expandKeywordAliases(content.toLowerCase())) {
+        case "issue":
+            return false;
+        case "pr":
+            return true;
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * Returns true for open and false for closed, or null for invalid contents.
+     */
+    private static Boolean getState(String content) {
+        String state = Qualifier.expandKeywordAliases(content.toLowerCase());
+        if (state.contains("open")) {
+            return true;
+        } else if (state.contains("closed")) {
+            return false;
+        }
+        return null;
+    }
+
+    private static Candidates resolve(FilterExpression expr, Model repoModel, IssueIndex index,
+                                      Map<FilterExpression, Candidates> resolved) {
+        Candidates candidates = resolved.get(expr);
+        if (candidates == null) {
+            candidates = resolveUncached(expr, repoModel, index, resolved);
+            resolved.put(expr, candidates);
+        }
+        return candidates;
+    }
+
+    private static Candidates resolveUncached(FilterExpression expr, Model repoModel, IssueIndex index,
+                                              Map<FilterExpression, Candidates> resolved) {
+        if (expr instanceof Conjunction) {
+            return resolveConjunction(expr, repoModel, index, resolved);
+        } else if (expr instanceof Disjunction) {
+            Disjunction disjunction = (Disjunction) expr;
+            Candidates left = resolve(disjunction.getLeft(), repoModel, index, resolved);
+            Candidates right = resolve(disjunction.getRight(), repoModel, index, resolved);
+            return union(left, right);
+        } else if (expr instanceof Negation) {
+            Candidates negated = resolve(((Negation) expr).getExpr(), repoModel, index, resolved);
+            if (!negated.exact) {
+                return Candidates.UNKNOWN;
+            }
+            BitSet ids = index.getAll();
+            if (negated.ids == null) {
+                ids.clear();
+            } else {
+                ids.andNot(negated.ids);
+            }
+            return Candidates.of(ids);
+        } else if (expr instanceof Qualifier) {
+            return resolveQualifier((Qualifier) expr, repoModel, index);
+        }
+        return Candidates.UNKNOWN;
+    }
+
+    private static Candidates union(Candidates left, Candidates right) {
+        if (left.ids == null || right.ids == null) {
+            boolean isAll = left.ids == null && left.exact || right.ids == null && right.exact;
+            return isAll ? Candidates.ALL : Candidates.UNKNOWN;
+        }
+        BitSet ids = (BitSet) left.ids.clone();
+        ids.or(right.ids);
+        return new Candidates(ids, left.exact && right.exact);
+    }
+
+    /**
+     * Intersects the candidates of the conjuncts, smallest first.
+     */
+    private static Candidates resolveConjunction(FilterExpression expr, Model repoModel, IssueIndex index,
+                                                 Map<FilterExpression, Candidates> resolved) {
+        List<FilterExpression> conjuncts = new ArrayList<>();
+        addConjuncts(expr, conjuncts);
+
+        List<BitSet> sets = new ArrayList<>();
+        boolean exact = true;
+        for (FilterExpression conjunct : conjuncts) {
+            Candidates candidates = resolve(conjunct, repoModel, index, resolved);
+            exact &= candidates.exact;
+            if (candidates.ids != null) {
+                sets.add(candidates.ids);
+            }
+        }
+        if (sets.isEmpty()) {
+            return exact ? Candidates.ALL : Candidates.UNKNOWN;
+        }
+
+        sets.sort(Comparator.comparingInt(BitSet::cardinality));
+        BitSet ids = (BitSet) sets.get(0).clone();
+        for (int i = 1; i < sets.size() && !ids.isEmpty(); i++) {
+            ids.and(sets.get(i));
+        }
+        // Nothing satisfies a conjunction that one of its parts rules out entirely
+        return new Candidates(ids, exact || ids.isEmpty());
+    }
+
+    private static void addConjuncts(FilterExpression expr, List<FilterExpression> conjuncts) {
+        if (expr instanceof Conjunction) {
+            addConjuncts(((Conjunction) expr).left, conjuncts);
+            addConjuncts(((Conjunction) expr).right, conjuncts);
+        } else {
+            conjuncts.add(expr);
+        }
+    }
+
+    private static Candidates resolveQualifier(Qualifier qualifier, Model repoModel, IssueIndex index) {
+        if (qualifier.isEmpty()) return Candidates.ALL;
+        if (qualifier.isFalse()) return Candidates.of(new BitSet());
+
+        Optional<String> content = qualifier.getContent();
+        switch (qualifier.getType()) {
+        case ID:
+            return Candidates.of(resolveId(qualifier, index));
+        case KEYWORD:
+            if (!content.isPresent()) return Candidates.of(new BitSet());
+            return union(resolveText(TextIndex.findInTitles(repoModel, content.get().toLowerCase())),
+                    resolveText(TextIndex.findInDescriptions(repoModel, content.get().toLowerCase())));
+        case TITLE:
+            if (!content.isPresent()) return Candidates.of(new BitSet());
+            return resolveText(TextIndex.findInTitles(repoModel, content.get().toLowerCase()));
+        case DESCRIPTION:
+            if (!content.isPresent()) return Candidates.of(new BitSet());
+            return resolveText(TextIndex.findInDescriptions(repoModel, content.get().toLowerCase()));
+        case LABEL:
+            if (!content.isPresent()) return Candidates.of(new BitSet());
+            Set<String> labels = CompiledFilter.getMatchingLabels(repoModel, content.get());
+            return Candidates.of(index.getWithLabel(labels::contains));
+        case MILESTONE:
+            if (!content.isPresent()) return Candidates.of(new BitSet());
+            BitSet milestones = CompiledFilter.getMatchingMilestones(repoModel, content.get().toLowerCase());
+            return Candidates.of(index.getWithMilestone(id -> id >= 0 && milestones.get(id)));
+        case ASSIGNEE:
+            return Candidates.of(resolveAssignee(content, repoModel, index));
+        case AUTHOR:
+            return Candidates.of(resolveAuthor(content, index));
+        case INVOLVES:
+            BitSet involved = resolveAuthor(content, index);
+            involved.or(resolveAssignee(content, repoModel, index));
+            return Candidates.of(involved);
+        case TYPE:
+            return Candidates.of(resolveType(content.get(), index));
+        case STATE:
+            return Candidates.of(resolveState(content.get(), index));
+        case IS:
+            return resolveIsCondition(content.get(), index);
+        case HAS:
+            return Candidates.of(resolveHasCondition(content.get(), index));
+        case NO:
+            if (!content.isPresent()) return Candidates.of(new BitSet());
+            BitSet without = index.getAll();
+            without.andNot(resolveHasCondition(content.get(), index));
+            return Candidates.of(without);
+        default:
+            return Candidates.UNKNOWN;
+        }
+    }
+
+    /**
+     * The issues whose text may contain a string, which are tested against it as the index may hold
+     * issues that no longer do.
+     */
+    private static Candidates resolveText(BitSet ids) {
+        return ids == null ? Candidates.UNKNOWN : new Candidates(ids, false);
+    }
+
+    private static BitSet resolveId(Qualifier qualifier, IssueIndex index) {
+        BitSet ids = index.getAll();
+        if (qualifier.getNumber().isPresent()) {
+            int number = qualifier.getNumber().get();
+            boolean isPresent = number >= 0 && ids.get(number);
+            ids.clear();
+            if (isPresent) {
+                ids.set(number);
+            }
+        } else {
+            NumberRange range = qualifier.getNumberRange().get();
+            for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+                if (!range.encloses(id)) {
+                    ids.clear(id);
+                }
+            }
+        }
+        return ids;
+    }
+
+    private static BitSet resolveAssignee(Optional<String> content, Model repoModel, IssueIndex index) {
+        if (!content.isPresent()) return new BitSet();
+        Map<String, Boolean> users = CompiledFilter.getMatchingUsers(repoModel, content.get().toLowerCase());
+        return index.getAssignedTo(login -> users.getOrDefault(login, false));
+    }
+
+    private static BitSet resolveAuthor(Optional<String> content, IssueIndex index) {
+        if (!content.isPresent()) return new BitSet();
+        String text = content.get().toLowerCase();
+        return index.getCreatedBy(login -> login.toLowerCase().contains(text));
+    }
+
+    private static BitSet resolveType(String content, IssueIndex index) {
+        return getType(content) ? index.getPullRequests() : index.getNonPullRequests();
+    }
+
+    private static BitSet resolveState(String content, IssueIndex index) {
+        return getState(content) ? index.getOpen() : index.getClosed();
+    }
+
+    private static Candidates resolveIsCondition(String content, IssueIndex index) {
+        switch (Qualifier.expandKeywordAliases(content)) {
+        case "open":
+        case "closed":
+            return Candidates.of(resolveState(content, index));
+        case "pr":
+        case "issue":
+            return Candidates.of(resolveType(content, index));
+        case "merged":
+            BitSet merged = index.getPullRequests();
+            merged.and(index.getClosed());
+            return Candidates.of(merged);
+        case "unmerged":
+            BitSet unmerged = index.getPullRequests();
+            unmerged.and(index.getOpen());
+            return Candidates.of(unmerged);
+        default:
+            // Whether an issue has been read depends on when it was marked as read
+            return Candidates.UNKNOWN;
+        }
+    }
+
+    private static BitSet resolveHasCondition(String content, IssueIndex index) {
+        switch (Qualifier.expandKeywordAliases(content)) {
+        case "label":
+            return index.getWithLabel(label -> true);
+        case "milestone":
+            BitSet withMilestone = index.getAll();
+            withMilestone.andNot(index.getWithoutMilestone());
+            return withMilestone;
+        default:
+            BitSet assigned = index.getAll();
+            assigned.andNot(index.getUnassigned());
+            return assigned;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package filter.expression;
+
+import backend.interfaces.IModel;
+import backend.resource.Model;
+import backend.resource.ModelDelta;
+import backend.resource.TurboIssue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The sorted issues that satisfy the filter expression of a panel, kept up to date as the models
+ * change instead of being filtered and sorted again from every issue.
+ *
+ * A view remembers the models it was last brought up to date with. When they change, only the issues
+ * that were added, changed or removed are tested against the filter again, and are removed from or
+ * inserted into the sorted issues by binary search. The view is rebuilt from every issue when the
+ * changes are large (see {@link ModelDelta#isLarge}), when repositories are opened or closed, when
+ * the default repository changes, or when the expression can be satisfied by an issue that did not
+ * change, such as by the passing of time for updated qualifiers, or by an issue being marked as read.
+ *
+ * A view of a panel with a count qualifier only keeps as many issues as the panel shows, which are
+ * selected from the matching issues in one pass rather than by sorting all of them. Such a view is rebuilt
+ * when a change removes one of its issues, as it does not know which issue would take its place.
+ *
+ * Issues that are equal in the sort order of the panel are ordered by repository, then by
+ * descending id, so that the order does not depend on how the view was built. A view is not
+ * thread-safe.
+ */
+public final class FilterView {
+
+    /**
+     * The fraction of the issues of a repository that may change before a view is rebuilt instead.
+     */
+    private static final double LARGE_CHANGE_FRACTION = 0.1;
+
+    private final FilterExpression expr;
+    private final SortOrder order;
+    private final Comparator<TurboIssue> comparator;
+    private final boolean isMaintainable;
+    private final int count;
+    private final List<TurboIssue> issues = new ArrayList<>();
+
+    // Whether there are matching issues that the view does not keep, beyond its count
+    private boolean isTruncated = false;
+
+    // The models and default repository the issues are up to date with; empty before the view is built
+    private final Map<String, Model> models = new HashMap<>();
+    private String defaultRepo;
+
+    /**
+     * Creates an empty view of the issues that satisfy {@code expr}, which has its milestone aliases
+     * replaced, sorted in {@code order}. It is filled by {@link #rebuild}.
+     *
+     * @throws filter.ParseException if the count qualifier of {@code expr} is not valid
+     */
+    public FilterView(FilterExpression expr, SortOrder order) {
+        this.expr = expr;
+        this.order = order.thenBy(SortOrder.by(Comparator.comparing(TurboIssue::getRepoId)
+                .thenComparing(Comparator.comparingInt(TurboIssue::getId).reversed())));
+        this.comparator = this.order.getComparator();
+        this.isMaintainable = !Qualifier.hasUpdatedQualifier(expr) && !hasReadQualifier(expr);
+        this.count = Qualifier.getCount(expr).orElse(Integer.MAX_VALUE);
+    }
+
+    private static boolean hasReadQualifier(FilterExpression expr) {
+        return !expr.find(q -> q.getType() == QualifierType.IS && q.getContent().isPresent()
+                && ("read".equals(Qualifier.expandKeywordAliases(q.getContent().get()))
+                || "unread".equals(Qualifier.expandKeywordAliases(q.getContent().get())))).isEmpty();
+    }
+
+    public FilterExpression getExpression() {
+        return expr;
+    }
+
+    /**
+     * Replaces the issues of the view with {@code matching}, the issues of {@code repoModels} that satisfy
+     * the filter expression, such as those found by a {@link FilterBatch}. They are sorted in parallel if
+     * there are at least {@code parallelThreshold} of them.
+     */
+    public void rebuild(IModel model, List<Model> repoModels, List<TurboIssue> matching, int parallelThreshold) {
+        issues.clear();
+        issues.addAll(order.selectFirst(matching, count, parallelThreshold));
+        isTruncated = matching.size() > count;
+        models.clear();
+        repoModels.forEach(repoModel -> models.put(repoModel.getRepoId(), repoModel));
+        defaultRepo = model.getDefaultRepo();
+    }
+
+    /**
+     * Brings the view up to date with {@code repoModels} by applying the changes since it was last
+     * brought up to date, if it can be. The changes of each repository are taken from {@code deltas},
+     * such as those published by {@link backend.resource.MultiModel}, or else computed once and kept
+     * there, so that views up to date with the same models share them.
+     *
+     * @return false if the view has to be rebuilt instead, in which case it is left as it was
+     */
+    public boolean update(IModel model, List<Model> repoModels, Map<ModelDelta.Key, ModelDelta> deltas) {
+        if (!canUpdate(model, repoModels)) {
+            return false;
+        }
+
+        List<ModelDelta> changes = new ArrayList<>();
+        for (Model repoModel : repoModels) {
+            Model previous = models.get(repoModel.getRepoId());
+            if (previous.getVersion() == repoModel.getVersion()) {
+                continue;
+            }
+            ModelDelta delta = deltas.computeIfAbsent(ModelDelta.Key.between(previous, repoModel),
+                    key -> ModelDelta.between(previous, repoModel));
+            if (delta.isLarge(repoModel, LARGE_CHANGE_FRACTION)) {
+                return false;
+            }
+            changes.add(delta);
+        }
+        if (changes.isEmpty()) {
+            return true;
+        }
+        if (isTruncated && changes.stream().anyMatch(this::removesIssues)) {
+            return false;
+        }
+
+        // Compiled against the current models, so that the changed issues are tested as a rebuild would
+        CompiledFilter filter = CompiledFilter.compile(model, expr);
+        for (ModelDelta delta : changes) {
+            Model previous = models.get(delta.getRepoId());
+            Model current = repoModels.stream()
+                    .filter(repoModel -> repoModel.getRepoId().equals(delta.getRepoId()))
+                    .findFirst().get();
+            apply(delta, previous, current, filter);
+            models.put(current.getRepoId(), current);
+        }
+        return true;
+    }
+
+    private boolean canUpdate(IModel model, List<Model> repoModels) {
+        if (!isMaintainable || models.size() != repoModels.size()
+                || !Objects.equals(defaultRepo, model.getDefaultRepo())) {
+            return false;
+        }
+        return repoModels.stream().allMatch(repoModel -> models.containsKey(repoModel.getRepoId()));
+    }
+
+    /**
+     * Determines if applying {@code delta} would remove any of the issues of the view.
+     */
+    private boolean removesIssues(ModelDelta delta) {
+        Model previous = models.get(delta.getRepoId());
+        for (int id : delta.getChangedIssues()) {
+            if (previous.getIssueById(id).filter(this::contains).isPresent()) {
+                return true;
+            }
+        }
+        for (int id : delta.getRemovedIssues()) {
+            if (previous.getIssueById(id).filter(this::contains).isPresent()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean contains(TurboIssue issue) {
+        return Collections.binarySearch(issues, issue, comparator) >= 0;
+    }
+
+    private void apply(ModelDelta delta, Model previous, Model current, CompiledFilter filter) {
+        for (int id : delta.getChangedIssues()) {
+            previous.getIssueById(id).ifPresent(this::remove);
+        }
+        for (int id : delta.getRemovedIssues()) {
+            previous.getIssueById(id).ifPresent(this::remove);
+        }
+        for (int id : delta.getChangedIssues()) {
+            current.getIssueById(id).filter(filter).ifPresent(this::insert);
+        }
+        for (int id : delta.getAddedIssues()) {
+            current.getIssueById(id).filter(filter).ifPresent(this::insert);
+        }
+    }
+
+    private void remove(TurboIssue issue) {
+        int index = Collections.binarySearch(issues, issue, comparator);
+        if (index >= 0) {
+            issues.remove(index);
+        }
+    }
+
+    private void insert(TurboIssue issue) {
+        int index = Collections.binarySearch(issues, issue, comparator);
+        index = index >= 0 ? index : -index - 1;
+        if (index >= count) {
+            isTruncated = true;
+            return;
+        }
+        issues.add(index, issue);
+        if (issues.size() > count) {
+            issues.remove(issues.size() - 1);
+            isTruncated = true;
+        }
+    }
+
+    /**
+     * Returns the issues of the view, in order, up to the count of the panel.
+     */
+    public List<TurboIssue> getIssues() {
+        return new ArrayList<>(issues);
+    }
+}
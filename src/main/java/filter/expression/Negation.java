@@ -18,6 +18,10 @@ public class Negation implements FilterExpression {
         this.expr = expr;
     }
 
+    FilterExpression getExpr() {
+        return expr;
+    }
+
     /**
      * This method is used to serialise qualifiers. Thus whatever form returned
      * should be syntactically valid.
@@ -45,6 +49,12 @@ public class Negation implements FilterExpression {
         return !expr.isSatisfiedBy(model, issue, info);
     }
 
+    @Override
+    public Predicate<TurboIssue> compile(IModel model, MetaQualifierInfo info) {
+        Predicate<TurboIssue> expr = this.expr.compile(model, info);
+        return issue -> !expr.test(issue);
+    }
+
     @Override
     public boolean canBeAppliedToIssue() {
         return false;
@@ -2,7 +2,6 @@ package filter.expression;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -13,7 +12,6 @@ import java.util.stream.IntStream;
 
 import backend.resource.*;
 import filter.*;
-import util.Utility;
 import backend.interfaces.IModel;
 
 public class Qualifier implements FilterExpression {
@@ -170,25 +168,11 @@ public class Qualifier implements FilterExpression {
     /**
      * Helper function for testing a filter expression against an issue.
      * Ensures that meta-qualifiers are taken care of.
-     * Should always be used over isSatisfiedBy.
+     * Should always be used over isSatisfiedBy. To test many issues against the same
+     * filter expression, compile it once with {@link CompiledFilter#compile} instead.
      */
     public static boolean process(IModel model, FilterExpression expr, TurboIssue issue) {
-        FilterExpression exprWithNormalQualifiers = expr.filter(Qualifier::shouldNotBeStripped);
-        List<Qualifier> metaQualifiers = expr.find(Qualifier::isMetaQualifier);
-
-        // Preprocessing for repo qualifier
-        boolean containsRepoQualifier = metaQualifiers.stream()
-                .map(Qualifier::getType)
-                .collect(Collectors.toList())
-                .contains(QualifierType.REPO);
-
-        if (!containsRepoQualifier) {
-            exprWithNormalQualifiers = new Conjunction(
-                new Qualifier(QualifierType.REPO, model.getDefaultRepo()),
-                exprWithNormalQualifiers);
-        }
-
-        return exprWithNormalQualifiers.isSatisfiedBy(model, issue, new MetaQualifierInfo(metaQualifiers));
+        return CompiledFilter.compile(model, expr).test(issue);
     }
 
     /**
@@ -305,7 +289,7 @@ public class Qualifier implements FilterExpression {
 
     private static LocalDateTime currentTime = null;
 
-    private static LocalDateTime getCurrentTime() {
+    static LocalDateTime getCurrentTime() {
         if (currentTime == null) {
             return LocalDateTime.now();
         } else {
@@ -331,53 +315,13 @@ public class Qualifier implements FilterExpression {
 
     @Override
     public boolean isSatisfiedBy(IModel model, TurboIssue issue, MetaQualifierInfo info) {
-        assert type != null;
-
-        // The empty qualifier is satisfied by anything
-        if (isEmpty()) return true;
-
-        // The false qualifier is satisfied by nothing
-        if (isFalse()) return false;
+        // Qualifiers are only evaluated in their compiled form, which defines what they mean
+        return compile(model, info).test(issue);
+    }
 
-        switch (type) {
-        case ID:
-            return idSatisfies(issue);
-        case KEYWORD:
-            return keywordSatisfies(issue, info);
-        case TITLE:
-            return titleSatisfies(issue);
-        case DESCRIPTION:
-            return bodySatisfies(issue);
-        case MILESTONE:
-            return milestoneSatisfies(model, issue);
-        case LABEL:
-            return labelsSatisfy(model, issue);
-        case AUTHOR:
-            return authorSatisfies(model, issue);
-        case ASSIGNEE:
-            return assigneeSatisfies(model, issue);
-        case INVOLVES:
-            return involvesSatisfies(model, issue);
-        case TYPE:
-            return typeSatisfies(issue);
-        case STATE:
-            return stateSatisfies(issue);
-        case HAS:
-            return satisfiesHasConditions(issue);
-        case NO:
-            return satisfiesNoConditions(issue);
-        case IS:
-            return satisfiesIsConditions(issue);
-        case CREATED:
-            return satisfiesCreationDate(issue);
-        case UPDATED:
-            return satisfiesUpdatedHours(issue);
-        case REPO:
-            return satisfiesRepo(issue);
-        default:
-            assert false : "Missing case for " + type;
-            return false;
-        }
+    @Override
+    public Predicate<TurboIssue> compile(IModel model, MetaQualifierInfo info) {
+        return CompiledFilter.compile(this, model, info);
     }
 
     @Override
@@ -533,7 +477,7 @@ public class Qualifier implements FilterExpression {
                 type.equals(other.type);
     }
 
-    private static boolean shouldNotBeStripped(Qualifier q) {
+    static boolean shouldNotBeStripped(Qualifier q) {
         return !shouldBeStripped(q);
     }
 
@@ -582,30 +526,45 @@ public class Qualifier implements FilterExpression {
         return !expr.find(Qualifier::isUpdatedQualifier).isEmpty();
     }
 
+    /**
+     * Determines if a filter expression may read the descriptions of issues.
+     */
+    public static boolean hasDescriptionQualifier(FilterExpression expr) {
+        return !expr.find(q -> q.getType() == QualifierType.KEYWORD
+                || q.getType() == QualifierType.DESCRIPTION).isEmpty();
+    }
+
     public Comparator<TurboIssue> getCompoundSortComparator(IModel model, boolean isSortableByNonSelfUpdates) {
-        if (sortKeys.isEmpty()) {
-            return (a, b) -> 0;
+        return getCompoundSortOrder(model, isSortableByNonSelfUpdates).getComparator();
+    }
+
+    /**
+     * Returns the order given by the sort keys of this qualifier, each compared in turn.
+     */
+    public SortOrder getCompoundSortOrder(IModel model, boolean isSortableByNonSelfUpdates) {
+        SortOrder order = SortOrder.none();
+        for (SortKey key : sortKeys) {
+            order = order.thenBy(getSortOrder(model, key.key, key.inverted, isSortableByNonSelfUpdates));
         }
-        return (a, b) -> {
-            for (SortKey key : sortKeys) {
-                Comparator<TurboIssue> comparator =
-                        getSortComparator(model, key.key, key.inverted, isSortableByNonSelfUpdates);
-                int result = comparator.compare(a, b);
-                if (result != 0) {
-                    return result;
-                }
-            }
-            return 0;
-        };
+        return order;
     }
 
     public static Comparator<TurboIssue> getSortComparator(IModel model,
                                                            String key,
                                                            boolean inverted,
                                                            boolean isSortableByNonSelfUpdates) {
-        Comparator<TurboIssue> comparator = (a, b) -> 0;
+        return getSortOrder(model, key, inverted, isSortableByNonSelfUpdates).getComparator();
+    }
 
-        boolean isLabelGroup = false;
+    /**
+     * Returns the order given by a single sort key. Keys that are looked up in the model, such as the
+     * milestone or the labels in a group, are extracted from each issue once when many issues are sorted.
+     */
+    public static SortOrder getSortOrder(IModel model,
+                                         String key,
+                                         boolean inverted,
+                                         boolean isSortableByNonSelfUpdates) {
+        Comparator<TurboIssue> comparator = (a, b) -> 0;
 
         switch (expandKeywordAliases(key)) {
         case "comments":
@@ -645,21 +604,12 @@ public class Qualifier implements FilterExpression {
             break;
         case "milestone":
         case "m":
-            comparator = (a, b) -> {
-                Optional<TurboMilestone> aMilestone = model.getMilestoneOfIssue(a);
-                Optional<TurboMilestone> bMilestone = model.getMilestoneOfIssue(b);
-
-                if (!aMilestone.isPresent() && !bMilestone.isPresent()) {
-                    return 0;
-                } else if (!aMilestone.isPresent()) {
-                    return 1;
-                } else if (!bMilestone.isPresent()) {
-                    return -1;
-                } else {
-                    return -(TurboMilestone.getDueDateComparator().compare(aMilestone.get(), bMilestone.get()));
-                }
-            };
-            break;
+            // Issues without a milestone are put at the back, or at the front if inverted
+            Comparator<TurboMilestone> dueDateComparator = TurboMilestone.getDueDateComparator();
+            Comparator<TurboMilestone> milestoneComparator =
+                    Comparator.nullsLast((a, b) -> -dueDateComparator.compare(a, b));
+            return SortOrder.by(issue -> model.getMilestoneOfIssue(issue).orElse(null),
+                    !inverted ? milestoneComparator : milestoneComparator.reversed());
         case "id":
             comparator = (a, b) -> a.getId() - b.getId();
             break;
@@ -669,207 +619,72 @@ public class Qualifier implements FilterExpression {
             comparator = (a, b) -> Boolean.compare(b.isOpen(), a.isOpen());
             break;
         default:
-            // Doesn't match anything; assume it's a label group
-            isLabelGroup = true;
-            break;
+            // Doesn't match anything; assume it's a label group, which has a different notion of inversion
+            return getLabelGroupOrder(model, key, inverted);
         }
 
-        if (isLabelGroup) {
-            // Has a different notion of inversion
-            return getLabelGroupComparator(model, key, inverted);
+        // Use default behaviour for inverting
+        if (!inverted) {
+            return SortOrder.by(comparator);
         } else {
-            // Use default behaviour for inverting
-            if (!inverted) {
-                return comparator;
-            } else {
-                final Comparator<TurboIssue> finalComparator = comparator;
-                return (a, b) -> -finalComparator.compare(a, b);
-            }
+            final Comparator<TurboIssue> finalComparator = comparator;
+            return SortOrder.by((a, b) -> -finalComparator.compare(a, b));
         }
     }
 
     public static Comparator<TurboIssue> getLabelGroupComparator(IModel model, String key, boolean inverted) {
+        return getLabelGroupOrder(model, key, inverted).getComparator();
+    }
+
+    /**
+     * Returns the order of issues by their labels in the group {@code key}, which are extracted from each
+     * issue as the sorted names of the labels.
+     */
+    private static SortOrder getLabelGroupOrder(IModel model, String key, boolean inverted) {
         // Strip trailing ., if any
         final String group = key.replaceAll("\\.$", "");
-        return (a, b) -> {
-
-            // Matches labels belong to the given group
-            Predicate<TurboLabel> sameGroup = l ->
-                l.isInGroup() && l.getGroupName().equals(group);
 
-            Comparator<TurboLabel> labelComparator = (x, y) -> x.compareTo(y);
+        // Matches labels belong to the given group
+        Predicate<TurboLabel> sameGroup = l ->
+            l.isInGroup() && l.getGroupName().equals(group);
 
-            List<TurboLabel> aLabels = model.getLabelsOfIssue(a, sameGroup);
-            List<TurboLabel> bLabels = model.getLabelsOfIssue(b, sameGroup);
-            Collections.sort(aLabels, labelComparator);
-            Collections.sort(bLabels, labelComparator);
+        Function<TurboIssue, String[]> getLabelNames = issue -> model.getLabelsOfIssue(issue, sameGroup).stream()
+                .map(TurboLabel::getFullName)
+                .sorted()
+                .toArray(String[]::new);
 
+        return SortOrder.by(getLabelNames, (aLabels, bLabels) -> {
             // Put empty lists at the back
-            if (aLabels.isEmpty() && bLabels.isEmpty()) {
+            if (aLabels.length == 0 && bLabels.length == 0) {
                 return 0;
-            } else if (aLabels.isEmpty()) {
+            } else if (aLabels.length == 0) {
                 // a is larger
                 return 1;
-            } else if (bLabels.isEmpty()) {
+            } else if (bLabels.length == 0) {
                 // b is larger
                 return -1;
             }
 
             // Compare lengths
             int result = !inverted
-                ? aLabels.size() - bLabels.size()
-                : bLabels.size() - aLabels.size();
+                ? aLabels.length - bLabels.length
+                : bLabels.length - aLabels.length;
 
             if (result != 0) {
                 return result;
             }
 
             // Lexicographic label comparison
-            assert aLabels.size() == bLabels.size();
-            for (int i = 0; i < aLabels.size(); i++) {
+            for (int i = 0; i < aLabels.length; i++) {
                 result = !inverted
-                    ? labelComparator.compare(aLabels.get(i), bLabels.get(i))
-                    : labelComparator.compare(bLabels.get(i), aLabels.get(i));
+                    ? aLabels[i].compareTo(bLabels[i])
+                    : bLabels[i].compareTo(aLabels[i]);
                 if (result != 0) {
                     return result;
                 }
             }
             return 0;
-        };
-    }
-
-    private boolean idSatisfies(TurboIssue issue) {
-        if (number.isPresent()) {
-            return issue.getId() == number.get();
-        } else if (numberRange.isPresent()) {
-            return numberRange.get().encloses(issue.getId());
-        }
-        throw new SemanticException(type);
-    }
-
-    private boolean satisfiesUpdatedHours(TurboIssue issue) {
-        NumberRange updatedRange;
-
-        if (numberRange.isPresent()) {
-            updatedRange = numberRange.get();
-        } else if (number.isPresent()) {
-            updatedRange = new NumberRange(null, number.get(), true);
-        } else {
-            throw new SemanticException(type);
-        }
-
-        LocalDateTime dateOfUpdate = issue.getUpdatedAt();
-        int hoursSinceUpdate = Utility.safeLongToInt(dateOfUpdate.until(getCurrentTime(), ChronoUnit.HOURS));
-        return updatedRange.encloses(hoursSinceUpdate);
-    }
-
-    private boolean satisfiesRepo(TurboIssue issue) {
-        if (!content.isPresent()) throw new SemanticException(type);
-
-        return issue.getRepoId().equalsIgnoreCase(content.get());
-    }
-
-    private boolean satisfiesCreationDate(TurboIssue issue) {
-        LocalDate creationDate = issue.getCreatedAt().toLocalDate();
-        if (date.isPresent()) {
-            return creationDate.isEqual(date.get());
-        } else if (dateRange.isPresent()) {
-            return dateRange.get().encloses(creationDate);
-        } else {
-            throw new SemanticException(type);
-        }
-    }
-
-    private boolean satisfiesHasConditions(TurboIssue issue) {
-        if (!content.isPresent()) throw new SemanticException(type);
-
-        switch (expandKeywordAliases(content.get())) {
-        case "label":
-            return issue.getLabels().size() > 0;
-        case "milestone":
-            assert issue.getMilestone() != null;
-            return issue.getMilestone().isPresent();
-        case "assignee":
-            assert issue.getAssignee() != null;
-            return issue.getAssignee().isPresent();
-        default:
-            throw new SemanticException(type);
-        }
-    }
-
-    private boolean satisfiesNoConditions(TurboIssue issue) {
-        return content.isPresent() && !satisfiesHasConditions(issue);
-    }
-
-    private boolean satisfiesIsConditions(TurboIssue issue) {
-        if (!content.isPresent()) throw new SemanticException(type);
-
-        switch (expandKeywordAliases(content.get())) {
-        case "open":
-        case "closed":
-            return stateSatisfies(issue);
-        case "pr":
-        case "issue":
-            return typeSatisfies(issue);
-        case "merged":
-            return issue.isPullRequest() && !issue.isOpen();
-        case "unmerged":
-            return issue.isPullRequest() && issue.isOpen();
-        case "read":
-            return issue.isCurrentlyRead();
-        case "unread":
-            return !issue.isCurrentlyRead();
-        default:
-            throw new SemanticException(type);
-        }
-    }
-
-    private boolean stateSatisfies(TurboIssue issue) {
-        if (!content.isPresent()) throw new SemanticException(type);
-
-        String content = expandKeywordAliases(this.content.get().toLowerCase());
-        if (content.contains("open")) {
-            return issue.isOpen();
-        } else if (content.contains("closed")) {
-            return !issue.isOpen();
-        } else {
-            throw new SemanticException(type);
-        }
-    }
-
-    private boolean assigneeSatisfies(IModel model, TurboIssue issue) {
-        if (!content.isPresent()) return false;
-        Optional<TurboUser> assignee = model.getAssigneeOfIssue(issue);
-
-        if (!assignee.isPresent()) return false;
-
-        enforceUserInRepoCondition(model, issue.getRepoId(), content.get());
-
-        String content = this.content.get().toLowerCase();
-        String login = assignee.get().getLoginName() == null ? "" : assignee.get().getLoginName().toLowerCase();
-        String name = assignee.get().getRealName() == null ? "" : assignee.get().getRealName().toLowerCase();
-
-        return login.contains(content) || name.contains(content);
-    }
-
-    private boolean authorSatisfies(IModel model, TurboIssue issue) {
-        if (!content.isPresent()) return false;
-
-        enforceUserInRepoCondition(model, issue.getRepoId(), content.get());
-
-        String creator = issue.getCreator();
-        return creator.toLowerCase().contains(content.get().toLowerCase());
-    }
-
-    private void enforceUserInRepoCondition(IModel model, String repoId, String userName) {
-        boolean shouldWarnUser = !model.isUserInRepo(repoId, userName);
-        if (shouldWarnUser) {
-            throw new SemanticException(String.format(USER_WARNING_ERROR_FORMAT, userName, repoId));
-        }
-    }
-
-    private boolean involvesSatisfies(IModel model, TurboIssue issue) {
-        return authorSatisfies(model, issue) || assigneeSatisfies(model, issue);
+        });
     }
 
     public static boolean labelMatches(String input, String candidate) {
@@ -905,73 +720,6 @@ public class Qualifier implements FilterExpression {
         return false;
     }
 
-    private boolean labelsSatisfy(IModel model, TurboIssue issue) {
-        if (!content.isPresent()) return false;
-
-        // A qualifier matches an issue if the issue is associated with some subset of the
-        // labels that the qualifier expresses. It should only reject an issue if the issue
-        // does not contain any labels it expresses, and not if the issue contains some label
-        // it does not express.
-
-        for (TurboLabel label : model.getLabelsOfIssue(issue)) {
-            if (labelMatches(content.get(), label.getFullName())) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    private boolean milestoneSatisfies(IModel model, TurboIssue issue) {
-        if (!content.isPresent()) return false;
-        Optional<TurboMilestone> milestone = model.getMilestoneOfIssue(issue);
-
-        if (!milestone.isPresent()) return false;
-
-        String contents = content.get().toLowerCase();
-        String title = milestone.get().getTitle().toLowerCase();
-
-        return title.contains(contents);
-    }
-
-    private boolean keywordSatisfies(TurboIssue issue, MetaQualifierInfo info) {
-
-        if (info.getIn().isPresent()) {
-            switch (expandKeywordAliases(info.getIn().get())) {
-            case "title":
-                return titleSatisfies(issue);
-            case "description":
-                return bodySatisfies(issue);
-            default:
-                throw new SemanticException(QualifierType.IN);
-            }
-        } else {
-            return titleSatisfies(issue) || bodySatisfies(issue);
-        }
-    }
-
-    private boolean bodySatisfies(TurboIssue issue) {
-        if (!content.isPresent()) return false;
-        return issue.getDescription().toLowerCase().contains(content.get().toLowerCase());
-    }
-
-    private boolean titleSatisfies(TurboIssue issue) {
-        if (!content.isPresent()) return false;
-        return issue.getTitle().toLowerCase().contains(content.get().toLowerCase());
-    }
-
-    private boolean typeSatisfies(TurboIssue issue) {
-        if (!content.isPresent()) throw new SemanticException(type);
-        String content = this.content.get().toLowerCase();
-        switch (expandKeywordAliases(content)) {
-            case "issue":
-                return !issue.isPullRequest();
-            case "pr":
-                return issue.isPullRequest();
-            default:
-                throw new SemanticException(type);
-        }
-    }
-
     private void applyMilestone(TurboIssue issue, IModel model) throws QualifierApplicationException {
         if (!content.isPresent()) {
             throw new QualifierApplicationException("Name of milestone to apply required");
@@ -1152,17 +900,28 @@ public class Qualifier implements FilterExpression {
      * @return The valid count value in the qualifier or the issueList.size() by default
      */
     public static int determineCount(List<TurboIssue> issueList, FilterExpression filterExpr) {
+        return getCount(filterExpr).orElse(issueList.size());
+    }
+
+    /**
+     * Determines the count value to be taken from the count qualifier, if there is one. Throw a
+     * ParseException if count qualifier is not valid.
+     *
+     * @param filterExpr The filter expression of the particular panel.
+     * @return The valid count value in the qualifier, or nothing if there is no count qualifier
+     */
+    public static Optional<Integer> getCount(FilterExpression filterExpr) {
         List<Qualifier> countQualifiers = filterExpr.find(Qualifier::isMetaQualifier).stream()
                 .filter(q -> q.getType() == QualifierType.COUNT)
                 .collect(Collectors.toList());
         if (countQualifiers.isEmpty()) {
-            return issueList.size();
+            return Optional.empty();
         } else if (countQualifiers.size() > 1) {
             throw new ParseException("More than one count qualifier");
         } else if (!countQualifiers.get(0).getNumber().isPresent()) {
             throw new ParseException("Count qualifier should be a number greater than or equal to 0");
         } else {
-            return countQualifiers.get(0).getNumber().get();
+            return Optional.of(countQualifiers.get(0).getNumber().get());
         }
     }
 }
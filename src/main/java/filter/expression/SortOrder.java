@@ -0,0 +1,162 @@
+package filter.expression;
+
+import backend.resource.TurboIssue;
+import util.Utility;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * An order of issues, such as the order given by the sort keys of a panel.
+ *
+ * An order compares issues by a list of keys, each a value extracted from an issue, such as its update
+ * time or the sorted names of its labels in a group, and a comparator for that value. Extracting some keys
+ * means looking up the labels or milestone of the issue in the model. Comparing two issues extracts their
+ * keys again on every comparison, so sorting many issues instead extracts the keys of each issue once,
+ * sorts the keys, and then maps them back to their issues.
+ */
+public final class SortOrder {
+
+    private static final SortOrder NONE = new SortOrder(Collections.emptyList());
+
+    /**
+     * A value that issues are compared by.
+     */
+    private static final class Key {
+        private final Function<TurboIssue, ?> extract;
+        private final Comparator<Object> comparator;
+
+        private Key(Function<TurboIssue, ?> extract, Comparator<Object> comparator) {
+            this.extract = extract;
+            this.comparator = comparator;
+        }
+    }
+
+    private final List<Key> keys;
+
+    private SortOrder(List<Key> keys) {
+        this.keys = keys;
+    }
+
+    /**
+     * Returns the order in which all issues are equal.
+     */
+    public static SortOrder none() {
+        return NONE;
+    }
+
+    /**
+     * Returns the order of issues by the key that {@code extract} returns for each, compared by {@code comparator}.
+     */
+    @SuppressWarnings("unchecked")
+    public static <K> SortOrder by(Function<TurboIssue, K> extract, Comparator<? super K> comparator) {
+        return new SortOrder(Collections.singletonList(new Key(extract, (Comparator<Object>) comparator)));
+    }
+
+    /**
+     * Returns the order of issues by {@code comparator}, for keys that are cheap to get from an issue.
+     */
+    public static SortOrder by(Comparator<TurboIssue> comparator) {
+        return by(issue -> issue, comparator);
+    }
+
+    /**
+     * Returns the order of issues by this order, then by {@code next} for the issues that are equal in this order.
+     */
+    public SortOrder thenBy(SortOrder next) {
+        List<Key> combined = new ArrayList<>(keys);
+        combined.addAll(next.keys);
+        return new SortOrder(combined);
+    }
+
+    /**
+     * Returns a comparator that compares two issues in this order, extracting their keys as it compares them.
+     */
+    public Comparator<TurboIssue> getComparator() {
+        return (a, b) -> {
+            for (Key key : keys) {
+                int result = key.comparator.compare(key.extract.apply(a), key.extract.apply(b));
+                if (result != 0) {
+                    return result;
+                }
+            }
+            return 0;
+        };
+    }
+
+    /**
+     * Returns {@code issues} sorted in this order. Issues that are equal keep their order.
+     */
+    public List<TurboIssue> sort(List<TurboIssue> issues) {
+        return selectFirst(issues, issues.size());
+    }
+
+    /**
+     * Returns the first {@code count} of {@code issues} in this order, as sorting them would,
+     * extracting the keys of each issue once. See {@link Utility#selectFirst}.
+     */
+    public List<TurboIssue> selectFirst(List<TurboIssue> issues, int count) {
+        return undecorate(Utility.selectFirst(decorate(issues), getDecoratedComparator(), count));
+    }
+
+    /**
+     * Returns the first {@code count} of {@code issues} in this order, as {@link #selectFirst(List, int)} does.
+     * If there are at least {@code parallelThreshold} issues, chunks of them are decorated and have their first
+     * issues selected in parallel, which are then merged.
+     */
+    public List<TurboIssue> selectFirst(List<TurboIssue> issues, int count, int parallelThreshold) {
+        if (issues.size() < parallelThreshold) {
+            return selectFirst(issues, count);
+        }
+
+        // Equal issues are selected from each chunk in the order they came in, and the chunks are merged
+        // in order, so they keep their order as they would in a sequential sort
+        Comparator<Object[]> comparator = getDecoratedComparator();
+        List<Object[]> selected = new ArrayList<>();
+        Utility.mapChunksInParallel(issues, chunk -> Utility.selectFirst(decorate(chunk), comparator, count))
+                .forEach(selected::addAll);
+        return undecorate(Utility.selectFirst(selected, comparator, count));
+    }
+
+    /**
+     * Decorates each issue with its keys, followed by the issue itself.
+     */
+    private List<Object[]> decorate(List<TurboIssue> issues) {
+        int keyCount = keys.size();
+        List<Object[]> decorated = new ArrayList<>(issues.size());
+        for (TurboIssue issue : issues) {
+            Object[] values = new Object[keyCount + 1];
+            for (int i = 0; i < keyCount; i++) {
+                values[i] = keys.get(i).extract.apply(issue);
+            }
+            values[keyCount] = issue;
+            decorated.add(values);
+        }
+        return decorated;
+    }
+
+    private Comparator<Object[]> getDecoratedComparator() {
+        int keyCount = keys.size();
+        return (a, b) -> {
+            for (int i = 0; i < keyCount; i++) {
+                int result = keys.get(i).comparator.compare(a[i], b[i]);
+                if (result != 0) {
+                    return result;
+                }
+            }
+            return 0;
+        };
+    }
+
+    private List<TurboIssue> undecorate(List<Object[]> decorated) {
+        int keyCount = keys.size();
+        List<TurboIssue> result = new ArrayList<>(decorated.size());
+        for (Object[] values : decorated) {
+            result.add((TurboIssue) values[keyCount]);
+        }
+        return result;
+    }
+}
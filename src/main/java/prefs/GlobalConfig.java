@@ -33,6 +33,8 @@ public class GlobalConfig {
     private final Map<String, List<PanelInfo>> savedBoards = new LinkedHashMap<>();
     private final Map<String, Map<Integer, LocalDateTime>> markedReadTimes = new HashMap<>();
     private Map<String, String> keyboardShortcuts = new HashMap<>();
+    private String storeFormat = Preferences.STORE_FORMAT_JSON;
+    private int parallelFilterThreshold = Preferences.DEFAULT_PARALLEL_FILTER_THRESHOLD;
 
     public Map<String, String> getKeyboardShortcuts() {
         return new HashMap<>(keyboardShortcuts);
@@ -123,6 +125,22 @@ public class GlobalConfig {
         return lastViewedRepository;
     }
 
+    public String getStoreFormat() {
+        return storeFormat;
+    }
+
+    public void setStoreFormat(String storeFormat) {
+        this.storeFormat = storeFormat;
+    }
+
+    public int getParallelFilterThreshold() {
+        return parallelFilterThreshold;
+    }
+
+    public void setParallelFilterThreshold(int parallelFilterThreshold) {
+        this.parallelFilterThreshold = parallelFilterThreshold;
+    }
+
     public String getLastLoginUsername() {
         return lastLoginUsername;
     }
@@ -21,6 +21,13 @@ public class Preferences { // NOPMD
     public static final String GLOBAL_CONFIG_FILE = "global.json";
     public static final String TEST_CONFIG_FILE = "test.json";
 
+    // Formats in which repositories can be stored
+    public static final String STORE_FORMAT_JSON = "json";
+    public static final String STORE_FORMAT_BINARY = "binary";
+
+    // The number of issues from which panels are filtered and sorted in parallel
+    public static final int DEFAULT_PARALLEL_FILTER_THRESHOLD = 20000;
+
     private final ConfigFileHandler fileHandler;
 
     public GlobalConfig global;
@@ -172,6 +179,30 @@ public class Preferences { // NOPMD
         }
     }
 
+    /**
+     * Store configuration
+     */
+
+    public String getStoreFormat() {
+        return global.getStoreFormat();
+    }
+
+    public void setStoreFormat(String storeFormat) {
+        global.setStoreFormat(storeFormat);
+    }
+
+    /**
+     * Filtering configuration
+     */
+
+    public int getParallelFilterThreshold() {
+        return global.getParallelFilterThreshold();
+    }
+
+    public void setParallelFilterThreshold(int parallelFilterThreshold) {
+        global.setParallelFilterThreshold(parallelFilterThreshold);
+    }
+
     public void clearMarkedReadAt(String repoId, int issue) {
         global.clearMarkedReadAt(repoId, issue);
     }
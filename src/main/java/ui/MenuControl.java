@@ -1,5 +1,7 @@
 package ui;
 
+import backend.resource.StoredDescription;
+import backend.resource.StringPool;
 import javafx.application.Platform;
 import javafx.scene.control.*;
 import javafx.scene.control.Alert.AlertType;
@@ -61,7 +63,8 @@ public class MenuControl extends MenuBar {
         Menu view = new Menu("View");
         view.getItems().addAll(
                 createRefreshMenuItem(),
-                createDocumentationMenuItem());
+                createDocumentationMenuItem(),
+                createDiagnosticsMenuItem());
 
         getMenus().addAll(file, newMenu, panels, boards, repos, view);
     }
@@ -266,6 +269,43 @@ public class MenuControl extends MenuBar {
         return documentationMenuItem;
     }
 
+    private MenuItem createDiagnosticsMenuItem() {
+        MenuItem diagnosticsMenuItem = new MenuItem("Diagnostics");
+        diagnosticsMenuItem.setOnAction((e) -> {
+            logger.info("Menu: View > Diagnostics");
+            showDiagnostics();
+        });
+        return diagnosticsMenuItem;
+    }
+
+    /**
+     * Shows the memory taken up by the strings of loaded repositories, and saved by pooling them.
+     */
+    private void showDiagnostics() {
+        StringBuilder report = new StringBuilder();
+        long totalSaved = 0;
+        for (Map.Entry<String, StringPool.Stats> entry : StringPool.getStats().entrySet()) {
+            StringPool.Stats stats = entry.getValue();
+            report.append(String.format("%s: %d pooled strings, %d duplicates dropped, %d KB saved%n",
+                    entry.getKey(), stats.getPooled(), stats.getDuplicates(), stats.getBytesSaved() / 1024));
+            totalSaved += stats.getBytesSaved();
+        }
+        report.append(String.format("%nTotal saved by string pooling: %d KB%n", totalSaved / 1024));
+        report.append(String.format("Cached issue descriptions: %d KB%n",
+                StoredDescription.getCachedChars() * 2 / 1024));
+
+        TextArea content = new TextArea(report.toString());
+        content.setEditable(false);
+        content.setWrapText(true);
+
+        Alert dlg = new Alert(AlertType.INFORMATION);
+        dlg.initModality(Modality.APPLICATION_MODAL);
+        dlg.setTitle("Diagnostics");
+        dlg.getDialogPane().setHeaderText("Memory use of loaded repositories");
+        dlg.getDialogPane().setContent(content);
+        dlg.showAndWait();
+    }
+
     private MenuItem createRefreshMenuItem() {
         MenuItem refreshMenuItem = new MenuItem("Refresh");
         refreshMenuItem.setOnAction((e) -> {
@@ -2,8 +2,9 @@ package ui;
 
 import backend.RepoIO;
 import backend.interfaces.RepoStore;
-import backend.json.JSONStore;
+import backend.binary.BinaryStore;
 import backend.json.JSONStoreStub;
+import backend.json.JournaledJSONStore;
 import backend.stub.DummySource;
 import javafx.application.Application;
 import prefs.Preferences;
@@ -139,22 +140,32 @@ public final class TestController {
      * depending on various test options: --test, --testjson etc.
      * @return
      */
-    public static RepoIO createApplicationRepoIO() {
+    public static RepoIO createApplicationRepoIO(Preferences prefs) {
         if (isTestMode()) {
             return createTestingRepoIO(isTestJSONEnabled() ? Optional.of(new JSONStoreStub()) : Optional.empty());
         } else {
-            return new RepoIO(Optional.empty(), Optional.empty(), Optional.empty());
+            return new RepoIO(Optional.empty(), Optional.of(createRepoStore(prefs)), Optional.empty());
         }
     }
 
+    /**
+     * Creates the store for the format chosen in the user's configuration.
+     */
+    private static RepoStore createRepoStore(Preferences prefs) {
+        if (Preferences.STORE_FORMAT_BINARY.equalsIgnoreCase(prefs.getStoreFormat())) {
+            return new BinaryStore();
+        }
+        return new JournaledJSONStore();
+    }
+
     /**
      * Creates a partially stubbed RepoIO used for testing.
-     * @param jsonStoreToBeUsed store to be used with RepoIO,
-     *                          defaults to a new instance of JSONStore if this value is empty
+     * @param storeToBeUsed store to be used with RepoIO,
+     *                      defaults to a new instance of JournaledJSONStore if this value is empty
      * @return
      */
-    public static RepoIO createTestingRepoIO(Optional<JSONStore> jsonStoreToBeUsed) {
-        return new RepoIO(Optional.of(new DummySource()), jsonStoreToBeUsed,
+    public static RepoIO createTestingRepoIO(Optional<RepoStore> storeToBeUsed) {
+        return new RepoIO(Optional.of(new DummySource()), storeToBeUsed,
                           Optional.of(RepoStore.TEST_DIRECTORY));
     }
 }
@@ -0,0 +1,229 @@
+package util;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Reads and writes files that end with a trailer line recording the length and CRC32
+ * checksum of the content before it, so that a damaged file is detected exactly when
+ * it is read. The trailer is a '#' comment line, which lenient JSON parsers skip.
+ *
+ * Files are first written to a temporary file, which is forced to disk and then moved
+ * over the old file, so that a crash part-way through a write leaves the previous
+ * version of the file intact.
+ */
+public final class ChecksummedFile {
+
+    private static final Logger logger = HTLog.get(ChecksummedFile.class);
+
+    private static final String TRAILER_PREFIX = "#checksum ";
+    private static final String TEMP_EXTENSION = ".tmp";
+    private static final int MAX_TRAILER_LENGTH = 64;
+
+    /**
+     * Produces the contents of a file as bytes.
+     */
+    @FunctionalInterface
+    public interface StreamWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Consumes the contents of a file. The stream should not be closed.
+     */
+    @FunctionalInterface
+    public interface StreamReader<T> {
+        T readFrom(InputStream in) throws IOException;
+    }
+
+    /**
+     * Thrown when the contents of a file do not match its trailer.
+     */
+    public static class CorruptedFileException extends IOException {
+
+        private static final long serialVersionUID = 4102347717204957716L;
+
+        public CorruptedFileException(String message) {
+            super(message);
+        }
+
+        public CorruptedFileException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    private static class Trailer {
+        private final long contentLength;
+        private final long checksum;
+        private final int length;
+
+        Trailer(long contentLength, long checksum, int length) {
+            this.contentLength = contentLength;
+            this.checksum = checksum;
+            this.length = length;
+        }
+    }
+
+    private ChecksummedFile() {
+    }
+
+    /**
+     * Atomically replaces the file at {@code path} with the text produced by {@code content}, as UTF-8.
+     */
+    public static void write(Path path, Utility.ContentWriter content) throws IOException {
+        writeStream(path, out -> {
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            content.writeTo(writer);
+            writer.flush();
+        });
+    }
+
+    /**
+     * Atomically replaces the file at {@code path} with the bytes produced by {@code content}.
+     * A newline is added after the content, so that the trailer starts on a line of its own.
+     */
+    public static void writeStream(Path path, StreamWriter content) throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, String.valueOf(path.getFileName()), TEMP_EXTENSION);
+        try {
+            try (FileOutputStream file = new FileOutputStream(temp.toFile())) {
+                BufferedOutputStream buffered = new BufferedOutputStream(file);
+                CRC32 crc = new CRC32();
+                CountingOutputStream counting = new CountingOutputStream(new CheckedOutputStream(buffered, crc));
+                content.writeTo(counting);
+                counting.write('\n');
+                counting.flush();
+
+                String trailer = String.format("%s%d %08x\n", TRAILER_PREFIX, counting.getCount(), crc.getValue());
+                buffered.write(trailer.getBytes(StandardCharsets.UTF_8));
+                buffered.flush();
+                file.getChannel().force(true);
+            }
+            try {
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            forceDirectory(directory);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Reads the file at {@code path} through {@code content}, verifying it against its trailer.
+     * Files without a trailer, which were written before trailers were introduced, are read
+     * without verification.
+     * @throws CorruptedFileException if the file's contents do not match its trailer
+     */
+    public static <T> T readStream(Path path, StreamReader<T> content) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            Optional<Trailer> trailer = readTrailer(channel, size);
+            InputStream in = new BufferedInputStream(Channels.newInputStream(channel.position(0)));
+
+            if (!trailer.isPresent()) {
+                logger.info("No checksum found in " + path.getFileName() + "; reading it unverified");
+                return content.readFrom(in);
+            }
+            if (trailer.get().contentLength != size - trailer.get().length) {
+                throw new CorruptedFileException(String.format("%s has %d bytes of content, expected %d",
+                        path.getFileName(), size - trailer.get().length, trailer.get().contentLength));
+            }
+
+            CRC32 crc = new CRC32();
+            InputStream checked = new CheckedInputStream(ByteStreams.limit(in, trailer.get().contentLength), crc);
+            T result;
+            try {
+                result = content.readFrom(checked);
+            } catch (IOException | RuntimeException e) {
+                // Prefer reporting corruption over whatever it caused the reader to fail with
+                verifyChecksum(path, checked, crc, trailer.get(), e);
+                throw e;
+            }
+            verifyChecksum(path, checked, crc, trailer.get(), null);
+            return result;
+        }
+    }
+
+    private static void verifyChecksum(Path path, InputStream checked, CRC32 crc, Trailer trailer,
+                                       Throwable readFailure) throws CorruptedFileException {
+        try {
+            ByteStreams.copy(checked, ByteStreams.nullOutputStream());
+        } catch (IOException e) {
+            throw new CorruptedFileException("Unable to read " + path.getFileName(), e);
+        }
+        if (crc.getValue() != trailer.checksum) {
+            throw new CorruptedFileException(String.format("%s has checksum %08x, expected %08x",
+                    path.getFileName(), crc.getValue(), trailer.checksum), readFailure);
+        }
+    }
+
+    private static Optional<Trailer> readTrailer(FileChannel channel, long size) throws IOException {
+        int tailLength = (int) Math.min(size, MAX_TRAILER_LENGTH);
+        ByteBuffer tail = ByteBuffer.allocate(tailLength);
+        while (tail.hasRemaining() && channel.read(tail, size - tailLength + tail.position()) != -1) {
+            // Keep reading until the tail is filled
+        }
+        byte[] bytes = tail.array();
+        int end = tail.position();
+        if (end > 0 && bytes[end - 1] == '\n') {
+            end--;
+        }
+        int start = end;
+        while (start > 0 && bytes[start - 1] != '\n') {
+            start--;
+        }
+        if (start == 0) {
+            // The trailer always follows a newline
+            return Optional.empty();
+        }
+
+        String lastLine = new String(bytes, start, end - start, StandardCharsets.US_ASCII);
+        if (!lastLine.startsWith(TRAILER_PREFIX)) {
+            return Optional.empty();
+        }
+        String[] fields = lastLine.substring(TRAILER_PREFIX.length()).trim().split(" ");
+        try {
+            return Optional.of(new Trailer(Long.parseLong(fields[0]), Long.parseLong(fields[1], 16),
+                    tail.position() - start));
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Forces the directory entry created by a move to disk. This is not supported on
+     * every platform, so failures are ignored.
+     */
+    private static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            logger.debug("Unable to force directory " + directory + " to disk", e);
+        }
+    }
+}
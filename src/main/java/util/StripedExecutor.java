@@ -0,0 +1,112 @@
+package util;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs tasks on a bounded pool of threads, such that tasks submitted with the same key
+ * run one at a time in submission order, while tasks with different keys run in parallel.
+ *
+ * Each key has its own queue (a stripe). A stripe with pending tasks occupies at most one
+ * pool thread, and gives the thread back after every task so that a long queue for one
+ * key does not hold up the others. The depth of each stripe's queue, including any task
+ * that is running, is tracked along with its peak.
+ */
+public class StripedExecutor {
+
+    private static final Logger logger = HTLog.get(StripedExecutor.class);
+
+    private static final long IDLE_THREAD_TIMEOUT_SECONDS = 60;
+
+    private final ThreadPoolExecutor pool;
+
+    // Guarded by this
+    private final Map<String, Stripe> stripes = new HashMap<>();
+
+    private static class Stripe {
+        private final Queue<Runnable> pending = new ArrayDeque<>();
+        private final AtomicMaxInteger depth = new AtomicMaxInteger(0);
+        private boolean scheduled = false;
+    }
+
+    /**
+     * @param name prefix of the names of the pool threads
+     * @param threads the maximum number of tasks to run at once
+     */
+    public StripedExecutor(String name, int threads) {
+        pool = new ThreadPoolExecutor(threads, threads, IDLE_THREAD_TIMEOUT_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat(name + "-%d").setDaemon(true).build());
+        pool.allowCoreThreadTimeOut(true);
+    }
+
+    public void execute(String key, Runnable task) {
+        synchronized (this) {
+            Stripe stripe = stripes.computeIfAbsent(key, k -> new Stripe());
+            stripe.pending.add(task);
+            stripe.depth.increment();
+            if (!stripe.scheduled) {
+                stripe.scheduled = true;
+                pool.execute(() -> runNext(stripe));
+            }
+        }
+    }
+
+    /**
+     * Runs the oldest pending task of {@code stripe}, then reschedules the stripe behind
+     * the other stripes waiting for a thread if it has more tasks.
+     */
+    private void runNext(Stripe stripe) {
+        Runnable task;
+        synchronized (this) {
+            task = stripe.pending.poll();
+        }
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            logger.error("Uncaught exception in striped task", e);
+        } finally {
+            synchronized (this) {
+                stripe.depth.decrement();
+                if (stripe.pending.isEmpty()) {
+                    stripe.scheduled = false;
+                } else {
+                    pool.execute(() -> runNext(stripe));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of tasks with {@code key} that are pending or running.
+     */
+    public synchronized int getQueueDepth(String key) {
+        Stripe stripe = stripes.get(key);
+        return stripe == null ? 0 : stripe.depth.get();
+    }
+
+    /**
+     * Returns the largest number of tasks with {@code key} that have been pending or running at once.
+     */
+    public synchronized int getPeakQueueDepth(String key) {
+        Stripe stripe = stripes.get(key);
+        return stripe == null ? 0 : stripe.depth.getMax();
+    }
+
+    /**
+     * Returns the current queue depth of every key that has had tasks.
+     */
+    public synchronized Map<String, Integer> getQueueDepths() {
+        Map<String, Integer> depths = new HashMap<>();
+        stripes.forEach((key, stripe) -> depths.put(key, stripe.depth.get()));
+        return depths;
+    }
+}
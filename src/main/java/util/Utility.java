@@ -1,12 +1,8 @@
 package util;
 
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonParser;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.eclipse.egit.github.core.RepositoryId;
-import ui.UI;
-import util.events.ShowErrorDialogEvent;
 
 import java.io.*;
 import java.nio.file.Files;
@@ -25,11 +21,25 @@ import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public final class Utility {
 
     private static final Logger logger = LogManager.getLogger(Utility.class.getName());
 
+    /**
+     * The number of items in each chunk of {@link #mapChunksInParallel}.
+     */
+    private static final int PARALLEL_CHUNK_SIZE = 4096;
+
+    /**
+     * Produces the contents of a text file being written by {@link ChecksummedFile}.
+     */
+    @FunctionalInterface
+    public interface ContentWriter {
+        void writeTo(Writer writer) throws IOException;
+    }
+
     public static boolean isWellFormedRepoId(String owner, String repo) {
         return !(owner == null || owner.isEmpty() || repo == null || repo.isEmpty())
                 && isWellFormedRepoId(RepositoryId.create(owner, repo).generateId());
@@ -53,35 +63,6 @@ public final class Utility {
         return Optional.empty();
     }
 
-    /**
-     * Returns true on JSON corruption.
-     * TODO remove JSON-specific parts
-     * @param fileName
-     * @param content
-     * @param issueCount
-     * @return
-     */
-    public static boolean writeFile(String fileName, String content, int issueCount) {
-        boolean validPath = !(fileName == null || fileName.isEmpty());
-        if (validPath) {
-            try {
-                BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
-                        new FileOutputStream(fileName), "UTF-8"
-                ));
-                writer.write(content);
-                writer.newLine();
-                writer.close();
-
-                long sizeAfterWrite = Files.size(Paths.get(fileName));
-                return processFileGrowth(sizeAfterWrite, issueCount, fileName);
-            } catch (IOException e) {
-                logger.error(e.getLocalizedMessage(), e);
-                return true;
-            }
-        }
-        return false;
-    }
-
     /**
      * Returns true on failure to delete file
      * @param fileName
@@ -101,25 +82,6 @@ public final class Utility {
         return false;
     }
 
-    private static boolean processFileGrowth(long sizeAfterWrite, int issueCount, String fileName) {
-        // The average issue is about 0.75KB in size. If the total filesize is more than (2 * issueCount KB),
-        // we consider the json to have exploded as the file is unusually large.
-        if (issueCount > 0 && sizeAfterWrite > ((long) issueCount * 2000)) {
-            UI.events.triggerEvent(new ShowErrorDialogEvent("Possible data corruption detected",
-                    fileName + " is unusually large.\n\n"
-                            + "Now proceeding to delete the file and redownload the repository to prevent "
-                            + "further corruption.\n\n"
-                            + "A copy of the corrupted file is saved as " + fileName + "-err. "
-                            + "The error log of the program has been stored in the file hubturbo-err-log.log."
-                    )
-            );
-            parseAndDeleteFile(fileName);
-            copyLog();
-            return true;
-        }
-        return false;
-    }
-
     public static void copyLog() {
         try {
             Files.copy(Paths.get("hubturbo-log.log"),
@@ -130,27 +92,6 @@ public final class Utility {
         }
     }
 
-    public static void parseAndDeleteFile(String fileName) {
-        try {
-            Path corruptedFile = Paths.get(fileName);
-            if (Files.exists(corruptedFile)) {
-                String corruptedFileData = readFile(fileName).get();
-                BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
-                        new FileOutputStream(fileName + "-err"), "UTF-8"
-                ));
-                writer.write(new GsonBuilder().setPrettyPrinting().create().toJson(
-                        new JsonParser().parse(corruptedFileData)
-                ));
-                writer.newLine();
-                writer.close();
-
-                Files.delete(corruptedFile);
-            }
-        } catch (IOException e) {
-            logger.error(e.getLocalizedMessage(), e);
-        }
-    }
-
     public static String stripQuotes(String s) {
         return s.replaceAll("^\"|\"$", "");
     }
@@ -317,5 +258,57 @@ public final class Utility {
         return Optional.empty();
     }
 
+    /**
+     * Returns the first {@code k} of {@code items} in the order of {@code comparator}, as sorting them
+     * and keeping the first {@code k} would, including for items that compare equal. The items are
+     * passed over once, keeping the best {@code k} in a bounded heap, in O(n log k) rather than
+     * the O(n log n) of a full sort.
+     */
+    public static <T> List<T> selectFirst(List<T> items, Comparator<? super T> comparator, int k) {
+        if (k <= 0) {
+            return new ArrayList<>();
+        }
+        if (k >= items.size()) {
+            List<T> sorted = new ArrayList<>(items);
+            sorted.sort(comparator);
+            return sorted;
+        }
+
+        // Positions break ties, as they do in a stable sort
+        List<T> randomAccessItems = items instanceof RandomAccess ? items : new ArrayList<>(items);
+        Comparator<Integer> order = (a, b) -> {
+            int result = comparator.compare(randomAccessItems.get(a), randomAccessItems.get(b));
+            return result != 0 ? result : Integer.compare(a, b);
+        };
+        PriorityQueue<Integer> best = new PriorityQueue<>(k, order.reversed());
+        for (int i = 0; i < randomAccessItems.size(); i++) {
+            if (best.size() < k) {
+                best.add(i);
+            } else if (order.compare(i, best.peek()) < 0) {
+                best.poll();
+                best.add(i);
+            }
+        }
+
+        List<Integer> positions = new ArrayList<>(best);
+        positions.sort(order);
+        List<T> result = new ArrayList<>(k);
+        positions.forEach(position -> result.add(randomAccessItems.get(position)));
+        return result;
+    }
+
+    /**
+     * Applies {@code task} to consecutive chunks of a fixed number of {@code items}, in parallel on the
+     * common fork/join pool, and returns the results in the order of the chunks.
+     */
+    public static <T, R> List<R> mapChunksInParallel(List<T> items, Function<List<T>, R> task) {
+        List<T> randomAccessItems = items instanceof RandomAccess ? items : new ArrayList<>(items);
+        int chunkCount = (randomAccessItems.size() + PARALLEL_CHUNK_SIZE - 1) / PARALLEL_CHUNK_SIZE;
+        return IntStream.range(0, chunkCount).parallel()
+                .mapToObj(chunk -> task.apply(randomAccessItems.subList(chunk * PARALLEL_CHUNK_SIZE,
+                        Math.min((chunk + 1) * PARALLEL_CHUNK_SIZE, randomAccessItems.size()))))
+                .collect(Collectors.toList());
+    }
+
     private Utility() {}
 }
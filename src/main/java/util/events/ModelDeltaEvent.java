@@ -0,0 +1,14 @@
+package util.events;
+
+import backend.resource.ModelDelta;
+
+/**
+ * Triggered when the model of a repository is replaced by another version, with the changes made to it.
+ */
+public class ModelDeltaEvent extends Event {
+    public final ModelDelta delta;
+
+    public ModelDeltaEvent(ModelDelta delta) {
+        this.delta = delta;
+    }
+}
@@ -0,0 +1,9 @@
+package util.events;
+
+import com.google.common.eventbus.Subscribe;
+
+@FunctionalInterface
+public interface ModelDeltaEventHandler extends EventHandler {
+    @Subscribe
+    void handle(ModelDeltaEvent e);
+}
@@ -0,0 +1,133 @@
+package benchmarks;
+
+import backend.UpdateSignature;
+import backend.resource.Model;
+import backend.resource.TurboIssue;
+import backend.resource.TurboLabel;
+import backend.resource.TurboMilestone;
+import backend.resource.TurboUser;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Helpers shared by the benchmarks in this package.
+ *
+ * Benchmarks are plain main classes rather than tests: they are run by hand
+ * (e.g. from the IDE) and print their measurements to standard output.
+ */
+public final class BenchmarkUtils {
+
+    private static final int LABEL_COUNT = 60;
+    private static final int MILESTONE_COUNT = 20;
+    private static final int USER_COUNT = 40;
+
+    private BenchmarkUtils() {
+    }
+
+    /**
+     * Creates a model of {@code issueCount} synthetic issues whose labels, milestones,
+     * assignees and descriptions are spread across a realistic number of distinct values.
+     */
+    public static Model createModel(String repoId, int issueCount) {
+        List<TurboLabel> labels = new ArrayList<>();
+        for (int i = 0; i < LABEL_COUNT; i++) {
+            labels.add(new TurboLabel(repoId, "group" + i % 6 + "." + "label" + i));
+        }
+        List<TurboMilestone> milestones = new ArrayList<>();
+        for (int i = 1; i <= MILESTONE_COUNT; i++) {
+            milestones.add(new TurboMilestone(repoId, i, "V" + i));
+        }
+        List<TurboUser> users = new ArrayList<>();
+        for (int i = 0; i < USER_COUNT; i++) {
+            users.add(new TurboUser(repoId, "user" + i));
+        }
+
+        List<TurboIssue> issues = new ArrayList<>();
+        for (int i = 1; i <= issueCount; i++) {
+            TurboIssue issue = new TurboIssue(repoId, i, "Issue title number " + i,
+                    "user" + i % USER_COUNT, LocalDateTime.of(2015, 1, 1, 0, 0).plusMinutes(i), i % 7 == 0);
+            issue.setDescription("A description of issue " + i + " that is about as long as a typical one. "
+                    + "It mentions a few keywords such as keyword" + i % 100 + " and component" + i % 13 + ".");
+            issue.setUpdatedAt(LocalDateTime.of(2015, 6, 1, 0, 0).plusMinutes(i * 7L));
+            issue.setOpen(i % 3 != 0);
+            issue.setCommentCount(i % 11);
+            issue.setAssignee("user" + i % (USER_COUNT / 2));
+            issue.setMilestoneById(i % MILESTONE_COUNT + 1);
+            List<String> issueLabels = new ArrayList<>();
+            issueLabels.add(labels.get(i % LABEL_COUNT).getFullName());
+            issueLabels.add(labels.get((i * 7) % LABEL_COUNT).getFullName());
+            issue.setLabels(issueLabels);
+            issues.add(issue);
+        }
+
+        return new Model(repoId, issues, labels, milestones, users,
+                new UpdateSignature("issues", "labels", "milestones", "collaborators", new Date()));
+    }
+
+    /**
+     * Runs {@code task} {@code iterations} times after a short warm-up and prints
+     * its average wall time and the peak heap usage observed while it ran.
+     * @return the result of the last run
+     */
+    public static <T> T measure(String name, int iterations, Callable<T> task) throws Exception {
+        T result = null;
+        for (int i = 0; i < Math.max(1, iterations / 2); i++) {
+            result = task.call();
+        }
+
+        long totalNanos = 0;
+        long peakBytes = 0;
+        for (int i = 0; i < iterations; i++) {
+            long baseline = resetPeakHeapUsage();
+            long start = System.nanoTime();
+            result = task.call();
+            totalNanos += System.nanoTime() - start;
+            peakBytes = Math.max(peakBytes, getPeakHeapUsage() - baseline);
+        }
+
+        System.out.printf("%-40s %10.2f ms %10.2f MB peak heap above baseline%n",
+                name, totalNanos / 1e6 / iterations, peakBytes / 1024.0 / 1024.0);
+        return result;
+    }
+
+    /**
+     * Runs {@code task} once and prints how much heap its result keeps alive.
+     * @return the result
+     */
+    public static <T> T measureRetained(String name, Callable<T> task) throws Exception {
+        long baseline = resetPeakHeapUsage();
+        T result = task.call();
+        long retained = resetPeakHeapUsage() - baseline;
+        System.out.printf("%-40s %10.2f MB retained%n", name, retained / 1024.0 / 1024.0);
+        return result;
+    }
+
+    private static long resetPeakHeapUsage() {
+        System.gc();
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                used += pool.getUsage().getUsed();
+            }
+        }
+        return used;
+    }
+
+    private static long getPeakHeapUsage() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
@@ -0,0 +1,108 @@
+package benchmarks;
+
+import backend.resource.Model;
+import backend.resource.MultiModel;
+import backend.resource.TurboIssue;
+import filter.Parser;
+import filter.expression.CompiledFilter;
+import filter.expression.FilterBatch;
+import filter.expression.FilterExpression;
+import filter.expression.FilterPlan;
+import filter.expression.Qualifier;
+import ui.TestController;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures filtering the issues of several open repositories with the filters of a typical board,
+ * as a refresh of its panels does.
+ *
+ * Usage: FilterBenchmark [issuesPerRepo] [repoCount] [iterations]
+ */
+public final class FilterBenchmark {
+
+    private static final List<String> BOARD = Arrays.asList(
+            "label:group1 milestone:V3 assignee:user4 is:open",
+            "is:open is:issue keyword:component7",
+            "author:user3 is:pr",
+            "label:group2.label14 OR label:group3.label15",
+            "repo:benchmark/repo1 -is:open milestone:V1",
+            "is:open keyword:component7 label:group1",
+            "is:open keyword:component7 label:group2",
+            "is:open keyword:component7 assignee:user2",
+            "is:open keyword:component7 is:pr",
+            "is:open keyword:component3",
+            "is:open keyword:component3 milestone:V2",
+            "is:open keyword:component3 -label:group1");
+
+    private FilterBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int issuesPerRepo = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int repoCount = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        MultiModel models = createModels(issuesPerRepo, repoCount);
+        List<TurboIssue> issues = models.getIssues();
+        List<FilterExpression> filters = new ArrayList<>();
+        BOARD.forEach(filter -> filters.add(Parser.parse(filter)));
+
+        System.out.println("Filter benchmark: " + BOARD.size() + " panels over " + repoCount
+                + " repositories of " + issuesPerRepo + " issues");
+
+        BenchmarkUtils.measure("compiled per issue", iterations, () -> {
+            int shown = 0;
+            for (FilterExpression filter : filters) {
+                for (TurboIssue issue : issues) {
+                    shown += Qualifier.process(models, filter, issue) ? 1 : 0;
+                }
+            }
+            return shown;
+        });
+        BenchmarkUtils.measure("compiled once per refresh", iterations, () -> {
+            int shown = 0;
+            for (FilterExpression filter : filters) {
+                CompiledFilter compiled = CompiledFilter.compile(models, filter);
+                for (TurboIssue issue : issues) {
+                    shown += compiled.test(issue) ? 1 : 0;
+                }
+            }
+            return shown;
+        });
+        List<Model> repoModels = models.toModels();
+        BenchmarkUtils.measure("batched in one pass", iterations, () -> {
+            FilterBatch batch = FilterBatch.plan(models, filters);
+            return batch.apply(repoModels, (filter, e) -> {
+                throw e;
+            }).values().stream().mapToInt(List::size).sum();
+        });
+        BenchmarkUtils.measure("batched in parallel", iterations, () -> {
+            FilterBatch batch = FilterBatch.plan(models, filters);
+            return batch.apply(repoModels, 0, (filter, e) -> {
+                throw e;
+            }).values().stream().mapToInt(List::size).sum();
+        });
+        BenchmarkUtils.measure("planned over indexes", iterations, () -> {
+            int shown = 0;
+            for (FilterExpression filter : filters) {
+                shown += FilterPlan.plan(models, filter).apply(repoModels).size();
+            }
+            return shown;
+        });
+    }
+
+    static MultiModel createModels(int issuesPerRepo, int repoCount) {
+        MultiModel models = new MultiModel(TestController.createTestPreferences());
+        for (int i = 0; i < repoCount; i++) {
+            String repoId = "benchmark/repo" + i;
+            models.queuePendingRepository(repoId);
+            Model model = BenchmarkUtils.createModel(repoId, issuesPerRepo);
+            models.addPending(model);
+        }
+        models.setDefaultRepo("benchmark/repo0");
+        return models;
+    }
+}
@@ -0,0 +1,54 @@
+package benchmarks;
+
+import backend.resource.Model;
+import backend.resource.TurboIssue;
+import org.eclipse.egit.github.core.PullRequest;
+import util.Utility;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures merging a large update, such as one received after a long time offline,
+ * into the issues of a large repository, as a local model update does.
+ *
+ * Usage: IssueMergeBenchmark [issueCount] [changedCount] [iterations]
+ */
+public final class IssueMergeBenchmark {
+
+    private IssueMergeBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int issueCount = args.length > 0 ? Integer.parseInt(args[0]) : 30000;
+        int changedCount = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        List<TurboIssue> existing = BenchmarkUtils.createModel("benchmark/merge", issueCount).getIssues();
+
+        // Changed issues spread over the repository, a few of them new, and half of them pull requests
+        Model changedModel = BenchmarkUtils.createModel("benchmark/merge", issueCount + changedCount / 10);
+        List<TurboIssue> changed = new ArrayList<>();
+        List<PullRequest> pullRequests = new ArrayList<>();
+        int step = Math.max(1, changedModel.getIssues().size() / changedCount);
+        for (TurboIssue issue : changedModel.getIssues()) {
+            if (issue.getId() % step == 0 && changed.size() < changedCount) {
+                TurboIssue update = new TurboIssue(issue);
+                update.setUpdatedAt(issue.getUpdatedAt().plusDays(30));
+                changed.add(update);
+                if (issue.getId() / step % 2 == 0) {
+                    PullRequest pullRequest = new PullRequest();
+                    pullRequest.setNumber(issue.getId());
+                    pullRequest.setUpdatedAt(Utility.localDateTimeToDate(update.getUpdatedAt().plusMinutes(1)));
+                    pullRequests.add(pullRequest);
+                }
+            }
+        }
+
+        System.out.println("Issue merge benchmark: " + changed.size() + " changed issues and "
+                + pullRequests.size() + " pull requests into " + issueCount + " issues");
+
+        BenchmarkUtils.measure("reconcile and combine", iterations, () ->
+                TurboIssue.combineWithPullRequests(TurboIssue.reconcile(existing, changed), pullRequests));
+    }
+}
@@ -0,0 +1,106 @@
+package benchmarks;
+
+import backend.resource.Model;
+import backend.resource.TurboIssue;
+import backend.resource.TurboLabel;
+import backend.resource.TurboMilestone;
+import backend.resource.TurboUser;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Compares the indexed lookups of Model with the linear scans over copied lists that
+ * they replaced, on the lookups made for every issue when filtering and displaying it.
+ *
+ * Usage: ModelLookupBenchmark [issueCount] [iterations]
+ */
+public final class ModelLookupBenchmark {
+
+    private ModelLookupBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int issueCount = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        Model model = BenchmarkUtils.createModel("benchmark/lookup", issueCount);
+        List<TurboIssue> issues = model.getIssues();
+
+        System.out.println("Model lookup benchmark with " + issueCount + " issues");
+
+        BenchmarkUtils.measure("issue by id: scan", Math.max(1, iterations / 5), () -> {
+            int found = 0;
+            for (TurboIssue issue : issues) {
+                found += scanIssueById(model, issue.getId()).isPresent() ? 1 : 0;
+            }
+            return found;
+        });
+        BenchmarkUtils.measure("issue by id: index", iterations, () -> {
+            int found = 0;
+            for (TurboIssue issue : issues) {
+                found += model.getIssueById(issue.getId()).isPresent() ? 1 : 0;
+            }
+            return found;
+        });
+
+        BenchmarkUtils.measure("references of issues: scan", iterations, () -> {
+            int found = 0;
+            for (TurboIssue issue : issues) {
+                for (String labelName : issue.getLabels()) {
+                    found += scanLabelByName(model, labelName).isPresent() ? 1 : 0;
+                }
+                found += issue.getMilestone().flatMap(id -> scanMilestoneById(model, id)).isPresent() ? 1 : 0;
+                found += issue.getAssignee().flatMap(login -> scanUserByLogin(model, login)).isPresent() ? 1 : 0;
+                found += scanUserByLogin(model, issue.getCreator()).isPresent() ? 1 : 0;
+            }
+            return found;
+        });
+        BenchmarkUtils.measure("references of issues: index", iterations, () -> {
+            int found = 0;
+            for (TurboIssue issue : issues) {
+                found += model.getLabelsOfIssue(issue).size();
+                found += model.getMilestoneOfIssue(issue).isPresent() ? 1 : 0;
+                found += model.getAssigneeOfIssue(issue).isPresent() ? 1 : 0;
+                found += model.getCreatorOfIssue(issue).isPresent() ? 1 : 0;
+            }
+            return found;
+        });
+    }
+
+    private static Optional<TurboIssue> scanIssueById(Model model, int id) {
+        for (TurboIssue issue : model.getIssues()) {
+            if (issue.getId() == id) {
+                return Optional.of(issue);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static Optional<TurboLabel> scanLabelByName(Model model, String name) {
+        for (TurboLabel label : model.getLabels()) {
+            if (label.getFullName().equals(name)) {
+                return Optional.of(label);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static Optional<TurboMilestone> scanMilestoneById(Model model, int id) {
+        for (TurboMilestone milestone : model.getMilestones()) {
+            if (milestone.getId() == id) {
+                return Optional.of(milestone);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static Optional<TurboUser> scanUserByLogin(Model model, String login) {
+        for (TurboUser user : model.getUsers()) {
+            if (user.getLoginName().equals(login)) {
+                return Optional.of(user);
+            }
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,63 @@
+package benchmarks;
+
+import backend.resource.MultiModel;
+import backend.resource.TurboIssue;
+import filter.Parser;
+import filter.expression.Qualifier;
+import filter.expression.SortOrder;
+import util.Utility;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Compares selecting the issues that a panel with a count shows in one pass over a bounded heap
+ * with sorting every matching issue and keeping the first ones, and sorting issues by their keys extracted
+ * once with comparing them directly, and sorting them sequentially with sorting chunks of them in parallel,
+ * for the sort orders of typical panels.
+ *
+ * Usage: SortBenchmark [issuesPerRepo] [repoCount] [iterations]
+ */
+public final class SortBenchmark {
+
+    private static final List<String> SORTS = Arrays.asList("sort:~id", "sort:~updated", "sort:milestone,~updated",
+            "sort:group0,comments");
+    private static final List<Integer> COUNTS = Arrays.asList(10, 20, 100);
+
+    private SortBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int issuesPerRepo = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int repoCount = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        MultiModel models = FilterBenchmark.createModels(issuesPerRepo, repoCount);
+        List<TurboIssue> issues = new ArrayList<>(models.getIssues());
+
+        System.out.println("Sort benchmark over " + issues.size() + " issues");
+
+        for (String sort : SORTS) {
+            Qualifier sortQualifier = Parser.parse(sort).find(Qualifier::isMetaQualifier).get(0);
+            SortOrder order = sortQualifier.getCompoundSortOrder(models, false);
+            Comparator<TurboIssue> comparator = order.getComparator();
+            BenchmarkUtils.measure(sort + " compared directly", iterations, () -> {
+                List<TurboIssue> sorted = new ArrayList<>(issues);
+                sorted.sort(comparator);
+                return sorted;
+            });
+            BenchmarkUtils.measure(sort + " keys extracted once", iterations, () -> order.sort(issues));
+            BenchmarkUtils.measure(sort + " sorted in parallel", iterations, () ->
+                    order.selectFirst(issues, issues.size(), 0));
+            for (int count : COUNTS) {
+                BenchmarkUtils.measure(sort + " count:" + count + " full sort", iterations, () ->
+                        issues.stream().sorted(comparator).limit(count).collect(Collectors.toList()));
+                BenchmarkUtils.measure(sort + " count:" + count + " top-k", iterations, () ->
+                        Utility.selectFirst(issues, comparator, count));
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package benchmarks;
+
+import backend.json.JSONModelSerializer;
+import backend.resource.Model;
+import backend.resource.serialization.SerializableModel;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import util.ChecksummedFile;
+import util.Utility;
+
+import java.io.File;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Compares the streaming JSON store path against the original String-based one
+ * (SerializableModel -> String -> file, and back) on a large repository.
+ *
+ * Usage: StoreBenchmark [issueCount] [iterations]
+ */
+public final class StoreBenchmark {
+
+    private StoreBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int issueCount = args.length > 0 ? Integer.parseInt(args[0]) : 40000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        Model model = BenchmarkUtils.createModel("benchmark/store", issueCount);
+        File file = File.createTempFile("store-benchmark", ".json");
+        file.deleteOnExit();
+        String fileName = file.getAbsolutePath();
+
+        System.out.println("Store benchmark with " + issueCount + " issues");
+
+        BenchmarkUtils.measure("write: String via SerializableModel", iterations, () -> {
+            String json = new Gson().toJson(new SerializableModel(model));
+            ChecksummedFile.write(file.toPath(), writer -> writer.write(json));
+            return null;
+        });
+        BenchmarkUtils.measure("write: streaming", iterations, () -> {
+            ChecksummedFile.write(file.toPath(), writer -> JSONModelSerializer.write(model, writer));
+            return null;
+        });
+
+        BenchmarkUtils.measure("read: String via SerializableModel", iterations, () ->
+                new Model((SerializableModel) new Gson().fromJson(Utility.readFile(fileName).get(),
+                        new TypeToken<SerializableModel>() {}.getType())));
+        BenchmarkUtils.measure("read: streaming", iterations, () -> {
+            try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                return JSONModelSerializer.read(reader);
+            }
+        });
+    }
+}
@@ -0,0 +1,81 @@
+package benchmarks;
+
+import backend.binary.BinaryModelSerializer;
+import backend.binary.DescriptionSegment;
+import backend.json.JSONModelSerializer;
+import backend.resource.Model;
+import util.ChecksummedFile;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * Compares the size, write time and load time of the JSON and binary snapshot formats
+ * on a large repository, and the heap retained by the loaded model, with the binary
+ * format keeping descriptions either inline or in a separate description segment.
+ *
+ * Usage: StoreFormatBenchmark [issueCount] [iterations]
+ */
+public final class StoreFormatBenchmark {
+
+    private StoreFormatBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int issueCount = args.length > 0 ? Integer.parseInt(args[0]) : 40000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        Model model = BenchmarkUtils.createModel("benchmark/store", issueCount);
+        File jsonFile = File.createTempFile("store-format-benchmark", ".json");
+        jsonFile.deleteOnExit();
+        File binaryFile = File.createTempFile("store-format-benchmark", ".bin");
+        binaryFile.deleteOnExit();
+        Path jsonPath = jsonFile.toPath();
+        Path binaryPath = binaryFile.toPath();
+        File segmentedFile = File.createTempFile("store-format-benchmark", ".bin");
+        segmentedFile.deleteOnExit();
+        Path segmentedPath = segmentedFile.toPath();
+        Path segmentPath = segmentedPath.resolveSibling(segmentedFile.getName() + ".desc");
+        segmentPath.toFile().deleteOnExit();
+        DescriptionSegment segment = DescriptionSegment.create(segmentPath, 1);
+
+        System.out.println("Store format benchmark with " + issueCount + " issues");
+
+        BenchmarkUtils.measure("write: JSON", iterations, () -> {
+            ChecksummedFile.write(jsonPath, writer -> JSONModelSerializer.write(model, writer));
+            return null;
+        });
+        BenchmarkUtils.measure("write: binary", iterations, () -> {
+            ChecksummedFile.writeStream(binaryPath, out -> BinaryModelSerializer.write(model, out));
+            return null;
+        });
+        BenchmarkUtils.measure("write: binary, description segment", iterations, () -> {
+            try (DescriptionSegment.Appender descriptions = segment.appender()) {
+                ChecksummedFile.writeStream(segmentedPath, out -> {
+                    BinaryModelSerializer.write(model, out, descriptions);
+                    descriptions.force();
+                });
+            }
+            return null;
+        });
+        System.out.printf("size: JSON %d KB, binary %d KB, binary %d KB + description segment %d KB%n",
+                jsonFile.length() / 1024, binaryFile.length() / 1024,
+                segmentedFile.length() / 1024, segment.size() / 1024);
+
+        BenchmarkUtils.measure("read: JSON", iterations, () ->
+                ChecksummedFile.readStream(jsonPath, in -> JSONModelSerializer.read(
+                        new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)))));
+        BenchmarkUtils.measure("read: binary", iterations, () ->
+                ChecksummedFile.readStream(binaryPath, BinaryModelSerializer::read));
+        BenchmarkUtils.measure("read: binary, description segment", iterations, () ->
+                ChecksummedFile.readStream(segmentedPath, in -> BinaryModelSerializer.read(in, id -> segment)));
+
+        BenchmarkUtils.measureRetained("retained: binary", () ->
+                ChecksummedFile.readStream(binaryPath, BinaryModelSerializer::read));
+        BenchmarkUtils.measureRetained("retained: binary, description segment", () ->
+                ChecksummedFile.readStream(segmentedPath, in -> BinaryModelSerializer.read(in, id -> segment)));
+    }
+}
@@ -28,6 +28,7 @@ import org.loadui.testfx.utils.FXTestUtils;
 import com.google.common.util.concurrent.SettableFuture;
 
 import backend.interfaces.RepoStore;
+import backend.json.StoreManifest;
 import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.geometry.Point2D;
@@ -112,7 +113,12 @@ public class UITest extends GuiTest {
                     .filter(Files::isRegularFile)
                     .filter(p ->
                         getFileExtension(String.valueOf(p.getFileName())).equalsIgnoreCase("json") ||
-                            getFileExtension(String.valueOf(p.getFileName())).equalsIgnoreCase("json-err")
+                            getFileExtension(String.valueOf(p.getFileName())).equalsIgnoreCase("json-err") ||
+                            getFileExtension(String.valueOf(p.getFileName())).equalsIgnoreCase("journal") ||
+                            getFileExtension(String.valueOf(p.getFileName())).equalsIgnoreCase("bin") ||
+                            getFileExtension(String.valueOf(p.getFileName())).equalsIgnoreCase("metadata") ||
+                            getFileExtension(String.valueOf(p.getFileName())).equalsIgnoreCase("desc") ||
+                            String.valueOf(p.getFileName()).equals(StoreManifest.MANIFEST_FILE_NAME)
                     )
                     .forEach(p -> new File(p.toAbsolutePath().toString()).delete());
             }
@@ -1,26 +1,36 @@
 package tests;
 
+import backend.UpdateSignature;
 import backend.interfaces.RepoStore;
+import backend.json.JSONStore;
+import backend.resource.Model;
+import backend.stub.DummyRepo;
 import guitests.UITest;
-import org.apache.commons.lang3.StringUtils;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import ui.UI;
-import util.Utility;
+import util.ChecksummedFile;
 import util.events.EventDispatcherStub;
-import util.events.ShowErrorDialogEventHandler;
 
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Date;
 import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 public class ErrorJsonTests {
 
-    private int eventCount = 0;
+    private static final String REPO_ID = "dummy1/dummy1";
+    private static final Path STORED_FILE = Paths.get("store/test/dummy1-dummy1.json");
 
     @BeforeClass
     public static void setup() {
@@ -33,18 +43,88 @@ public class ErrorJsonTests {
     }
 
     @Test
-    public void testJsonExplosionDetection() throws ExecutionException, InterruptedException {
-        // Expect 0KB file is issueCount is 0. A non-empty file will fail this check.
-        UI.events.registerEvent((ShowErrorDialogEventHandler) e -> eventCount++);
-        String largeDummy2Kb = StringUtils.leftPad("foobar", 2100, '*');
-        boolean corruptedJson = Utility.writeFile("store/test/dummy1-dummy1.json", largeDummy2Kb, 1);
-        assertEquals(true, corruptedJson);
-        assertEquals(1, eventCount);
+    public void testChecksumMismatchDetection() throws ExecutionException, InterruptedException, IOException {
+        JSONStore jsonStore = new JSONStore();
+        jsonStore.saveRepository(REPO_ID, createDummyModel()).get();
+
+        // Flip a byte in the middle of the content, keeping the file the same size
+        try (RandomAccessFile file = new RandomAccessFile(STORED_FILE.toFile(), "rw")) {
+            file.seek(file.length() / 2);
+            int original = file.read();
+            file.seek(file.length() / 2);
+            file.write(original ^ 1);
+        }
+        assertLoadFails(jsonStore);
 
         // Then, we check that the json-err file exists.
         assertEquals(true, Files.exists(Paths.get("store/test/dummy1-dummy1.json-err")));
     }
 
+    @Test
+    public void testTruncationDetection() throws ExecutionException, InterruptedException, IOException {
+        JSONStore jsonStore = new JSONStore();
+        jsonStore.saveRepository(REPO_ID, createDummyModel()).get();
+
+        byte[] content = Files.readAllBytes(STORED_FILE);
+        String text = new String(content, StandardCharsets.UTF_8);
+        String trailer = text.substring(text.lastIndexOf('\n', text.length() - 2) + 1);
+        Files.write(STORED_FILE, (text.substring(0, text.length() / 2) + "\n" + trailer)
+                .getBytes(StandardCharsets.UTF_8));
+        assertLoadFails(jsonStore);
+    }
+
+    @Test
+    public void testUnverifiedLegacyFile() throws ExecutionException, InterruptedException, IOException {
+        Model model = createDummyModel();
+        JSONStore jsonStore = new JSONStore();
+        jsonStore.saveRepository(REPO_ID, model).get();
+
+        // Files written before checksums were introduced have no trailer, and are still loaded
+        String text = new String(Files.readAllBytes(STORED_FILE), StandardCharsets.UTF_8);
+        Files.write(STORED_FILE, text.substring(0, text.lastIndexOf('\n', text.length() - 2) + 1)
+                .getBytes(StandardCharsets.UTF_8));
+        assertEquals(model, jsonStore.loadRepository(REPO_ID).get());
+    }
+
+    @Test
+    public void testFailedWriteKeepsPreviousFile() throws IOException {
+        ChecksummedFile.write(STORED_FILE, writer -> writer.write("{}"));
+        byte[] previous = Files.readAllBytes(STORED_FILE);
+        try {
+            ChecksummedFile.write(STORED_FILE, writer -> {
+                writer.write("{\"repoId\":");
+                throw new IOException("Simulated failure");
+            });
+            fail();
+        } catch (IOException e) {
+            assertEquals("Simulated failure", e.getMessage());
+        }
+        assertEquals(new String(previous, StandardCharsets.UTF_8),
+                new String(Files.readAllBytes(STORED_FILE), StandardCharsets.UTF_8));
+        try (Stream<Path> files = Files.list(STORED_FILE.getParent())) {
+            assertEquals(false, files.anyMatch(p -> p.toString().endsWith(".tmp")));
+        }
+    }
+
+    private static void assertLoadFails(JSONStore jsonStore) throws InterruptedException {
+        try {
+            jsonStore.loadRepository(REPO_ID).get();
+            fail();
+        } catch (ExecutionException e) {
+            // Expected
+        }
+    }
+
+    private static Model createDummyModel() {
+        DummyRepo dummy = new DummyRepo();
+        return new Model(REPO_ID,
+                dummy.getIssues(REPO_ID),
+                dummy.getLabels(REPO_ID),
+                dummy.getMilestones(REPO_ID),
+                dummy.getCollaborators(REPO_ID),
+                new UpdateSignature("issues", "labels", "milestones", "collaborators", new Date()));
+    }
+
     @After
     public void cleanup() {
         UITest.clearTestFolder();
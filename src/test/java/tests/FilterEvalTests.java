@@ -7,7 +7,13 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import org.junit.Rule;
 import org.junit.Test;
@@ -15,12 +21,18 @@ import org.junit.rules.ExpectedException;
 
 import backend.interfaces.IModel;
 import backend.resource.*;
+import filter.MetaQualifierInfo;
 import filter.ParseException;
 import filter.Parser;
 import filter.SemanticException;
+import filter.expression.CompiledFilter;
+import filter.expression.FilterBatch;
 import filter.expression.FilterExpression;
+import filter.expression.FilterPlan;
+import filter.expression.FilterView;
 import filter.expression.Qualifier;
 import filter.expression.QualifierType;
+import filter.expression.SortOrder;
 import prefs.Preferences;
 
 import static filter.expression.Qualifier.USER_WARNING_ERROR_FORMAT;
@@ -859,6 +871,282 @@ public class FilterEvalTests {
     }
 
 
+    /**
+     * A compiled filter accepts the issues of its repository that satisfy every qualifier,
+     * and only reports invalid qualifiers when an issue is tested against them.
+     */
+    @Test
+    public void compiledFilter() {
+        TurboUser user = new TurboUser(REPO, "alice", "Alice");
+        TurboLabel label = new TurboLabel(REPO, "type.bug");
+        TurboMilestone milestone = new TurboMilestone(REPO, 1, "v1.0");
+        TurboIssue bug = new TurboIssue(REPO, 1, "Crash on start", "alice", LocalDateTime.now(), false);
+        bug.setLabels(Arrays.asList("type.bug"));
+        bug.setMilestoneById(1);
+        bug.setAssignee(user);
+        TurboIssue other = new TurboIssue(REPO, 2, "Other", "alice", LocalDateTime.now(), false);
+        TurboIssue elsewhere = new TurboIssue("other/repo", 1, "Crash on start", "alice", LocalDateTime.now(), false);
+        IModel model = TestUtils.modelWith(bug, label, milestone, user);
+
+        FilterExpression expr = Parser.parse("label:bug milestone:v1 assignee:ali author:ALI crash");
+        CompiledFilter compiled = CompiledFilter.compile(model, expr);
+        assertEquals(expr, compiled.getExpression());
+        assertTrue(compiled.test(bug));
+        assertFalse(compiled.test(other));
+        assertFalse(compiled.test(elsewhere));
+        assertTrue(expr.isSatisfiedBy(model, bug, new MetaQualifierInfo(new ArrayList<>())));
+        assertFalse(expr.isSatisfiedBy(model, other, new MetaQualifierInfo(new ArrayList<>())));
+
+        CompiledFilter invalid = CompiledFilter.compile(empty, Parser.parse("repo:other/repo OR is:invalid"));
+        assertTrue(invalid.test(elsewhere));
+        thrown.expect(SemanticException.class);
+        invalid.test(bug);
+    }
+
+    /**
+     * Tests that a planned filter finds the same issues as testing every issue, while only
+     * testing the issues that the indexes of the model leave.
+     */
+    @Test
+    public void filterPlan() {
+        TurboUser alice = new TurboUser(REPO, "alice", "Alice");
+        TurboUser bob = new TurboUser(REPO, "bob", "Bob");
+        List<TurboIssue> issues = new ArrayList<>();
+        for (int id = 1; id <= 20; id++) {
+            TurboIssue issue = new TurboIssue(REPO, id, "Issue " + id, id % 2 == 0 ? "alice" : "bob",
+                    LocalDateTime.now(), id % 5 == 0);
+            issue.setOpen(id % 3 != 0);
+            issue.setLabels(id % 4 == 0 ? Arrays.asList("type.bug") : new ArrayList<>());
+            if (id % 6 == 0) issue.setMilestoneById(1);
+            if (id % 7 == 0) {
+                issue.setAssignee(alice);
+            }
+            issues.add(issue);
+        }
+        Model model = new Model(REPO, issues,
+                new ArrayList<>(Arrays.asList(new TurboLabel(REPO, "type.bug"))),
+                new ArrayList<>(Arrays.asList(new TurboMilestone(REPO, 1, "v1.0"))),
+                new ArrayList<>(Arrays.asList(alice, bob)));
+        IModel models = TestUtils.singletonModel(model);
+
+        List<String> filters = Arrays.asList("label:bug", "milestone:v1 is:open", "assignee:ali OR author:bob",
+                "-is:open is:pr", "involves:alice -label:bug", "id:<=12 no:milestone", "has:assignee issue 1",
+                "is:read OR is:merged", "state:closed type:issue", "label:bug milestone:v1 assignee:alice",
+                "issue 1 is:open", "title:\"ue 1\" OR desc:x", "label:bug -\"1\"", "in:title sue");
+        for (String filter : filters) {
+            FilterExpression expr = Parser.parse(filter);
+            CompiledFilter compiled = CompiledFilter.compile(models, expr);
+            List<TurboIssue> expected = issues.stream().filter(compiled).collect(Collectors.toList());
+            assertEquals(filter, expected, FilterPlan.plan(models, expr).apply(Arrays.asList(model)));
+        }
+
+        FilterPlan plan = FilterPlan.plan(models, Parser.parse("label:bug milestone:v1"));
+        assertEquals(Arrays.asList(issues.get(11)), plan.getCandidates(model));
+
+        // Users who are not in the repository are still reported
+        thrown.expect(SemanticException.class);
+        FilterPlan.plan(models, Parser.parse("label:bug author:carol")).apply(Arrays.asList(model));
+    }
+
+    @Test
+    public void filterPlanRepositories() {
+        TurboIssue issue = new TurboIssue(REPO, 1, "Crash");
+        TurboIssue elsewhere = new TurboIssue("other/repo", 1, "Crash");
+        Model model = new Model(REPO, new ArrayList<>(Arrays.asList(issue)),
+                new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        Model otherModel = new Model("other/repo", new ArrayList<>(Arrays.asList(elsewhere)),
+                new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        MultiModel models = (MultiModel) TestUtils.singletonModel(model);
+        models.queuePendingRepository("other/repo");
+        models.addPending(otherModel);
+
+        FilterPlan plan = FilterPlan.plan(models, Parser.parse("crash"));
+        assertTrue(plan.canMatch(REPO));
+        assertFalse(plan.canMatch("other/repo"));
+        assertTrue(plan.getCandidates(otherModel).isEmpty());
+        assertEquals(Arrays.asList(issue), plan.apply(models.toModels()));
+
+        plan = FilterPlan.plan(models, Parser.parse("repo:OTHER/repo crash"));
+        assertFalse(plan.canMatch(REPO));
+        assertEquals(Arrays.asList(elsewhere), plan.apply(models.toModels()));
+
+        plan = FilterPlan.plan(models, Parser.parse("repo:other/repo OR repo:test/test"));
+        assertTrue(plan.canMatch(REPO) && plan.canMatch("other/repo"));
+        assertFalse(plan.canMatch("third/repo"));
+
+        plan = FilterPlan.plan(models, Parser.parse("-repo:test/test"));
+        assertTrue(plan.canMatch("third/repo"));
+        assertEquals(Arrays.asList(elsewhere), plan.apply(models.toModels()));
+
+        plan = FilterPlan.plan(models, Parser.parse("repo:other/repo repo:test/test"));
+        assertFalse(plan.canMatch(REPO) || plan.canMatch("other/repo"));
+    }
+
+    /**
+     * Tests that filtering the panels of a board together finds the same issues as filtering each
+     * panel on its own, and that a panel whose filter fails does not affect the others.
+     */
+    @Test
+    public void filterBatch() {
+        TurboUser alice = new TurboUser(REPO, "alice", "Alice");
+        List<TurboIssue> issues = new ArrayList<>();
+        for (int id = 1; id <= 20; id++) {
+            TurboIssue issue = new TurboIssue(REPO, id, "Issue " + id, "alice", LocalDateTime.now(), id % 5 == 0);
+            issue.setOpen(id % 3 != 0);
+            issue.setLabels(id % 4 == 0 ? Arrays.asList("type.bug") : new ArrayList<>());
+            if (id % 7 == 0) {
+                issue.setAssignee(alice);
+            }
+            issues.add(issue);
+        }
+        Model model = new Model(REPO, issues,
+                new ArrayList<>(Arrays.asList(new TurboLabel(REPO, "type.bug"))),
+                new ArrayList<>(), new ArrayList<>(Arrays.asList(alice)));
+        IModel models = TestUtils.singletonModel(model);
+
+        List<FilterExpression> exprs = new ArrayList<>();
+        Arrays.asList("is:open label:bug", "is:open -label:bug", "is:open OR assignee:alice", "issue 1",
+                "is:open label:bug", "is:pr is:open", "repo:other/repo is:open", "is:open is:invalid")
+                .forEach(filter -> exprs.add(Parser.parse(filter)));
+
+        List<FilterExpression> failed = new ArrayList<>();
+        Map<FilterExpression, List<TurboIssue>> results = FilterBatch.plan(models, exprs)
+                .apply(Arrays.asList(model), (expr, e) -> failed.add(expr));
+
+        assertEquals(Arrays.asList(exprs.get(7)), failed);
+        assertEquals(new ArrayList<>(new LinkedHashSet<>(exprs.subList(0, 7))), new ArrayList<>(results.keySet()));
+        for (FilterExpression expr : results.keySet()) {
+            CompiledFilter compiled = CompiledFilter.compile(models, expr);
+            assertEquals(expr.toString(), issues.stream().filter(compiled).collect(Collectors.toList()),
+                    results.get(expr));
+        }
+    }
+
+    /**
+     * Tests that a view brought up to date from a few changes has the issues that filtering and sorting
+     * every issue again would give, and that it is rebuilt instead when it cannot be.
+     */
+    @Test
+    public void filterViewUpdate() {
+        List<TurboIssue> issues = new ArrayList<>();
+        for (int id = 1; id <= 40; id++) {
+            TurboIssue issue = new TurboIssue(REPO, id, "Issue " + id);
+            issue.setOpen(id % 2 == 0);
+            issues.add(issue);
+        }
+        Model model = new Model(REPO, issues, new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        MultiModel models = (MultiModel) TestUtils.singletonModel(model);
+
+        FilterExpression expr = Parser.parse("is:open");
+        FilterView view = new FilterView(expr, Qualifier.getSortOrder(models, "id", true, false));
+        assertFalse(view.update(models, models.toModels(), new HashMap<>()));
+        view.rebuild(models, models.toModels(), FilterPlan.plan(models, expr).apply(models.toModels()),
+                Integer.MAX_VALUE);
+        assertEquals(Arrays.asList(40, 38, 36), getIds(view.getIssues()).subList(0, 3));
+
+        // Views of panels with a count only keep the issues shown
+        FilterExpression countedExpr = Parser.parse("is:open count:3");
+        FilterView counted = new FilterView(countedExpr, Qualifier.getSortOrder(models, "id", true, false));
+        counted.rebuild(models, models.toModels(), FilterPlan.plan(models, countedExpr).apply(models.toModels()),
+                Integer.MAX_VALUE);
+        assertEquals(Arrays.asList(40, 38, 36), getIds(counted.getIssues()));
+
+        // Issue 40 is closed, 3 is opened, 10 is removed and 41 is added
+        List<TurboIssue> newIssues = new ArrayList<>(issues);
+        TurboIssue closed = new TurboIssue(issues.get(39));
+        closed.setOpen(false);
+        newIssues.set(39, closed);
+        TurboIssue opened = new TurboIssue(issues.get(2));
+        opened.setOpen(true);
+        newIssues.set(2, opened);
+        newIssues.remove(9);
+        newIssues.add(new TurboIssue(REPO, 41, "Issue 41"));
+        models.replace(new Model(REPO, newIssues, new ArrayList<>(), new ArrayList<>(), new ArrayList<>()));
+
+        assertTrue(view.update(models, models.toModels(), new HashMap<>()));
+        List<Integer> expected = FilterPlan.plan(models, expr).apply(models.toModels()).stream()
+                .map(TurboIssue::getId)
+                .sorted(Comparator.reverseOrder())
+                .collect(Collectors.toList());
+        assertEquals(expected, getIds(view.getIssues()));
+        assertEquals(Arrays.asList(41, 38, 36), getIds(view.getIssues()).subList(0, 3));
+
+        // A counted view that loses one of its issues is rebuilt, but one that only gains issues is not
+        assertFalse(counted.update(models, models.toModels(), new HashMap<>()));
+        counted.rebuild(models, models.toModels(), FilterPlan.plan(models, countedExpr).apply(models.toModels()),
+                Integer.MAX_VALUE);
+        assertEquals(Arrays.asList(41, 38, 36), getIds(counted.getIssues()));
+        newIssues.add(new TurboIssue(REPO, 42, "Issue 42"));
+        models.replace(new Model(REPO, newIssues, new ArrayList<>(), new ArrayList<>(), new ArrayList<>()));
+        assertTrue(counted.update(models, models.toModels(), new HashMap<>()));
+        assertEquals(Arrays.asList(42, 41, 38), getIds(counted.getIssues()));
+
+        // Changes to most issues rebuild the view
+        List<TurboIssue> reopened = models.getIssues().stream().map(issue -> {
+            TurboIssue copy = new TurboIssue(issue);
+            copy.setOpen(true);
+            return copy;
+        }).collect(Collectors.toList());
+        models.replace(new Model(REPO, reopened, new ArrayList<>(), new ArrayList<>(), new ArrayList<>()));
+        assertFalse(view.update(models, models.toModels(), new HashMap<>()));
+
+        // Views of filters that issues can satisfy without changing are always rebuilt
+        FilterView unread = new FilterView(Parser.parse("is:unread"),
+                Qualifier.getSortOrder(models, "id", true, false));
+        unread.rebuild(models, models.toModels(), new ArrayList<>(), Integer.MAX_VALUE);
+        assertFalse(unread.update(models, models.toModels(), new HashMap<>()));
+    }
+
+    /**
+     * Tests that filtering and sorting many issues in parallel gives the same issues, in the same order,
+     * and the same failures, as doing so sequentially.
+     */
+    @Test
+    public void parallelFilterAndSort() {
+        TurboUser alice = new TurboUser(REPO, "alice");
+        List<TurboIssue> issues = new ArrayList<>();
+        for (int id = 1; id <= 10000; id++) {
+            TurboIssue issue = new TurboIssue(REPO, id, "Issue " + id);
+            issue.setOpen(id % 3 != 0);
+            if (id % 7 == 0) {
+                issue.setLabels(Arrays.asList("type.bug"));
+            }
+            if (id % 5 == 0) {
+                issue.setAssignee(alice);
+            }
+            issues.add(issue);
+        }
+        Model model = new Model(REPO, issues,
+                new ArrayList<>(Arrays.asList(new TurboLabel(REPO, "type.bug"))),
+                new ArrayList<>(), new ArrayList<>(Arrays.asList(alice)));
+        IModel models = TestUtils.singletonModel(model);
+
+        List<FilterExpression> exprs = new ArrayList<>();
+        Arrays.asList("is:open label:bug", "is:open OR assignee:alice", "issue 1", "is:open is:invalid")
+                .forEach(filter -> exprs.add(Parser.parse(filter)));
+
+        List<FilterExpression> sequentialFailed = new ArrayList<>();
+        Map<FilterExpression, List<TurboIssue>> sequential = FilterBatch.plan(models, exprs)
+                .apply(Arrays.asList(model), Integer.MAX_VALUE, (expr, e) -> sequentialFailed.add(expr));
+        List<FilterExpression> parallelFailed = new ArrayList<>();
+        Map<FilterExpression, List<TurboIssue>> parallel = FilterBatch.plan(models, exprs)
+                .apply(Arrays.asList(model), 0, (expr, e) -> parallelFailed.add(expr));
+        assertEquals(Arrays.asList(exprs.get(3)), parallelFailed);
+        assertEquals(sequentialFailed, parallelFailed);
+        assertEquals(sequential, parallel);
+
+        // Issues that are equal in the order keep the order they came in
+        SortOrder order = Qualifier.getSortOrder(models, "status", false, false);
+        for (int count : Arrays.asList(10, 5000, issues.size())) {
+            assertEquals(order.selectFirst(issues, count), order.selectFirst(issues, count, 0));
+        }
+    }
+
+    private static List<Integer> getIds(List<TurboIssue> issues) {
+        return issues.stream().map(TurboIssue::getId).collect(Collectors.toList());
+    }
+
+
     /**
      * Tests the filter string in the context of an empty model
      */
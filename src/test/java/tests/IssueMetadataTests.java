@@ -1,18 +1,31 @@
 package tests;
 
 import static junit.framework.TestCase.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 
+import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.eclipse.egit.github.core.Comment;
 import org.eclipse.egit.github.core.User;
 import org.junit.Test;
 
 import backend.IssueMetadata;
+import backend.github.DownloadMetadataTask;
+import backend.interfaces.Repo;
+import backend.interfaces.TaskRunner;
+import backend.resource.TurboIssue;
 import github.IssueEventType;
 import github.TurboIssueEvent;
 import util.Utility;
@@ -127,6 +140,34 @@ public class IssueMetadataTests {
         assertEquals("comments", updated.getCommentsETag());
     }
 
+    @Test
+    public void unchangedIssueIsNotDownloaded() {
+        LocalDateTime updatedAt = LocalDateTime.of(2015, 1, 1, 0, 0);
+        TurboIssue issue = new TurboIssue("test/test", 1, "Issue");
+        issue.setUpdatedAt(updatedAt);
+        issue.setMetadata(IssueMetadata.intermediate(stubEvents(), stubComments(), "events", "comments", updatedAt));
+
+        // The events request is answered with "not modified"
+        Repo repo = mock(Repo.class);
+        when(repo.getUpdatedEvents("test/test", 1, "events"))
+            .thenReturn(new ImmutablePair<>(new ArrayList<>(), "events"));
+        DownloadMetadataTask task = new DownloadMetadataTask(mock(TaskRunner.class), repo, "test/test",
+            Arrays.asList(issue));
+        task.run();
+
+        IssueMetadata downloaded = task.response.join().get(1);
+        assertEquals(3, downloaded.getEvents().size());
+        assertEquals(3, downloaded.getComments().size());
+        verify(repo, never()).getAllComments(anyString(), any(TurboIssue.class));
+
+        // Once the issue is updated, its comments are downloaded again
+        issue.setUpdatedAt(updatedAt.plusDays(1));
+        task = new DownloadMetadataTask(mock(TaskRunner.class), repo, "test/test", Arrays.asList(issue));
+        task.run();
+        verify(repo, times(1)).getAllComments("test/test", issue);
+        assertEquals(updatedAt.plusDays(1), task.response.join().get(1).getIssueUpdatedAt());
+    }
+
     private static List<TurboIssueEvent> stubEvents() {
         List<TurboIssueEvent> events = new ArrayList<>();
         events.add(new TurboIssueEvent(new User().setLogin("test"), IssueEventType.Closed, now));
@@ -0,0 +1,80 @@
+package tests;
+
+import backend.resource.Model;
+import backend.resource.ModelDelta;
+import backend.resource.TurboIssue;
+import backend.resource.TurboLabel;
+import backend.resource.TurboMilestone;
+import backend.resource.TurboUser;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ModelDeltaTests {
+
+    private static final String REPO = "test/test";
+
+    @Test
+    public void issueChanges() {
+        TurboIssue unchanged = new TurboIssue(REPO, 1, "unchanged");
+        TurboIssue changed = new TurboIssue(REPO, 2, "changed");
+        TurboIssue removed = new TurboIssue(REPO, 3, "removed");
+        Model from = new Model(REPO, Arrays.asList(unchanged, changed, removed),
+                new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+
+        TurboIssue replacement = new TurboIssue(changed);
+        TurboIssue added = new TurboIssue(REPO, 4, "added");
+        Model to = new Model(REPO, Arrays.asList(unchanged, replacement, added),
+                from.getLabels(), from.getMilestones(), from.getUsers());
+
+        ModelDelta delta = ModelDelta.between(from, to);
+        assertEquals(REPO, delta.getRepoId());
+        assertEquals(from.getVersion(), delta.getFromVersion());
+        assertEquals(to.getVersion(), delta.getToVersion());
+        assertEquals(new HashSet<>(Arrays.asList(4)), delta.getAddedIssues());
+        assertEquals(new HashSet<>(Arrays.asList(2)), delta.getChangedIssues());
+        assertEquals(new HashSet<>(Arrays.asList(3)), delta.getRemovedIssues());
+        assertEquals(Arrays.asList(4, 2, 3), delta.getAffectedIssues());
+        assertEquals(3, delta.size());
+
+        assertFalse(delta.isLarge(to, 1.0));
+        assertTrue(delta.isLarge(to, 0.5));
+    }
+
+    @Test
+    public void resourceChanges() {
+        List<TurboLabel> labels = Arrays.asList(new TurboLabel(REPO, "ff0000", "type.bug"),
+                new TurboLabel(REPO, "type.feature"));
+        List<TurboMilestone> milestones = Arrays.asList(new TurboMilestone(REPO, 1, "v1"));
+        List<TurboUser> users = Arrays.asList(new TurboUser(REPO, "alice"), new TurboUser(REPO, "bob"));
+        Model from = new Model(REPO, new ArrayList<>(), labels, milestones, users);
+
+        Model to = new Model(REPO, new ArrayList<>(),
+                Arrays.asList(new TurboLabel(REPO, "00ff00", "type.bug"), new TurboLabel(REPO, "type.feature")),
+                Arrays.asList(new TurboMilestone(REPO, 1, "v1"), new TurboMilestone(REPO, 2, "v2")),
+                Arrays.asList(new TurboUser(REPO, "alice")));
+
+        ModelDelta delta = ModelDelta.between(from, to);
+        assertEquals(new HashSet<>(Arrays.asList("type.bug")), delta.getChangedLabels());
+        assertEquals(new HashSet<>(Arrays.asList(2)), delta.getChangedMilestones());
+        assertEquals(new HashSet<>(Arrays.asList("bob")), delta.getChangedUsers());
+        assertTrue(delta.getAffectedIssues().isEmpty());
+        assertTrue(delta.isLarge(to, 1.0));
+    }
+
+    @Test
+    public void noChanges() {
+        Model model = new Model(REPO, Arrays.asList(new TurboIssue(REPO, 1, "issue")),
+                new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+
+        assertTrue(ModelDelta.between(model, new Model(model)).isEmpty());
+        assertTrue(ModelDelta.between(model, model.withUpdateSignature(model.getUpdateSignature())).isEmpty());
+    }
+}
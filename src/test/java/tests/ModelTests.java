@@ -8,6 +8,7 @@ import backend.stub.DummyRepoState;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.io.IOException;
 import java.util.*;
 
 import static org.junit.Assert.assertEquals;
@@ -48,23 +49,33 @@ public class ModelTests {
         modelCopyNotUpdated = new Model(modelEmptySig);
     }
 
+    @Test(expected = UnsupportedOperationException.class)
+    public void immutability_issues() {
+        modelUpdated.getIssues().add(new TurboIssue(REPO, 11, ""));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void immutability_labels() {
+        modelUpdated.getLabels().add(new TurboLabel(REPO, "aksdjl"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void immutability_milestones() {
+        modelUpdated.getMilestones().add(new TurboMilestone(REPO, 11, ""));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void immutability_users() {
+        modelUpdated.getUsers().add(new TurboUser(REPO, ""));
+    }
+
     @Test
-    public void immutability() {
-        Model other = new Model(modelUpdated);
-        other.getIssues().add(new TurboIssue(REPO, 11, ""));
-        assertEquals(modelUpdated, other);
-
-        other = new Model(modelUpdated);
-        other.getLabels().add(new TurboLabel(REPO, "aksdjl"));
-        assertEquals(modelUpdated, other);
-
-        other = new Model(modelUpdated);
-        other.getMilestones().add(new TurboMilestone(REPO, 11, ""));
-        assertEquals(modelUpdated, other);
-
-        other = new Model(modelUpdated);
-        other.getUsers().add(new TurboUser(REPO, ""));
-        assertEquals(modelUpdated, other);
+    public void immutability_copiedInput() {
+        List<TurboIssue> issues = new ArrayList<>(modelUpdated.getIssues());
+        Model model = new Model(REPO, issues, new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        issues.add(new TurboIssue(REPO, 11, ""));
+        assertEquals(modelUpdated.getIssues(), model.getIssues());
+        assertTrue(model.getIssues() == new Model(model).getIssues());
     }
 
     @Test
@@ -335,4 +346,226 @@ public class ModelTests {
         assertEquals(1, result.get().getId());
         assertEquals(newLabels, result.get().getLabels());
     }
+
+    /**
+     * Lookups find the first matching resource, whether ids are dense or sparse.
+     */
+    @Test
+    public void lookups() {
+        TurboIssue first = new TurboIssue(REPO, 3, "first");
+        TurboIssue duplicate = new TurboIssue(REPO, 3, "duplicate");
+        TurboIssue sparse = new TurboIssue(REPO, 1000000, "sparse");
+        TurboLabel label = new TurboLabel(REPO, "type.bug");
+        TurboMilestone milestone = new TurboMilestone(REPO, 2, "v1");
+        TurboUser user = new TurboUser(REPO, "user");
+
+        Model dense = new Model(REPO, Arrays.asList(first, duplicate),
+                Arrays.asList(label, new TurboLabel(REPO, "ff0000", "type.bug")),
+                Arrays.asList(milestone), Arrays.asList(user));
+        assertEquals(Optional.of(first), dense.getIssueById(3));
+        assertEquals(Optional.empty(), dense.getIssueById(4));
+        assertEquals(Optional.empty(), dense.getIssueById(1000000));
+        assertTrue(label == dense.getLabelByActualName("type.bug").get());
+        assertEquals(Optional.empty(), dense.getLabelByActualName("type.feature"));
+        assertEquals(Optional.of(milestone), dense.getMilestoneById(2));
+        assertEquals(Optional.of(milestone), dense.getMilestoneByTitle("v1"));
+        assertEquals(Optional.empty(), dense.getMilestoneById(1));
+        assertEquals(Optional.of(user), dense.getUserByLogin("user"));
+        assertEquals(Optional.empty(), dense.getUserByLogin("other"));
+
+        Model sparseModel = new Model(REPO, Arrays.asList(sparse, first, duplicate),
+                new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        assertEquals(Optional.of(sparse), sparseModel.getIssueById(1000000));
+        assertEquals(Optional.of(first), sparseModel.getIssueById(3));
+        assertEquals(Optional.empty(), sparseModel.getIssueById(2));
+    }
+
+    /**
+     * Versions change with every new model state, and only then.
+     */
+    @Test
+    public void versions() {
+        TurboIssue unchanged = new TurboIssue(REPO, 1, "unchanged");
+        TurboIssue changed = new TurboIssue(REPO, 2, "changed");
+        Model model = new Model(REPO, Arrays.asList(unchanged, changed),
+                new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        Model next = new Model(REPO);
+        assertTrue(next.getVersion() > model.getVersion());
+        assertEquals(model.getVersion(), unchanged.getVersion());
+
+        assertEquals(model.getVersion(), new Model(model).getVersion());
+        UpdateSignature signature = new UpdateSignature("issues", "labels", "milestones", "collaborators", new Date());
+        Model rechecked = model.withUpdateSignature(signature);
+        assertEquals(model.getVersion(), rechecked.getVersion());
+        assertEquals(signature, rechecked.getUpdateSignature());
+
+        TurboIssue replacement = new TurboIssue(changed);
+        replacement.setTitle("replaced");
+        Model replaced = model.withIssues(Arrays.asList(replacement));
+        assertTrue(replaced.getVersion() > next.getVersion());
+        assertEquals(model.getVersion(), replaced.getIssueById(1).get().getVersion());
+        assertEquals(replaced.getVersion(), replaced.getIssueById(2).get().getVersion());
+        assertEquals(model.getVersion(), changed.getVersion());
+    }
+
+    @Test
+    public void issueIndex() {
+        TurboIssue bug = new TurboIssue(REPO, 1, "bug", "alice", null, false);
+        bug.setLabels(Arrays.asList("type.bug", "p.high"));
+        bug.setMilestoneById(2);
+        bug.setAssignee("bob");
+        TurboIssue feature = new TurboIssue(REPO, 2, "feature", "bob", null, false);
+        feature.setLabels(Arrays.asList("type.feature"));
+        feature.setOpen(false);
+        TurboIssue pullRequest = new TurboIssue(REPO, 5, "pull request", "alice", null, true);
+        pullRequest.setLabels(Arrays.asList("type.bug"));
+        pullRequest.setMilestoneById(2);
+
+        Model model = new Model(REPO, Arrays.asList(bug, feature, pullRequest),
+                new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        IssueIndex index = model.getIssueIndex();
+        assertTrue(index == model.getIssueIndex());
+
+        assertEquals(bitSet(1, 2, 5), index.getAll());
+        assertEquals(bitSet(1, 5), index.getOpen());
+        assertEquals(bitSet(2), index.getClosed());
+        assertEquals(bitSet(5), index.getPullRequests());
+        assertEquals(bitSet(1, 2), index.getNonPullRequests());
+        assertEquals(bitSet(1, 5), index.getWithLabel("type.bug"));
+        assertEquals(bitSet(1, 2, 5), index.getWithLabel(name -> name.startsWith("type.")));
+        assertEquals(bitSet(), index.getWithLabel("type.question"));
+        assertEquals(bitSet(1, 5), index.getWithMilestone(2));
+        assertEquals(bitSet(2), index.getWithoutMilestone());
+        assertEquals(bitSet(1), index.getAssignedTo("bob"));
+        assertEquals(bitSet(2, 5), index.getUnassigned());
+        assertEquals(bitSet(1, 5), index.getCreatedBy("alice"));
+        assertEquals(new HashSet<>(Arrays.asList("alice", "bob")), index.getCreators());
+
+        // Sets are copies, which can be intersected
+        BitSet openBugs = index.getWithLabel("type.bug");
+        openBugs.and(index.getOpen());
+        openBugs.andNot(index.getPullRequests());
+        assertEquals(Arrays.asList(bug), model.getIssuesByIds(openBugs));
+        assertEquals(bitSet(1, 5), index.getWithLabel("type.bug"));
+
+        assertTrue(index == model.withUpdateSignature(UpdateSignature.EMPTY).getIssueIndex());
+    }
+
+    @Test
+    public void issueIndexDerived() {
+        List<TurboIssue> issues = new ArrayList<>();
+        for (int id = 1; id <= 8; id++) {
+            TurboIssue issue = new TurboIssue(REPO, id, "Issue " + id, id % 2 == 0 ? "alice" : "bob", null, false);
+            issue.setLabels(Arrays.asList("type.bug", "p." + id));
+            issue.setMilestoneById(id % 3 + 1);
+            issues.add(issue);
+        }
+        Model model = new Model(REPO, issues, new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        IssueIndex index = model.getIssueIndex();
+
+        TurboIssue changed = new TurboIssue(issues.get(0));
+        changed.setLabels(Arrays.asList("type.feature"));
+        changed.removeMilestone();
+        changed.setAssignee("carol");
+        changed.setOpen(false);
+        Model replaced = model.withIssues(Arrays.asList(changed));
+        IssueIndex derived = replaced.getIssueIndex();
+        List<TurboIssue> replacedIssues = replaced.getIssues();
+        IssueIndex built = new Model(REPO, replacedIssues, new ArrayList<>(), new ArrayList<>(), new ArrayList<>())
+                .getIssueIndex();
+
+        assertEquals(built.getAll(), derived.getAll());
+        assertEquals(built.getClosed(), derived.getClosed());
+        assertEquals(built.getWithoutMilestone(), derived.getWithoutMilestone());
+        assertEquals(built.getUnassigned(), derived.getUnassigned());
+        assertEquals(built.getLabels(), derived.getLabels());
+        for (String label : built.getLabels()) {
+            assertEquals(built.getWithLabel(label), derived.getWithLabel(label));
+        }
+        assertEquals(built.getMilestones(), derived.getMilestones());
+        assertEquals(built.getWithMilestone(2), derived.getWithMilestone(2));
+        assertEquals(bitSet(1), derived.getAssignedTo("carol"));
+        assertEquals(bitSet(1, 3, 5, 7), derived.getCreatedBy("bob"));
+
+        // The index of the previous model is not changed
+        assertEquals(bitSet(1, 2, 3, 4, 5, 6, 7, 8), index.getWithLabel("type.bug"));
+        assertEquals(bitSet(1, 4, 7), index.getWithMilestone(2));
+        assertEquals(bitSet(), index.getClosed());
+        assertTrue(index.getLabels().contains("p.1"));
+    }
+
+    @Test
+    public void textIndex() {
+        String repoId = "test/text";
+        TurboIssue crash = new TurboIssue(repoId, 1, "Crash on startup");
+        crash.setDescription("Stack trace attached");
+        TurboIssue typo = new TurboIssue(repoId, 2, "Typo in README");
+        typo.setDescription("The word 'startup' is misspelt");
+        TurboIssue slow = new TurboIssue(repoId, 3, "Slow STARTUP with many repos");
+        slow.setDescription("");
+        List<TurboIssue> issues = new ArrayList<>(Arrays.asList(crash, typo, slow));
+        for (int id = 4; id <= 10; id++) {
+            issues.add(new TurboIssue(repoId, id, "Issue " + id));
+        }
+        Model model = new Model(repoId, issues, new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+
+        assertEquals(bitSet(1, 3), TextIndex.findInTitles(model, "startup"));
+        assertEquals(bitSet(2), TextIndex.findInDescriptions(model, "startup"));
+        assertEquals(bitSet(1), TextIndex.findInTitles(model, "sh on sta"));
+        assertEquals(bitSet(), TextIndex.findInTitles(model, "crashes"));
+        assertEquals(bitSet(4, 5, 6, 7, 8, 9, 10), TextIndex.findInTitles(model, "issue"));
+
+        // Strings shorter than a trigram are found among tokens
+        assertEquals(bitSet(2), TextIndex.findInTitles(model, "in"));
+        assertEquals(bitSet(1, 2, 3), TextIndex.findInTitles(model, "p"));
+        assertEquals(null, TextIndex.findInTitles(model, " "));
+
+        // Changed issues are indexed again, and issues that no longer match may still be found
+        TurboIssue renamed = new TurboIssue(crash);
+        renamed.setTitle("Hang on exit");
+        Model updated = model.withIssues(Arrays.asList(renamed));
+        assertEquals(bitSet(1), TextIndex.findInTitles(updated, "hang"));
+        assertEquals(bitSet(1, 3), TextIndex.findInTitles(updated, "startup"));
+    }
+
+    @Test
+    public void textIndex_unreadableDescription() {
+        String repoId = "test/text";
+        StoredDescription.Segment segment = new StoredDescription.Segment() {
+            @Override
+            public String read(StoredDescription description) throws IOException {
+                throw new IOException("Unreadable");
+            }
+
+            @Override
+            public Map<StoredDescription, String> readAll(List<StoredDescription> descriptions) throws IOException {
+                throw new IOException("Unreadable");
+            }
+        };
+        TurboIssue lost = new TurboIssue(repoId, 1, "Lost description");
+        lost.setStoredDescription(new StoredDescription(segment, 0, 10));
+        TurboIssue kept = new TurboIssue(repoId, 2, "Kept description");
+        kept.setDescription("Still here");
+        Model model = new Model(repoId, Arrays.asList(lost, kept), new ArrayList<>(), new ArrayList<>(),
+            new ArrayList<>());
+
+        // The index cannot tell whether an unreadable description contains the text
+        assertEquals(bitSet(1, 2), TextIndex.findInDescriptions(model, "here"));
+        assertEquals(bitSet(1), TextIndex.findInDescriptions(model, "missing"));
+
+        // Once it can be read, it is indexed
+        TurboIssue found = new TurboIssue(lost);
+        found.setDescription("Found again");
+        Model updated = model.withIssues(Arrays.asList(found));
+        assertEquals(bitSet(), TextIndex.findInDescriptions(updated, "missing"));
+        assertEquals(bitSet(1), TextIndex.findInDescriptions(updated, "found"));
+    }
+
+    private static BitSet bitSet(int... ids) {
+        BitSet result = new BitSet();
+        for (int id : ids) {
+            result.set(id);
+        }
+        return result;
+    }
 }
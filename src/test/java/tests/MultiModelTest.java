@@ -4,6 +4,7 @@ import backend.RepoIO;
 import backend.json.JSONStoreStub;
 import backend.resource.Model;
 import backend.resource.MultiModel;
+import backend.resource.TurboIssue;
 import backend.resource.TurboUser;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -145,6 +146,7 @@ public class MultiModelTest {
         Model mockedModel = mock(Model.class);
         when(mockedModel.getRepoId()).thenReturn(repoId);
         when(mockedModel.getIssues()).thenReturn(new ArrayList<>());
+        when(mockedModel.replaceIssueLabels(issueId, labels)).thenReturn(Optional.empty());
 
         MultiModel models = new MultiModel(mock(Preferences.class));
         models.queuePendingRepository(repoId);
@@ -167,6 +169,7 @@ public class MultiModelTest {
         Model mockedModel = mock(Model.class);
         when(mockedModel.getRepoId()).thenReturn(repoId);
         when(mockedModel.getIssues()).thenReturn(new ArrayList<>());
+        when(mockedModel.replaceIssueMilestone(issueId, milestoneId)).thenReturn(Optional.empty());
 
         MultiModel models = new MultiModel(mock(Preferences.class));
         models.queuePendingRepository(repoId);
@@ -175,4 +178,58 @@ public class MultiModelTest {
         models.replaceIssueMilestone(repoId, issueId, milestoneId);
         verify(mockedModel).replaceIssueMilestone(issueId, milestoneId);
     }
+
+    /**
+     * Tests that lists read from a MultiModel are not affected by later changes to it,
+     * and that changes are seen by the next read
+     */
+    @Test
+    public void snapshotReads() {
+        String repoId = "testowner/testrepo";
+        TurboIssue issue = LogicTests.createIssueWithLabels(1, Arrays.asList("label1"));
+        Model model = new Model(repoId, new ArrayList<>(Arrays.asList(issue)), new ArrayList<>(),
+                new ArrayList<>(), new ArrayList<>());
+
+        MultiModel models = new MultiModel(mock(Preferences.class));
+        models.queuePendingRepository(repoId);
+        models.addPending(model);
+
+        List<TurboIssue> before = models.getIssues();
+        assertSame(before, models.getIssues());
+
+        Optional<TurboIssue> result = models.replaceIssueLabels(repoId, 1, Arrays.asList("label2"));
+        assertEquals(Arrays.asList("label2"), result.get().getLabels());
+
+        assertEquals(Arrays.asList("label1"), before.get(0).getLabels());
+        assertEquals(Arrays.asList("label2"), models.getIssues().get(0).getLabels());
+        assertEquals(Arrays.asList("label2"), models.getModelById(repoId).get().getIssueById(1).get().getLabels());
+        assertEquals(Arrays.asList("label1"), model.getIssueById(1).get().getLabels());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void snapshotReads_unmodifiable() {
+        new MultiModel(mock(Preferences.class)).getIssues().add(new TurboIssue("testowner/testrepo", 1, ""));
+    }
+
+    @Test
+    public void getVersion() {
+        String repoId = "testowner/testrepo";
+        TurboIssue issue = LogicTests.createIssueWithLabels(1, Arrays.asList("label1"));
+        Model model = new Model(repoId, new ArrayList<>(Arrays.asList(issue)), new ArrayList<>(),
+                new ArrayList<>(), new ArrayList<>());
+
+        MultiModel models = new MultiModel(mock(Preferences.class));
+        long empty = models.getVersion();
+        models.queuePendingRepository(repoId);
+        models.addPending(model);
+        long added = models.getVersion();
+        assertTrue(added > empty);
+
+        // Replacing a model with one of the same version leaves the version as it is
+        models.replace(Arrays.asList(new Model(models.getModelById(repoId).get())));
+        assertEquals(added, models.getVersion());
+
+        models.replaceIssueLabels(repoId, 1, Arrays.asList("label2"));
+        assertTrue(models.getVersion() > added);
+    }
 }
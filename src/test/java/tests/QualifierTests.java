@@ -560,10 +560,13 @@ public class QualifierTests {
     private void assertSorted(List<TurboIssue> issues, List<Integer> expectedIds,
                                   IModel model, String sortCriteria, 
                                   boolean isInverted, boolean isNonSelfUpdate) {
+        List<TurboIssue> keyed = Qualifier.getSortOrder(model, sortCriteria, isInverted, isNonSelfUpdate)
+            .sort(issues);
         Collections.sort(issues, 
             Qualifier.getSortComparator(model, sortCriteria, isInverted, isNonSelfUpdate));
         
         assertEquals(expectedIds, getIds(issues));
+        assertEquals(expectedIds, getIds(keyed));
     }
 
     /**
@@ -3,14 +3,29 @@ package tests;
 import backend.IssueMetadata;
 import backend.RepoIO;
 import backend.interfaces.RepoSource;
+import backend.interfaces.RepoStore;
+import backend.json.IssueMetadataStore;
 import backend.resource.TurboIssue;
+import github.IssueEventType;
+import github.TurboIssueEvent;
+import guitests.UITest;
+import org.eclipse.egit.github.core.Comment;
+import org.eclipse.egit.github.core.User;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.anyListOf;
@@ -23,16 +38,69 @@ public class RepoIOTests {
      * receives a corresponding CompletableFuture response
      */
     @Test
-    public void testGetIssueMetaData() {
+    public void testGetIssueMetaData() throws InterruptedException, ExecutionException {
         RepoSource source = mock(RepoSource.class);
-        CompletableFuture<Map<Integer, IssueMetadata>> response = new CompletableFuture<>();
+        Map<Integer, IssueMetadata> metadata = new HashMap<>();
+        CompletableFuture<Map<Integer, IssueMetadata>> response = CompletableFuture.completedFuture(metadata);
         doReturn(response).when(source).downloadMetadata(anyString(), anyListOf(TurboIssue.class));
 
         RepoIO repoIO = new RepoIO(Optional.of(source), Optional.empty(), Optional.empty());
-        CompletableFuture result = repoIO.getIssueMetadata("test/test", new ArrayList<>());
+        CompletableFuture<Map<Integer, IssueMetadata>> result = repoIO.getIssueMetadata("test/test", new ArrayList<>());
 
+        assertEquals(metadata, result.get());
         verify(source, times(1)).downloadMetadata(anyString(), anyListOf(TurboIssue.class));
-        assertEquals(response, result);
+    }
+
+    /**
+     * Tests that metadata downloaded by RepoIO's getIssueMetadata is kept across restarts, and
+     * stands in for the missing metadata of issues when they are next downloaded
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testStoredIssueMetadata() throws InterruptedException, ExecutionException {
+        RepoStore.changeDirectory(RepoStore.TEST_DIRECTORY);
+        TurboIssue issue = new TurboIssue("test/test", 1, "Issue");
+        LocalDateTime updatedAt = LocalDateTime.of(2015, 1, 1, 0, 0);
+        issue.setUpdatedAt(updatedAt);
+        Map<Integer, IssueMetadata> metadata = new HashMap<>();
+        Date createdAt = new Date(1420070400123L);
+        Comment comment = new Comment();
+        comment.setBody("comment");
+        comment.setUser(new User().setLogin("user"));
+        comment.setCreatedAt(createdAt);
+        metadata.put(1, IssueMetadata.intermediate(
+                Arrays.asList(new TurboIssueEvent(new User().setLogin("user"), IssueEventType.Closed, createdAt)),
+                Arrays.asList(comment), "events", "comments", updatedAt));
+
+        RepoSource source = mock(RepoSource.class);
+        doReturn(CompletableFuture.completedFuture(metadata))
+                .when(source).downloadMetadata(anyString(), anyListOf(TurboIssue.class));
+        new RepoIO(Optional.of(source), Optional.empty(), Optional.empty())
+                .getIssueMetadata("test/test", Arrays.asList(issue)).get();
+        // The metadata is stored in the background
+        Path metadataFile = IssueMetadataStore.getMetadataPath("test/test").get();
+        for (int i = 0; i < 100 && !Files.exists(metadataFile); i++) {
+            Thread.sleep(50);
+        }
+
+        // After a restart, the issue has no metadata, but its stored metadata is used for the download
+        RepoSource restartedSource = mock(RepoSource.class);
+        doReturn(CompletableFuture.completedFuture(metadata))
+                .when(restartedSource).downloadMetadata(anyString(), anyListOf(TurboIssue.class));
+        new RepoIO(Optional.of(restartedSource), Optional.empty(), Optional.empty())
+                .getIssueMetadata("test/test", Arrays.asList(new TurboIssue("test/test", 1, "Issue"))).get();
+
+        ArgumentCaptor<List> issues = ArgumentCaptor.forClass(List.class);
+        verify(restartedSource).downloadMetadata(anyString(), issues.capture());
+        IssueMetadata stored = ((List<TurboIssue>) issues.getValue()).get(0).getMetadata();
+        assertEquals("events", stored.getEventsETag());
+        assertEquals("comments", stored.getCommentsETag());
+        assertEquals(true, stored.isCurrentFor(updatedAt));
+        assertEquals(createdAt, stored.getEvents().get(0).getDate());
+        assertEquals(IssueEventType.Closed, stored.getEvents().get(0).getType());
+        assertEquals("comment", stored.getComments().get(0).getBody());
+        assertEquals(createdAt, stored.getComments().get(0).getCreatedAt());
+        UITest.clearTestFolder();
     }
 
     /**
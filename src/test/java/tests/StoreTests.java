@@ -1,11 +1,20 @@
 package tests;
 
 import backend.RepoIO;
+import backend.UpdateSignature;
+import backend.binary.BinaryStore;
 import backend.interfaces.RepoStore;
+import backend.json.JSONModelSerializer;
 import backend.json.JSONStore;
 import backend.json.JSONStoreStub;
+import backend.json.JournaledJSONStore;
+import backend.json.StoreManifest;
 import backend.resource.Model;
+import backend.resource.TurboIssue;
+import backend.resource.serialization.SerializableModel;
+import backend.stub.DummyRepo;
 import backend.stub.DummyRepoState;
+import com.google.gson.Gson;
 import guitests.UITest;
 import org.junit.After;
 import org.junit.Before;
@@ -18,10 +27,24 @@ import util.events.EventDispatcherStub;
 import util.events.testevents.UpdateDummyRepoEvent;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
@@ -101,9 +124,323 @@ public class StoreTests {
         UI.status.clear();
     }
 
+    @Test
+    public void testStreamingSerialization() throws IOException {
+        Model model = createDummyModel("dummy1/dummy1");
+
+        // The streamed output is identical to Gson's serialization of a SerializableModel,
+        // so existing store files remain readable
+        StringWriter writer = new StringWriter();
+        JSONModelSerializer.write(model, writer);
+        assertEquals(new Gson().toJson(new SerializableModel(model)), writer.toString());
+
+        Model readModel = JSONModelSerializer.read(new StringReader(writer.toString()));
+        assertEquals(model, readModel);
+
+        // Unset fields, such as the ETags of an empty signature, are omitted just as Gson does
+        Model emptyModel = new Model("dummy2/dummy2");
+        writer = new StringWriter();
+        JSONModelSerializer.write(emptyModel, writer);
+        assertEquals(new Gson().toJson(new SerializableModel(emptyModel)), writer.toString());
+    }
+
+    @Test
+    public void testStreamingStoreRoundTrip() throws InterruptedException, ExecutionException {
+        Model model = createDummyModel("dummy1/dummy1");
+        JSONStore jsonStore = new JSONStore();
+
+        assertEquals(false, jsonStore.saveRepository(model.getRepoId(), model).get());
+        assertEquals(model, jsonStore.loadRepository(model.getRepoId()).get());
+    }
+
+    @Test
+    public void testStoreManifest() throws InterruptedException, ExecutionException, IOException {
+        Model model = createDummyModel("dummy1/dummy1");
+        JSONStore jsonStore = new JSONStore();
+        jsonStore.saveRepository(model.getRepoId(), model).get();
+
+        StoreManifest manifest = new StoreManifest(RepoStore.TEST_DIRECTORY);
+        Path storedFile = Paths.get(RepoStore.TEST_DIRECTORY, "dummy1-dummy1.json");
+        StoreManifest.Entry entry = manifest.getEntry("dummy1/dummy1").get();
+        assertEquals("dummy1-dummy1.json", entry.fileName);
+        assertEquals(DummyRepoState.noOfDummyIssues, entry.issueCount);
+        assertEquals(Files.size(storedFile), entry.fileSize);
+        assertEquals(StoreManifest.computeChecksum(storedFile), entry.checksum);
+        assertEquals(Arrays.asList("dummy1/dummy1"), jsonStore.getStoredRepos());
+
+        // A missing manifest is rebuilt from the stored files
+        Files.delete(Paths.get(RepoStore.TEST_DIRECTORY, StoreManifest.MANIFEST_FILE_NAME));
+        assertEquals(false, manifest.getEntry("dummy1/dummy1").isPresent());
+        assertEquals(Arrays.asList("dummy1/dummy1"), jsonStore.getStoredRepos());
+        StoreManifest.Entry rebuiltEntry = manifest.getEntry("dummy1/dummy1").get();
+        assertEquals(entry.issueCount, rebuiltEntry.issueCount);
+        assertEquals(entry.checksum, rebuiltEntry.checksum);
+
+        // Entries of files removed behind the store's back are dropped
+        Files.delete(storedFile);
+        assertEquals(0, jsonStore.getStoredRepos().size());
+        assertEquals(false, manifest.getEntry("dummy1/dummy1").isPresent());
+
+        jsonStore.saveRepository(model.getRepoId(), model).get();
+        jsonStore.removeStoredRepo(model.getRepoId()).get();
+        assertEquals(false, manifest.getEntry("dummy1/dummy1").isPresent());
+    }
+
+    @Test
+    public void testJournaledStore() throws InterruptedException, ExecutionException, IOException {
+        Model model = createDummyModel("journal/journal");
+        Path storedFile = Paths.get(RepoStore.TEST_DIRECTORY, "journal-journal.json");
+        Path journal = Paths.get(RepoStore.TEST_DIRECTORY, "journal-journal.json.journal");
+        JournaledJSONStore jsonStore = new JournaledJSONStore();
+
+        // The first save writes a snapshot
+        assertEquals(false, jsonStore.saveRepository(model.getRepoId(), model).get());
+        assertEquals(false, Files.exists(journal));
+        long snapshotChecksum = StoreManifest.computeChecksum(storedFile);
+
+        // Later saves only append the changes to the journal
+        Model updated = addIssue(model, new TurboIssue(model.getRepoId(), 1000, "New issue"));
+        updated.getIssues().get(0).setTitle("Edited title");
+        assertEquals(false, jsonStore.saveRepository(updated.getRepoId(), updated).get());
+        assertEquals(true, Files.exists(journal));
+        assertEquals(snapshotChecksum, StoreManifest.computeChecksum(storedFile));
+
+        // The journal is replayed on load, by this or any other store
+        assertEquals(updated, jsonStore.loadRepository(model.getRepoId()).get());
+        assertEquals(updated, new JSONStore().loadRepository(model.getRepoId()).get());
+
+        // Removing the repository removes its journal
+        jsonStore.removeStoredRepo(model.getRepoId()).get();
+        assertEquals(false, Files.exists(storedFile));
+        assertEquals(false, Files.exists(journal));
+    }
+
+    @Test
+    public void testJournalCompaction() throws InterruptedException, ExecutionException {
+        Model model = createDummyModel("journal/journal");
+        Path journal = Paths.get(RepoStore.TEST_DIRECTORY, "journal-journal.json.journal");
+        // Each save below journals an issue and the update signature
+        JournaledJSONStore jsonStore = new JournaledJSONStore(3, Long.MAX_VALUE);
+        jsonStore.saveRepository(model.getRepoId(), model).get();
+
+        Model updated = addIssue(model, new TurboIssue(model.getRepoId(), 1000, "New issue"));
+        jsonStore.saveRepository(updated.getRepoId(), updated).get();
+        assertEquals(true, Files.exists(journal));
+
+        // The second journaled save reaches the limit and schedules a compaction,
+        // which runs before the load below
+        updated = addIssue(updated, new TurboIssue(model.getRepoId(), 1001, "Another issue"));
+        jsonStore.saveRepository(updated.getRepoId(), updated).get();
+        assertEquals(updated, jsonStore.loadRepository(model.getRepoId()).get());
+        assertEquals(false, Files.exists(journal));
+    }
+
+    @Test
+    public void testTornJournalRecord() throws InterruptedException, ExecutionException, IOException {
+        Model model = createDummyModel("journal/journal");
+        Path journal = Paths.get(RepoStore.TEST_DIRECTORY, "journal-journal.json.journal");
+        JournaledJSONStore jsonStore = new JournaledJSONStore();
+        jsonStore.saveRepository(model.getRepoId(), model).get();
+
+        Model updated = addIssue(model, new TurboIssue(model.getRepoId(), 1000, "New issue"));
+        jsonStore.saveRepository(updated.getRepoId(), updated).get();
+
+        // A record cut short by a crash is discarded, keeping the complete ones before it
+        Files.write(journal, "{\"type\":\"ISSUE\",\"ke".getBytes(), StandardOpenOption.APPEND);
+        assertEquals(updated, new JSONStore().loadRepository(model.getRepoId()).get());
+    }
+
+    @Test
+    public void testJournalEditWithEqualHash() throws InterruptedException, ExecutionException {
+        Model model = createDummyModel("journal/journal");
+        model.getIssues().get(0).setTitle("Aa");
+        JournaledJSONStore jsonStore = new JournaledJSONStore();
+        jsonStore.saveRepository(model.getRepoId(), model).get();
+
+        // "Aa" and "BB" have the same hash code, yet the edit is journaled
+        Model updated = addIssue(model, new TurboIssue(model.getRepoId(), 1000, "New issue"));
+        updated.getIssues().get(0).setTitle("BB");
+        jsonStore.saveRepository(updated.getRepoId(), updated).get();
+        assertEquals(updated, new JSONStore().loadRepository(model.getRepoId()).get());
+    }
+
+    @Test
+    public void testBinaryStoreRoundTrip() throws InterruptedException, ExecutionException {
+        Model model = createDummyModel("binary/binary");
+        BinaryStore binaryStore = new BinaryStore();
+
+        assertEquals(false, binaryStore.saveRepository(model.getRepoId(), model).get());
+        assertEquals(true, Files.exists(Paths.get(RepoStore.TEST_DIRECTORY, "binary-binary.bin")));
+        Model loaded = binaryStore.loadRepository(model.getRepoId()).get();
+        assertEquals(model, loaded);
+        assertEquals(model.getLabels(), loaded.getLabels());
+        assertEquals(model.getMilestones(), loaded.getMilestones());
+        assertEquals(model.getUsers(), loaded.getUsers());
+        assertEquals(Arrays.asList("binary/binary"), binaryStore.getStoredRepos());
+
+        assertEquals(false, binaryStore.removeStoredRepo(model.getRepoId()).get());
+        assertEquals(0, binaryStore.getStoredRepos().size());
+    }
+
+    @Test
+    public void testStoredDescriptions() throws InterruptedException, ExecutionException {
+        Model model = createDummyModel("binary/binary");
+        new BinaryStore().saveRepository(model.getRepoId(), model).get();
+
+        // Descriptions are left in their segment until they are read
+        BinaryStore binaryStore = new BinaryStore();
+        Model loaded = binaryStore.loadRepository(model.getRepoId()).get();
+        assertEquals(true, loaded.getIssues().stream().allMatch(issue -> issue.getStoredDescription().isPresent()));
+        assertEquals(model, loaded);
+        for (TurboIssue issue : model.getIssues()) {
+            assertEquals(issue.getDescription(), loaded.getIssueById(issue.getId()).get().getDescription());
+        }
+
+        // Saving again only appends the descriptions that changed
+        long segmentSize = getSegmentSize();
+        TurboIssue changed = new TurboIssue(loaded.getIssues().get(0));
+        changed.setDescription("changed");
+        Model updated = replaceIssue(loaded, changed);
+        binaryStore.saveRepository(updated.getRepoId(), updated).get();
+        assertEquals(segmentSize + Integer.BYTES + "changed".length(), getSegmentSize());
+        assertEquals(updated, new BinaryStore().loadRepository(model.getRepoId()).get());
+    }
+
+    @Test
+    public void testUnreadableStoredDescriptions() throws InterruptedException, ExecutionException, IOException {
+        Model model = createDummyModel("binary/binary");
+        new BinaryStore().saveRepository(model.getRepoId(), model).get();
+        Model loaded = new BinaryStore().loadRepository(model.getRepoId()).get();
+        try (Stream<Path> files = Files.list(Paths.get(RepoStore.TEST_DIRECTORY))) {
+            for (Path segment : files.filter(p -> p.getFileName().toString()
+                    .endsWith("." + BinaryStore.SEGMENT_FILE_EXTENSION)).collect(Collectors.toList())) {
+                Files.write(segment, new byte[0]);
+            }
+        }
+
+        // Descriptions that cannot be read are shown as empty, but are never written as such
+        TurboIssue issue = loaded.getIssues().get(0);
+        assertEquals("", issue.getDescription());
+        try {
+            issue.readDescription();
+            fail();
+        } catch (IOException e) {
+            assertEquals(true, issue.getStoredDescription().isPresent());
+        }
+        assertEquals(true, new JSONStore().saveRepository(loaded.getRepoId(), loaded).get());
+        assertEquals(false, Files.exists(Paths.get(RepoStore.TEST_DIRECTORY, "binary-binary.json")));
+    }
+
+    @Test
+    public void testDescriptionSegmentCompaction() throws InterruptedException, ExecutionException {
+        Model model = createDummyModel("binary/binary");
+        BinaryStore binaryStore = new BinaryStore();
+        char[] text = new char[100 * 1024];
+        for (int i = 0; i < 12; i++) {
+            Arrays.fill(text, (char) ('a' + i));
+            TurboIssue issue = new TurboIssue(model.getIssues().get(0));
+            issue.setDescription(new String(text));
+            model = replaceIssue(model, issue);
+            binaryStore.saveRepository(model.getRepoId(), model).get();
+        }
+        long segmentSize = getSegmentSize();
+
+        // Descriptions no longer used are dropped when the repository is next loaded
+        Model loaded = new BinaryStore().loadRepository(model.getRepoId()).get();
+        assertEquals(model, loaded);
+        assertEquals(true, getSegmentSize() < segmentSize - 10 * text.length);
+        assertEquals(model, new BinaryStore().loadRepository(model.getRepoId()).get());
+    }
+
+    private static long getSegmentSize() {
+        try (Stream<Path> files = Files.list(Paths.get(RepoStore.TEST_DIRECTORY))) {
+            List<Path> segments = files
+                    .filter(p -> p.getFileName().toString().endsWith("." + BinaryStore.SEGMENT_FILE_EXTENSION))
+                    .collect(Collectors.toList());
+            assertEquals(1, segments.size());
+            return Files.size(segments.get(0));
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static Model replaceIssue(Model model, TurboIssue replacement) {
+        List<TurboIssue> issues = new ArrayList<>();
+        model.getIssues().forEach(i -> issues.add(i.getId() == replacement.getId() ? replacement : new TurboIssue(i)));
+        return new Model(model.getRepoId(), issues, model.getLabels(), model.getMilestones(), model.getUsers(),
+                model.getUpdateSignature());
+    }
+
+    @Test
+    public void testBinaryStoreMigration() throws InterruptedException, ExecutionException {
+        Model model = createDummyModel("binary/binary");
+        new JournaledJSONStore().saveRepository(model.getRepoId(), model).get();
+
+        // Repositories stored as JSON are listed, and converted when loaded
+        BinaryStore binaryStore = new BinaryStore();
+        assertEquals(Arrays.asList("binary/binary"), binaryStore.getStoredRepos());
+        assertEquals(model, binaryStore.loadRepository(model.getRepoId()).get());
+        assertEquals(false, Files.exists(Paths.get(RepoStore.TEST_DIRECTORY, "binary-binary.json")));
+        assertEquals(true, Files.exists(Paths.get(RepoStore.TEST_DIRECTORY, "binary-binary.bin")));
+        assertEquals(Arrays.asList("binary/binary"), binaryStore.getStoredRepos());
+        assertEquals(model, binaryStore.loadRepository(model.getRepoId()).get());
+    }
+
+    @Test
+    public void testWriteCoalescing() throws InterruptedException, ExecutionException, TimeoutException {
+        Model first = createDummyModel("coalesce/coalesce");
+        Model second = addIssue(first, new TurboIssue("coalesce/coalesce", 100, "Second"));
+        Model third = addIssue(second, new TurboIssue("coalesce/coalesce", 101, "Third"));
+        JSONStore jsonStore = new JSONStore();
+        jsonStore.setMaxWriteDelay(TimeUnit.MINUTES.toMillis(1));
+
+        // Saves made while a write is held back are folded into it
+        CompletableFuture<Boolean> firstSave = jsonStore.saveRepository(first.getRepoId(), first);
+        CompletableFuture<Boolean> secondSave = jsonStore.saveRepository(second.getRepoId(), second);
+        CompletableFuture<Boolean> thirdSave = jsonStore.saveRepository(third.getRepoId(), third);
+        assertEquals(false, firstSave.isDone());
+        assertEquals(0, jsonStore.getQueueDepth(first.getRepoId()));
+
+        // A later operation on the repository releases the write and sees its outcome
+        assertEquals(third, jsonStore.loadRepository(third.getRepoId()).get(30, TimeUnit.SECONDS));
+        assertEquals(false, firstSave.get());
+        assertEquals(false, secondSave.get());
+        assertEquals(false, thirdSave.get());
+        assertEquals(2, jsonStore.getPeakQueueDepth(first.getRepoId()));
+    }
+
+    @Test
+    public void testMaxWriteDelay() throws InterruptedException, ExecutionException, TimeoutException {
+        Model model = createDummyModel("coalesce/coalesce");
+        JSONStore jsonStore = new JSONStore();
+        jsonStore.setMaxWriteDelay(50);
+
+        // A held back write is flushed on its own once its delay is up
+        assertEquals(false, jsonStore.saveRepository(model.getRepoId(), model).get(30, TimeUnit.SECONDS));
+        assertEquals(true, Files.exists(Paths.get(RepoStore.TEST_DIRECTORY, "coalesce-coalesce.json")));
+    }
+
+    private static Model addIssue(Model model, TurboIssue issue) {
+        List<TurboIssue> issues = new ArrayList<>();
+        model.getIssues().forEach(i -> issues.add(new TurboIssue(i)));
+        issues.add(issue);
+        return new Model(model.getRepoId(), issues, model.getLabels(), model.getMilestones(), model.getUsers(),
+                model.getUpdateSignature());
+    }
+
+    private static Model createDummyModel(String repoId) {
+        DummyRepo dummy = new DummyRepo();
+        return new Model(repoId,
+                dummy.getIssues(repoId),
+                dummy.getLabels(repoId),
+                dummy.getMilestones(repoId),
+                dummy.getCollaborators(repoId),
+                new UpdateSignature("issues", "labels", "milestones", "collaborators", new Date()));
+    }
+
     @Test(expected = ExecutionException.class)
     public void testCorruptedJSON() throws InterruptedException, ExecutionException {
-        RepoStore.write("testrepo/testrepo", "abcde", 10);
+        RepoStore.write("testrepo/testrepo", "abcde");
 
         JSONStore jsonStore = new JSONStore();
         jsonStore.loadRepository("testrepo/testrepo").get();
@@ -117,7 +454,7 @@ public class StoreTests {
 
     @Test
     public void testLoadCorruptedRepository() throws InterruptedException, ExecutionException {
-        RepoStore.write("testrepo/testrepo", "abcde", 10);
+        RepoStore.write("testrepo/testrepo", "abcde");
 
         RepoIO repoIO = TestController.createTestingRepoIO(Optional.empty());
         repoIO.setRepoOpControl(TestUtils.createRepoOpControlWithEmptyModels(repoIO));
@@ -135,6 +472,23 @@ public class StoreTests {
         assertEquals(DummyRepoState.noOfDummyIssues, model.getIssues().size());
     }
 
+    @Test
+    public void testReloadDeletedRepository() throws InterruptedException, ExecutionException, TimeoutException {
+        RepoIO testIO = TestController.createTestingRepoIO(Optional.empty());
+        testIO.setRepoOpControl(TestUtils.createRepoOpControlWithEmptyModels(testIO));
+        testIO.openRepository("dummy1/dummy1").get();
+
+        // Reopening a repository whose stored copy has disappeared downloads and saves it again,
+        // which must not wait behind the failed load on the store's queue for the repository
+        RepoIO reopeningIO = TestController.createTestingRepoIO(Optional.empty());
+        reopeningIO.setRepoOpControl(TestUtils.createRepoOpControlWithEmptyModels(reopeningIO));
+        assertEquals(true, reopeningIO.getStoredRepos().contains("dummy1/dummy1"));
+        testIO.removeRepository("dummy1/dummy1").get();
+
+        Model model = reopeningIO.openRepository("dummy1/dummy1").get(30, TimeUnit.SECONDS);
+        assertEquals(DummyRepoState.noOfDummyIssues, model.getIssues().size());
+    }
+
     @Test
     public void testRemoveRepo() throws InterruptedException, ExecutionException {
         RepoIO testIO = TestController.createTestingRepoIO(Optional.empty());
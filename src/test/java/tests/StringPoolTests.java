@@ -0,0 +1,100 @@
+package tests;
+
+import backend.resource.StringPool;
+import backend.resource.TurboIssue;
+import backend.resource.TurboLabel;
+import backend.resource.TurboUser;
+import backend.resource.serialization.SerializableIssue;
+import org.eclipse.egit.github.core.Issue;
+import org.eclipse.egit.github.core.Label;
+import org.eclipse.egit.github.core.User;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+public class StringPoolTests {
+
+    private static final String REPO = "testpool/testpool";
+    private static final String OTHER_REPO = "testpool/other";
+
+    @After
+    public void tearDown() {
+        StringPool.remove(REPO);
+        StringPool.remove(OTHER_REPO);
+    }
+
+    /**
+     * Equal strings of the same repository are replaced by a single copy.
+     */
+    @Test
+    public void internTest() {
+        String first = new String("bug");
+        String second = new String("bug");
+
+        assertSame(first, StringPool.intern(REPO, first));
+        assertSame(first, StringPool.intern(REPO, second));
+        assertNotSame(first, StringPool.intern(OTHER_REPO, second));
+        assertNull(StringPool.intern(REPO, null));
+    }
+
+    @Test
+    public void statsTest() {
+        StringPool.intern(REPO, new String("duplicate"));
+        StringPool.intern(REPO, new String("duplicate"));
+        StringPool.intern(REPO, new String("duplicate"));
+        StringPool.intern(REPO, new String("unique"));
+
+        StringPool.Stats stats = StringPool.getStats().get(REPO);
+        assertEquals(2, stats.getDuplicates());
+        assertTrue(stats.getBytesSaved() >= 2 * "duplicate".length() * 2);
+        assertTrue(stats.getPooled() >= 2);
+    }
+
+    /**
+     * Issues built from any source share the strings they have in common.
+     */
+    @Test
+    public void issueStringsTest() throws IOException {
+        TurboIssue fromStore = new TurboIssue(new String(REPO), 1, "title", new String("user"), LocalDateTime.now(),
+                false, "", LocalDateTime.now(), 0, true, Optional.of(new String("user")),
+                Arrays.asList(new String("type.bug"), new String("p.high")), Optional.empty());
+
+        Issue issue = new Issue();
+        issue.setNumber(2);
+        issue.setUser(new User().setLogin(new String("user")));
+        issue.setCreatedAt(new Date());
+        issue.setState("open");
+        issue.setLabels(Arrays.asList(new Label().setName(new String("type.bug"))));
+        TurboIssue fromGitHub = new TurboIssue(new String(REPO), issue);
+
+        TurboIssue deserialized = new TurboIssue(new String(REPO), new SerializableIssue(fromStore));
+
+        assertSame(fromStore.getRepoId(), fromGitHub.getRepoId());
+        assertSame(fromStore.getCreator(), fromGitHub.getCreator());
+        assertSame(fromStore.getCreator(), fromStore.getAssignee().get());
+        assertSame(fromStore.getLabels().get(0), fromGitHub.getLabels().get(0));
+        assertSame(fromStore.getLabels().get(1), deserialized.getLabels().get(1));
+
+        fromGitHub.addLabel(new String("p.high"));
+        assertSame(fromStore.getLabels().get(1), fromGitHub.getLabels().get(1));
+    }
+
+    @Test
+    public void labelAndUserStringsTest() {
+        TurboIssue issue = new TurboIssue(REPO, 1, "title", new String("user"), LocalDateTime.now(), false);
+        issue.addLabel(new String("type.bug"));
+        TurboLabel label = new TurboLabel(REPO, new String("type.bug"));
+        TurboUser user = new TurboUser(REPO, new String("user"));
+
+        assertSame(issue.getLabels().get(0), label.getFullName());
+        assertSame(issue.getCreator(), user.getLoginName());
+        assertSame(label.getGroupName(), new TurboLabel(REPO, "type.feature").getGroupName());
+    }
+}
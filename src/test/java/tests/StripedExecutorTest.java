@@ -0,0 +1,103 @@
+package tests;
+
+import org.junit.Test;
+import util.StripedExecutor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StripedExecutorTest {
+
+    @Test
+    public void sameKeyRunsInOrder() throws InterruptedException {
+        StripedExecutor executor = new StripedExecutor("test", 4);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(100);
+
+        for (int i = 0; i < 100; i++) {
+            int n = i;
+            executor.execute("repo", () -> {
+                order.add(n);
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, (int) order.get(i));
+        }
+    }
+
+    @Test
+    public void differentKeysRunInParallel() throws InterruptedException {
+        StripedExecutor executor = new StripedExecutor("test", 2);
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        CountDownLatch done = new CountDownLatch(2);
+
+        // Each task waits for the other to start, which only happens if they run at the same time
+        Runnable task = () -> {
+            bothStarted.countDown();
+            try {
+                if (bothStarted.await(10, TimeUnit.SECONDS)) {
+                    done.countDown();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        executor.execute("repo1", task);
+        executor.execute("repo2", task);
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void queueDepth() throws InterruptedException {
+        StripedExecutor executor = new StripedExecutor("test", 2);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(3);
+        Runnable task = () -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            done.countDown();
+        };
+
+        executor.execute("repo1", task);
+        executor.execute("repo1", task);
+        executor.execute("repo2", task);
+        assertEquals(2, executor.getQueueDepth("repo1"));
+        assertEquals(1, executor.getQueueDepth("repo2"));
+        assertEquals(0, executor.getQueueDepth("repo3"));
+
+        release.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        // The last task's completion is recorded just after it runs
+        for (int i = 0; i < 100 && executor.getQueueDepth("repo1") > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, executor.getQueueDepth("repo1"));
+        assertEquals(2, executor.getPeakQueueDepth("repo1"));
+    }
+
+    @Test
+    public void exceptionDoesNotStopKey() throws InterruptedException {
+        StripedExecutor executor = new StripedExecutor("test", 1);
+        CountDownLatch done = new CountDownLatch(1);
+
+        executor.execute("repo", () -> {
+            throw new IllegalStateException("Expected");
+        });
+        executor.execute("repo", done::countDown);
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+    }
+}
@@ -174,4 +174,34 @@ public class TurboIssueTests {
                                                             Arrays.asList(updatedIssue));
         assertEquals(originalLabels, updatedList.get(0).getLabels());
     }
+
+    /**
+     * Tests that reconciling and combining with pull requests only replace the issues they change,
+     * and keep the first of several issues with the same id
+     */
+    @Test
+    public void reconcile_untouchedIssuesShared() {
+        TurboIssue issue1 = createIssueWithUpdatedAt(1, LocalDateTime.of(2015, 1, 1, 0, 0));
+        TurboIssue issue2 = createIssueWithUpdatedAt(2, LocalDateTime.of(2015, 1, 1, 0, 0));
+        TurboIssue duplicate2 = createIssueWithUpdatedAt(2, LocalDateTime.of(2015, 1, 1, 0, 0));
+        TurboIssue changed2 = createIssueWithUpdatedAt(2, LocalDateTime.of(2015, 2, 1, 0, 0));
+        TurboIssue added3 = createIssueWithUpdatedAt(3, LocalDateTime.of(2015, 2, 1, 0, 0));
+
+        List<TurboIssue> reconciled = TurboIssue.reconcile(Arrays.asList(issue1, issue2, duplicate2),
+                Arrays.asList(changed2, added3));
+        assertEquals(4, reconciled.size());
+        assertSame(issue1, reconciled.get(0));
+        assertEquals(changed2.getUpdatedAt(), reconciled.get(1).getUpdatedAt());
+        assertSame(duplicate2, reconciled.get(2));
+        assertEquals(3, reconciled.get(3).getId());
+        assertNotSame(added3, reconciled.get(3));
+
+        List<TurboIssue> combined = TurboIssue.combineWithPullRequests(reconciled, Arrays.asList(
+                createPullRequestWithUpdatedAt(1, LocalDateTime.of(2014, 1, 1, 0, 0)),
+                createPullRequestWithUpdatedAt(3, LocalDateTime.of(2015, 3, 1, 0, 0))));
+        assertSame(issue1, combined.get(0));
+        assertSame(reconciled.get(1), combined.get(1));
+        assertEquals(LocalDateTime.of(2015, 3, 1, 0, 0), combined.get(3).getUpdatedAt());
+        assertEquals(LocalDateTime.of(2015, 2, 1, 0, 0), reconciled.get(3).getUpdatedAt());
+    }
 }
@@ -172,4 +172,24 @@ public class UtilityTest {
 
 
     }
+
+    @Test
+    public void selectFirstTest() {
+        Random random = new Random(1);
+        List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            items.add(random.nextInt(50));
+        }
+        // Items are only compared by their last digit, so that many compare equal and must keep their order
+        Comparator<Integer> comparator = Comparator.comparingInt(i -> i % 10);
+        List<Integer> sorted = new ArrayList<>(items);
+        sorted.sort(comparator);
+
+        for (int k : Arrays.asList(0, 1, 10, 199, 200, 300)) {
+            assertEquals(sorted.subList(0, Math.min(k, sorted.size())),
+                    Utility.selectFirst(items, comparator, k));
+        }
+        assertEquals(Arrays.asList(1, 2), Utility.selectFirst(new LinkedList<>(Arrays.asList(3, 1, 2)),
+                Comparator.naturalOrder(), 2));
+    }
 }